@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.oodt.cas.crawl;
+
+//OODT imports
+import org.apache.oodt.cas.crawl.ProductCrawler.CrawledProduct;
+import org.apache.oodt.cas.crawl.status.IngestStatus;
+
+//JDK imports
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a {@link ProductCrawler} crawl concurrently. Files found by walking the
+ * crawl directory are passed through four stages, precondition checks,
+ * metadata extraction (through pre-ingest actions), ingest and post-ingest
+ * actions, each with its own threads and a bounded queue. A stage whose queue
+ * is full holds up the stage feeding it, and ultimately the directory walk, so
+ * a slow file manager doesn't leave the crawler holding the whole drop zone in
+ * memory.
+ *
+ * <p>
+ * Anything a stage calls into, the crawler's preconditions, met extractor,
+ * naming convention and actions, must be safe to call from several threads if
+ * the stage is given more than one.
+ * </p>
+ */
+class ProductCrawlPipeline {
+
+   private static final Logger LOG = Logger
+         .getLogger(ProductCrawlPipeline.class.getName());
+
+   private final ProductCrawler crawler;
+
+   private final ThreadPoolExecutor preconditionStage;
+
+   private final ThreadPoolExecutor extractionStage;
+
+   private final ThreadPoolExecutor ingestStage;
+
+   private final ThreadPoolExecutor postIngestStage;
+
+   ProductCrawlPipeline(ProductCrawler crawler) {
+      this.crawler = crawler;
+      preconditionStage = newStage("precondition",
+            crawler.getPreconditionThreads());
+      extractionStage = newStage("extraction", crawler.getExtractionThreads());
+      ingestStage = newStage("ingest", crawler.getIngestThreads());
+      postIngestStage = newStage("postIngest", crawler.getPostIngestThreads());
+   }
+
+   /**
+    * Crawls the given directory (or the directory of the given file), returning
+    * once every file found has been through the pipeline. Each file's
+    * {@link IngestStatus} is added to the crawler's as it completes.
+    *
+    * @param dirRoot
+    *           The directory to crawl.
+    * @throws IOException
+    *            If the directory could not be walked.
+    */
+   void crawl(File dirRoot) throws IOException {
+      final Path start = (dirRoot.isDirectory() ? dirRoot : dirRoot
+            .getAbsoluteFile().getParentFile()).toPath();
+      final boolean crawlForDirs = crawler.isCrawlForDirs();
+      int maxDepth = crawler.isNoRecur() ? 1 : Integer.MAX_VALUE;
+
+      try {
+         Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+               maxDepth, new SimpleFileVisitor<Path>() {
+                  @Override
+                  public FileVisitResult preVisitDirectory(Path dir,
+                        BasicFileAttributes attrs) {
+                     if (dir.equals(start)) {
+                        LOG.log(Level.INFO, "Crawling " + dir);
+                     } else if (crawlForDirs) {
+                        submit(dir.toFile());
+                     }
+                     return FileVisitResult.CONTINUE;
+                  }
+
+                  @Override
+                  public FileVisitResult visitFile(Path file,
+                        BasicFileAttributes attrs) {
+                     // directories below maxDepth show up here
+                     if (crawlForDirs ? attrs.isDirectory() : attrs
+                           .isRegularFile()) {
+                        submit(file.toFile());
+                     }
+                     return FileVisitResult.CONTINUE;
+                  }
+
+                  @Override
+                  public FileVisitResult visitFileFailed(Path file,
+                        IOException e) {
+                     LOG.log(Level.WARNING, "Unable to crawl " + file
+                           + ": Message: " + e.getMessage());
+                     return FileVisitResult.CONTINUE;
+                  }
+               });
+      } finally {
+         awaitStages();
+      }
+   }
+
+   private void submit(File product) {
+      LOG.log(Level.INFO, "Handling file " + product);
+      final CrawledProduct crawled = new CrawledProduct(product);
+      preconditionStage.execute(new Stage(crawled) {
+         void run(CrawledProduct crawled) {
+            if (crawler.checkPreconditions(crawled)) {
+               extractionStage.execute(extract(crawled));
+            } else {
+               complete(crawled);
+            }
+         }
+      });
+   }
+
+   private Stage extract(CrawledProduct crawled) {
+      return new Stage(crawled) {
+         void run(CrawledProduct crawled) {
+            if (crawler.prepareForIngest(crawled)) {
+               ingestStage.execute(ingest(crawled));
+            } else {
+               complete(crawled);
+            }
+         }
+      };
+   }
+
+   private Stage ingest(CrawledProduct crawled) {
+      return new Stage(crawled) {
+         void run(CrawledProduct crawled) {
+            crawler.ingestProduct(crawled);
+            postIngestStage.execute(finish(crawled));
+         }
+      };
+   }
+
+   private Stage finish(CrawledProduct crawled) {
+      return new Stage(crawled) {
+         void run(CrawledProduct crawled) {
+            crawler.finishIngest(crawled);
+            complete(crawled);
+         }
+      };
+   }
+
+   private void complete(CrawledProduct crawled) {
+      crawler.ingestStatus.add(crawled.status);
+   }
+
+   /*
+    * Shuts the stages down in order: once a stage has finished nothing more
+    * can be handed to the next one.
+    */
+   private void awaitStages() {
+      List<ThreadPoolExecutor> stages = Arrays.asList(preconditionStage,
+            extractionStage, ingestStage, postIngestStage);
+      try {
+         for (ThreadPoolExecutor stage : stages) {
+            stage.shutdown();
+            stage.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+         }
+      } catch (InterruptedException e) {
+         LOG.log(Level.WARNING, "Interrupted waiting for crawl to finish");
+         for (ThreadPoolExecutor stage : stages) {
+            stage.shutdownNow();
+         }
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   private ThreadPoolExecutor newStage(final String name, int stageThreads) {
+      int threads = stageThreads > 0 ? stageThreads : crawler.getCrawlThreads();
+      threads = Math.max(1, threads);
+      return new ThreadPoolExecutor(threads, threads, 0L,
+            TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(Math.max(
+                  1, crawler.getCrawlQueueSize())), new ThreadFactory() {
+               private final AtomicInteger count = new AtomicInteger();
+
+               public Thread newThread(Runnable r) {
+                  Thread t = new Thread(r, "ProductCrawler-" + name + "-"
+                        + count.incrementAndGet());
+                  t.setDaemon(true);
+                  return t;
+               }
+            }, new RejectedExecutionHandler() {
+               // wait for room rather than dropping the product
+               public void rejectedExecution(Runnable r,
+                     ThreadPoolExecutor executor) {
+                  if (executor.isShutdown()) {
+                     throw new RejectedExecutionException("Crawl stage " + name
+                           + " has been shut down");
+                  }
+                  try {
+                     executor.getQueue().put(r);
+                  } catch (InterruptedException e) {
+                     Thread.currentThread().interrupt();
+                     throw new RejectedExecutionException(e);
+                  }
+               }
+            });
+   }
+
+   /* a stage's work on one product: a failure is reported as its status */
+   private abstract class Stage implements Runnable {
+
+      private final CrawledProduct crawled;
+
+      Stage(CrawledProduct crawled) {
+         this.crawled = crawled;
+      }
+
+      abstract void run(CrawledProduct crawled);
+
+      public void run() {
+         try {
+            run(crawled);
+         } catch (RuntimeException e) {
+            LOG.log(Level.SEVERE, "Failed to handle product: ["
+                  + crawled.product + "]: Message: " + e.getMessage(), e);
+            crawled.status = crawler.createIngestStatus(crawled.product,
+                  IngestStatus.Result.FAILURE, "Failed to handle product : "
+                        + e.getMessage());
+            complete(crawled);
+         }
+      }
+   }
+}
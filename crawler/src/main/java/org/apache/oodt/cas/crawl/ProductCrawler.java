@@ -95,6 +95,17 @@ public abstract class ProductCrawler extends ProductCrawlerBean {
       }
 
       // Start crawling.
+      if (getCrawlThreads() > 0) {
+         try {
+            new ProductCrawlPipeline(this).crawl(dirRoot);
+         } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Failed to crawl dir: " + dirRoot
+                  + ": Message: " + e.getMessage(), e);
+         }
+         LOG.info(String.format("Finished crawling dir: %s", dirRoot));
+         return;
+      }
+
       Stack<File> stack = new Stack<File>();
       stack.push(dirRoot.isDirectory() ? dirRoot : dirRoot.getParentFile());
       while (!stack.isEmpty()) {
@@ -126,39 +137,66 @@ public abstract class ProductCrawler extends ProductCrawlerBean {
    public IngestStatus handleFile(File product) {
       LOG.log(Level.INFO, "Handling file " + product);
 
+      CrawledProduct crawled = new CrawledProduct(product);
+      if (checkPreconditions(crawled) && prepareForIngest(crawled)) {
+         ingestProduct(crawled);
+         finishIngest(crawled);
+      }
+      return crawled.status;
+   }
+
+   /*
+    * The steps of handleFile, which the ProductCrawlPipeline runs as separate
+    * stages. Each step that ends the handling of a product sets its status.
+    */
+
+   boolean checkPreconditions(CrawledProduct crawled) {
+      File product = crawled.product;
+
       // Check preconditions.
       if (!passesPreconditions(product)) {
          LOG.log(Level.WARNING,
                "Failed to pass preconditions for ingest of product: ["
                      + product.getAbsolutePath() + "]");
-         return createIngestStatus(product,
+         crawled.status = createIngestStatus(product,
                IngestStatus.Result.PRECONDS_FAILED,
                "Failed to pass preconditions");
+         return false;
       }
+      return true;
+   }
+
+   boolean prepareForIngest(CrawledProduct crawled) {
+      File product = crawled.product;
 
       // Generate Metadata for product.
       Metadata productMetadata = new Metadata();
       productMetadata.addMetadata(getGlobalMetadata());
+      crawled.metadata = productMetadata;
       try {
          productMetadata.replaceMetadata(getMetadataForProduct(product));
       } catch (Exception e) {
          LOG.log(Level.SEVERE,
                "Failed to get metadata for product : " + e.getMessage(), e);
          performPostIngestOnFailActions(product, productMetadata);
-         return createIngestStatus(product,
+         crawled.status = createIngestStatus(product,
                IngestStatus.Result.FAILURE,
                "Failed to get metadata for product : " + e.getMessage());
+         return false;
       }
 
       // Rename the product.
       try {
          product = renameProduct(product, productMetadata);
+         crawled.product = product;
       } catch (Exception e) {
          LOG.log(Level.SEVERE,
                "Failed to rename product : " + e.getMessage(), e);
          performPostIngestOnFailActions(product, productMetadata);
-         return createIngestStatus(product, IngestStatus.Result.FAILURE,
+         crawled.status = createIngestStatus(product,
+               IngestStatus.Result.FAILURE,
                "Failed to rename product : " + e.getMessage());
+         return false;
       }
 
       // Set known metadata if not already specified.
@@ -169,44 +207,55 @@ public abstract class ProductCrawler extends ProductCrawlerBean {
          LOG.log(Level.SEVERE, "Missing required metadata for product '"
                + product + "'");
          performPostIngestOnFailActions(product, productMetadata);
-         return createIngestStatus(product, IngestStatus.Result.FAILURE,
-               "Missing required metadata");
+         crawled.status = createIngestStatus(product,
+               IngestStatus.Result.FAILURE, "Missing required metadata");
+         return false;
       }
 
       // Run preIngest actions.
       if (!performPreIngestActions(product, productMetadata)) {
          performPostIngestOnFailActions(product, productMetadata);
-         return createIngestStatus(product, IngestStatus.Result.FAILURE,
-            "PreIngest actions failed to complete");            
+         crawled.status = createIngestStatus(product,
+               IngestStatus.Result.FAILURE,
+               "PreIngest actions failed to complete");
+         return false;
       }
 
       // Check if ingest has been turned off.
       if (isSkipIngest()) {
          LOG.log(Level.INFO, "Skipping ingest of product: ["
                + product.getAbsolutePath() + "]");
-         return createIngestStatus(product, IngestStatus.Result.SKIPPED,
-               "Crawler ingest turned OFF");
+         crawled.status = createIngestStatus(product,
+               IngestStatus.Result.SKIPPED, "Crawler ingest turned OFF");
+         return false;
       }
+      return true;
+   }
 
+   void ingestProduct(CrawledProduct crawled) {
       // Ingest product.
-      boolean ingestSuccess = ingest(product, productMetadata);
+      crawled.ingested = ingest(crawled.product, crawled.metadata);
+   }
+
+   void finishIngest(CrawledProduct crawled) {
+      File product = crawled.product;
 
       // On Successful Ingest.
-      if (ingestSuccess) {
+      if (crawled.ingested) {
          LOG.log(Level.INFO, "Successful ingest of product: ["
                + product.getAbsolutePath() + "]");
-         performPostIngestOnSuccessActions(product, productMetadata);
-         return createIngestStatus(product,
+         performPostIngestOnSuccessActions(product, crawled.metadata);
+         crawled.status = createIngestStatus(product,
                IngestStatus.Result.SUCCESS, "Ingest was successful");
 
       // On Failed Ingest.
       } else {
          LOG.log(Level.WARNING, "Failed to ingest product: ["
                + product.getAbsolutePath()
-               + "]: performing postIngestFail actions");         
-         performPostIngestOnFailActions(product, productMetadata);
-         return createIngestStatus(product, IngestStatus.Result.FAILURE,
-               "Failed to ingest product");
+               + "]: performing postIngestFail actions");
+         performPostIngestOnFailActions(product, crawled.metadata);
+         crawled.status = createIngestStatus(product,
+               IngestStatus.Result.FAILURE, "Failed to ingest product");
       }
    }
 
@@ -376,4 +425,16 @@ public abstract class ProductCrawler extends ProductCrawlerBean {
          ingester.close();
       }
    }
+
+   /* a product on its way through handleFile */
+   static class CrawledProduct {
+      File product;
+      Metadata metadata;
+      boolean ingested;
+      IngestStatus status;
+
+      CrawledProduct(File product) {
+         this.product = product;
+      }
+   }
 }
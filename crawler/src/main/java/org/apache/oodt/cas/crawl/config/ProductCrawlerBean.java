@@ -51,6 +51,11 @@ public abstract class ProductCrawlerBean implements
 
     private int daemonWait, daemonPort;
 
+    private int crawlThreads, crawlQueueSize;
+
+    private int preconditionThreads, extractionThreads, ingestThreads,
+          postIngestThreads;
+
     private String productPath;
 
     private ApplicationContext applicationContext;
@@ -70,6 +75,8 @@ public abstract class ProductCrawlerBean implements
         this.skipIngest = false;
         this.daemonPort = -1;
         this.daemonWait = -1;
+        this.crawlThreads = 0;
+        this.crawlQueueSize = 1000;
         this.globalMetadata = new Metadata();
     }
 
@@ -163,6 +170,69 @@ public abstract class ProductCrawlerBean implements
         return this.daemonPort;
     }
 
+    /**
+     * @param crawlThreads
+     *           The number of threads to run each stage of a crawl with, or 0
+     *           to crawl one file at a time on the calling thread.
+     */
+    public void setCrawlThreads(int crawlThreads) {
+        this.crawlThreads = crawlThreads;
+    }
+
+    public int getCrawlThreads() {
+        return this.crawlThreads;
+    }
+
+    /**
+     * @param crawlQueueSize
+     *           The number of files each stage of a concurrent crawl may have
+     *           waiting before the stage feeding it blocks.
+     */
+    public void setCrawlQueueSize(int crawlQueueSize) {
+        this.crawlQueueSize = crawlQueueSize;
+    }
+
+    public int getCrawlQueueSize() {
+        return this.crawlQueueSize;
+    }
+
+    /*
+     * Per stage thread counts for a concurrent crawl, overriding crawlThreads
+     * when greater than 0.
+     */
+
+    public void setPreconditionThreads(int preconditionThreads) {
+        this.preconditionThreads = preconditionThreads;
+    }
+
+    public int getPreconditionThreads() {
+        return this.preconditionThreads;
+    }
+
+    public void setExtractionThreads(int extractionThreads) {
+        this.extractionThreads = extractionThreads;
+    }
+
+    public int getExtractionThreads() {
+        return this.extractionThreads;
+    }
+
+    public void setIngestThreads(int ingestThreads) {
+        this.ingestThreads = ingestThreads;
+    }
+
+    public int getIngestThreads() {
+        return this.ingestThreads;
+    }
+
+    public void setPostIngestThreads(int postIngestThreads) {
+        this.postIngestThreads = postIngestThreads;
+    }
+
+    public int getPostIngestThreads() {
+        return this.postIngestThreads;
+    }
+
     @Required
     public void setProductPath(String productPath) {
         this.productPath = productPath;
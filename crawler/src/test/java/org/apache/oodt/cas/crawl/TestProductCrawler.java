@@ -25,9 +25,13 @@ import static org.easymock.EasyMock.verify;
 
 //JDK imports
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
 
 //OODT imports
 import org.apache.oodt.cas.crawl.action.CrawlerAction;
@@ -40,6 +44,9 @@ import org.apache.oodt.cas.filemgr.metadata.CoreMetKeys;
 import org.apache.oodt.cas.filemgr.structs.exceptions.IngestException;
 import org.apache.oodt.cas.metadata.Metadata;
 
+//Apache imports
+import org.apache.commons.io.FileUtils;
+
 //Spring imports
 import org.springframework.context.support.FileSystemXmlApplicationContext;
 
@@ -302,6 +309,58 @@ public class TestProductCrawler extends TestCase {
       assertFalse(pc.ranPostIngestFailActions());
    }
 
+   public void testConcurrentCrawl() throws IOException {
+      File root = createCrawlDir();
+      try {
+         StateAwareProductCrawler pc = new StateAwareProductCrawler();
+         pc.setCrawlThreads(3);
+         pc.setIngestThreads(2);
+         pc.setCrawlQueueSize(1);
+         pc.crawl(root);
+
+         assertEquals(Sets.newHashSet("a.dat", "b.dat", "c.dat"),
+               getProductNames(pc));
+         for (IngestStatus status : pc.getIngestStatus()) {
+            assertEquals(IngestStatus.Result.SUCCESS, status.getResult());
+         }
+
+         // only the top level
+         pc = new StateAwareProductCrawler();
+         pc.setCrawlThreads(2);
+         pc.setNoRecur(true);
+         pc.crawl(root);
+         assertEquals(Sets.newHashSet("a.dat"), getProductNames(pc));
+
+         // directories rather than files
+         pc = new StateAwareProductCrawler();
+         pc.setCrawlThreads(2);
+         pc.setCrawlForDirs(true);
+         pc.crawl(root);
+         assertEquals(Sets.newHashSet("sub", "deeper"), getProductNames(pc));
+      } finally {
+         FileUtils.deleteDirectory(root);
+      }
+   }
+
+   public void testConcurrentCrawlReportsFailures() throws IOException {
+      File root = createCrawlDir();
+      try {
+         StateAwareProductCrawler pc = new StateAwareProductCrawler();
+         pc.setCrawlThreads(2);
+         pc.markFailIngest();
+         pc.crawl(root);
+
+         assertEquals(3, pc.getIngestStatus().size());
+         for (IngestStatus status : pc.getIngestStatus()) {
+            assertEquals(IngestStatus.Result.FAILURE, status.getResult());
+         }
+         assertTrue(pc.ranPostIngestFailActions());
+         assertFalse(pc.ranPostIngestSuccessActions());
+      } finally {
+         FileUtils.deleteDirectory(root);
+      }
+   }
+
    public void testSetupIngester() {
       ProductCrawler pc = createDummyCrawler();
       pc.setClientTransferer(LocalDataTransferFactory.class.getCanonicalName());
@@ -624,4 +683,25 @@ public class TestProductCrawler extends TestCase {
          }
       };
    }    
+
+   private static File createCrawlDir() throws IOException {
+      File root = new File(System.getProperty("java.io.tmpdir"), "crawl-"
+            + UUID.randomUUID());
+      File deeper = new File(root, "sub/deeper");
+      if (!deeper.mkdirs()) {
+         throw new IOException("Failed to create " + deeper);
+      }
+      FileUtils.writeStringToFile(new File(root, "a.dat"), "a");
+      FileUtils.writeStringToFile(new File(root, "sub/b.dat"), "b");
+      FileUtils.writeStringToFile(new File(deeper, "c.dat"), "c");
+      return root;
+   }
+
+   private static Set<String> getProductNames(ProductCrawler pc) {
+      Set<String> names = new HashSet<String>();
+      for (IngestStatus status : pc.getIngestStatus()) {
+         names.add(status.getProduct().getName());
+      }
+      return names;
+   }
 }
@@ -26,7 +26,9 @@ import org.apache.oodt.cas.filemgr.structs.ProductPage;
 import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.Query;
 import org.apache.oodt.cas.filemgr.structs.Reference;
+import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogBatchException;
 import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
+import org.apache.oodt.cas.filemgr.structs.query.QueryResult;
 import org.apache.oodt.cas.filemgr.util.Pagination;
 import org.apache.oodt.cas.filemgr.validation.ValidationLayer;
 import org.apache.oodt.cas.metadata.Metadata;
@@ -145,6 +147,58 @@ public interface Catalog extends Pagination {
      */
     void addProductReferences(Product product) throws CatalogException;
 
+    /**
+     * <p>
+     * Adds a batch of Products to the Catalog, assigning each of them its
+     * product ID. Implementations should write the whole batch in as few
+     * round trips to the backend as they can, and either add all of the
+     * products or none of them. An implementation that can't undo part of a
+     * batch must throw a {@link CatalogBatchException} saying how much of it
+     * was applied.
+     * </p>
+     * 
+     * @param products
+     *            The {@link Product}s to add.
+     * @throws CatalogException
+     *             If any error occurs during the add.
+     */
+    void addProducts(List<Product> products) throws CatalogException;
+
+    /**
+     * <p>
+     * Ingests {@link Metadata} for a batch of products that have already been
+     * added to the Catalog. The i-th {@link Metadata} is associated with the
+     * i-th {@link Product}. As with {@link #addProducts(List)}, a batch that
+     * fails either leaves no metadata behind or throws a
+     * {@link CatalogBatchException}.
+     * </p>
+     * 
+     * @param metadata
+     *            The {@link Metadata} to ingest, one per product.
+     * @param products
+     *            The products to add the metadata for.
+     * @throws CatalogException
+     *             If the lists differ in size, or any general error occurs.
+     */
+    void addMetadata(List<Metadata> metadata, List<Product> products)
+            throws CatalogException;
+
+    /**
+     * <p>
+     * Adds the {@link Reference}s of each of the given {@link Product}s to the
+     * Catalog, as {@link #addProductReferences(Product)} does for a single
+     * product. As with {@link #addProducts(List)}, a batch that fails either
+     * leaves no references behind or throws a {@link CatalogBatchException}.
+     * </p>
+     * 
+     * @param products
+     *            The products to add references for.
+     * @throws CatalogException
+     *             If anything goes wrong.
+     */
+    void addProductReferences(List<Product> products)
+            throws CatalogException;
+
     /**
      * <p>
      * Gets a {@link Product}, with the specified <code>productId</code>.
@@ -260,6 +314,32 @@ public interface Catalog extends Pagination {
      */
     List<String> query(Query query, ProductType type) throws CatalogException;
 
+    /**
+     * <p>
+     * Queries the Catalog with the specified {@link Query}, returning each
+     * matching {@link Product} together with its (reduced) {@link Metadata}.
+     * This is equivalent to calling {@link #query(Query, ProductType)}
+     * followed by {@link #getProductById(String)} and
+     * {@link #getReducedMetadata(Product, List)} for every product ID, but
+     * lets the Catalog fetch everything in as few round trips as it can.
+     * </p>
+     * 
+     * @param query
+     *            The set of criteria by which to query the Catalog.
+     * @param type
+     *            The {@link ProductType} that should be queried.
+     * @param elements
+     *            The set of metadata elements of interest, or null or empty
+     *            for all of a product's metadata.
+     * @return A {@link List} of {@link QueryResult}s for the products that
+     *         match the query, in the order {@link #query(Query, ProductType)}
+     *         would return them. The products do not carry references.
+     * @throws CatalogException
+     *             If any error occurs.
+     */
+    List<QueryResult> reducedQuery(Query query, ProductType type,
+            List<String> elements) throws CatalogException;
+
     /**
      * <p>
      * Performs a query against the underlying {@link Catalog}, and then
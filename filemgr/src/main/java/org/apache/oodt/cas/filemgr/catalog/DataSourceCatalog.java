@@ -29,6 +29,7 @@ import org.apache.oodt.cas.filemgr.structs.Reference;
 import org.apache.oodt.cas.filemgr.structs.TermQueryCriteria;
 import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
 import org.apache.oodt.cas.filemgr.structs.exceptions.ValidationLayerException;
+import org.apache.oodt.cas.filemgr.structs.query.QueryResult;
 import org.apache.oodt.cas.filemgr.util.DbStructFactory;
 import org.apache.oodt.cas.filemgr.validation.ValidationLayer;
 import org.apache.oodt.cas.metadata.Metadata;
@@ -42,11 +43,16 @@ import org.springframework.util.StringUtils;
 
 //JDK imports
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.UUID;
 import java.util.Vector;
@@ -70,6 +76,9 @@ import javax.sql.DataSource;
 public class DataSourceCatalog implements Catalog {
 
   public static final int INT = 60;
+
+  /* how many product ids to put in the IN list of a reduced query */
+  private static final int REDUCED_QUERY_CHUNK_SIZE = 500;
   /* our sql data source */
     protected DataSource dataSource = null;
 
@@ -139,7 +148,7 @@ public class DataSourceCatalog implements Catalog {
      * @see org.apache.oodt.cas.filemgr.catalog.Catalog#addMetadata(org.apache.oodt.cas.metadata.Metadata,
      *      org.apache.oodt.cas.filemgr.structs.Product)
      */
-    public synchronized void addMetadata(Metadata m, Product product)
+    public void addMetadata(Metadata m, Product product)
             throws CatalogException {
         List<Element> metadataTypes;
 
@@ -154,38 +163,62 @@ public class DataSourceCatalog implements Catalog {
                             + ": Message: " + e.getMessage(), e);
         }
 
-      for (Element element : metadataTypes) {
-        List<String> values = m.getAllMetadata(element.getElementName());
+        String metadataTable = getProductTypeTableName(product
+                .getProductType().getName())
+                + "_metadata";
+        Connection conn = null;
+        PreparedStatement statement = null;
+        boolean batchFailed = false;
 
-        if (values == null) {
-          LOG.log(Level.WARNING, "No Metadata specified for product ["
-                                 + product.getProductName() + "] for required field ["
-                                 + element.getElementName()
-                                 + "]: Attempting to continue processing metadata");
-          continue;
-        }
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            statement = conn.prepareStatement(getAddMetadataValueSql(metadataTable));
 
-        for (String value : values) {
-          try {
-            addMetadataValue(element, product, value);
-          } catch (Exception e) {
-            LOG.log(Level.SEVERE, e.getMessage());
-            LOG
-                .log(
-                    Level.WARNING,
-                    "Exception ingesting metadata. Error inserting field: ["
-                    + element.getElementId()
-                    + "=>"
-                    + value
-                    + "]: for product: ["
-                    + product.getProductName()
-                    + "]: Message: "
+            int numValues = addMetadataValues(statement, metadataTypes, m,
+                    product);
+            LOG.log(Level.FINE, "addMetadata: Executing batch of " + numValues
+                    + " values for product [" + product.getProductName() + "]");
+            statement.executeBatch();
+            conn.commit();
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Exception adding metadata for product ["
+                    + product.getProductName() + "] in a batch. Message: "
                     + e.getMessage()
-                    + ": Attempting to continue processing metadata");
-          }
+                    + ": Attempting to add metadata values individually");
+            batchFailed = true;
+            try {
+              if (conn != null) {
+                conn.rollback();
+              }
+            } catch (SQLException e2) {
+                LOG.log(Level.SEVERE,
+                        "Unable to rollback addMetadata transaction. Message: "
+                                + e2.getMessage());
+            }
+        } finally {
+            if (statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException ignore) {
+                }
+
+            }
+
+            if (conn != null) {
+                try {
+                    conn.close();
+
+                } catch (SQLException ignore) {
+                }
+
+            }
         }
-      }
 
+        if (batchFailed) {
+            addMetadataValuesIndividually(metadataTable, metadataTypes, m,
+                    product);
+        }
     }
 
     /*
@@ -253,37 +286,28 @@ public class DataSourceCatalog implements Catalog {
             statement = conn.createStatement();
 
             String addProductSql;
-            String productTypeIdStr;
-
-          productTypeIdStr = fieldIdStringFlag ? "'"
-                                                 + product.getProductType().getProductTypeId() + "'"
-                                               : product.getProductType().getProductTypeId();
 
 						if (!productIdString) {
 							
-	            addProductSql = "INSERT INTO products (product_name, product_structure, product_transfer_status, product_type_id) "
-	                + "VALUES ('"
-	                + product.getProductName()
-	                + "', '"
-	                + product.getProductStructure()
-	                + "', '"
-	                + product.getTransferStatus()
-	                + "', "
-	                + productTypeIdStr
-	                + ")";
+	            addProductSql = getAddProductSql(product, null);
 
 				        LOG.log(Level.FINE, "addProduct: Executing: " + addProductSql);
-				        statement.execute(addProductSql);
 				
 				        // read "product_id" value that was automatically assigned by the database
-				        String productId = "";
+				        String productId;
+				        if (conn.getMetaData().supportsGetGeneratedKeys()) {
+				            productId = insertProduct(statement, addProductSql);
+				        } else {
+				            statement.execute(addProductSql);
+				            productId = "";
 				
-				        String getProductIdSql = "SELECT MAX(product_id) AS max_id FROM products";
+				            String getProductIdSql = "SELECT MAX(product_id) AS max_id FROM products";
 				
-				        rs = statement.executeQuery(getProductIdSql);
+				            rs = statement.executeQuery(getProductIdSql);
 				
-				        while (rs.next()) {
-				            productId = String.valueOf(rs.getInt("max_id"));
+				            while (rs.next()) {
+				                productId = String.valueOf(rs.getInt("max_id"));
+				            }
 				        }
 				        
 		            product.setProductId(productId);
@@ -297,19 +321,7 @@ public class DataSourceCatalog implements Catalog {
                   productId = UUID.randomUUID().toString();
                 }
             	// insert product in database
-            	addProductSql = "INSERT INTO products (product_id, product_name, product_structure, product_transfer_status, product_type_id, product_datetime) "
-                    + "VALUES ('"
-                    + productId
-                    + "', '"
-                    + product.getProductName()
-                    + "', '"
-                    + product.getProductStructure()
-                    + "', '"
-                    + product.getTransferStatus()
-                    + "', "
-                    + productTypeIdStr
-                    +", now()"
-                    + ")";                       
+            	addProductSql = getAddProductSql(product, productId);
 
             	LOG.log(Level.FINE, "addProduct: Executing: " + addProductSql);
             	statement.execute(addProductSql);
@@ -581,21 +593,7 @@ public class DataSourceCatalog implements Catalog {
             statement = conn.createStatement();
 
           for (Reference r : product.getProductReferences()) {
-            String addRefSql = "INSERT INTO "
-                               + productRefTable
-                               + " "
-                               + "(product_id, product_orig_reference, product_datastore_reference, product_reference_filesize, product_reference_mimetype) "
-                               + "VALUES ("
-                               + quoteIt(product.getProductId())
-                               + ", '"
-                               + r.getOrigReference()
-                               + "', '"
-                               + r.getDataStoreReference()
-                               + "', "
-                               + r.getFileSize()
-                               + ",'"
-                               + ((r.getMimeType() == null) ? "" : r.getMimeType()
-                                                                    .getName()) + "')";
+            String addRefSql = getAddReferenceSql(productRefTable, product, r);
 
             LOG.log(Level.FINE, "addProductReferences: Executing: "
                                 + addRefSql);
@@ -641,6 +639,300 @@ public class DataSourceCatalog implements Catalog {
 
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.oodt.cas.filemgr.catalog.Catalog#addProducts(java.util.List)
+     */
+    public synchronized void addProducts(List<Product> products)
+            throws CatalogException {
+        if (products.isEmpty()) {
+            return;
+        }
+
+        Connection conn = null;
+        Statement statement = null;
+        ResultSet rs = null;
+        List<String> productIds = new Vector<String>(products.size());
+
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            statement = conn.createStatement();
+
+            if (!productIdString
+                    && conn.getMetaData().supportsGetGeneratedKeys()) {
+                // each insert reports the "product_id" it was assigned
+                for (Product product : products) {
+                    String addProductSql = getAddProductSql(product, null);
+                    LOG.log(Level.FINE, "addProducts: Executing: "
+                            + addProductSql);
+                    productIds.add(insertProduct(statement, addProductSql));
+                }
+                conn.commit();
+
+                for (int i = 0; i < products.size(); i++) {
+                    products.get(i).setProductId(productIds.get(i));
+                }
+                return;
+            }
+
+            int maxProductId = 0;
+            if (!productIdString) {
+                // without generated keys, the database numbers the new rows in
+                // insertion order after the current maximum "product_id"
+                rs = statement
+                        .executeQuery("SELECT MAX(product_id) AS max_id FROM products");
+                if (rs.next()) {
+                    maxProductId = rs.getInt("max_id");
+                }
+                rs.close();
+                rs = null;
+            }
+
+            for (Product product : products) {
+                String productId = null;
+                if (productIdString) {
+                    // reuse the existing product id if possible, or generate
+                    // a new UUID string
+                    productId = product.getProductId();
+                    if (!StringUtils.hasText(productId)) {
+                        productId = UUID.randomUUID().toString();
+                    }
+                }
+                productIds.add(productId);
+
+                String addProductSql = getAddProductSql(product, productId);
+                LOG.log(Level.FINE, "addProducts: Batching: " + addProductSql);
+                statement.addBatch(addProductSql);
+            }
+            statement.executeBatch();
+
+            if (!productIdString) {
+                productIds.clear();
+                rs = statement
+                        .executeQuery("SELECT product_id FROM products WHERE product_id > "
+                                + maxProductId + " ORDER BY product_id");
+                while (rs.next()) {
+                    productIds.add(String.valueOf(rs.getInt("product_id")));
+                }
+
+                if (productIds.size() != products.size()) {
+                    throw new CatalogException("Added " + products.size()
+                            + " products but found " + productIds.size()
+                            + " new product ids: products were added concurrently");
+                }
+            }
+
+            conn.commit();
+
+            for (int i = 0; i < products.size(); i++) {
+                products.get(i).setProductId(productIds.get(i));
+            }
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, e.getMessage());
+            LOG.log(Level.WARNING, "Exception adding products. Message: "
+                    + e.getMessage());
+            try {
+              if (conn != null) {
+                conn.rollback();
+              }
+            } catch (SQLException e2) {
+                LOG.log(Level.SEVERE,
+                        "Unable to rollback addProducts transaction. Message: "
+                                + e2.getMessage());
+            }
+            throw new CatalogException(e.getMessage(), e);
+        } finally {
+
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException ignore) {
+                }
+
+            }
+
+            if (statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException ignore) {
+                }
+
+            }
+
+            if (conn != null) {
+                try {
+                    conn.close();
+
+                } catch (SQLException ignore) {
+                }
+
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.oodt.cas.filemgr.catalog.Catalog#addMetadata(java.util.List,
+     *      java.util.List)
+     */
+    public void addMetadata(List<Metadata> metadata,
+            List<Product> products) throws CatalogException {
+        if (metadata.size() != products.size()) {
+            throw new CatalogException("Got " + metadata.size()
+                    + " metadata for " + products.size() + " products");
+        }
+
+        Connection conn = null;
+        Map<String, PreparedStatement> statementsByTable = new HashMap<String, PreparedStatement>();
+        Map<String, List<Element>> metadataTypesByProductType = new HashMap<String, List<Element>>();
+
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                String productTypeName = product.getProductType().getName();
+
+                List<Element> metadataTypes = metadataTypesByProductType
+                        .get(productTypeName);
+                if (metadataTypes == null) {
+                    try {
+                        metadataTypes = validationLayer.getElements(product
+                                .getProductType());
+                    } catch (ValidationLayerException e) {
+                        LOG.log(Level.SEVERE, e.getMessage());
+                        throw new CatalogException(
+                                "ValidationLayerException when trying to obtain element list for product type: "
+                                        + productTypeName + ": Message: "
+                                        + e.getMessage(), e);
+                    }
+                    metadataTypesByProductType.put(productTypeName,
+                            metadataTypes);
+                }
+
+                String metadataTable = getProductTypeTableName(productTypeName)
+                        + "_metadata";
+                PreparedStatement statement = statementsByTable
+                        .get(metadataTable);
+                if (statement == null) {
+                    statement = conn
+                            .prepareStatement(getAddMetadataValueSql(metadataTable));
+                    statementsByTable.put(metadataTable, statement);
+                }
+                addMetadataValues(statement, metadataTypes, metadata.get(i),
+                        product);
+            }
+
+            LOG.log(Level.FINE, "addMetadata: Executing batch for "
+                    + products.size() + " products");
+            for (PreparedStatement statement : statementsByTable.values()) {
+                statement.executeBatch();
+            }
+            conn.commit();
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, e.getMessage());
+            LOG.log(Level.WARNING, "Exception adding metadata. Message: "
+                    + e.getMessage());
+            try {
+              if (conn != null) {
+                conn.rollback();
+              }
+            } catch (SQLException e2) {
+                LOG.log(Level.SEVERE,
+                        "Unable to rollback addMetadata transaction. Message: "
+                                + e2.getMessage());
+            }
+            throw new CatalogException(e.getMessage(), e);
+        } finally {
+
+            for (PreparedStatement statement : statementsByTable.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException ignore) {
+                }
+
+            }
+
+            if (conn != null) {
+                try {
+                    conn.close();
+
+                } catch (SQLException ignore) {
+                }
+
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.oodt.cas.filemgr.catalog.Catalog#addProductReferences(java.util.List)
+     */
+    public synchronized void addProductReferences(List<Product> products)
+            throws CatalogException {
+        Connection conn = null;
+        Statement statement = null;
+
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            statement = conn.createStatement();
+
+            for (Product product : products) {
+                String productRefTable = getProductTypeTableName(product
+                        .getProductType().getName()) + "_reference";
+                for (Reference r : product.getProductReferences()) {
+                    String addRefSql = getAddReferenceSql(productRefTable,
+                            product, r);
+                    LOG.log(Level.FINE, "addProductReferences: Batching: "
+                            + addRefSql);
+                    statement.addBatch(addRefSql);
+                }
+            }
+
+            statement.executeBatch();
+            conn.commit();
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, e.getMessage());
+            LOG.log(Level.WARNING,
+                    "Exception adding product references. Message: "
+                            + e.getMessage());
+            try {
+              if (conn != null) {
+                conn.rollback();
+              }
+            } catch (SQLException e2) {
+                LOG.log(Level.SEVERE,
+                        "Unable to rollback addProductReferences transaction. Message: "
+                                + e2.getMessage());
+            }
+            throw new CatalogException(e.getMessage(), e);
+        } finally {
+
+            if (statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException ignore) {
+                }
+
+            }
+
+            if (conn != null) {
+                try {
+                    conn.close();
+
+                } catch (SQLException ignore) {
+                }
+
+            }
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -1211,6 +1503,160 @@ public class DataSourceCatalog implements Catalog {
         return paginateQuery(query, type, -1);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.oodt.cas.filemgr.catalog.Catalog#reducedQuery(org.apache.oodt.cas.filemgr.structs.Query,
+     *      org.apache.oodt.cas.filemgr.structs.ProductType, java.util.List)
+     */
+    public List<QueryResult> reducedQuery(Query query, ProductType type,
+            List<String> elems) throws CatalogException {
+        List<String> productIds = query(query, type);
+        List<QueryResult> results = new ArrayList<QueryResult>(productIds.size());
+        if (productIds.isEmpty()) {
+            return results;
+        }
+
+        Map<String, Element> elementsById = new HashMap<String, Element>();
+        try {
+            if (elems != null && elems.size() > 0) {
+                for (String elem : elems) {
+                    Element element = validationLayer.getElementByName(elem);
+                    if (element != null) {
+                        elementsById.put(element.getElementId(), element);
+                    }
+                }
+            } else {
+                for (Element element : validationLayer.getElements(type)) {
+                    elementsById.put(element.getElementId(), element);
+                }
+            }
+        } catch (ValidationLayerException e) {
+            LOG.log(Level.SEVERE, e.getMessage());
+            throw new CatalogException(
+                    "ValidationLayerException when trying to obtain element list for product type: "
+                            + type.getName() + ": Message: " + e.getMessage(), e);
+        }
+
+        StringBuilder elementIds = new StringBuilder("");
+        if (elems != null && elems.size() > 0 && !elementsById.isEmpty()) {
+            for (String elementId : elementsById.keySet()) {
+                elementIds.append(elementIds.length() == 0 ? " AND element_id IN ('"
+                        : ", '").append(elementId).append("'");
+            }
+            elementIds.append(")");
+        }
+
+        Connection conn = null;
+        Statement statement = null;
+        ResultSet rs = null;
+
+        try {
+            conn = dataSource.getConnection();
+            statement = conn.createStatement();
+
+            for (int i = 0; i < productIds.size(); i += REDUCED_QUERY_CHUNK_SIZE) {
+                List<String> chunk = productIds.subList(i, Math.min(
+                        productIds.size(), i + REDUCED_QUERY_CHUNK_SIZE));
+                StringBuilder productIdList = new StringBuilder();
+                for (String productId : chunk) {
+                    if (productIdList.length() > 0) {
+                        productIdList.append(", ");
+                    }
+                    productIdList.append(quoteIt(productId));
+                }
+
+                Map<String, Product> products = new HashMap<String, Product>();
+                String productSql = "SELECT * FROM products WHERE product_id IN ("
+                        + productIdList + ")";
+                LOG.log(Level.FINE, "reducedQuery: Executing: " + productSql);
+                rs = statement.executeQuery(productSql);
+                while (rs.next()) {
+                    Product product = DbStructFactory.getProduct(rs, false,
+                            productIdString);
+                    products.put(product.getProductId(), product);
+                }
+                rs.close();
+
+                Map<String, Metadata> metadata = new HashMap<String, Metadata>();
+                if (!elementsById.isEmpty()) {
+                    StringBuilder metadataSql = new StringBuilder(
+                            "SELECT product_id,element_id,metadata_value FROM "
+                                    + getProductTypeTableName(type.getName())
+                                    + "_metadata WHERE product_id IN ("
+                                    + productIdList + ")" + elementIds);
+                    if (this.orderedValues) {
+                        metadataSql.append(" ORDER BY pkey");
+                    }
+                    LOG.log(Level.FINE, "reducedQuery: Executing: " + metadataSql);
+                    rs = statement.executeQuery(metadataSql.toString());
+                    while (rs.next()) {
+                        Element e = elementsById.get(rs.getString("element_id"));
+                        if (e == null) {
+                            continue;
+                        }
+                        String productId = productIdString ? rs
+                                .getString("product_id") : String.valueOf(rs
+                                .getInt("product_id"));
+                        Metadata m = metadata.get(productId);
+                        if (m == null) {
+                            m = new Metadata();
+                            metadata.put(productId, m);
+                        }
+                        String elemValue = rs.getString("metadata_value");
+                        m.addMetadata(e.getElementName(),
+                                elemValue != null ? elemValue : "");
+                    }
+                    rs.close();
+                }
+                rs = null;
+
+                for (String productId : chunk) {
+                    Product product = products.get(productId);
+                    if (product == null) {
+                        continue;
+                    }
+                    Metadata m = metadata.get(productId);
+                    results.add(new QueryResult(product, m != null ? m
+                            : new Metadata()));
+                }
+            }
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, e.getMessage());
+            LOG.log(Level.WARNING, "Exception performing reduced query. Message: "
+                    + e.getMessage());
+            throw new CatalogException(e.getMessage(), e);
+        } finally {
+
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException ignore) {
+                }
+
+            }
+
+            if (statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException ignore) {
+                }
+
+            }
+
+            if (conn != null) {
+                try {
+                    conn.close();
+
+                } catch (SQLException ignore) {
+                }
+
+            }
+        }
+
+        return results;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -1325,40 +1771,79 @@ public class DataSourceCatalog implements Catalog {
     	return validationLayer;
     }
 
-    private synchronized void addMetadataValue(Element element,
-            Product product, String value) throws CatalogException {
+    private int addMetadataValues(PreparedStatement statement,
+            List<Element> metadataTypes, Metadata m, Product product)
+            throws SQLException {
+        int numValues = 0;
 
-        Connection conn = null;
-        Statement statement = null;
+        for (Element element : metadataTypes) {
+            List<String> values = m.getAllMetadata(element.getElementName());
 
-        String metadataTable = product.getProductType().getName() + "_metadata";
+            if (values == null) {
+                LOG.log(Level.WARNING, "No Metadata specified for product ["
+                        + product.getProductName() + "] for required field ["
+                        + element.getElementName()
+                        + "]: Attempting to continue processing metadata");
+                continue;
+            }
 
-        try {
-            conn = dataSource.getConnection();
-            conn.setAutoCommit(false);
-            statement = conn.createStatement();
+            for (String value : values) {
+                setMetadataValueParameters(statement, element, product, value);
+                statement.addBatch();
+                numValues++;
+            }
+        }
 
-            // build up the sql statement
-          StringBuilder valueClauseSql = new StringBuilder();
+        return numValues;
+    }
 
-          valueClauseSql.append("VALUES ");
+    private void addMetadataValuesIndividually(String metadataTable,
+            List<Element> metadataTypes, Metadata m, Product product) {
+      for (Element element : metadataTypes) {
+        List<String> values = m.getAllMetadata(element.getElementName());
 
-            // now do the value clause
-            if (fieldIdStringFlag) {
-                valueClauseSql.append("(").append(product.getProductId()).append(", '").append(element.getElementId())
-                              .append("', '").append(value).append("')");
-            } else {
-                valueClauseSql.append("(").append(product.getProductId()).append(", ").append(element.getElementId())
-                              .append(", '").append(value).append("')");
-            }
+        if (values == null) {
+          continue;
+        }
 
-            String metaIngestSql = ("INSERT INTO " + metadataTable
-                                    + " (product_id, element_id, metadata_value) ")
-                    + valueClauseSql.toString();
+        for (String value : values) {
+          try {
+            addMetadataValue(metadataTable, element, product, value);
+          } catch (Exception e) {
+            LOG.log(Level.SEVERE, e.getMessage());
             LOG
-                    .log(Level.FINE, "addMetadataValue: Executing: "
-                            + metaIngestSql);
-            statement.execute(metaIngestSql);
+                .log(
+                    Level.WARNING,
+                    "Exception ingesting metadata. Error inserting field: ["
+                    + element.getElementId()
+                    + "=>"
+                    + value
+                    + "]: for product: ["
+                    + product.getProductName()
+                    + "]: Message: "
+                    + e.getMessage()
+                    + ": Attempting to continue processing metadata");
+          }
+        }
+      }
+    }
+
+    private void addMetadataValue(String metadataTable, Element element,
+            Product product, String value) throws CatalogException {
+
+        Connection conn = null;
+        PreparedStatement statement = null;
+
+        try {
+            conn = dataSource.getConnection();
+            conn.setAutoCommit(false);
+            statement = conn.prepareStatement(getAddMetadataValueSql(metadataTable));
+            setMetadataValueParameters(statement, element, product, value);
+
+            LOG.log(Level.FINE, "addMetadataValue: Executing insert of ["
+                    + element.getElementId() + "=>" + value
+                    + "] into " + metadataTable);
+            statement.execute();
             conn.commit();
         } catch (Exception e) {
             LOG.log(Level.SEVERE, e.getMessage());
@@ -2220,6 +2705,121 @@ public class DataSourceCatalog implements Catalog {
 
     }
     
+    /**
+     * Returns the name the metadata and reference tables of the given product
+     * type are prefixed with. The batch methods look the tables up through
+     * here, so subclasses that map product types onto other tables can
+     * override it.
+     * @param origName the name of the product type
+     * @return the table name prefix
+     */
+    protected String getProductTypeTableName(String origName) {
+      return origName;
+    }
+
+    /**
+     * Inserts a product and returns the "product_id" the database generated
+     * for it. Only for drivers that support generated keys.
+     */
+    private String insertProduct(Statement statement, String addProductSql)
+            throws SQLException {
+        statement.executeUpdate(addProductSql, Statement.RETURN_GENERATED_KEYS);
+        ResultSet keys = statement.getGeneratedKeys();
+        try {
+            if (!keys.next()) {
+                throw new SQLException("No product_id generated for: "
+                        + addProductSql);
+            }
+            // some drivers return the whole row rather than just the key
+            int column = 1;
+            ResultSetMetaData keyMetaData = keys.getMetaData();
+            for (int i = 1; i <= keyMetaData.getColumnCount(); i++) {
+                if ("product_id".equalsIgnoreCase(keyMetaData.getColumnName(i))) {
+                    column = i;
+                    break;
+                }
+            }
+            return String.valueOf(keys.getInt(column));
+        } finally {
+            keys.close();
+        }
+    }
+
+    private String getAddProductSql(Product product, String productId) {
+        String productTypeIdStr = fieldIdStringFlag ? "'"
+                + product.getProductType().getProductTypeId() + "'"
+                : product.getProductType().getProductTypeId();
+
+        if (!productIdString) {
+            return "INSERT INTO products (product_name, product_structure, product_transfer_status, product_type_id) "
+                    + "VALUES ('"
+                    + product.getProductName()
+                    + "', '"
+                    + product.getProductStructure()
+                    + "', '"
+                    + product.getTransferStatus()
+                    + "', "
+                    + productTypeIdStr
+                    + ")";
+        } else {
+            return "INSERT INTO products (product_id, product_name, product_structure, product_transfer_status, product_type_id, product_datetime) "
+                    + "VALUES ('"
+                    + productId
+                    + "', '"
+                    + product.getProductName()
+                    + "', '"
+                    + product.getProductStructure()
+                    + "', '"
+                    + product.getTransferStatus()
+                    + "', "
+                    + productTypeIdStr
+                    + ", now()"
+                    + ")";
+        }
+    }
+
+    private String getAddMetadataValueSql(String metadataTable) {
+        return "INSERT INTO " + metadataTable
+                + " (product_id, element_id, metadata_value) VALUES (?, ?, ?)";
+    }
+
+    private void setMetadataValueParameters(PreparedStatement statement,
+            Element element, Product product, String value)
+            throws SQLException {
+        if (productIdString) {
+            statement.setString(1, product.getProductId());
+        } else {
+            statement.setLong(1, Long.parseLong(product.getProductId()));
+        }
+
+        if (fieldIdStringFlag) {
+            statement.setString(2, element.getElementId());
+        } else {
+            statement.setLong(2, Long.parseLong(element.getElementId()));
+        }
+
+        statement.setString(3, value);
+    }
+
+    private String getAddReferenceSql(String productRefTable,
+            Product product, Reference r) {
+        return "INSERT INTO "
+                + productRefTable
+                + " "
+                + "(product_id, product_orig_reference, product_datastore_reference, product_reference_filesize, product_reference_mimetype) "
+                + "VALUES ("
+                + quoteIt(product.getProductId())
+                + ", '"
+                + r.getOrigReference()
+                + "', '"
+                + r.getDataStoreReference()
+                + "', "
+                + r.getFileSize()
+                + ",'"
+                + ((r.getMimeType() == null) ? "" : r.getMimeType()
+                                                     .getName()) + "')";
+    }
+
     /**
      * Utility method to quote the "productId" value 
      * if the column type is "string".
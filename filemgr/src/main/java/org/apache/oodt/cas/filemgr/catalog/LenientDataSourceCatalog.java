@@ -27,8 +27,10 @@ import org.apache.oodt.cas.filemgr.structs.Query;
 import org.apache.oodt.cas.filemgr.structs.QueryCriteria;
 import org.apache.oodt.cas.filemgr.structs.RangeQueryCriteria;
 import org.apache.oodt.cas.filemgr.structs.TermQueryCriteria;
+import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogBatchException;
 import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
 import org.apache.oodt.cas.filemgr.structs.exceptions.ValidationLayerException;
+import org.apache.oodt.cas.filemgr.structs.query.QueryResult;
 import org.apache.oodt.cas.filemgr.validation.ValidationLayer;
 import org.apache.oodt.cas.metadata.Metadata;
 
@@ -37,6 +39,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -130,6 +133,31 @@ public class LenientDataSourceCatalog extends DataSourceCatalog {
         }
 
     }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.oodt.cas.filemgr.catalog.DataSourceCatalog#addMetadata(java.util.List,
+     *      java.util.List)
+     */
+    @Override
+    public synchronized void addMetadata(List<Metadata> metadata,
+            List<Product> products) throws CatalogException {
+        if (metadata.size() != products.size()) {
+            throw new CatalogException("Got " + metadata.size()
+                    + " metadata for " + products.size() + " products");
+        }
+
+        // the dynamic fields are resolved one product at a time, so a failure
+        // leaves the products before it in place
+        for (int i = 0; i < products.size(); i++) {
+            try {
+                addMetadata(metadata.get(i), products.get(i));
+            } catch (CatalogException e) {
+                throw new CatalogBatchException(i, e.getMessage(), e);
+            }
+        }
+    }
     
     // Utility method to return a map of metadata (field id, field name)
     private Map<String, String> getMetadataTypes(Metadata m, Product product) throws CatalogException {
@@ -267,6 +295,29 @@ public class LenientDataSourceCatalog extends DataSourceCatalog {
         return m;
     }
     
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.oodt.cas.filemgr.catalog.DataSourceCatalog#reducedQuery(org.apache.oodt.cas.filemgr.structs.Query,
+     *      org.apache.oodt.cas.filemgr.structs.ProductType, java.util.List)
+     */
+    @Override
+    public List<QueryResult> reducedQuery(Query query, ProductType type,
+            List<String> elems) throws CatalogException {
+        // metadata is stored per product type in a layout of our own, so
+        // look it up product by product
+        List<String> productIds = query(query, type);
+        List<QueryResult> results = new ArrayList<QueryResult>(productIds.size());
+        for (String productId : productIds) {
+            Product product = getProductById(productId);
+            product.setProductType(type);
+            Metadata m = (elems != null && elems.size() > 0) ? getReducedMetadata(
+                    product, elems) : getMetadata(product);
+            results.add(new QueryResult(product, m));
+        }
+        return results;
+    }
+
     /** Method to populate the product metadata from a SQL ResultSet. **/
     private Metadata populateProductMetadata(ResultSet rs, Product product) throws CatalogException, SQLException {
      
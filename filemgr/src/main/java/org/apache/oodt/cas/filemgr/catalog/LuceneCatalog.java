@@ -31,6 +31,7 @@ import org.apache.oodt.cas.filemgr.structs.*;
 import org.apache.oodt.cas.filemgr.structs.Query;
 import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
 import org.apache.oodt.cas.filemgr.structs.exceptions.ValidationLayerException;
+import org.apache.oodt.cas.filemgr.structs.query.QueryResult;
 import org.apache.oodt.cas.filemgr.validation.ValidationLayer;
 import org.apache.oodt.cas.metadata.Metadata;
 import org.apache.oodt.commons.pagination.PaginationUtils;
@@ -40,10 +41,19 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -68,9 +78,17 @@ public class LuceneCatalog implements Catalog {
 
     private static final org.slf4j.Logger logger = LoggerFactory.getLogger(LuceneCatalog.class);
 
+    /* the metadata field products are sorted by */
+    private static final String RECEIVED_TIME_FIELD = "CAS.ProductReceivedTime";
+
+    /* stands in for a missing field value in a page's last sort value */
+    private static final String NULL_SORT_VALUE = "~";
+
+    /* how long a reader waiting on its own write may wait for a refresh */
+    private static final double MIN_STALE_SECONDS = 0.025;
+
     Directory indexDir = null;
 
-    private DirectoryReader reader;
     /* the path to the index directory for this catalog */
     private String indexFilePath = null;
 
@@ -98,7 +116,35 @@ public class LuceneCatalog implements Catalog {
     /* lucene index merge factor */
     private int mergeFactor = -1;
 
+    /* whether to keep a single long-lived writer and near-real-time searcher */
+    private boolean nearRealTime = false;
+
+    /* max time (in milliseconds) before a near-real-time searcher is refreshed */
+    private long refreshIntervalMillis = -1L;
+
+    /* time (in seconds) between commits of the shared index writer */
+    private long commitIntervalSeconds = -1L;
+
+    /* the shared writer, only used in near-real-time mode */
+    private IndexWriter writer = null;
+
+    /* the shared searchers, only used in near-real-time mode */
+    private SearcherManager searcherManager = null;
+
+    /* refreshes searcherManager and tracks writer generations */
+    private ControlledRealTimeReopenThread<IndexSearcher> reopenThread = null;
 
+    /* periodically commits the shared writer */
+    private ScheduledExecutorService commitService = null;
+
+    /* closes the shared writer if the JVM exits before close() is called */
+    private Thread shutdownHook = null;
+
+    /* the latest writer sequence number that readers must be able to see */
+    private final AtomicLong lastWriteGeneration = new AtomicLong(-1L);
+
+    /* serializes index updates */
+    private final Lock writeLock = new ReentrantLock();
 
     /**
      * 
@@ -126,12 +172,52 @@ public class LuceneCatalog implements Catalog {
      */
     public LuceneCatalog(String idxFilePath, ValidationLayer vLayer,
             int pgSize, long commitTimeout, long writeTimeout, int mergeFactor) {
+        this(idxFilePath, vLayer, pgSize, commitTimeout, writeTimeout,
+                mergeFactor, false, -1L, -1L);
+    }
+
+    /**
+     *
+     * @param idxFilePath
+     *            A file path pointing to the lucene index directory for this
+     *            catalog.
+     * @param vLayer
+     *            The validation layer to be used for this catalog.
+     * @param pgSize
+     *            The size of pages to be used when doing pagination of the
+     *            catalog.
+     * @param commitTimeout
+     *            The commit lock timeout (in seconds).
+     * @param writeTimeout
+     *            The write lock timeout (in seconds).
+     * @param mergeFactor
+     *            The merge factor to use when writing to the index.
+     * @param nearRealTime
+     *            If true, a single {@link IndexWriter} is kept open for the
+     *            life of the catalog and reads are served from a
+     *            near-real-time {@link SearcherManager} instead of reopening
+     *            the index on every call.
+     * @param refreshIntervalMillis
+     *            The maximum time (in milliseconds) before changes become
+     *            visible to readers that did not write them. Only used in
+     *            near-real-time mode.
+     * @param commitIntervalSeconds
+     *            The time (in seconds) between durable commits of the shared
+     *            writer. Only used in near-real-time mode.
+     */
+    public LuceneCatalog(String idxFilePath, ValidationLayer vLayer,
+            int pgSize, long commitTimeout, long writeTimeout, int mergeFactor,
+            boolean nearRealTime, long refreshIntervalMillis,
+            long commitIntervalSeconds) {
         this.indexFilePath = idxFilePath;
         this.valLayer = vLayer;
         this.pageSize = pgSize;
         this.writeLockTimeout = writeTimeout;
         this.commitLockTimeout = commitTimeout;
         this.mergeFactor = mergeFactor;
+        this.nearRealTime = nearRealTime;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.commitIntervalSeconds = commitIntervalSeconds;
 
         try {
             indexDir = FSDirectory.open(new File( indexFilePath ).toPath());
@@ -139,10 +225,189 @@ public class LuceneCatalog implements Catalog {
             e.printStackTrace();
         }
 
+        if (this.nearRealTime) {
+            try {
+                openNearRealTimeIndex();
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Unable to open near-real-time index: ["
+                        + indexFilePath + "]: Message: " + e.getMessage(), e);
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Commits any pending changes and releases the shared writer and
+     * searchers. Only has an effect in near-real-time mode: in the default
+     * mode every write is committed as it happens.
+     *
+     * @throws CatalogException
+     *             If the index cannot be committed or closed.
+     */
+    public void close() throws CatalogException {
+        if (!nearRealTime) {
+            return;
+        }
+
+        synchronized (this) {
+            if (writer == null) {
+                return;
+            }
+
+            try {
+                commitService.shutdown();
+                reopenThread.close();
+                searcherManager.close();
+                writer.close();
+            } catch (IOException e) {
+                throw new CatalogException("Unable to close index: ["
+                        + indexFilePath + "]: Message: " + e.getMessage(), e);
+            } finally {
+                writer = null;
+            }
+
+            if (Thread.currentThread() != shutdownHook) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                } catch (IllegalStateException ignore) {
+                    // the JVM is already shutting down
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces a durable commit of all changes made through the shared writer.
+     * Only has an effect in near-real-time mode.
+     *
+     * @throws CatalogException
+     *             If the commit fails.
+     */
+    public void commit() throws CatalogException {
+        if (!nearRealTime || writer == null) {
+            return;
+        }
+
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException e) {
+            throw new CatalogException("Unable to commit index: ["
+                    + indexFilePath + "]: Message: " + e.getMessage(), e);
+        }
+    }
+
+    private void openNearRealTimeIndex() throws IOException {
+        writer = new IndexWriter(indexDir, newIndexWriterConfig());
+        searcherManager = new SearcherManager(writer, null);
+
+        double maxStaleSec = refreshIntervalMillis / 1000.0;
+        reopenThread = new ControlledRealTimeReopenThread<IndexSearcher>(
+                writer, searcherManager, maxStaleSec,
+                Math.min(maxStaleSec, MIN_STALE_SECONDS));
+        reopenThread.setName("LuceneCatalog NRT Reopen Thread");
+        reopenThread.setDaemon(true);
+        reopenThread.start();
+
+        commitService = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "LuceneCatalog Commit Thread");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        commitService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    commit();
+                } catch (CatalogException e) {
+                    LOG.log(Level.WARNING, e.getMessage(), e);
+                }
+            }
+        }, commitIntervalSeconds, commitIntervalSeconds, TimeUnit.SECONDS);
+
+        shutdownHook = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    LuceneCatalog.this.close();
+                } catch (CatalogException e) {
+                    LOG.log(Level.WARNING, e.getMessage(), e);
+                }
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    private IndexWriterConfig newIndexWriterConfig() {
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        LogMergePolicy lmp = new LogDocMergePolicy();
+        lmp.setMergeFactor(mergeFactor);
+        config.setMergePolicy(lmp);
+        return config;
+    }
+
+    /**
+     * Obtains a searcher over the index. In near-real-time mode the shared
+     * searcher is returned, refreshed if needed so that it reflects every
+     * write made before this call. Otherwise a new reader is opened.
+     * Callers must hand the searcher back to {@link #releaseSearcher}.
+     */
+    private IndexSearcher acquireSearcher() throws IOException {
+        if (nearRealTime) {
+            long gen = lastWriteGeneration.get();
+            if (gen != -1L) {
+                try {
+                    reopenThread.waitForGeneration(gen);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            return searcherManager.acquire();
+        } else {
+            return new IndexSearcher(DirectoryReader.open(indexDir));
+        }
+    }
+
+    private void releaseSearcher(IndexSearcher searcher) {
+        if (searcher == null) {
+            return;
+        }
 
+        try {
+            if (nearRealTime) {
+                searcherManager.release(searcher);
+            } else {
+                searcher.getIndexReader().close();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to release searcher for index: ["
+                    + indexFilePath + "]: Message: " + e.getMessage());
+        }
+    }
 
+    private void trackWriteGeneration(long gen) {
+        long current;
+        do {
+            current = lastWriteGeneration.get();
+        } while (gen > current
+                && !lastWriteGeneration.compareAndSet(current, gen));
+    }
 
+    private void lockForWrite() {
+        // the shared writer is thread safe per call, but updates read, delete
+        // and re-add a product, so they still have to be serialized
+        writeLock.lock();
+    }
 
+    private void unlockForWrite() {
+        writeLock.unlock();
     }
 
     /*
@@ -151,28 +416,33 @@ public class LuceneCatalog implements Catalog {
      * @see org.apache.oodt.cas.filemgr.catalog.Catalog#addMetadata(org.apache.oodt.cas.metadata.Metadata,
      *      org.apache.oodt.cas.filemgr.structs.Product)
      */
-    public synchronized void addMetadata(Metadata m, Product product)
+    public void addMetadata(Metadata m, Product product)
             throws CatalogException {
-        CompleteProduct p;
-        if(product.getProductId()!=null && CATALOG_CACHE.containsKey(product.getProductId())) {
-             p = CATALOG_CACHE.get(product.getProductId());
-        }
-        else{
-                // move product from index to cache
-                // it will be moved back after metadata is added
-                p = getCompleteProductById(product.getProductId(), true, true);
-                LOG.log(Level.FINE, "Product not found in local cache, retrieved from index");
-                removeProduct(product);
-        }
+        lockForWrite();
+        try {
+            CompleteProduct p;
+            if(product.getProductId()!=null && CATALOG_CACHE.containsKey(product.getProductId())) {
+                 p = CATALOG_CACHE.get(product.getProductId());
+            }
+            else{
+                    // move product from index to cache
+                    // it will be moved back after metadata is added
+                    p = getCompleteProductById(product.getProductId(), true, true);
+                    LOG.log(Level.FINE, "Product not found in local cache, retrieved from index");
+                    removeProduct(product);
+            }
 
-        p.setMetadata(m);
-        if (hasMetadataAndRefs(p)) {
-            LOG.log(Level.FINE,
-                "metadata and references present for product: ["
-                    + product.getProductId() + "]");
-            addCompleteProductToIndex(p);
-            // now remove its entry from the cache
-            CATALOG_CACHE.remove(product.getProductId());
+            p.setMetadata(m);
+            if (hasMetadataAndRefs(p)) {
+                LOG.log(Level.FINE,
+                    "metadata and references present for product: ["
+                        + product.getProductId() + "]");
+                addCompleteProductToIndex(p);
+                // now remove its entry from the cache
+                CATALOG_CACHE.remove(product.getProductId());
+            }
+        } finally {
+            unlockForWrite();
         }
     }
 
@@ -182,56 +452,61 @@ public class LuceneCatalog implements Catalog {
      * @see org.apache.oodt.cas.filemgr.catalog.Catalog#removeMetadata(org.apache.oodt.cas.metadata.Metadata,
      *      org.apache.oodt.cas.filemgr.structs.Product)
      */
-    public synchronized void removeMetadata(Metadata m, Product product)
+    public void removeMetadata(Metadata m, Product product)
             throws CatalogException {
-        CompleteProduct p;
+        lockForWrite();
+        try {
+            CompleteProduct p;
 
-        if(product.getProductId()!=null && CATALOG_CACHE.containsKey(product.getProductId())) {
-             p = CATALOG_CACHE.get(product.getProductId());
-        }
-        else{
-            String prodId = product.getProductId();
-            p = getCompleteProductById(prodId, true, true);
-            removeProductDocument(product);
-        }
+            if(product.getProductId()!=null && CATALOG_CACHE.containsKey(product.getProductId())) {
+                 p = CATALOG_CACHE.get(product.getProductId());
+            }
+            else{
+                String prodId = product.getProductId();
+                p = getCompleteProductById(prodId, true, true);
+                removeProductDocument(product);
+            }
 
 
 
 
-        Metadata currMet = p.getMetadata();
-        List<String> metadataTypes = new ArrayList<String>();
+            Metadata currMet = p.getMetadata();
+            List<String> metadataTypes = new ArrayList<String>();
 
-        if (valLayer!=null) {
-	        try {
-	        		// remove metadata elements specified by validation layer
-	        		for (Element element : valLayer.getElements(product.getProductType())) {
-	        			metadataTypes.add(element.getElementName());
-	        		}
-	        } catch (ValidationLayerException e) {
-	            LOG.log(Level.SEVERE, e.getMessage());
-	            throw new CatalogException(
-	                    "ValidationLayerException when trying to obtain element list for product type: "
-	                            + product.getProductType().getName()
-	                            + ": Message: " + e.getMessage(), e);
-	        }
-        } else {
-        	// remove all metadata
-        	metadataTypes = currMet.getAllKeys();
-        }
+            if (valLayer!=null) {
+		        try {
+		        		// remove metadata elements specified by validation layer
+		        		for (Element element : valLayer.getElements(product.getProductType())) {
+		        			metadataTypes.add(element.getElementName());
+		        		}
+		        } catch (ValidationLayerException e) {
+		            LOG.log(Level.SEVERE, e.getMessage());
+		            throw new CatalogException(
+		                    "ValidationLayerException when trying to obtain element list for product type: "
+		                            + product.getProductType().getName()
+		                            + ": Message: " + e.getMessage(), e);
+		        }
+            } else {
+            	// remove all metadata
+            	metadataTypes = currMet.getAllKeys();
+            }
 
-        for (String name : metadataTypes) {
-            currMet.removeMetadata(name);
-        }
+            for (String name : metadataTypes) {
+                currMet.removeMetadata(name);
+            }
 
-        p.setMetadata(currMet);
+            p.setMetadata(currMet);
 
-        if (hasMetadataAndRefs(p)) {
-            LOG.log(Level.FINE,
-                    "metadata and references present for product: ["
-                            + product.getProductId() + "]");
-            addCompleteProductToIndex(p);
-            // now remove its entry from the cache
-            CATALOG_CACHE.remove(product.getProductId());
+            if (hasMetadataAndRefs(p)) {
+                LOG.log(Level.FINE,
+                        "metadata and references present for product: ["
+                                + product.getProductId() + "]");
+                addCompleteProductToIndex(p);
+                // now remove its entry from the cache
+                CATALOG_CACHE.remove(product.getProductId());
+            }
+        } finally {
+            unlockForWrite();
         }
     }
 
@@ -240,35 +515,40 @@ public class LuceneCatalog implements Catalog {
      * 
      * @see org.apache.oodt.cas.filemgr.catalog.Catalog#addProduct(org.apache.oodt.cas.filemgr.structs.Product)
      */
-    public synchronized void addProduct(Product product)
+    public void addProduct(Product product)
             throws CatalogException {
-        if(product.getProductId()!=null && CATALOG_CACHE.containsKey(product.getProductId())) {
-            throw new CatalogException(
-                "Attempt to add a product that already existed: product: ["
-                + product.getProductName() + "]");
+        lockForWrite();
+        try {
+            if(product.getProductId()!=null && CATALOG_CACHE.containsKey(product.getProductId())) {
+                throw new CatalogException(
+                    "Attempt to add a product that already existed: product: ["
+                    + product.getProductName() + "]");
 
 
 
 
 
-        } else {
-            // haven't cached this product yet, so let's cache it
-            CompleteProduct completeProduct = new CompleteProduct();
-
-            // NOTE: reuse existing ID if possible
-            if (product.getProductId() == null) {
-                synchronized (completeProduct) {
-                    // now generate a unique ID for the product
-                    UUID prodUUID = generator.generateTimeBasedUUID();
-                    product.setProductId(prodUUID.toString());
+            } else {
+                // haven't cached this product yet, so let's cache it
+                CompleteProduct completeProduct = new CompleteProduct();
+
+                // NOTE: reuse existing ID if possible
+                if (product.getProductId() == null) {
+                    synchronized (completeProduct) {
+                        // now generate a unique ID for the product
+                        UUID prodUUID = generator.generateTimeBasedUUID();
+                        product.setProductId(prodUUID.toString());
+                    }
                 }
-            }
 
-            completeProduct.setProduct(product);
-            CATALOG_CACHE.put(product.getProductId(), completeProduct);
+                completeProduct.setProduct(product);
+                CATALOG_CACHE.put(product.getProductId(), completeProduct);
 
-        }
+            }
 
+        } finally {
+            unlockForWrite();
+        }
     }
 
     /*
@@ -276,28 +556,30 @@ public class LuceneCatalog implements Catalog {
      * 
      * @see org.apache.oodt.cas.filemgr.catalog.Catalog#modifyProduct(org.apache.oodt.cas.filemgr.structs.Product)
      */
-    public synchronized void modifyProduct(Product product)
+    public void modifyProduct(Product product)
             throws CatalogException {
-        if (product.getProductId()!=null && CATALOG_CACHE.containsKey(product.getProductId())) {
-            LOG.log(Level.FINE, "Modifying product: [" + product.getProductId()
-                    + "]: found product in cache!");
-            CompleteProduct cp = CATALOG_CACHE.get(product
-                    .getProductId());
-            cp.setProduct(product);
-        } else {
-            // need to grab the metadata for the existing product, and make sure
-            // we don't lose it
-            Metadata metadata = getMetadata(product);
+        lockForWrite();
+        try {
+            if (product.getProductId()!=null && CATALOG_CACHE.containsKey(product.getProductId())) {
+                LOG.log(Level.FINE, "Modifying product: [" + product.getProductId()
+                        + "]: found product in cache!");
+                CompleteProduct cp = CATALOG_CACHE.get(product
+                        .getProductId());
+                cp.setProduct(product);
+            } else {
+                // need to grab the metadata for the existing product, and make sure
+                // we don't lose it
+                Metadata metadata = getMetadata(product);
 
-            CompleteProduct completeProduct = new CompleteProduct();
-            completeProduct.setMetadata(metadata);
+                CompleteProduct completeProduct = new CompleteProduct();
+                completeProduct.setMetadata(metadata);
 
-            // now remove the product's document from the catalog
-            removeProductDocument(product);
-
-            // now add it back
-            completeProduct.setProduct(product);
-            addCompleteProductToIndex(completeProduct);
+                // now replace the product's document in the catalog
+                completeProduct.setProduct(product);
+                replaceProductDocument(completeProduct);
+            }
+        } finally {
+            unlockForWrite();
         }
     }
 
@@ -306,9 +588,14 @@ public class LuceneCatalog implements Catalog {
      * 
      * @see org.apache.oodt.cas.filemgr.catalog.Catalog#removeProduct(org.apache.oodt.cas.filemgr.structs.Product)
      */
-    public synchronized void removeProduct(Product product)
+    public void removeProduct(Product product)
             throws CatalogException {
-        removeProductDocument(product);
+        lockForWrite();
+        try {
+            removeProductDocument(product);
+        } finally {
+            unlockForWrite();
+        }
     }
 
     /*
@@ -316,13 +603,18 @@ public class LuceneCatalog implements Catalog {
      * 
      * @see org.apache.oodt.cas.filemgr.catalog.Catalog#setProductTransferStatus(org.apache.oodt.cas.filemgr.structs.Product)
      */
-    public synchronized void setProductTransferStatus(Product product)
+    public void setProductTransferStatus(Product product)
             throws CatalogException {
-        LOG.log(Level.FINE,
-                "LuceneCatalog: seting product transfer status to: ["
-                        + product.getTransferStatus() + "] for " + "product: ["
-                        + product.getProductId() + "]");
-        modifyProduct(product);
+        lockForWrite();
+        try {
+            LOG.log(Level.FINE,
+                    "LuceneCatalog: seting product transfer status to: ["
+                            + product.getTransferStatus() + "] for " + "product: ["
+                            + product.getProductId() + "]");
+            modifyProduct(product);
+        } finally {
+            unlockForWrite();
+        }
     }
 
     /*
@@ -330,29 +622,141 @@ public class LuceneCatalog implements Catalog {
      * 
      * @see org.apache.oodt.cas.filemgr.catalog.Catalog#addProductReferences(org.apache.oodt.cas.filemgr.structs.Product)
      */
-    public synchronized void addProductReferences(Product product)
+    public void addProductReferences(Product product)
             throws CatalogException {
-        if(product.getProductId()!=null && CATALOG_CACHE.containsKey(product.getProductId())) {
-            CompleteProduct p = CATALOG_CACHE.get(product
-                .getProductId());
-            p.getProduct().setProductReferences(product.getProductReferences());
+        lockForWrite();
+        try {
+            if(product.getProductId()!=null && CATALOG_CACHE.containsKey(product.getProductId())) {
+                CompleteProduct p = CATALOG_CACHE.get(product
+                    .getProductId());
+                p.getProduct().setProductReferences(product.getProductReferences());
+                    if (hasMetadataAndRefs(p)) {
+                        LOG.log(Level.FINE,
+                            "metadata and references present for product: ["
+                            + product.getProductId() + "]");
+                        addCompleteProductToIndex(p);
+                        // now remove its entry from the cache
+                        CATALOG_CACHE.remove(product.getProductId());
+                    }
+
+            }
+            else{
+                    // move product from index to cache
+                    // it will be moved back after metadata is added
+                    getCompleteProductById(product.getProductId(), true, true);
+                    LOG.log(Level.FINE, "Product not found in local cache, retrieved from index");
+                    removeProduct(product);
+
+            }
+        } finally {
+            unlockForWrite();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.oodt.cas.filemgr.catalog.Catalog#addProducts(java.util.List)
+     */
+    public void addProducts(List<Product> products) throws CatalogException {
+        lockForWrite();
+        try {
+            // check the whole batch up front so that none of it is added if
+            // any of it is already there
+            for (Product product : products) {
+                if (product.getProductId() != null
+                        && CATALOG_CACHE.containsKey(product.getProductId())) {
+                    throw new CatalogException(
+                        "Attempt to add a product that already existed: product: ["
+                        + product.getProductName() + "]");
+                }
+            }
+
+            List<String> added = new ArrayList<String>(products.size());
+            try {
+                for (Product product : products) {
+                    addProduct(product);
+                    added.add(product.getProductId());
+                }
+            } catch (CatalogException e) {
+                // e.g., the same product twice in the batch
+                for (String productId : added) {
+                    CATALOG_CACHE.remove(productId);
+                }
+                throw e;
+            }
+        } finally {
+            unlockForWrite();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.oodt.cas.filemgr.catalog.Catalog#addMetadata(java.util.List,
+     *      java.util.List)
+     */
+    public void addMetadata(List<Metadata> metadata, List<Product> products)
+            throws CatalogException {
+        if (metadata.size() != products.size()) {
+            throw new CatalogException("Got " + metadata.size()
+                    + " metadata for " + products.size() + " products");
+        }
+
+        lockForWrite();
+        try {
+            List<CompleteProduct> completeProducts = new ArrayList<CompleteProduct>();
+            for (int i = 0; i < products.size(); i++) {
+                Product product = products.get(i);
+                CompleteProduct p = product.getProductId() != null ? CATALOG_CACHE
+                        .get(product.getProductId()) : null;
+                if (p == null) {
+                    // already indexed, so it has to be pulled back out; this
+                    // replaces the product's metadata, so redoing it after a
+                    // failed batch is harmless
+                    addMetadata(metadata.get(i), product);
+                    continue;
+                }
+
+                p.setMetadata(metadata.get(i));
                 if (hasMetadataAndRefs(p)) {
-                    LOG.log(Level.FINE,
-                        "metadata and references present for product: ["
-                        + product.getProductId() + "]");
-                    addCompleteProductToIndex(p);
-                    // now remove its entry from the cache
-                    CATALOG_CACHE.remove(product.getProductId());
+                    completeProducts.add(p);
                 }
+            }
 
+            addCompleteProductsToIndex(completeProducts);
+        } finally {
+            unlockForWrite();
         }
-        else{
-                // move product from index to cache
-                // it will be moved back after metadata is added
-                getCompleteProductById(product.getProductId(), true, true);
-                LOG.log(Level.FINE, "Product not found in local cache, retrieved from index");
-                removeProduct(product);
+    }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.oodt.cas.filemgr.catalog.Catalog#addProductReferences(java.util.List)
+     */
+    public void addProductReferences(List<Product> products)
+            throws CatalogException {
+        lockForWrite();
+        try {
+            List<CompleteProduct> completeProducts = new ArrayList<CompleteProduct>();
+            for (Product product : products) {
+                CompleteProduct p = product.getProductId() != null ? CATALOG_CACHE
+                        .get(product.getProductId()) : null;
+                if (p == null) {
+                    addProductReferences(product);
+                    continue;
+                }
+
+                p.getProduct().setProductReferences(product.getProductReferences());
+                if (hasMetadataAndRefs(p)) {
+                    completeProducts.add(p);
+                }
+            }
+
+            addCompleteProductsToIndex(completeProducts);
+        } finally {
+            unlockForWrite();
         }
     }
 
@@ -386,13 +790,7 @@ public class LuceneCatalog implements Catalog {
             boolean getRefs, boolean getMet) throws CatalogException {
         IndexSearcher searcher = null;
         try {
-            try {
-                reader = DirectoryReader.open(indexDir);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-
-            searcher = new IndexSearcher(reader);
+            searcher = acquireSearcher();
             Term productIdTerm = new Term("product_id", productId);
             org.apache.lucene.search.Query query = new TermQuery(productIdTerm);
             TopDocs topDocs = searcher.search(query,1);
@@ -417,12 +815,7 @@ public class LuceneCatalog implements Catalog {
                             + e.getMessage());
             throw new CatalogException(e.getMessage(), e);
         } finally {
-            if (searcher != null) {
-                try {
-                    //TODO shutdown  reader
-                } catch (Exception ignore) {
-                }
-            }
+            releaseSearcher(searcher);
         }
     }
 
@@ -439,21 +832,14 @@ public class LuceneCatalog implements Catalog {
             throws CatalogException {
         IndexSearcher searcher = null;
         try {
-            try {
-                reader = DirectoryReader.open(indexDir);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            searcher = new IndexSearcher(reader);
+            searcher = acquireSearcher();
             Term productIdTerm = new Term("product_name", productName);
             org.apache.lucene.search.Query query = new TermQuery(productIdTerm);
             Sort sort = new Sort(new SortField("CAS.ProductReceivedTime",
                     SortField.Type.STRING, true));
-            //TODO FIX NUMBER OF RECORDS
-            TopDocs check = searcher.search(query, 1, sort);
-            if(check.totalHits>0) {
-                TopDocs topDocs = searcher.search(query, check.totalHits, sort);
-
+            // only the most recent product with the name is needed
+            TopDocs topDocs = searcher.search(query, 1, sort);
+            if(topDocs.totalHits>0) {
                 ScoreDoc[] hits = topDocs.scoreDocs;
 
                 // should be > 0 hits
@@ -480,12 +866,7 @@ public class LuceneCatalog implements Catalog {
                             + e.getMessage());
             throw new CatalogException(e.getMessage(), e);
         } finally {
-            if (searcher != null) {
-                try {
-//TODO CLOSE SEARCHER
-                } catch (Exception ignore) {
-                }
-            }
+            releaseSearcher(searcher);
         }
     }
 
@@ -517,12 +898,7 @@ public class LuceneCatalog implements Catalog {
         List<Product> products = null;
 
         try {
-            try {
-                reader = DirectoryReader.open(indexDir);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            searcher = new IndexSearcher(reader);
+            searcher = acquireSearcher();
             Term productIdTerm = new Term("myfield", "myvalue");
             org.apache.lucene.search.Query query = new TermQuery(productIdTerm);
             Sort sort = new Sort(new SortField("CAS.ProductReceivedTime",
@@ -556,12 +932,7 @@ public class LuceneCatalog implements Catalog {
                             + e.getMessage());
             throw new CatalogException(e.getMessage(), e);
         } finally {
-            if (searcher != null) {
-                try {
-                    //TODO close searcher
-                } catch (Exception ignore) {
-                }
-            }
+            releaseSearcher(searcher);
         }
 
         return products;
@@ -583,12 +954,7 @@ public class LuceneCatalog implements Catalog {
         List<Product> products = null;
 
         try {
-            try {
-                reader = DirectoryReader.open(indexDir);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            searcher = new IndexSearcher(reader);
+            searcher = acquireSearcher();
             Term productIdTerm = new Term("product_type_id", type
                     .getProductTypeId());
             org.apache.lucene.search.Query query = new TermQuery(productIdTerm);
@@ -624,26 +990,16 @@ public class LuceneCatalog implements Catalog {
                             + e.getMessage());
             throw new CatalogException(e.getMessage(), e);
         } finally {
-            if (searcher != null) {
-                try {
-//TODO CLOSE
-               } catch (Exception ignore) {
-                }
-            }
+            releaseSearcher(searcher);
         }
 
         return products;
     }
 
-    public synchronized Metadata getMetadata(Product product) throws CatalogException {
+    public Metadata getMetadata(Product product) throws CatalogException {
         IndexSearcher searcher = null;
         try {
-            try {
-                reader = DirectoryReader.open(indexDir);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            searcher = new IndexSearcher(reader);
+            searcher = acquireSearcher();
             TermQuery qry = new TermQuery(new Term("*", "*"));
             TopDocs tdocks  = searcher.search(qry, 100);
             Term productIdTerm = new Term("product_id", product.getProductId());
@@ -672,12 +1028,7 @@ public class LuceneCatalog implements Catalog {
                             + e.getMessage());
             throw new CatalogException(e.getMessage(), e);
         } finally {
-            if (searcher != null) {
-                try {
-//TODO CLOSE
-               } catch (Exception ignore) {
-                }
-            }
+            releaseSearcher(searcher);
         }
     }
     
@@ -715,22 +1066,73 @@ public class LuceneCatalog implements Catalog {
         return productIds;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.oodt.cas.filemgr.catalog.Catalog#reducedQuery(org.apache.oodt.cas.filemgr.structs.Query,
+     *      org.apache.oodt.cas.filemgr.structs.ProductType, java.util.List)
+     */
+    public List<QueryResult> reducedQuery(Query query, ProductType type,
+            List<String> elements) throws CatalogException {
+        List<QueryResult> results = new Vector<QueryResult>();
+        IndexSearcher searcher = null;
+
+        try {
+            searcher = acquireSearcher();
+            org.apache.lucene.search.Query luceneQuery = toLuceneQuery(query, type);
+            LOG.log(Level.FINE, "Querying LuceneCatalog: q: [" + luceneQuery
+                    + "]");
+
+            // the product and its metadata are stored on the same document,
+            // so load both from the hit rather than looking the product up
+            // again by id
+            int totalHits = searcher.count(luceneQuery);
+            if (totalHits == 0) {
+                return results;
+            }
+            ScoreDoc[] hits = searcher.search(luceneQuery, totalHits,
+                    getPagingSort(searcher.getIndexReader())).scoreDocs;
+            for (ScoreDoc hit : hits) {
+                CompleteProduct prod = toCompleteProduct(searcher.doc(hit.doc),
+                        false, true);
+                Metadata metadata = prod.getMetadata();
+                if (elements != null && elements.size() > 0) {
+                    Metadata reducedMetadata = new Metadata();
+                    for (String element : elements) {
+                        if (metadata.containsKey(element)) {
+                            reducedMetadata.replaceMetadata(element,
+                                    metadata.getAllMetadata(element));
+                        }
+                    }
+                    metadata = reducedMetadata;
+                }
+                results.add(new QueryResult(prod.getProduct(), metadata));
+            }
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, e.getMessage());
+            LOG.log(Level.WARNING,
+                    "IOException when opening index directory: ["
+                            + indexFilePath + "] for search: Message: "
+                            + e.getMessage());
+            throw new CatalogException(e.getMessage(), e);
+        } finally {
+            releaseSearcher(searcher);
+        }
+
+        return results;
+    }
+
     /*
      * (non-Javadoc)
      * 
      * @see org.apache.oodt.cas.filemgr.catalog.Catalog#getTopNProducts(int)
      */
-    public synchronized List<Product> getTopNProducts(int n) throws CatalogException {
+    public List<Product> getTopNProducts(int n) throws CatalogException {
         List<Product> products = null;
         IndexSearcher searcher = null;
 
         try {
-            try {
-                reader = DirectoryReader.open(indexDir);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            searcher = new IndexSearcher(reader);
+            searcher = acquireSearcher();
 
             // construct a Boolean query here
             BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
@@ -741,10 +1143,9 @@ public class LuceneCatalog implements Catalog {
                     SortField.Type.STRING, true));
             LOG.log(Level.FINE, "Querying LuceneCatalog: q: [" + booleanQuery
                     + "]");
-            //TODO FIX NUMBER OF RECORDS
-            TopDocs check = searcher.search(booleanQuery.build(), 1, sort);
-            if(check.totalHits>0) {
-                TopDocs topDocs = searcher.search(booleanQuery.build(), check.totalHits, sort);
+            // only the top n hits need to be collected
+            TopDocs topDocs = searcher.search(booleanQuery.build(), Math.max(1, n), sort);
+            if(topDocs.totalHits>0) {
 
                 ScoreDoc[] hits = topDocs.scoreDocs;
 
@@ -773,12 +1174,7 @@ public class LuceneCatalog implements Catalog {
                             + e.getMessage());
             throw new CatalogException(e.getMessage(), e);
         } finally {
-            if (searcher != null) {
-                try {
-                    //TODO CLOSE
-                } catch (Exception ignore) {
-                }
-            }
+            releaseSearcher(searcher);
         }
 
         return products;
@@ -790,7 +1186,7 @@ public class LuceneCatalog implements Catalog {
      * @see org.apache.oodt.cas.filemgr.catalog.Catalog#getTopNProducts(int,
      *      org.apache.oodt.cas.filemgr.structs.ProductType)
      */
-    public synchronized List<Product> getTopNProducts(int n, ProductType type)
+    public List<Product> getTopNProducts(int n, ProductType type)
             throws CatalogException {
         int numPages = 1;
         if (n > this.pageSize) {
@@ -877,15 +1273,16 @@ public class LuceneCatalog implements Catalog {
      */
     public ProductPage getLastProductPage(ProductType type) {
         ProductPage lastPage = new ProductPage();
-        ProductPage firstPage = getFirstPage(type);
         List<Product> products;
         Query query = new Query();
         
-        // now construct the page
-        lastPage.setPageNum(firstPage.getTotalPages());
-        lastPage.setPageSize(pageSize);
         try {
-            products = paginateQuery(query, type, firstPage.getTotalPages(), lastPage);
+            // now construct the page
+            int totalPages = PaginationUtils.getTotalPage(getNumHits(query, type),
+                    pageSize);
+            lastPage.setPageNum(totalPages);
+            lastPage.setPageSize(pageSize);
+            products = paginateQuery(query, type, totalPages, lastPage);
         } catch (CatalogException e) {
           	LOG.log(Level.WARNING,
                   "CatalogException getting last page for product type: ["
@@ -929,7 +1326,8 @@ public class LuceneCatalog implements Catalog {
         nextPage.setPageNum(currentPage.getPageNum() + 1);
         nextPage.setPageSize(pageSize);
         try {
-            products = paginateQuery(query, type, currentPage.getPageNum() + 1, nextPage);
+            products = paginateQuery(query, type, currentPage.getPageNum() + 1,
+                    nextPage, currentPage);
         } catch (CatalogException e) {
             LOG.log(Level.WARNING,
                   "CatalogException getting next page for product type: ["
@@ -1016,68 +1414,128 @@ public class LuceneCatalog implements Catalog {
 
     }
 
-    private synchronized void removeProductDocument(Product product)
+    private void removeProductDocument(Product product)
             throws CatalogException {
+        LOG.log(Level.FINE,
+                "LuceneCatalog: remove document from index for product: ["
+                        + product.getProductId() + "]");
+        Term productIdTerm = new Term("product_id", product.getProductId());
 
-        try {
-            reader = DirectoryReader.open(indexDir);
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (nearRealTime) {
+            try {
+                trackWriteGeneration(writer.deleteDocuments(productIdTerm));
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Exception removing product: ["
+                        + product.getProductName() + "] from index: Message: "
+                        + e.getMessage());
+                throw new CatalogException(e.getMessage(), e);
+            }
+            return;
         }
-        try {
-            LOG.log(Level.FINE,
-                    "LuceneCatalog: remove document from index for product: ["
-                            + product.getProductId() + "]");
-            IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
-
-            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-            LogMergePolicy lmp =new LogDocMergePolicy();
-            lmp.setMergeFactor(mergeFactor);
-            config.setMergePolicy(lmp);
-
-                IndexWriter writer = new IndexWriter(indexDir, config);
-            writer.deleteDocuments(new Term("product_id", product
-                    .getProductId()));
-            writer.close();
 
+        IndexWriter indexWriter = null;
+        try {
+            indexWriter = new IndexWriter(indexDir, newIndexWriterConfig());
+            indexWriter.deleteDocuments(productIdTerm);
         } catch (IOException e) {
             LOG.log(Level.WARNING, "Exception removing product: ["
                     + product.getProductName() + "] from index: Message: "
                     + e.getMessage());
             throw new CatalogException(e.getMessage(), e);
         } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (Exception ignore) {
-                }
+            closeQuietly(indexWriter);
+        }
+    }
 
+    private void addCompleteProductToIndex(CompleteProduct cp)
+            throws CatalogException {
+        Document doc = toDoc(cp.getProduct(), cp.getMetadata());
+
+        if (nearRealTime) {
+            try {
+                trackWriteGeneration(writer.addDocument(doc));
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Unable to index product: ["
+                        + cp.getProduct().getProductName() + "]: Message: "
+                        + e.getMessage(), e);
+                throw new CatalogException("Unable to index product: ["
+                        + cp.getProduct().getProductName() + "]: Message: "
+                        + e.getMessage(), e);
             }
+            return;
+        }
 
+        IndexWriter indexWriter = null;
+        try {
+            indexWriter = new IndexWriter(indexDir, newIndexWriterConfig());
+            indexWriter.addDocument(doc);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Unable to index product: ["
+                    + cp.getProduct().getProductName() + "]: Message: "
+                    + e.getMessage(), e);
+            throw new CatalogException("Unable to index product: ["
+                    + cp.getProduct().getProductName() + "]: Message: "
+                    + e.getMessage(), e);
+        } finally {
+            closeQuietly(indexWriter);
         }
+
     }
 
-    private synchronized void addCompleteProductToIndex(CompleteProduct cp)
+    /**
+     * Indexes a batch of products with a single writer, then drops them from
+     * the cache. Nothing is dropped if the batch fails.
+     */
+    private void addCompleteProductsToIndex(List<CompleteProduct> cps)
             throws CatalogException {
-        IndexWriter writer = null;
-        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        if (cps.isEmpty()) {
+            return;
+        }
 
-        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-        LogMergePolicy lmp = new LogDocMergePolicy();
-        lmp.setMergeFactor(mergeFactor);
-        config.setMergePolicy(lmp);
+        List<Document> docs = new ArrayList<Document>(cps.size());
+        for (CompleteProduct cp : cps) {
+            docs.add(toDoc(cp.getProduct(), cp.getMetadata()));
+        }
 
+        IndexWriter indexWriter = null;
         try {
-            writer = new IndexWriter(indexDir, config);
-        } catch (IOException e) {
-            e.printStackTrace();
+            if (nearRealTime) {
+                trackWriteGeneration(writer.addDocuments(docs));
+            } else {
+                indexWriter = new IndexWriter(indexDir, newIndexWriterConfig());
+                indexWriter.addDocuments(docs);
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Unable to index batch of " + cps.size()
+                    + " products: Message: " + e.getMessage(), e);
+            throw new CatalogException("Unable to index batch of "
+                    + cps.size() + " products: Message: " + e.getMessage(), e);
+        } finally {
+            closeQuietly(indexWriter);
+        }
+
+        for (CompleteProduct cp : cps) {
+            CATALOG_CACHE.remove(cp.getProduct().getProductId());
+        }
+    }
+
+    /**
+     * Replaces the document for the given product. The shared writer does
+     * this atomically; otherwise the old document is removed and the new one
+     * added.
+     */
+    private void replaceProductDocument(CompleteProduct cp)
+            throws CatalogException {
+        if (!nearRealTime) {
+            removeProductDocument(cp.getProduct());
+            addCompleteProductToIndex(cp);
+            return;
         }
 
         Document doc = toDoc(cp.getProduct(), cp.getMetadata());
         try {
-            writer.addDocument(doc);
-            writer.close();
-            // TODO: determine a better way to optimize the index
+            trackWriteGeneration(writer.updateDocument(new Term("product_id",
+                    cp.getProduct().getProductId()), doc));
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Unable to index product: ["
                     + cp.getProduct().getProductName() + "]: Message: "
@@ -1085,16 +1543,18 @@ public class LuceneCatalog implements Catalog {
             throw new CatalogException("Unable to index product: ["
                     + cp.getProduct().getProductName() + "]: Message: "
                     + e.getMessage(), e);
-        } finally {
+        }
+    }
+
+    private void closeQuietly(IndexWriter indexWriter) {
+        if (indexWriter != null) {
             try {
-                if (writer != null) {
-                    writer.close();
-                }
+                indexWriter.close();
             } catch (Exception e) {
-                System.out.println("failed" + e.getLocalizedMessage());
+                LOG.log(Level.WARNING, "Unable to close index writer: Message: "
+                        + e.getLocalizedMessage());
             }
         }
-
     }
 
     private CompleteProduct toCompleteProduct(Document doc) {
@@ -1204,6 +1664,9 @@ public class LuceneCatalog implements Catalog {
         // add the product information
         doc.add(new Field("product_id", product.getProductId(),
                 StringField.TYPE_STORED));
+        // product ids break ties between products received at the same time
+        doc.add(new SortedDocValuesField("product_id", new BytesRef(product
+                .getProductId())));
         doc.add(new Field("product_name", product.getProductName(),
                 StringField.TYPE_STORED));
         doc.add(new Field("product_structure", product.getProductStructure(),
@@ -1265,9 +1728,12 @@ public class LuceneCatalog implements Catalog {
 
             for (String val : values) {
                 doc.add(new Field(key, val, StringField.TYPE_STORED));
-                if(values.size()==1) {
-                    doc.add(new SortedDocValuesField(key, new BytesRef(val)));
-                }
+            }
+            // products are always paged by received time, so keep it
+            // sortable even if more than one value was given
+            if (values.size() == 1
+                    || (key.equals(RECEIVED_TIME_FIELD) && !values.isEmpty())) {
+                doc.add(new SortedDocValuesField(key, new BytesRef(values.get(0))));
             }
         }
 
@@ -1317,34 +1783,13 @@ public class LuceneCatalog implements Catalog {
 
         int numHits = -1;
         try {
-            reader = DirectoryReader.open(indexDir);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        try {
-            searcher = new IndexSearcher(reader);
-
-            // construct a Boolean query here
-            BooleanQuery.Builder booleanQuery =  new BooleanQuery.Builder();
-
-            // add the product type as the first clause
-            org.apache.lucene.search.Query prodTypeTermQuery = new TermQuery(new Term(
-                    "product_type_id", type.getProductTypeId()));
-            booleanQuery.add(prodTypeTermQuery, BooleanClause.Occur.MUST);
-
-            //convert filemgr query into a lucene query
-            for (QueryCriteria queryCriteria : query.getCriteria()) {
-                booleanQuery.add(this.getQuery(queryCriteria), BooleanClause.Occur.MUST);
-            }
-
-            LOG.log(Level.FINE, "Querying LuceneCatalog: q: [" + booleanQuery
+            searcher = acquireSearcher();
+            org.apache.lucene.search.Query luceneQuery = toLuceneQuery(query, type);
+            LOG.log(Level.FINE, "Querying LuceneCatalog: q: [" + luceneQuery
                     + "]");
 
-            //TODO FIX returned records
-            TopDocs hits = searcher.search(booleanQuery.build(), 1);
-
-
-            numHits = hits.totalHits;
+            // only count the hits, don't collect them
+            numHits = searcher.count(luceneQuery);
         } catch (IOException e) {
             LOG.log(Level.WARNING,
                     "IOException when opening index directory: ["
@@ -1352,101 +1797,79 @@ public class LuceneCatalog implements Catalog {
                             + e.getMessage());
             throw new CatalogException(e.getMessage());
         } finally {
-            if (searcher != null) {
-                try {
-                    //TODO CLOSE
-                } catch (Exception ignore) {
-                }
-            }
+            releaseSearcher(searcher);
         }
 
         return numHits;
     }
 
-    private synchronized List<Product> paginateQuery(Query query, ProductType type, int pageNum, ProductPage page)
+    private List<Product> paginateQuery(Query query, ProductType type, int pageNum, ProductPage page)
             throws CatalogException {
+        return paginateQuery(query, type, pageNum, page, null);
+    }
+
+    /**
+     * Runs the given query and returns the products on page
+     * <code>pageNum</code>, or all of them if <code>pageNum</code> is -1.
+     * Only as many hits as needed to build the page are collected: if
+     * <code>prevPage</code> is the page just before the requested one, the
+     * search resumes after its last product, otherwise the page is located by
+     * collecting from whichever end of the results is closest.
+     */
+    private List<Product> paginateQuery(Query query, ProductType type, int pageNum,
+            ProductPage page, ProductPage prevPage) throws CatalogException {
         List<Product> products = null;
         IndexSearcher searcher = null;
 
-        boolean doSkip = true;
-
-        if (pageNum == -1) {
-            doSkip = false;
-        }
-
-        try {
-            reader = DirectoryReader.open(indexDir);
-        } catch (IOException e) {
-            logger.error("Error when creating directory reader, indexDir: {}, error: {}", indexDir, e.getMessage());
-        }
-
         try {
-            searcher = new IndexSearcher(reader);
-
-            // construct a Boolean query here
-            BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
-
-            // add the product type as the first clause
-            TermQuery prodTypeTermQuery = new TermQuery(new Term(
-                    "product_type_id", type.getProductTypeId()));
-            booleanQuery.add(prodTypeTermQuery, BooleanClause.Occur.MUST);
-
-            //convert filemgr query into a lucene query
-            for (QueryCriteria queryCriteria : query.getCriteria()) {
-                booleanQuery.add(this.getQuery(queryCriteria), BooleanClause.Occur.MUST);
-            }
-
-            Sort sort = new Sort(new SortField("CAS.ProductReceivedTime",
-                    SortField.Type.STRING, true));
-            LOG.log(Level.FINE, "Querying LuceneCatalog: q: [" + booleanQuery
+            searcher = acquireSearcher();
+            org.apache.lucene.search.Query luceneQuery = toLuceneQuery(query, type);
+            Sort sort = getPagingSort(searcher.getIndexReader());
+            LOG.log(Level.FINE, "Querying LuceneCatalog: q: [" + luceneQuery
                     + "]");
-            //TODO FIX NUMBER OF RECORDS
-            TopDocs check = searcher.search(booleanQuery.build(),1, sort);
-            if(check.totalHits>0) {
-                TopDocs topDocs = searcher.search(booleanQuery.build(), check.totalHits, sort);
-
-                // Calculate page size and set it while we have the results
-                if (page != null) {
-                    page.setTotalPages(PaginationUtils.getTotalPage(topDocs.totalHits, pageSize));
-                }
-
-                ScoreDoc[] hits = topDocs.scoreDocs;
-
-                if (hits.length > 0) {
 
+            ScoreDoc[] hits;
+            int totalHits;
+            FieldDoc after = pageNum == -1 ? null : toSearchAfter(searcher, sort,
+                    prevPage, pageNum);
+            if (after != null) {
+                TopDocs topDocs = searcher.searchAfter(after, luceneQuery,
+                        pageSize, sort);
+                totalHits = topDocs.totalHits;
+                hits = topDocs.scoreDocs;
+            } else {
+                totalHits = searcher.count(luceneQuery);
+                if (totalHits == 0) {
+                    hits = new ScoreDoc[0];
+                } else if (pageNum == -1) {
+                    hits = searcher.search(luceneQuery, totalHits, sort).scoreDocs;
+                } else {
                     int startNum = (pageNum - 1) * pageSize;
-                    if (doSkip) {
-                        if (startNum > hits.length) {
-                            startNum = 0;
-                        }
-
-                        products = new Vector<Product>(pageSize);
-
-                        for (int i = startNum; i < Math.min(hits.length,
-                            (startNum + pageSize)); i++) {
-                            Document productDoc = searcher.doc(hits[i].doc);
-
-                            CompleteProduct prod = toCompleteProduct(productDoc,
-                                false, false);
-                            products.add(prod.getProduct());
-                        }
-                    } else {
-                        products = new Vector<Product>(hits.length);
-                        for (int i = 0; i < hits.length; i++) {
-                            Document productDoc = searcher.doc(hits[i].doc);
-
-                            CompleteProduct prod = toCompleteProduct(productDoc,
-                                false, false);
-                            products.add(prod.getProduct());
-                        }
+                    if (startNum > totalHits || startNum < 0) {
+                        startNum = 0;
                     }
-                } else {
-                    LOG.log(Level.WARNING, "Query: [" + query
-                        + "] for Product Type: [" + type.getProductTypeId()
-                        + "] returned no results");
+                    hits = searchPage(searcher, luceneQuery, sort, startNum,
+                            totalHits);
                 }
             }
 
+            // Calculate page size and set it while we have the results
+            if (page != null) {
+                page.setTotalPages(PaginationUtils.getTotalPage(totalHits, pageSize));
+                page.setNumOfHits(totalHits);
+                page.setLastSortValue(hits.length > 0 ? toSortValue(searcher,
+                        (FieldDoc) hits[hits.length - 1]) : null);
+            }
+
+            if (totalHits > 0) {
+                products = new Vector<Product>(hits.length);
+                for (ScoreDoc hit : hits) {
+                    Document productDoc = searcher.doc(hit.doc);
+                    CompleteProduct prod = toCompleteProduct(productDoc,
+                        false, false);
+                    products.add(prod.getProduct());
+                }
+            }
         } catch (Exception e) {
             LOG.log(Level.SEVERE, e.getMessage());
             LOG.log(Level.WARNING,
@@ -1455,18 +1878,161 @@ public class LuceneCatalog implements Catalog {
                             + e.getMessage());
             throw new CatalogException(e.getMessage());
         } finally {
-            if (searcher != null) {
-                try {
-                    //TODO CLOSE
-                } catch (Exception ignore) {
-                }
-            }
+            releaseSearcher(searcher);
         }
 
         return products;
 
     }
 
+    /**
+     * Collects the hits ranked <code>startNum</code> through
+     * <code>startNum + pageSize</code>. Pages in the back half of the results
+     * are collected with the sort reversed, so that neither the first nor the
+     * last page needs more than a page worth of hits.
+     */
+    private ScoreDoc[] searchPage(IndexSearcher searcher,
+            org.apache.lucene.search.Query luceneQuery, Sort sort, int startNum,
+            int totalHits) throws IOException {
+        int endNum = Math.min(totalHits, startNum + pageSize);
+        ScoreDoc[] hits;
+        if (startNum > totalHits / 2) {
+            ScoreDoc[] reversed = searcher.search(luceneQuery,
+                    totalHits - startNum, reverse(sort)).scoreDocs;
+            hits = new ScoreDoc[Math.min(reversed.length, endNum - startNum)];
+            for (int i = 0; i < hits.length; i++) {
+                hits[i] = reversed[reversed.length - 1 - i];
+            }
+        } else {
+            ScoreDoc[] top = searcher.search(luceneQuery, endNum, sort).scoreDocs;
+            hits = new ScoreDoc[Math.max(0, top.length - startNum)];
+            System.arraycopy(top, startNum, hits, 0, hits.length);
+        }
+        return hits;
+    }
+
+    private org.apache.lucene.search.Query toLuceneQuery(Query query,
+            ProductType type) throws CatalogException {
+        // construct a Boolean query here
+        BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
+
+        // add the product type as the first clause
+        TermQuery prodTypeTermQuery = new TermQuery(new Term(
+                "product_type_id", type.getProductTypeId()));
+        booleanQuery.add(prodTypeTermQuery, BooleanClause.Occur.MUST);
+
+        //convert filemgr query into a lucene query
+        for (QueryCriteria queryCriteria : query.getCriteria()) {
+            booleanQuery.add(this.getQuery(queryCriteria), BooleanClause.Occur.MUST);
+        }
+
+        return booleanQuery.build();
+    }
+
+    /**
+     * Products are paged newest first, with ties broken by product id and
+     * then by document. Product ids are only used if every segment has doc
+     * values for them: indexes written before they were added are paged by
+     * received time and document alone.
+     */
+    private Sort getPagingSort(IndexReader reader) {
+        SortField receivedTime = new SortField(RECEIVED_TIME_FIELD,
+                SortField.Type.STRING, true);
+        if (hasSortedDocValues(reader, "product_id")) {
+            return new Sort(receivedTime, new SortField("product_id",
+                    SortField.Type.STRING, true), SortField.FIELD_DOC);
+        } else {
+            return new Sort(receivedTime, SortField.FIELD_DOC);
+        }
+    }
+
+    private static boolean hasSortedDocValues(IndexReader reader, String field) {
+        for (LeafReaderContext leaf : reader.leaves()) {
+            FieldInfo info = leaf.reader().getFieldInfos().fieldInfo(field);
+            if (info != null && info.getDocValuesType() != DocValuesType.SORTED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Sort reverse(Sort sort) {
+        SortField[] fields = sort.getSort();
+        SortField[] reversed = new SortField[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            reversed[i] = new SortField(fields[i].getField(), fields[i].getType(),
+                    !fields[i].getReverse());
+        }
+        return new Sort(reversed);
+    }
+
+    /**
+     * Encodes the sort position of a hit as the reader version, its document
+     * and its sort field values, for use as {@link ProductPage#getLastSortValue()}.
+     */
+    private static String toSortValue(IndexSearcher searcher, FieldDoc hit)
+            throws IOException {
+        StringBuilder sortValue = new StringBuilder();
+        sortValue.append(((DirectoryReader) searcher.getIndexReader()).getVersion());
+        sortValue.append(',').append(hit.doc);
+        for (Object field : hit.fields) {
+            sortValue.append(',');
+            if (field instanceof BytesRef) {
+                sortValue.append(URLEncoder.encode(((BytesRef) field)
+                        .utf8ToString(), "UTF-8"));
+            } else if (field == null) {
+                sortValue.append(NULL_SORT_VALUE);
+            } else {
+                sortValue.append(field);
+            }
+        }
+        return sortValue.toString();
+    }
+
+    /**
+     * Turns the last sort value of <code>prevPage</code> back into a
+     * {@link FieldDoc} to search after, or returns null if it can't be used
+     * to find page <code>pageNum</code>. The document number is only
+     * meaningful to the reader that produced it: against any other reader
+     * the position is resumed by product id, which is unique.
+     */
+    private static FieldDoc toSearchAfter(IndexSearcher searcher, Sort sort,
+            ProductPage prevPage, int pageNum) throws IOException {
+        if (prevPage == null || prevPage.getLastSortValue() == null
+                || prevPage.getPageNum() != pageNum - 1) {
+            return null;
+        }
+
+        SortField[] sortFields = sort.getSort();
+        String[] values = prevPage.getLastSortValue().split(",", -1);
+        if (values.length != sortFields.length + 2) {
+            return null;
+        }
+
+        IndexReader reader = searcher.getIndexReader();
+        boolean sameReader = values[0].equals(String.valueOf(
+                ((DirectoryReader) reader).getVersion()));
+        if (!sameReader && sortFields.length < 3) {
+            return null;
+        }
+
+        Object[] fields = new Object[sortFields.length];
+        for (int i = 0; i < sortFields.length; i++) {
+            String value = values[i + 2];
+            if (sortFields[i].getType() == SortField.Type.DOC) {
+                fields[i] = sameReader ? Integer.valueOf(value) : Integer.MAX_VALUE;
+            } else if (!value.equals(NULL_SORT_VALUE)) {
+                fields[i] = new BytesRef(URLDecoder.decode(value, "UTF-8"));
+            }
+        }
+
+        int doc = Integer.parseInt(values[1]);
+        if (!sameReader || doc >= reader.maxDoc()) {
+            doc = Math.max(0, reader.maxDoc() - 1);
+        }
+        return new FieldDoc(doc, Float.NaN, fields);
+    }
+
     private org.apache.lucene.search.Query getQuery(QueryCriteria queryCriteria) throws CatalogException {
         if (queryCriteria instanceof BooleanQueryCriteria) {
             BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
@@ -51,6 +51,8 @@ public class LuceneCatalogFactory implements CatalogFactory {
   public static final int VAL1 = 60;
   public static final int VAL2 = 60;
   public static final int VAL3 = 20;
+  public static final long DEFAULT_REFRESH_INTERVAL_MILLIS = 1000L;
+  public static final long DEFAULT_COMMIT_INTERVAL_SECONDS = 60L;
   /* path to the index directory for lucene catalogs */
 	private String indexFilePath = null;
 	private IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
@@ -70,6 +72,15 @@ public class LuceneCatalogFactory implements CatalogFactory {
 	/* the merge factor */
 	private int mergeFactor = -1;
 	
+	/* whether to keep a shared writer and near-real-time searcher */
+	private boolean nearRealTime = false;
+
+	/* the max staleness of the near-real-time searcher */
+	private long refreshIntervalMillis = -1L;
+
+	/* the interval between commits of the shared writer */
+	private long commitIntervalSeconds = -1L;
+
 	/* Whether or not to enforce strict definition of metadata fields:
 	 * 'lenient=false' means that all metadata fields need to be explicitly defined in the XML configuration file */
 	private boolean lenientFields = false;
@@ -115,6 +126,16 @@ public class LuceneCatalogFactory implements CatalogFactory {
 				VAL2);
 		mergeFactor = Integer.getInteger(
 			"org.apache.oodt.cas.filemgr.catalog.lucene.mergeFactor", VAL3);
+		nearRealTime = Boolean.getBoolean(
+			"org.apache.oodt.cas.filemgr.catalog.lucene.nearRealTime");
+		refreshIntervalMillis = Long
+			.getLong(
+				"org.apache.oodt.cas.filemgr.catalog.lucene.nearRealTime.refreshInterval.millis",
+				DEFAULT_REFRESH_INTERVAL_MILLIS);
+		commitIntervalSeconds = Long
+			.getLong(
+				"org.apache.oodt.cas.filemgr.catalog.lucene.nearRealTime.commitInterval.seconds",
+				DEFAULT_COMMIT_INTERVAL_SECONDS);
 	}
 
 	/*
@@ -149,7 +170,8 @@ public class LuceneCatalogFactory implements CatalogFactory {
 	        }
 	    }
 		return new LuceneCatalog(indexFilePath, validationLayer, pageSize,
-				commitLockTimeOut, writeLockTimeOut, mergeFactor);
+				commitLockTimeOut, writeLockTimeOut, mergeFactor, nearRealTime,
+				refreshIntervalMillis, commitIntervalSeconds);
 	}
 
 }
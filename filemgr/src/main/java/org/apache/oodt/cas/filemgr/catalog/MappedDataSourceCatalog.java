@@ -71,23 +71,6 @@ public class MappedDataSourceCatalog extends DataSourceCatalog {
         this.typeMap = typeMap;
     }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see org.apache.oodt.cas.filemgr.catalog.DataSourceCatalog#addMetadata(
-     *      org.apache.oodt.cas.metadata.Metadata,
-     *      org.apache.oodt.cas.filemgr.structs.Product)
-     */
-    @Override
-    public synchronized void addMetadata(Metadata metadata, Product product)
-            throws CatalogException {
-        String origProductTypeName = product.getProductType().getName();
-        product.getProductType().setName(
-                getProductTypeTableName(origProductTypeName));
-        super.addMetadata(metadata, product);
-        product.getProductType().setName(origProductTypeName);
-    }
-
     /*
      * (non-Javadoc)
      * 
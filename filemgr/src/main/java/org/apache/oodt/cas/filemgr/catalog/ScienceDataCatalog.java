@@ -21,7 +21,9 @@ import org.apache.oodt.cas.filemgr.structs.ProductPage;
 import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.Query;
 import org.apache.oodt.cas.filemgr.structs.Reference;
+import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogBatchException;
 import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
+import org.apache.oodt.cas.filemgr.structs.query.QueryResult;
 import org.apache.oodt.cas.filemgr.util.DbStructFactory;
 import org.apache.oodt.cas.filemgr.validation.ValidationLayer;
 import org.apache.oodt.cas.metadata.Metadata;
@@ -382,6 +384,44 @@ public class ScienceDataCatalog implements Catalog {
 
   }
 
+  public void addProducts(List<Product> products) throws CatalogException {
+    for (int i = 0; i < products.size(); i++) {
+      try {
+        this.addProduct(products.get(i));
+      } catch (CatalogException e) {
+        throw new CatalogBatchException(i, e.getMessage(), e);
+      }
+    }
+  }
+
+  public void addMetadata(List<Metadata> metadata, List<Product> products)
+      throws CatalogException {
+    if (metadata.size() != products.size()) {
+      throw new CatalogException("Got " + metadata.size() + " metadata for "
+          + products.size() + " products");
+    }
+    // data points are committed as they go, so the metadata added before a
+    // failure stays
+    for (int i = 0; i < products.size(); i++) {
+      try {
+        this.addMetadata(metadata.get(i), products.get(i));
+      } catch (CatalogException e) {
+        throw new CatalogBatchException(i, e.getMessage(), e);
+      }
+    }
+  }
+
+  public void addProductReferences(List<Product> products)
+      throws CatalogException {
+    for (int i = 0; i < products.size(); i++) {
+      try {
+        this.addProductReferences(products.get(i));
+      } catch (CatalogException e) {
+        throw new CatalogBatchException(i, e.getMessage(), e);
+      }
+    }
+  }
+
   public Metadata getMetadata(Product product) throws CatalogException {
     Metadata met = new Metadata();
     met.addMetadata("Filename", product.getProductName());
@@ -740,6 +780,22 @@ public class ScienceDataCatalog implements Catalog {
     return null;
   }
 
+  public List<QueryResult> reducedQuery(Query query, ProductType type,
+      List<String> elements) throws CatalogException {
+    List<QueryResult> results = new Vector<QueryResult>();
+    List<String> productIds = query(query, type);
+    if (productIds == null) {
+      return results;
+    }
+    for (String productId : productIds) {
+      Product product = getProductById(productId);
+      Metadata m = (elements != null && elements.size() > 0) ? getReducedMetadata(
+          product, elements) : getMetadata(product);
+      results.add(new QueryResult(product, m));
+    }
+    return results;
+  }
+
   public void removeMetadata(Metadata arg0, Product arg1)
       throws CatalogException {
     // TODO Auto-generated method stub
@@ -17,9 +17,13 @@
 package org.apache.oodt.cas.filemgr.catalog.solr;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.oodt.cas.filemgr.catalog.Catalog;
@@ -29,7 +33,9 @@ import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.Query;
 import org.apache.oodt.cas.filemgr.structs.QueryCriteria;
 import org.apache.oodt.cas.filemgr.structs.Reference;
+import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogBatchException;
 import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
+import org.apache.oodt.cas.filemgr.structs.query.QueryResult;
 import org.apache.oodt.cas.filemgr.validation.ValidationLayer;
 import org.apache.oodt.cas.metadata.Metadata;
 import org.apache.oodt.commons.pagination.PaginationUtils;
@@ -53,12 +59,35 @@ public class SolrCatalog implements Catalog {
 	// Class responsible for interacting with the Solr server
 	SolrClient solrClient;
 
+	// default maximum number of documents sent to Solr in one update request
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	// maximum number of product ids looked up in one query
+	private static final int MAX_IDS_PER_QUERY = 100;
+
+	// maximum number of documents sent to Solr in one update request
+	private final int batchSize;
+
 	private static final Logger LOG = Logger.getLogger(SolrCatalog.class.getName());
 
 	public SolrCatalog(String solrUrl, ProductIdGenerator productIdGenerator, ProductSerializer productSerializer) {
+		this(new SolrClient(solrUrl), productIdGenerator, productSerializer, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Constructor for a catalog sending its requests through the given {@link SolrClient}.
+	 * @param solrClient
+	 * @param productIdGenerator
+	 * @param productSerializer
+	 * @param batchSize : the maximum number of documents sent to Solr in one update request
+	 *        when products are added in bulk
+	 */
+	public SolrCatalog(SolrClient solrClient, ProductIdGenerator productIdGenerator, ProductSerializer productSerializer,
+			int batchSize) {
 		this.productIdGenerator = productIdGenerator;
 		this.productSerializer = productSerializer;
-		this.solrClient = new SolrClient(solrUrl);
+		this.solrClient = solrClient;
+		this.batchSize = Math.max(1, batchSize);
 	}
 
 	@Override
@@ -200,6 +229,146 @@ public class SolrCatalog implements Catalog {
 
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The products are checked for existence with one query per {@link #MAX_IDS_PER_QUERY} ids,
+	 * and sent to Solr in update requests of up to batchSize documents, committed once at the end.
+	 * If a request fails, all products of the batch are deleted again, or if that fails too,
+	 * a {@link CatalogBatchException} reports the number of products sent by the requests before it.
+	 */
+	@Override
+	public void addProducts(List<Product> products) throws CatalogException {
+
+		// reject products that already exist, or that appear twice in the batch
+		List<String> productIds = new ArrayList<String>();
+		Set<String> seenIds = new HashSet<String>();
+		for (Product product : products) {
+			if (product.getProductId()!=null) {
+				if (!seenIds.add(product.getProductId())) {
+					throw new CatalogException(
+							"Attempt to add a product that already existed: product: ["
+									+ product.getProductName() + "]");
+				}
+				productIds.add(product.getProductId());
+			}
+		}
+		Map<String, CompleteProduct> existing = getCompleteProductsByIds(productIds);
+		for (Product product : products) {
+			if (product.getProductId()!=null && existing.containsKey(product.getProductId())) {
+				throw new CatalogException(
+						"Attempt to add a product that already existed: product: ["
+								+ product.getProductName() + "]");
+			}
+		}
+
+		LOG.info("Adding "+products.size()+" products");
+		List<List<String>> docs = new ArrayList<List<String>>();
+		for (Product product : products) {
+			// generate product identifier if not existing already
+			if (!StringUtils.hasText(product.getProductId())) {
+				product.setProductId(this.productIdGenerator.generateId(product));
+			}
+			docs.add(productSerializer.serialize(product, true)); // create=true
+		}
+
+		// send records to Solr, removing the products again if not all of them make it
+		try {
+			indexInBatches(docs);
+		} catch(CatalogException e) {
+			List<String> ids = new ArrayList<String>();
+			for (Product product : products) {
+				ids.add(product.getProductId());
+			}
+			try {
+				solrClient.delete(ids, true);
+			} catch(CatalogException de) {
+				// the products sent before the failure stay, as reported by the batch exception
+				LOG.log(Level.SEVERE, "Unable to remove the products of a failed batch: "+de.getMessage());
+				throw e;
+			}
+			throw new CatalogException(e.getMessage(), e);
+		}
+
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The metadata of all products is sent to Solr in update requests of up to batchSize documents,
+	 * committed once at the end.
+	 * Updates are not undone: if a request fails, a {@link CatalogBatchException}
+	 * reports the number of products sent by the requests before it.
+	 */
+	@Override
+	public void addMetadata(List<Metadata> metadata, List<Product> products) throws CatalogException {
+		if (metadata.size() != products.size()) {
+			throw new CatalogException("Got " + metadata.size() + " metadata for " + products.size() + " products");
+		}
+
+		List<List<String>> docs = new ArrayList<List<String>>();
+		for (int i = 0; i < products.size(); i++) {
+			Metadata met = metadata.get(i);
+			if(met.containsKey("_version_")){
+				met.removeMetadata("_version_");
+			}
+			// replace=false i.e. add metadata to existing values
+			docs.add(productSerializer.serialize(products.get(i).getProductId(), met, false));
+		}
+
+		// send documents to Solr server
+		indexInBatches(docs);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The references of all products are sent to Solr in update requests of up to batchSize documents,
+	 * committed once at the end.
+	 * Updates are not undone: if a request fails, a {@link CatalogBatchException}
+	 * reports the number of products sent by the requests before it.
+	 */
+	@Override
+	public void addProductReferences(List<Product> products) throws CatalogException {
+
+		List<List<String>> docs = new ArrayList<List<String>>();
+		for (Product product : products) {
+			// generate update documents (with replace=true)
+			docs.add(productSerializer.serialize(product.getProductId(), product.getRootRef(),
+					product.getProductReferences(), true));
+		}
+
+		// send documents to Solr server
+		indexInBatches(docs);
+
+	}
+
+	/**
+	 * Sends documents to Solr in update requests of up to batchSize documents,
+	 * asking for the changes to be committed with the last one only.
+	 * The documents of one product are never split across requests.
+	 * @param docs : the documents of each product
+	 * @throws CatalogBatchException with the number of products sent before the request that failed
+	 */
+	private void indexInBatches(List<List<String>> docs) throws CatalogException {
+
+		int numSent = 0;
+		while (numSent < docs.size()) {
+			List<String> batch = new ArrayList<String>(docs.get(numSent));
+			int end = numSent + 1;
+			while (end < docs.size() && batch.size() + docs.get(end).size() <= batchSize) {
+				batch.addAll(docs.get(end++));
+			}
+			try {
+				// an empty batch can only hold products without any documents to send
+				if (!batch.isEmpty()) {
+					solrClient.index(batch, end == docs.size(), productSerializer.getMimeType());
+				}
+			} catch(CatalogException e) {
+				throw new CatalogBatchException(numSent, e.getMessage(), e);
+			}
+			numSent = end;
+		}
+
+	}
+
 	@Override
 	public Product getProductById(String productId) throws CatalogException {
 
@@ -376,6 +545,36 @@ public class SolrCatalog implements Catalog {
 
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The products and their metadata are taken from the same Solr response that
+	 * {@link #query(Query, ProductType)} would use, instead of one request per product.
+	 */
+	@Override
+	public List<QueryResult> reducedQuery(Query query, ProductType type, List<String> elements) throws CatalogException {
+
+		// execute request for ALL results
+		QueryResponse queryResponse =  this.getProducts(query, type, 0, -1); // get ALL products
+
+		List<QueryResult> results = new ArrayList<QueryResult>();
+		for (CompleteProduct cp : queryResponse.getCompleteProducts()) {
+			Metadata metadata = cp.getMetadata();
+			if (elements != null && elements.size() > 0) {
+				Metadata reducedMetadata = new Metadata();
+				for (String element : elements) {
+					if (metadata.containsKey(element)) {
+						reducedMetadata.replaceMetadata(element, metadata.getAllMetadata(element));
+					}
+				}
+				metadata = reducedMetadata;
+			}
+			results.add(new QueryResult(cp.getProduct(), metadata));
+		}
+
+		return results;
+
+	}
+
 	@Override
 	public List<Product> getTopNProducts(int n) throws CatalogException {
 
@@ -525,6 +724,26 @@ public class SolrCatalog implements Catalog {
 
 	}
 
+	/**
+	 * Retrieves the products with the given ids, {@link #MAX_IDS_PER_QUERY} at a time.
+	 * @param productIds
+	 * @return the products found, keyed by id
+	 * @throws CatalogException
+	 */
+	private Map<String, CompleteProduct> getCompleteProductsByIds(List<String> productIds) throws CatalogException {
+
+		Map<String, CompleteProduct> products = new HashMap<String, CompleteProduct>();
+		for (int start = 0; start < productIds.size(); start += MAX_IDS_PER_QUERY) {
+			List<String> ids = productIds.subList(start, Math.min(start + MAX_IDS_PER_QUERY, productIds.size()));
+			String doc = solrClient.queryProductsByIds(ids, productSerializer.getMimeType());
+			for (CompleteProduct cp : productSerializer.deserialize(doc).getCompleteProducts()) {
+				products.put(cp.getProduct().getProductId(), cp);
+			}
+		}
+		return products;
+
+	}
+
 	private CompleteProduct getCompleteProductByName(String productName) throws CatalogException {
 
 		// request document with given id
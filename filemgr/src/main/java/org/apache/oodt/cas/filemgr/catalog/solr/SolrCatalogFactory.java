@@ -34,6 +34,10 @@ public class SolrCatalogFactory implements CatalogFactory {
 	private String solrUrl;
 	private ProductIdGenerator productIdGenerator;
 	private ProductSerializer productSerializer;
+	private int batchSize;
+	private int maxConnections;
+	private int commitWithin;
+	private boolean softCommit;
 	
 	private static final Logger LOG = Logger.getLogger(SolrCatalogFactory.class.getName());
 	
@@ -82,12 +86,19 @@ public class SolrCatalogFactory implements CatalogFactory {
 			productIdGenerator = new UUIDProductIdGenerator();
 		}
 		
+		// update batching, connection pooling and commit policy
+		batchSize = Integer.getInteger("org.apache.oodt.cas.filemgr.catalog.solr.batchSize", SolrCatalog.DEFAULT_BATCH_SIZE);
+		maxConnections = Integer.getInteger("org.apache.oodt.cas.filemgr.catalog.solr.maxConnections", SolrClient.DEFAULT_MAX_CONNECTIONS);
+		commitWithin = Integer.getInteger("org.apache.oodt.cas.filemgr.catalog.solr.commitWithin", 0);
+		softCommit = Boolean.getBoolean("org.apache.oodt.cas.filemgr.catalog.solr.softCommit");
+		
 	}
 
 	@Override
 	public Catalog createCatalog() {
 		LOG.info("Creating Solr Catalog for URL="+this.solrUrl);
-		return new SolrCatalog(solrUrl, productIdGenerator, productSerializer);
+		SolrClient solrClient = new SolrClient(solrUrl, maxConnections, commitWithin, softCommit);
+		return new SolrCatalog(solrClient, productIdGenerator, productSerializer, batchSize);
 	}
 
 }
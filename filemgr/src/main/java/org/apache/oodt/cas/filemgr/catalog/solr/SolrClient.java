@@ -31,13 +31,14 @@ import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicResponseHandler;
-import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
 import org.apache.solr.client.solrj.util.ClientUtils;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
@@ -48,21 +49,38 @@ import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Class containing client-side functionality for interacting with a Solr server.
- * This class uses an {@link HttpClient} for all HTTP communication.
+ * This class uses a single, pooled {@link HttpClient} for all HTTP communication,
+ * so that connections to the server are kept alive and reused between requests.
  *
  * @author Luca Cinquini
  *
  */
 public class SolrClient {
 
+	// default maximum number of pooled connections to the Solr server
+	public static final int DEFAULT_MAX_CONNECTIONS = 10;
+
+	// how long an unused pooled connection is kept open
+	private static final long IDLE_CONNECTION_SECONDS = 30;
+
 	// base URL of Solr server
 	private String solrUrl;
 
+	// pooled, keep-alive client shared by all requests
+	private final CloseableHttpClient httpClient;
+
+	// if positive, changes are committed by Solr within this many milliseconds
+	private final int commitWithin;
+
+	// whether commits open a new searcher without flushing the index to disk
+	private final boolean softCommit;
+
 	private final Logger LOG = Logger.getLogger(this.getClass().getName());
 
 	/**
@@ -71,12 +89,41 @@ public class SolrClient {
 	 */
 	public SolrClient(final String url) {
 
+		this(url, DEFAULT_MAX_CONNECTIONS, 0, false);
+
+	}
+
+	/**
+	 * Constructor initializes the Solr URL and the commit policy.
+	 * @param url
+	 * @param maxConnections : the maximum number of pooled connections to the Solr server
+	 * @param commitWithin : if positive, the number of milliseconds within which Solr
+	 *        commits changes (instead of committing them with each request)
+	 * @param softCommit : whether to use soft commits, which make changes visible
+	 *        without flushing them to disk
+	 */
+	public SolrClient(final String url, int maxConnections, int commitWithin, boolean softCommit) {
+
 		solrUrl = url;
+		this.commitWithin = commitWithin;
+		this.softCommit = softCommit;
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnections);
+		// OODT-719 idle connections are closed rather than left in close-wait
+		httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.evictExpiredConnections()
+				.evictIdleConnections(IDLE_CONNECTION_SECONDS, TimeUnit.SECONDS)
+				.build();
 
 	}
 
 	/**
 	 * Method to send one or more documents to be indexed to Solr.
+	 * The documents are sent in a single update request, which also
+	 * carries the commit, if one is requested.
 	 *
 	 * @param docs
 	 * @param commit
@@ -88,10 +135,14 @@ public class SolrClient {
 
 		try {
 
-			final String url = this.buildUpdateUrl();
+			final String url = this.buildUpdateUrl(commit);
 
 			// build message
-			StringBuilder message = new StringBuilder("<add>");
+			StringBuilder message = new StringBuilder("<add");
+			if (commit && commitWithin > 0) {
+				message.append(" commitWithin=\"").append(commitWithin).append("\"");
+			}
+			message.append(">");
 			for (String doc : docs) {
 				message.append(doc);
 			}
@@ -100,12 +151,6 @@ public class SolrClient {
 			// send POST request
 			LOG.info("Posting message:"+message+" to URL:"+url);
 			String response = doPost(url, message.toString(), mimeType);
-			LOG.info(response);
-
-			// commit changes ?
-			if (commit) {
-				this.commit();
-			}
 
 			LOG.info(response);
 			return response;
@@ -129,11 +174,10 @@ public class SolrClient {
 		try {
 
 			// build POST request
-			String url = this.buildUpdateUrl();
-			if (commit) {
-				url += "?commit=true";
-			}
-			String message = "<delete><query>id:"+id+"</query></delete>";
+			String url = this.buildUpdateUrl(commit);
+			String message = "<delete"
+					+ (commit && commitWithin > 0 ? " commitWithin=\"" + commitWithin + "\"" : "")
+					+ "><query>id:"+id+"</query></delete>";
 
 			// send POST request
 			LOG.info("Posting message:"+message+" to URL:"+url);
@@ -147,6 +191,43 @@ public class SolrClient {
 
 	}
 
+	/**
+	 * Method to send a single message deleting the documents with all the given ids
+	 * (matched against the unique key, not parsed as a query) to Solr.
+	 * @param ids
+	 * @param commit
+	 * @return
+	 * @throws CatalogException
+	 */
+	public String delete(List<String> ids, boolean commit) throws CatalogException {
+
+		try {
+
+			// build POST request
+			String url = this.buildUpdateUrl(commit);
+			StringBuilder message = new StringBuilder("<delete");
+			if (commit && commitWithin > 0) {
+				message.append(" commitWithin=\"").append(commitWithin).append("\"");
+			}
+			message.append(">");
+			for (String id : ids) {
+				// by unique key, so the id is taken as it is rather than parsed as a query
+				message.append("<id>").append(StringEscapeUtils.escapeXml(id)).append("</id>");
+			}
+			message.append("</delete>");
+
+			// send POST request
+			LOG.info("Posting message:"+message+" to URL:"+url);
+
+			return doPost(url, message.toString(), Parameters.MIME_TYPE_XML);
+
+		} catch(Exception e) {
+			LOG.log(Level.SEVERE, e.getMessage());
+			throw new CatalogException(e.getMessage());
+		}
+
+	}
+
 	/**
 	 * Method to query the Solr index for a product with the specified id.
 	 * @param id
@@ -174,6 +255,30 @@ public class SolrClient {
 
 	}
 
+	/**
+	 * Method to query the Solr index for all the products with the specified ids, in one request.
+	 * @param ids
+	 * @param mimeType
+	 * @return
+	 */
+	public String queryProductsByIds(List<String> ids, String mimeType) throws CatalogException {
+
+		StringBuilder q = new StringBuilder(Parameters.PRODUCT_ID + ":(");
+		for (int i = 0; i < ids.size(); i++) {
+			if (i > 0) {
+				q.append(" OR ");
+			}
+			q.append(ClientUtils.escapeQueryChars(ids.get(i)));
+		}
+		q.append(")");
+
+		ConcurrentHashMap<String, String[]> params = new ConcurrentHashMap<String, String[]>();
+		params.put("q", new String[]{ q.toString() } );
+		params.put("rows", new String[]{ ""+ids.size() } );
+		return query(params, mimeType);
+
+	}
+
 	/**
 	 * Method to query Solr for the most recent 'n' products.
 	 * @param n
@@ -212,12 +317,26 @@ public class SolrClient {
 	 */
 	public void commit() throws IOException, CatalogException {
 
-		String message = "<commit waitSearcher=\"true\"/>";
+		String message = softCommit ? "<commit softCommit=\"true\" waitSearcher=\"true\"/>"
+				: "<commit waitSearcher=\"true\"/>";
 		String url =  this.buildUpdateUrl();
 		doPost(url, message, Parameters.MIME_TYPE_XML);
 
 	}
 
+	/**
+	 * Method to release the pooled connections to the Solr server.
+	 */
+	public void close() {
+
+		try {
+			httpClient.close();
+		} catch (IOException e) {
+			LOG.log(Level.WARNING, "Error closing HTTP client: " + e.getMessage());
+		}
+
+	}
+
 	/**
 	 * Method to send a generic query to the Solr server.
 	 *
@@ -281,7 +400,7 @@ public class SolrClient {
 	 * @param document
 	 * @return
 	 */
-	private String doPost(String url, String document, String mimeType) throws IOException, CatalogException {
+	protected String doPost(String url, String document, String mimeType) throws IOException, CatalogException {
 
 		// build HTTP/POST request
 		HttpPost method = new HttpPost(url);
@@ -307,14 +426,9 @@ public class SolrClient {
 	private String doHttp(HttpRequestBase method) throws IOException, CatalogException {
 
 		String response = null;
-		BufferedReader br = null;
 		try {
 
-			// send request
-			HttpClient httpClient = new DefaultHttpClient();
-			// OODT-719 Prevent httpclient from spawning closewait tcp connections
-			method.setHeader("Connection", "close");
-
+			// send request over a pooled connection
 			HttpResponse statusCode = httpClient.execute(method);
 
 			// read response
@@ -338,12 +452,6 @@ public class SolrClient {
 		} finally {
 			// must release the connection even if an exception occurred
 			method.releaseConnection();
-			if (br!=null) {
-				try {
-					br.close();
-				} catch (Exception ignored) {
-				}
-			}
 		}
 
 		return response;
@@ -362,6 +470,24 @@ public class SolrClient {
 
 	}
 
+	/**
+	 * Builds the URL used to update the Solr index, asking for the changes
+	 * to be committed with the update unless Solr commits them within a given time.
+	 *
+	 * Example: http://localhost:8983/solr/update?commit=true
+	 * @param commit
+	 * @return
+	 */
+	private String buildUpdateUrl(boolean commit) {
+
+		String url = this.buildUpdateUrl();
+		if (commit && commitWithin <= 0) {
+			url += softCommit ? "?softCommit=true" : "?commit=true";
+		}
+		return url;
+
+	}
+
 	/**
 	 * Builds the URL used to query the Solr index.
 	 *
@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.datatransfer;
+
+//JDK imports
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>
+ * Client side of the {@link FileStreamServer}. A file is split into up to
+ * <code>numStreams</code> ranges which are moved in parallel, each over its
+ * own connection. A range whose connection fails is retried from the last
+ * offset the server acknowledged (when sending) or the last byte received
+ * (when retrieving), up to <code>maxRetries</code> times.
+ * </p>
+ *
+ */
+public class FileStreamClient {
+
+    /* our log stream */
+    private static final Logger LOG = Logger.getLogger(FileStreamClient.class
+            .getName());
+
+    /* where the file stream server lives */
+    private InetSocketAddress address;
+
+    /* the most bytes moved per transferTo/transferFrom call and per ack */
+    private long windowSize;
+
+    /* the most ranges a file is split into */
+    private int numStreams;
+
+    /* how many times a failed range is retried */
+    private int maxRetries;
+
+    /**
+     * @param host
+     *            The host the {@link FileStreamServer} runs on.
+     * @param port
+     *            The port the {@link FileStreamServer} listens on.
+     * @param windowSize
+     *            The number of bytes sent between acknowledgements.
+     * @param numStreams
+     *            The number of parallel connections to use per file.
+     * @param maxRetries
+     *            The number of times to retry a failed range.
+     */
+    public FileStreamClient(String host, int port, long windowSize,
+            int numStreams, int maxRetries) {
+        this.address = new InetSocketAddress(host, port);
+        this.windowSize = Math.max(1L, windowSize);
+        this.numStreams = Math.max(1, numStreams);
+        this.maxRetries = Math.max(0, maxRetries);
+    }
+
+    /**
+     * @param remotePath
+     *            The absolute path of a file on the server.
+     * @return The length of the file, or -1 if it does not exist.
+     * @throws IOException
+     *             If the server cannot be reached.
+     */
+    public long size(String remotePath) throws IOException {
+        SocketChannel socket = connect();
+        try {
+            DataOutputStream out = new DataOutputStream(Channels
+                    .newOutputStream(socket));
+            out.writeByte(FileStreamServer.SIZE);
+            out.writeUTF(remotePath);
+            out.flush();
+            return new DataInputStream(Channels.newInputStream(socket))
+                    .readLong();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private void create(String remotePath, long length) throws IOException {
+        SocketChannel socket = connect();
+        try {
+            DataOutputStream out = new DataOutputStream(Channels
+                    .newOutputStream(socket));
+            out.writeByte(FileStreamServer.CREATE);
+            out.writeUTF(remotePath);
+            out.writeLong(length);
+            out.flush();
+            new DataInputStream(Channels.newInputStream(socket)).readLong();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Sends <code>localFile</code> to <code>remotePath</code> on the server,
+     * replacing the remote file if it exists.
+     *
+     * @param localFile
+     *            The file to send.
+     * @param remotePath
+     *            The absolute path to write it to on the server.
+     * @throws IOException
+     *             If the file could not be sent.
+     */
+    public void put(final File localFile, final String remotePath)
+            throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(localFile, "r");
+        try {
+            final FileChannel fileChannel = raf.getChannel();
+            long size = fileChannel.size();
+            create(remotePath, size);
+            transferRanges(size, new RangeTransfer() {
+                public long transfer(long offset, long length)
+                        throws IOException {
+                    return putRange(fileChannel, remotePath, offset, length);
+                }
+            }, localFile + " to " + remotePath);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Retrieves <code>remotePath</code> from the server into
+     * <code>localFile</code>, replacing any existing contents.
+     *
+     * @param remotePath
+     *            The absolute path of the file on the server.
+     * @param localFile
+     *            The file to write to.
+     * @throws IOException
+     *             If the file could not be retrieved.
+     */
+    public void get(final String remotePath, File localFile)
+            throws IOException {
+        long size = size(remotePath);
+        if (size < 0) {
+            throw new FileNotFoundException("No file: [" + remotePath
+                    + "] on file stream server: [" + address + "]");
+        }
+
+        final RandomAccessFile raf = new RandomAccessFile(localFile, "rw");
+        try {
+            raf.setLength(size);
+            final FileChannel fileChannel = raf.getChannel();
+            transferRanges(size, new RangeTransfer() {
+                public long transfer(long offset, long length)
+                        throws IOException {
+                    return getRange(fileChannel, remotePath, offset, length);
+                }
+            }, remotePath + " to " + localFile);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /* moves one range, returning how many of its bytes made it across */
+    private interface RangeTransfer {
+        long transfer(long offset, long length) throws IOException;
+    }
+
+    private void transferRanges(long size, final RangeTransfer rangeTransfer,
+            final String description) throws IOException {
+        if (size == 0) {
+            // nothing to move: the file has already been sized
+            return;
+        }
+        // don't bother splitting files smaller than a window per stream
+        int streams = (int) Math.max(1L, Math.min(numStreams, size
+                / windowSize));
+        long rangeSize = (size + streams - 1) / streams;
+
+        if (streams == 1) {
+            transferRange(rangeTransfer, 0, size, description);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(streams);
+        try {
+            List<Future<Void>> ranges = new ArrayList<Future<Void>>(streams);
+            for (int i = 0; i < streams; i++) {
+                final long offset = i * rangeSize;
+                final long length = Math.min(rangeSize, size - offset);
+                ranges.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws IOException {
+                        transferRange(rangeTransfer, offset, length,
+                                description);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> range : ranges) {
+                try {
+                    range.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted streaming "
+                            + description, e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void transferRange(RangeTransfer rangeTransfer, long offset,
+            long length, String description) throws IOException {
+        long done = 0;
+        int attempt = 0;
+        while (true) {
+            try {
+                done += rangeTransfer.transfer(offset + done, length - done);
+                if (done >= length) {
+                    return;
+                }
+                throw new EOFException("Stream ended after " + done + " of "
+                        + length + " bytes");
+            } catch (IOException e) {
+                if (++attempt > maxRetries) {
+                    throw e;
+                }
+                LOG.log(Level.WARNING, "Error streaming " + description
+                        + " at offset [" + (offset + done) + "]: Message: "
+                        + e.getMessage() + ": resuming");
+            }
+        }
+    }
+
+    /*
+     * Sends a range, returning how much of it the server acknowledged. A
+     * connection failure part way through is reported by returning the
+     * acknowledged count, so the caller can resume from there.
+     */
+    private long putRange(FileChannel fileChannel, String remotePath,
+            long offset, long length) throws IOException {
+        SocketChannel socket = connect();
+        long acked = 0;
+        try {
+            DataOutputStream out = new DataOutputStream(Channels
+                    .newOutputStream(socket));
+            DataInputStream in = new DataInputStream(Channels
+                    .newInputStream(socket));
+            out.writeByte(FileStreamServer.PUT);
+            out.writeUTF(remotePath);
+            out.writeLong(offset);
+            out.writeLong(length);
+            out.writeLong(windowSize);
+            out.flush();
+
+            long sent = 0;
+            while (sent < length) {
+                long windowEnd = Math.min(length, sent + windowSize);
+                while (sent < windowEnd) {
+                    sent += fileChannel.transferTo(offset + sent, windowEnd
+                            - sent, socket);
+                }
+                long reply = in.readLong();
+                if (reply < 0) {
+                    throw new IOException("File stream server refused range ["
+                            + offset + ", " + (offset + length) + ") of ["
+                            + remotePath + "]");
+                }
+                acked = reply;
+            }
+            return acked;
+        } catch (IOException e) {
+            if (acked == 0) {
+                throw e;
+            }
+            LOG.log(Level.WARNING, "Error sending [" + remotePath
+                    + "] at offset [" + (offset + acked) + "]: Message: "
+                    + e.getMessage());
+            return acked;
+        } finally {
+            socket.close();
+        }
+    }
+
+    /*
+     * Receives a range, returning how much of it was written locally; as for
+     * putRange, a failure part way through returns the count so far.
+     */
+    private long getRange(FileChannel fileChannel, String remotePath,
+            long offset, long length) throws IOException {
+        SocketChannel socket = connect();
+        long received = 0;
+        try {
+            DataOutputStream out = new DataOutputStream(Channels
+                    .newOutputStream(socket));
+            out.writeByte(FileStreamServer.GET);
+            out.writeUTF(remotePath);
+            out.writeLong(offset);
+            out.writeLong(length);
+            out.flush();
+
+            long available = new DataInputStream(Channels
+                    .newInputStream(socket)).readLong();
+            if (available < 0) {
+                throw new FileNotFoundException("No file: [" + remotePath
+                        + "] on file stream server: [" + address + "]");
+            }
+            while (received < available) {
+                long n = fileChannel.transferFrom(socket, offset + received,
+                        Math.min(windowSize, available - received));
+                if (n <= 0) {
+                    break;
+                }
+                received += n;
+            }
+            return received;
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            if (received == 0) {
+                throw e;
+            }
+            LOG.log(Level.WARNING, "Error retrieving [" + remotePath
+                    + "] at offset [" + (offset + received) + "]: Message: "
+                    + e.getMessage());
+            return received;
+        } finally {
+            socket.close();
+        }
+    }
+
+    private SocketChannel connect() throws IOException {
+        SocketChannel socket = SocketChannel.open(address);
+        socket.socket().setTcpNoDelay(true);
+        return socket;
+    }
+
+}
@@ -0,0 +1,462 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.datatransfer;
+
+//JDK imports
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//OODT imports
+import org.apache.oodt.cas.filemgr.structs.ProductType;
+import org.apache.oodt.cas.filemgr.versioning.VersioningUtils;
+
+/**
+ * <p>
+ * A plain socket endpoint, run alongside the File Manager's RPC server, that
+ * streams file data straight between the socket and the file system with
+ * {@link FileChannel#transferFrom(java.nio.channels.ReadableByteChannel, long, long)}
+ * and {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ * rather than shipping it as <code>byte[]</code> chunks over RPC. Each
+ * connection carries a single request for a range of one file, so a client can
+ * move a file as several ranges in parallel. See {@link FileStreamClient}.
+ * </p>
+ *
+ * <p>
+ * Every request starts with an opcode and the absolute path of the file:
+ * <ul>
+ * <li>{@link #SIZE}: replies with the length of the file, or -1 if it does not
+ * exist.</li>
+ * <li>{@link #CREATE} <code>length</code>: creates the file (and its parent
+ * directories) or truncates an existing one, sets its length and replies with
+ * it.</li>
+ * <li>{@link #PUT} <code>offset length window</code>: the client then sends
+ * <code>length</code> bytes, which are written to the file starting at
+ * <code>offset</code>. After every <code>window</code> bytes (and at the end)
+ * the server replies with the number of bytes of the request it has written so
+ * far, so that a client whose connection drops can resume from there. A
+ * negative <code>offset</code>, or a <code>length</code> or
+ * <code>window</code> that is not positive, is refused with a reply of -1.</li>
+ * <li>{@link #GET} <code>offset length</code>: the server replies with the
+ * number of bytes it is about to send (-1 if the file does not exist, or the
+ * range is negative) and then sends them.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * The server does not authenticate its clients, so it only serves files under
+ * the directories it is given (by default, the repositories of the File
+ * Manager's product types), and only listens on the address it is given (by
+ * default, the host of the File Manager's URL, which is the one its clients
+ * connect to, rather than every interface). Requests
+ * for any other file are refused by closing the connection.
+ * </p>
+ *
+ */
+public class FileStreamServer {
+
+    /* request opcodes */
+    static final byte SIZE = 1;
+
+    static final byte PUT = 2;
+
+    static final byte GET = 3;
+
+    static final byte CREATE = 4;
+
+    /* the default number of requests served at once */
+    static final int DEFAULT_NUM_THREADS = 16;
+
+    /* our log stream */
+    private static final Logger LOG = Logger.getLogger(FileStreamServer.class
+            .getName());
+
+    /* the address to listen on */
+    private String host;
+
+    /* the port to listen on */
+    private int port;
+
+    /* the canonical directories whose files may be streamed */
+    private List<File> roots;
+
+    /* the most requests served at once */
+    private int numThreads;
+
+    /* our server socket */
+    private ServerSocketChannel serverChannel = null;
+
+    /* the threads serving requests */
+    private ThreadPoolExecutor workers = null;
+
+    /* the thread accepting connections */
+    private Thread acceptor = null;
+
+    /**
+     * @param host
+     *            The address to listen on.
+     * @param port
+     *            The port to listen on, or 0 for any free port.
+     * @param roots
+     *            The directories whose files may be streamed.
+     * @param numThreads
+     *            The most requests to serve at once. As many more connections
+     *            are queued, and any beyond that are closed.
+     * @throws IOException
+     *             If a root directory cannot be resolved.
+     */
+    public FileStreamServer(String host, int port, List<File> roots,
+            int numThreads) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.roots = new ArrayList<File>(roots.size());
+        for (File root : roots) {
+            this.roots.add(root.getCanonicalFile());
+        }
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Creates a server configured by the
+     * <code>org.apache.oodt.cas.filemgr.datatransfer.remote.stream*</code>
+     * system properties. Unless <code>streamHost</code> is set, the server
+     * listens on the host of the <code>org.apache.oodt.cas.filemgr.url</code>,
+     * since that is the host clients connect to. Unless
+     * <code>streamRoots</code> is set, the files that may be streamed are
+     * those in the repositories of the given product types.
+     *
+     * @param port
+     *            The port to listen on.
+     * @param productTypes
+     *            The File Manager's product types.
+     * @return The server, not yet started.
+     * @throws IOException
+     *             If the host is not configured, or a root directory cannot
+     *             be resolved.
+     */
+    public static FileStreamServer fromSystemProperties(int port,
+            List<ProductType> productTypes) throws IOException {
+        String host = System
+                .getProperty("org.apache.oodt.cas.filemgr.datatransfer.remote.streamHost");
+        if (host == null || host.trim().length() == 0) {
+            String fileManagerUrl = System
+                    .getProperty("org.apache.oodt.cas.filemgr.url");
+            if (fileManagerUrl == null) {
+                throw new IOException(
+                        "Don't know which address to stream files on: set "
+                                + "org.apache.oodt.cas.filemgr.datatransfer.remote.streamHost "
+                                + "or org.apache.oodt.cas.filemgr.url");
+            }
+            host = new URL(fileManagerUrl).getHost();
+        }
+        int numThreads = Integer.getInteger(
+                "org.apache.oodt.cas.filemgr.datatransfer.remote.streamThreads",
+                DEFAULT_NUM_THREADS);
+
+        List<File> roots = new ArrayList<File>();
+        String rootList = System
+                .getProperty("org.apache.oodt.cas.filemgr.datatransfer.remote.streamRoots");
+        if (rootList != null && rootList.trim().length() > 0) {
+            for (String root : rootList.split(",")) {
+                if (root.trim().length() > 0) {
+                    roots.add(new File(root.trim()));
+                }
+            }
+        } else if (productTypes != null) {
+            for (ProductType type : productTypes) {
+                String repository = type.getProductRepositoryPath();
+                if (repository == null) {
+                    continue;
+                }
+                try {
+                    String path = VersioningUtils
+                            .getAbsolutePathFromUri(repository);
+                    if (path != null) {
+                        roots.add(new File(path));
+                    }
+                } catch (IllegalArgumentException e) {
+                    LOG.log(Level.WARNING, "Not streaming files in repository: ["
+                            + repository + "] of product type: ["
+                            + type.getName() + "]: Message: " + e.getMessage());
+                }
+            }
+        }
+        if (roots.isEmpty()) {
+            LOG.log(Level.WARNING,
+                    "No directories to stream files from: all requests will be refused");
+        }
+
+        return new FileStreamServer(host, port, roots, numThreads);
+    }
+
+    /**
+     * Binds the server socket and starts accepting connections.
+     *
+     * @throws IOException
+     *             If the server socket cannot be bound.
+     */
+    public synchronized void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress(host, port));
+        port = serverChannel.socket().getLocalPort();
+
+        workers = new ThreadPoolExecutor(numThreads, numThreads, 60L,
+                TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(numThreads),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "FileStreamServer-" + port);
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        workers.allowCoreThreadTimeOut(true);
+        acceptor = new Thread(new Runnable() {
+            public void run() {
+                acceptConnections();
+            }
+        }, "FileStreamServer-" + port + "-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        LOG.log(Level.INFO, "File stream server listening on: [" + host + ":"
+                + port + "]: serving files under: " + roots);
+    }
+
+    /**
+     * Stops accepting connections and aborts any transfers in progress.
+     */
+    public synchronized void shutdown() {
+        if (serverChannel != null) {
+            try {
+                serverChannel.close();
+            } catch (IOException ignore) {
+            }
+            serverChannel = null;
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+    }
+
+    /**
+     * @return The port the server is listening on.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    private void acceptConnections() {
+        ServerSocketChannel channel = serverChannel;
+        ThreadPoolExecutor executor = workers;
+        while (channel != null && channel.isOpen()) {
+            SocketChannel accepted = null;
+            try {
+                accepted = channel.accept();
+                final SocketChannel socket = accepted;
+                executor.execute(new Runnable() {
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            } catch (IOException e) {
+                if (channel.isOpen()) {
+                    LOG.log(Level.WARNING,
+                            "Error accepting file stream connection: Message: "
+                                    + e.getMessage());
+                }
+            } catch (RejectedExecutionException e) {
+                if (executor.isShutdown()) {
+                    return;
+                }
+                LOG.log(Level.WARNING,
+                        "Too many file stream requests: refusing connection from: ["
+                                + accepted.socket().getRemoteSocketAddress() + "]");
+                try {
+                    accepted.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    private void handle(SocketChannel socket) {
+        String path = null;
+        try {
+            socket.socket().setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(Channels
+                    .newInputStream(socket));
+            DataOutputStream out = new DataOutputStream(Channels
+                    .newOutputStream(socket));
+
+            byte op = in.readByte();
+            path = in.readUTF();
+            if (!isServed(path)) {
+                LOG.log(Level.WARNING, "Refusing file stream request for file: ["
+                        + path + "] from: ["
+                        + socket.socket().getRemoteSocketAddress()
+                        + "]: not under " + roots);
+                return;
+            }
+            if (op == SIZE) {
+                File file = new File(path);
+                out.writeLong(file.exists() ? file.length() : -1L);
+            } else if (op == CREATE) {
+                out.writeLong(create(path, in.readLong()));
+            } else if (op == PUT) {
+                put(socket, in, out, path);
+            } else if (op == GET) {
+                get(socket, in, out, path);
+            } else {
+                LOG.log(Level.WARNING, "Unknown file stream request: [" + op
+                        + "] for file: [" + path + "]");
+            }
+            out.flush();
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error streaming file: [" + path
+                    + "]: Message: " + e.getMessage());
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * @return Whether the file, once symbolic links and <code>..</code> are
+     *         resolved, is under one of our roots.
+     */
+    private boolean isServed(String path) throws IOException {
+        File file = new File(path);
+        if (!file.isAbsolute()) {
+            return false;
+        }
+        String canonicalPath = file.getCanonicalPath();
+        for (File root : roots) {
+            String rootPath = root.getPath();
+            if (canonicalPath.equals(rootPath)
+                    || canonicalPath.startsWith(rootPath.endsWith(File.separator) ? rootPath
+                            : rootPath + File.separator)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long create(String path, long length) throws IOException {
+        File file = new File(path);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()
+                && !parent.exists()) {
+            throw new IOException("Unable to create directory: [" + parent
+                    + "]");
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+            return raf.length();
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void put(SocketChannel socket, DataInputStream in,
+            DataOutputStream out, String path) throws IOException {
+        long offset = in.readLong();
+        long length = in.readLong();
+        long window = in.readLong();
+        if (offset < 0 || length <= 0 || window <= 0
+                || offset > Long.MAX_VALUE - length) {
+            LOG.log(Level.WARNING, "Refusing file stream request for file: ["
+                    + path + "]: bad range: offset: [" + offset
+                    + "]: length: [" + length + "]: window: [" + window + "]");
+            out.writeLong(-1L);
+            return;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(new File(path), "rw");
+        try {
+            FileChannel fileChannel = raf.getChannel();
+            long written = 0;
+            while (written < length) {
+                long windowEnd = Math.min(length, written + window);
+                while (written < windowEnd) {
+                    long n = fileChannel.transferFrom(socket, offset + written,
+                            windowEnd - written);
+                    if (n <= 0) {
+                        throw new EOFException("Connection closed after "
+                                + written + " of " + length + " bytes");
+                    }
+                    written += n;
+                }
+                out.writeLong(written);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void get(SocketChannel socket, DataInputStream in,
+            DataOutputStream out, String path) throws IOException {
+        long offset = in.readLong();
+        long length = in.readLong();
+
+        File file = new File(path);
+        if (offset < 0 || length < 0 || !file.isFile()) {
+            out.writeLong(-1L);
+            return;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel fileChannel = raf.getChannel();
+            long available = Math.max(0L, Math.min(length, fileChannel.size()
+                    - offset));
+            out.writeLong(available);
+            long sent = 0;
+            while (sent < available) {
+                sent += fileChannel.transferTo(offset + sent, available - sent,
+                        socket);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+}
@@ -17,6 +17,10 @@
 
 package org.apache.oodt.cas.filemgr.datatransfer;
 
+//JDK imports
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 /**
  * @author mattmann
  * @version $Revision$
@@ -26,18 +30,35 @@ package org.apache.oodt.cas.filemgr.datatransfer;
  */
 public class LocalDataTransferFactory implements DataTransferFactory {
 
+    /* the number of files of a product to copy at once */
+    private int numThreads = 1;
+
+    /* whether ingested files are moved rather than copied */
+    private boolean moveFiles = false;
+
+    /* our log stream */
+    private static final Logger LOG = Logger
+            .getLogger(LocalDataTransferFactory.class.getName());
+
     /**
      * <p>Default Constructor</p>
      */
     public LocalDataTransferFactory() {
         super();
+        numThreads = Integer.getInteger(
+            "org.apache.oodt.cas.filemgr.datatransfer.local.numThreads", 4);
+        moveFiles = Boolean.getBoolean(
+            "org.apache.oodt.cas.filemgr.datatransfer.local.moveFiles");
+
+        LOG.log(Level.FINE, "LocalDataTransfer: copying [" + numThreads
+                + "] files at once: move files: [" + moveFiles + "]");
     }
 
     /* (non-Javadoc)
      * @see org.apache.oodt.cas.datatransfer.DataTransferFactory#createDataTransfer()
      */
     public DataTransfer createDataTransfer() {
-        return new LocalDataTransferer();
+        return new LocalDataTransferer(numThreads, moveFiles);
     }
 
 }
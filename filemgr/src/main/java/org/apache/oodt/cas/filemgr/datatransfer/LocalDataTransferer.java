@@ -31,13 +31,25 @@ import org.apache.tika.mime.MimeTypes;
 import org.apache.tika.mime.MimeTypesFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -54,6 +66,17 @@ import java.util.logging.Logger;
  *          products that are available via URIs on the same machine, through an
  *          NFS mounted disk, or via the locally mounted file repository.
  *          </p>
+ *
+ *          <p>
+ *          The files of a product are copied in parallel on a pool of up to
+ *          <code>numThreads</code> threads. Files are copied with
+ *          {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ *          in bounded chunks, so the growing destination file reflects the
+ *          transfer progress reported by the {@link TransferStatusTracker}.
+ *          When <code>moveFiles</code> is set, ingested files are instead
+ *          renamed into the repository when it is on the same file system,
+ *          and copied and then removed otherwise.
+ *          </p>
  * 
  */
 public class LocalDataTransferer implements DataTransfer {
@@ -62,9 +85,21 @@ public class LocalDataTransferer implements DataTransfer {
    private static final Logger LOG = Logger.getLogger(LocalDataTransferer.class
          .getName());
 
+   /* the most bytes copied per transferTo call */
+   private static final long COPY_CHUNK_SIZE = 8L * 1024 * 1024;
+
    /* file manager client */
    private FileManagerClient client = null;
 
+   /* the number of files copied at once */
+   private int numThreads = 1;
+
+   /* whether ingested files are moved rather than copied */
+   private boolean moveFiles = false;
+
+   /* copies files in parallel, created on first use */
+   private ExecutorService copyPool = null;
+
    /**
     * <p>
     * Default Constructor
@@ -73,6 +108,18 @@ public class LocalDataTransferer implements DataTransfer {
    public LocalDataTransferer() {
    }
 
+   /**
+    * @param numThreads
+    *           The number of files of a product to copy at once.
+    * @param moveFiles
+    *           Whether to move ingested files into the repository rather than
+    *           copy them.
+    */
+   public LocalDataTransferer(int numThreads, boolean moveFiles) {
+      this.numThreads = Math.max(1, numThreads);
+      this.moveFiles = moveFiles;
+   }
+
    /*
     * (non-Javadoc)
     * 
@@ -286,11 +333,12 @@ public class LocalDataTransferer implements DataTransfer {
                   + dirRef.getDataStoreReference() + " into directory "
                   + directory.getAbsolutePath());
 
+     List<Callable<Void>> copies = new Vector<Callable<Void>>();
      for (Reference r : product.getProductReferences()) {
        File fileRef = new File(new URI(r.getDataStoreReference()));
 
        if (fileRef.isFile()) {
-         copyFile(r, directory);
+         copies.add(copyFileTask(r, directory));
        } else if (fileRef.isDirectory()
                   && (fileRef.list() != null && fileRef.list().length == 0)) {
          // if it's a directory and it doesn't exist yet, we should
@@ -313,6 +361,7 @@ public class LocalDataTransferer implements DataTransfer {
          }
        }
      }
+     runAll(copies);
    }
 
    private void moveDirToProductRepo(Product product) throws IOException,
@@ -327,11 +376,12 @@ public class LocalDataTransferer implements DataTransfer {
       // notify the file manager that we started
       quietNotifyTransferProduct(product);
 
+     List<Callable<Void>> moves = new Vector<Callable<Void>>();
      for (Reference r : product.getProductReferences()) {
        File fileRef = new File(new URI(r.getOrigReference()));
 
        if (fileRef.isFile()) {
-         moveFile(r, false);
+         moves.add(moveFileTask(r, false));
        } else if (fileRef.isDirectory()
                   && (fileRef.list() != null && fileRef.list().length == 0)) {
          // if it's a directory and it doesn't exist yet, we should
@@ -352,6 +402,7 @@ public class LocalDataTransferer implements DataTransfer {
          }
        }
      }
+     runAll(moves);
 
       // notify the file manager that we're done
       quietNotifyProductTransferComplete(product);
@@ -365,9 +416,11 @@ public class LocalDataTransferer implements DataTransfer {
       // notify the file manager that we started
       quietNotifyTransferProduct(product);
 
+     List<Callable<Void>> moves = new Vector<Callable<Void>>();
      for (Reference r : refs) {
-       moveFile(r, true);
+       moves.add(moveFileTask(r, true));
      }
+     runAll(moves);
 
       // notify the file manager that we're done
       quietNotifyProductTransferComplete(product);
@@ -376,9 +429,29 @@ public class LocalDataTransferer implements DataTransfer {
    private void copyFilesToDir(Product product, File directory)
          throws IOException, URISyntaxException {
       List<Reference> refs = product.getProductReferences();
+     List<Callable<Void>> copies = new Vector<Callable<Void>>();
      for (Reference r : refs) {
-       copyFile(r, directory);
+       copies.add(copyFileTask(r, directory));
      }
+     runAll(copies);
+   }
+
+   private Callable<Void> moveFileTask(final Reference r, final boolean log) {
+      return new Callable<Void>() {
+         public Void call() throws IOException, URISyntaxException {
+            moveFile(r, log);
+            return null;
+         }
+      };
+   }
+
+   private Callable<Void> copyFileTask(final Reference r, final File directory) {
+      return new Callable<Void>() {
+         public Void call() throws IOException, URISyntaxException {
+            copyFile(r, directory);
+            return null;
+         }
+      };
    }
 
    private void moveFile(Reference r, boolean log) throws IOException,
@@ -391,7 +464,7 @@ public class LocalDataTransferer implements DataTransfer {
       File srcFileRef = new File(new URI(r.getOrigReference()));
       File destFileRef = new File(new URI(r.getDataStoreReference()));
 
-      FileUtils.copyFile(srcFileRef, destFileRef);
+      transferFile(srcFileRef, destFileRef, moveFiles);
    }
 
    private void copyFile(Reference r, File directory) throws IOException,
@@ -401,7 +474,137 @@ public class LocalDataTransferer implements DataTransfer {
             "LocalDataTransfer: Copying File: " + r.getDataStoreReference()
                   + " to file:" + directory.getAbsolutePath() + "/"
                   + srcFileRef.getName());
-      FileUtils.copyFile(srcFileRef, new File(directory, srcFileRef.getName()));
+      transferFile(srcFileRef, new File(directory, srcFileRef.getName()),
+            false);
+   }
+
+   /*
+    * Runs the given copies on the copy pool and waits for all of them,
+    * rethrowing the first failure.
+    */
+   private void runAll(List<Callable<Void>> tasks) throws IOException,
+         URISyntaxException {
+      if (numThreads <= 1 || tasks.size() <= 1) {
+         for (Callable<Void> task : tasks) {
+            try {
+               task.call();
+            } catch (IOException e) {
+               throw e;
+            } catch (URISyntaxException e) {
+               throw e;
+            } catch (Exception e) {
+               throw new IOException(e);
+            }
+         }
+         return;
+      }
+
+      List<Future<Void>> futures = new Vector<Future<Void>>(tasks.size());
+      ExecutorService pool = getCopyPool();
+      for (Callable<Void> task : tasks) {
+         futures.add(pool.submit(task));
+      }
+      Throwable failure = null;
+      for (Future<Void> future : futures) {
+         try {
+            future.get();
+         } catch (ExecutionException e) {
+            if (failure == null) {
+               failure = e.getCause();
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Future<Void> f : futures) {
+               f.cancel(true);
+            }
+            throw new IOException("Interrupted while transferring files", e);
+         }
+      }
+      if (failure instanceof IOException) {
+         throw (IOException) failure;
+      } else if (failure instanceof URISyntaxException) {
+         throw (URISyntaxException) failure;
+      } else if (failure != null) {
+         throw new IOException(failure);
+      }
+   }
+
+   private synchronized ExecutorService getCopyPool() {
+      if (copyPool == null) {
+         copyPool = Executors.newFixedThreadPool(numThreads,
+               new ThreadFactory() {
+                  public Thread newThread(Runnable r) {
+                     Thread t = new Thread(r, "LocalDataTransferer");
+                     t.setDaemon(true);
+                     return t;
+                  }
+               });
+      }
+      return copyPool;
+   }
+
+   /*
+    * Moves or copies src to dest.
+    */
+   private void transferFile(File src, File dest, boolean move)
+         throws IOException {
+      File parent = dest.getAbsoluteFile().getParentFile();
+      if (parent != null && !parent.isDirectory() && !parent.mkdirs()
+            && !parent.isDirectory()) {
+         throw new IOException("Unable to create directory: [" + parent + "]");
+      }
+
+      if (move) {
+         try {
+            Files.move(src.toPath(), dest.toPath(),
+                  StandardCopyOption.ATOMIC_MOVE);
+            return;
+         } catch (AtomicMoveNotSupportedException e) {
+            LOG.log(Level.FINE, "Cannot rename [" + src + "] to [" + dest
+                  + "]: copying it instead");
+         }
+      }
+
+      copyFile(src, dest);
+      if (move && !src.delete()) {
+         LOG.log(Level.WARNING, "Unable to remove [" + src
+               + "] after copying it to [" + dest + "]");
+      }
+   }
+
+   private void copyFile(File src, File dest) throws IOException {
+      if (src.getCanonicalPath().equals(dest.getCanonicalPath())) {
+         throw new IOException("Source [" + src + "] and destination [" + dest
+               + "] are the same");
+      }
+
+      FileInputStream in = new FileInputStream(src);
+      try {
+         FileOutputStream out = new FileOutputStream(dest);
+         try {
+            FileChannel inChannel = in.getChannel();
+            FileChannel outChannel = out.getChannel();
+            long size = inChannel.size();
+            long pos = 0;
+            while (pos < size) {
+               pos += inChannel.transferTo(pos, Math.min(COPY_CHUNK_SIZE,
+                     size - pos), outChannel);
+            }
+            if (outChannel.size() != size) {
+               throw new IOException("Failed to copy full contents from ["
+                     + src + "] to [" + dest + "]");
+            }
+         } finally {
+            out.close();
+         }
+      } finally {
+         in.close();
+      }
+
+      if (!dest.setLastModified(src.lastModified())) {
+         LOG.log(Level.FINE, "Unable to preserve last modified time of ["
+               + dest + "]");
+      }
    }
 
    private void quietNotifyTransferProduct(Product p) {
@@ -443,5 +646,10 @@ public class LocalDataTransferer implements DataTransfer {
         if (client != null) {
             client.close();
         }
+        synchronized (this) {
+            if (copyPool != null) {
+                copyPool.shutdown();
+            }
+        }
     }
 }
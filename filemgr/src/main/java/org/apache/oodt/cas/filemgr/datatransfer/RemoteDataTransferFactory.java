@@ -35,6 +35,18 @@ public class RemoteDataTransferFactory implements DataTransferFactory {
     /* the chunk size for sending files remotely */
     private int chunkSize = 0;
 
+    /* the port of the file manager's file stream server, -1 if not streaming */
+    private int streamPort = -1;
+
+    /* the number of bytes streamed between acknowledgements */
+    private long streamWindowSize = 0L;
+
+    /* the number of parallel streams to use per file */
+    private int numStreams = 0;
+
+    /* the number of times to resume a failed stream */
+    private int streamRetries = 0;
+
     /* our log stream */
     private static final Logger LOG = Logger
             .getLogger(RemoteDataTransferFactory.class.getName());
@@ -47,8 +59,23 @@ public class RemoteDataTransferFactory implements DataTransferFactory {
             "org.apache.oodt.cas.filemgr.datatransfer.remote.chunkSize",
             1024);
 
+        streamPort = Integer.getInteger(
+            "org.apache.oodt.cas.filemgr.datatransfer.remote.streamPort", -1);
+        streamWindowSize = Long.getLong(
+            "org.apache.oodt.cas.filemgr.datatransfer.remote.streamWindowSize",
+            8L * 1024 * 1024);
+        numStreams = Integer.getInteger(
+            "org.apache.oodt.cas.filemgr.datatransfer.remote.numStreams", 4);
+        streamRetries = Integer.getInteger(
+            "org.apache.oodt.cas.filemgr.datatransfer.remote.streamRetries", 3);
+
         LOG.log(Level.INFO, "RemoteDataTransfer enabled: using chunk size: ["
                 + chunkSize + "]");
+        if (streamPort > 0) {
+            LOG.log(Level.INFO, "RemoteDataTransfer streaming on port: ["
+                    + streamPort + "]: window size: [" + streamWindowSize
+                    + "]: streams per file: [" + numStreams + "]");
+        }
     }
 
     /*
@@ -57,6 +84,10 @@ public class RemoteDataTransferFactory implements DataTransferFactory {
      * @see org.apache.oodt.cas.filemgr.datatransfer.DataTransferFactory#createDataTransfer()
      */
     public DataTransfer createDataTransfer() {
+        if (streamPort > 0) {
+            return new RemoteDataTransferer(chunkSize, streamPort,
+                    streamWindowSize, numStreams, streamRetries);
+        }
         return new RemoteDataTransferer(chunkSize);
     }
 
@@ -66,6 +66,24 @@ public class RemoteDataTransferer implements DataTransfer {
    /* our file manager client */
    private FileManagerClient client = null;
 
+   /*
+    * the port of the file manager's file stream server, or -1 to send files
+    * in chunks over RPC
+    */
+   private int streamPort = -1;
+
+   /* the number of bytes streamed between acknowledgements */
+   private long streamWindowSize = 0L;
+
+   /* the number of parallel streams to use per file */
+   private int numStreams = 1;
+
+   /* the number of times to resume a failed stream */
+   private int streamRetries = 0;
+
+   /* our file stream client, if streaming is enabled */
+   private FileStreamClient streamClient = null;
+
    /* our log stream */
    private static final Logger LOG = Logger
          .getLogger(RemoteDataTransferer.class.getName());
@@ -77,6 +95,31 @@ public class RemoteDataTransferer implements DataTransfer {
       this.chunkSize = chunkSz;
    }
 
+   /**
+    * Creates a RemoteDataTransferer that streams files to and from the
+    * {@link FileStreamServer} running alongside the file manager, instead of
+    * sending them in chunks over RPC.
+    * 
+    * @param chunkSz
+    *           The chunk size used for RPC calls.
+    * @param streamPort
+    *           The port of the file manager's {@link FileStreamServer}.
+    * @param streamWindowSize
+    *           The number of bytes streamed between acknowledgements.
+    * @param numStreams
+    *           The number of parallel streams to use per file.
+    * @param streamRetries
+    *           The number of times to resume a failed stream.
+    */
+   public RemoteDataTransferer(int chunkSz, int streamPort,
+         long streamWindowSize, int numStreams, int streamRetries) {
+      this(chunkSz);
+      this.streamPort = streamPort;
+      this.streamWindowSize = streamWindowSize;
+      this.numStreams = numStreams;
+      this.streamRetries = streamRetries;
+   }
+
    /*
     * (non-Javadoc)
     * 
@@ -88,6 +131,12 @@ public class RemoteDataTransferer implements DataTransfer {
       try {
          client = RpcCommunicationFactory.createClient(url);
          this.fileManagerUrl = url;
+         if (streamPort > 0) {
+            streamClient = new FileStreamClient(url.getHost(), streamPort,
+                  streamWindowSize, numStreams, streamRetries);
+            LOG.log(Level.INFO, "Streaming files via: [" + url.getHost() + ":"
+                  + streamPort + "]");
+         }
          LOG.log(Level.INFO, "Remote Data Transfer to: ["
                + client.getFileManagerUrl().toString() + "] enabled");
       } catch (ConnectionException e) {
@@ -166,12 +215,16 @@ public class RemoteDataTransferer implements DataTransfer {
             File dataStoreFile = new File(new URI(
                   reference.getDataStoreReference()));
             File dest = new File(directory, dataStoreFile.getName());
-            fOut = new FileOutputStream(dest, false);
             LOG.log(
                   Level.INFO,
                   "RemoteDataTransfer: Copying File: " + "fmp:"
                         + dataStoreFile.getAbsolutePath() + " to " + "file:"
                         + dest.getAbsolutePath());
+            if (streamClient != null) {
+               streamClient.get(dataStoreFile.getAbsolutePath(), dest);
+               continue;
+            }
+            fOut = new FileOutputStream(dest, false);
             byte[] fileData;
             int offset = 0;
             while (true) {
@@ -190,7 +243,9 @@ public class RemoteDataTransferer implements DataTransfer {
             throw new DataTransferException("", e);
          } finally {
             try {
-               fOut.close();
+               if (fOut != null) {
+                  fOut.close();
+               }
             } catch (Exception ignored) {
             }
          }
@@ -216,6 +271,16 @@ public class RemoteDataTransferer implements DataTransfer {
       String origFilePath = origFile.getAbsolutePath();
       String destFilePath = destFile.getAbsolutePath();
 
+      if (streamClient != null) {
+         try {
+            streamClient.put(origFile, destFilePath);
+         } catch (IOException e) {
+            LOG.log(Level.WARNING, "Error streaming file: [" + origFilePath
+                  + "] to [" + destFilePath + "]: Message: " + e.getMessage());
+         }
+         return;
+      }
+
       // read the file in chunk by chunk
 
       byte[] buf = new byte[chunkSize];
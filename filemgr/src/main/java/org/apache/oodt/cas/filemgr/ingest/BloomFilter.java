@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.ingest;
+
+//JDK imports
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * @version $Revision$
+ *
+ * <p>
+ * A compact, probabilistic set of Strings: {@link #mightContain(String)} never
+ * answers false for a String that was {@link #add(String)}ed, but may answer
+ * true, with about the false positive probability it was sized for, for one
+ * that wasn't. Ten million values at a 1% false positive probability take
+ * about 12 MB, a fraction of what a {@link java.util.HashSet} of them would.
+ * </p>.
+ */
+public final class BloomFilter {
+
+    private final long[] bits;
+
+    private final long numBits;
+
+    private final int numHashes;
+
+    private long count;
+
+    /**
+     * @param expectedInsertions
+     *            The number of values the filter should hold.
+     * @param falsePositiveProbability
+     *            The chance, between 0 and 1, of a false positive once that
+     *            many values have been added.
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException(
+                    "expectedInsertions must be positive");
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException(
+                    "falsePositiveProbability must be between 0 and 1");
+        }
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-expectedInsertions
+                * Math.log(falsePositiveProbability) / (ln2 * ln2));
+        this.bits = new long[(int) Math.max(1, (m + 63) / 64)];
+        this.numBits = this.bits.length * 64L;
+        this.numHashes = Math.max(1, (int) Math.round((double) m
+                / expectedInsertions * ln2));
+    }
+
+    private BloomFilter(long[] bits, int numHashes, long count) {
+        this.bits = bits;
+        this.numBits = bits.length * 64L;
+        this.numHashes = numHashes;
+        this.count = count;
+    }
+
+    /**
+     * Adds a value to the filter.
+     *
+     * @param value
+     *            The value to add.
+     */
+    public synchronized void add(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = index(h1 + i * h2);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        count++;
+    }
+
+    /**
+     * @param value
+     *            The value to look for.
+     * @return False if the value was definitely never added, true if it
+     *         probably was.
+     */
+    public synchronized boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long bit = index(h1 + i * h2);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of values added, counting repeats.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Empties the filter.
+     */
+    public synchronized void clear() {
+        Arrays.fill(bits, 0L);
+        count = 0;
+    }
+
+    /**
+     * Writes the filter out, to be read back by {@link #read(DataInput)}.
+     *
+     * @param out
+     *            Where to write the filter.
+     * @throws IOException
+     *             If the filter cannot be written.
+     */
+    public synchronized void write(DataOutput out) throws IOException {
+        out.writeInt(numHashes);
+        out.writeLong(count);
+        out.writeInt(bits.length);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads a filter written by {@link #write(DataOutput)}.
+     *
+     * @param in
+     *            Where to read the filter from.
+     * @return The filter read.
+     * @throws IOException
+     *             If the filter cannot be read.
+     */
+    public static BloomFilter read(DataInput in) throws IOException {
+        int numHashes = in.readInt();
+        long count = in.readLong();
+        int numWords = in.readInt();
+        if (numHashes <= 0 || numWords <= 0) {
+            throw new IOException("Corrupt bloom filter: [" + numHashes
+                    + "] hashes, [" + numWords + "] words");
+        }
+        long[] bits = new long[numWords];
+        for (int i = 0; i < numWords; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(bits, numHashes, count);
+    }
+
+    private long index(int combined) {
+        return (combined & 0xffffffffL) % numBits;
+    }
+
+    /* 64 bit FNV-1a over the value's chars, then murmur3's finalizer */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -0,0 +1,519 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.ingest;
+
+//OODT imports
+import org.apache.oodt.cas.filemgr.structs.Product;
+import org.apache.oodt.cas.filemgr.structs.Query;
+import org.apache.oodt.cas.filemgr.structs.RangeQueryCriteria;
+import org.apache.oodt.cas.filemgr.structs.TermQueryCriteria;
+import org.apache.oodt.cas.filemgr.structs.exceptions.CacheException;
+import org.apache.oodt.cas.filemgr.structs.exceptions.ConnectionException;
+import org.apache.oodt.cas.filemgr.system.FileManagerClient;
+import org.apache.oodt.cas.filemgr.util.RpcCommunicationFactory;
+import org.apache.oodt.cas.metadata.Metadata;
+
+//JDK imports
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * @version $Revision$
+ *
+ * <p>
+ * A {@link Cache} that, unlike the {@link LocalCache}, syncs incrementally:
+ * the first sync reads every product over the configured date range, and
+ * each one after that only reads the products received since the latest
+ * <code>rangeQueryElementName</code> value seen so far (the watermark).
+ * </p>
+ *
+ * <p>
+ * Unique values are kept in a {@link HashSet} by default. Given a number of
+ * expected values, they are kept in a {@link BloomFilter} instead, which
+ * takes a fraction of the memory; since a Bloom filter can give false
+ * positives, a value it claims to contain is confirmed against the File
+ * Manager's catalog before {@link #contains(String)} answers true. The Bloom
+ * filter, with the watermark, can also be saved to a state file after each
+ * sync and loaded on start up, so that a restart only has to sync what was
+ * received while it was down.
+ * </p>.
+ */
+public class IncrementalCache implements Cache {
+
+    private static final Logger LOG = Logger.getLogger(IncrementalCache.class
+            .getName());
+
+    private static final int STATE_FILE_VERSION = 1;
+
+    private String uniqueElementName;
+
+    private List<String> uniqueElementProductTypeNames;
+
+    private String rangeQueryElementName;
+
+    private String startOfQuery;
+
+    private String endOfQuery;
+
+    private FileManagerClient fm;
+
+    private URL fmUrl;
+
+    /* exactly one of these is used */
+    private HashSet<String> uniqueElements;
+
+    private BloomFilter filter;
+
+    private File stateFile;
+
+    /* what the cached values were synced with, or null before any sync */
+    private String syncedElementName;
+
+    private HashSet<String> syncedProductTypeNames;
+
+    /* the latest range query element value synced */
+    private String watermark;
+
+    /**
+     * Constructs a new IncrementalCache that keeps unique values in a
+     * {@link HashSet}.
+     *
+     * @param fmUrl
+     * @param uniqueElementName
+     * @param uniqueElementProductTypes
+     * @param rangeQueryElementName
+     * @param startOfQuery
+     * @param endOfQuery
+     */
+    public IncrementalCache(URL fmUrl, String uniqueElementName,
+            List<String> uniqueElementProductTypes,
+            String rangeQueryElementName, String startOfQuery, String endOfQuery) {
+        this(fmUrl, uniqueElementName, uniqueElementProductTypes,
+                rangeQueryElementName, startOfQuery, endOfQuery, 0, 0, null);
+    }
+
+    /**
+     * Constructs a new IncrementalCache.
+     *
+     * @param fmUrl
+     * @param uniqueElementName
+     * @param uniqueElementProductTypes
+     * @param rangeQueryElementName
+     * @param startOfQuery
+     * @param endOfQuery
+     * @param expectedInsertions
+     *            The number of unique values to size a {@link BloomFilter}
+     *            for, or zero to keep them in a {@link HashSet}.
+     * @param falsePositiveProbability
+     *            The false positive probability of the {@link BloomFilter}.
+     * @param stateFile
+     *            The file to save the {@link BloomFilter} and watermark to,
+     *            and to load them from if it exists, or null.
+     */
+    public IncrementalCache(URL fmUrl, String uniqueElementName,
+            List<String> uniqueElementProductTypes,
+            String rangeQueryElementName, String startOfQuery,
+            String endOfQuery, long expectedInsertions,
+            double falsePositiveProbability, File stateFile) {
+        this.uniqueElementName = uniqueElementName;
+        this.uniqueElementProductTypeNames = uniqueElementProductTypes;
+        this.rangeQueryElementName = rangeQueryElementName;
+        this.startOfQuery = startOfQuery;
+        this.endOfQuery = endOfQuery;
+        if (expectedInsertions > 0) {
+            this.filter = new BloomFilter(expectedInsertions,
+                    falsePositiveProbability);
+            this.stateFile = stateFile;
+        } else {
+            this.uniqueElements = new HashSet<String>();
+        }
+        setFileManager(fmUrl);
+        if (this.stateFile != null && this.stateFile.exists()) {
+            loadState();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.ingest.Cache#sync(java.util.List)
+     */
+    public void sync(List<String> uniqueElementProductTypeNames)
+            throws CacheException {
+        sync(DEFAULT_UNIQUE_MET_KEY, uniqueElementProductTypeNames);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.ingest.Cache#sync(java.lang.String,
+     *      java.util.List)
+     */
+    public synchronized void sync(String uniqueElementName,
+            List<String> uniqueElementProductTypeNames) throws CacheException {
+        if (this.rangeQueryElementName == null) {
+            throw new CacheException(
+                    "rangeQueryElementName must be defined in order to sync incrementally!");
+        }
+        this.uniqueElementName = uniqueElementName;
+        this.uniqueElementProductTypeNames = uniqueElementProductTypeNames;
+
+        HashSet<String> productTypeNames = new HashSet<String>(
+                uniqueElementProductTypeNames);
+        if (!uniqueElementName.equals(syncedElementName)
+                || !productTypeNames.equals(syncedProductTypeNames)) {
+            // what's cached no longer answers the question being asked
+            clear();
+        }
+
+        String start = watermark != null ? watermark : startOfQuery;
+        String latest = watermark;
+        int added = 0;
+        Query query = new Query();
+        query.addCriterion(new RangeQueryCriteria(rangeQueryElementName,
+                start, endOfQuery));
+        for (String productType : uniqueElementProductTypeNames) {
+            for (Product product : getProducts(query, productType)) {
+                Metadata metadata = getMetadata(product);
+                String value = metadata.getMetadata(uniqueElementName);
+                if (value != null && add(value)) {
+                    added++;
+                }
+                String received = metadata.getMetadata(rangeQueryElementName);
+                if (received != null
+                        && (latest == null || received.compareTo(latest) > 0)) {
+                    latest = received;
+                }
+            }
+        }
+
+        syncedElementName = uniqueElementName;
+        syncedProductTypeNames = productTypeNames;
+        watermark = latest;
+        LOG.log(Level.FINE, "Synced [" + added + "] new values of ["
+                + uniqueElementName + "] received since [" + start
+                + "]: watermark now [" + watermark + "]");
+        saveState();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.ingest.Cache#sync()
+     */
+    public void sync() throws CacheException {
+        if (this.uniqueElementName == null
+                || (this.uniqueElementProductTypeNames == null || (this.uniqueElementProductTypeNames
+                        .size() == 0))) {
+            throw new CacheException(
+                    "Both uniqueElementName and uniqueElementProductTypeName must "
+                            + "be defined in order to use this form of the sync operation!");
+        }
+
+        sync(this.uniqueElementName, this.uniqueElementProductTypeNames);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.ingest.Cache#clear()
+     */
+    public synchronized void clear() {
+        if (filter != null) {
+            filter.clear();
+        } else {
+            uniqueElements.clear();
+        }
+        syncedElementName = null;
+        syncedProductTypeNames = null;
+        watermark = null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.ingest.Cache#size()
+     */
+    public synchronized int size() {
+        return filter != null ? (int) Math.min(filter.getCount(),
+                Integer.MAX_VALUE) : uniqueElements.size();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.ingest.Cache#contains(java.lang.String)
+     */
+    public boolean contains(String productName) {
+        String elementName;
+        List<String> productTypeNames;
+        synchronized (this) {
+            if (filter == null) {
+                return uniqueElements.contains(productName);
+            }
+            if (!filter.mightContain(productName)) {
+                return false;
+            }
+            elementName = uniqueElementName;
+            productTypeNames = uniqueElementProductTypeNames;
+        }
+
+        // could be a false positive: ask the catalog
+        try {
+            for (String productTypeName : productTypeNames) {
+                if (liveHasProduct(elementName, productName, productTypeName)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (CacheException e) {
+            LOG.log(Level.WARNING, "Unable to confirm cached value: ["
+                    + productName + "]: assuming it exists: Message: "
+                    + e.getMessage());
+            return true;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.ingest.Cache#setFileManager(java.net.URL)
+     */
+    public synchronized void setFileManager(URL fmUrl) {
+        if (this.fmUrl != null && !this.fmUrl.toString().equals(fmUrl.toString())) {
+            // values synced from another file manager say nothing about this one
+            clear();
+        }
+        this.fmUrl = fmUrl;
+        try {
+            this.fm = RpcCommunicationFactory.createClient(fmUrl);
+        } catch (ConnectionException e) {
+            LOG.log(Level.WARNING,
+                    "Exception setting file manager connection to: [" + fmUrl
+                            + "]");
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.ingest.Cache#getFileManagerUrl()
+     */
+    public URL getFileManagerUrl() {
+        return this.fm.getFileManagerUrl();
+    }
+
+    /**
+     * Performs a {@link FileManagerClient#query} check against a live File
+     * Manager, bypassing the {@link Cache}.
+     *
+     * @param uniqueElementName
+     *            The product identifier element to identify whether the product
+     *            was received yet.
+     * @param uniqueElementValue
+     *            The value of the product identifier element.
+     * @param productTypeName
+     *            The name of the ProductType of the Product that you would
+     *            like to check existence for.
+     * @return True if the given Product (identified by its
+     *         <code>uniqueElement</code>) exists, False otherwise.
+     * @throws CacheException
+     *             If any error occurs.
+     */
+    public boolean liveHasProduct(String uniqueElementName,
+            String uniqueElementValue, String productTypeName)
+            throws CacheException {
+        Query query = new Query();
+        query.addCriterion(new TermQueryCriteria(uniqueElementName,
+                uniqueElementValue));
+        try {
+            return !(fm.query(query, fm.getProductTypeByName(productTypeName))
+                    .isEmpty());
+        } catch (Exception e) {
+            throw new CacheException(
+                    "Unable to check for product reception from file manager: ["
+                            + fm.getFileManagerUrl() + "]: Message: "
+                            + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return The latest value of the range query element synced so far, or
+     *         null if nothing has been synced.
+     */
+    public synchronized String getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * @return the uniqueElementName
+     */
+    public String getUniqueElementName() {
+        return uniqueElementName;
+    }
+
+    /**
+     * @param uniqueElementName
+     *            the uniqueElementName to set
+     */
+    public void setUniqueElementName(String uniqueElementName) {
+        this.uniqueElementName = uniqueElementName;
+    }
+
+    /**
+     * @return the uniqueElementProductTypeNames
+     */
+    public List<String> getUniqueElementProductTypeNames() {
+        return uniqueElementProductTypeNames;
+    }
+
+    /**
+     * @param uniqueElementProductTypeNames
+     *            the uniqueElementProductTypeNames to set
+     */
+    public void setUniqueElementProductTypeNames(
+            List<String> uniqueElementProductTypeNames) {
+        this.uniqueElementProductTypeNames = uniqueElementProductTypeNames;
+    }
+
+    private boolean add(String value) {
+        if (filter != null) {
+            if (filter.mightContain(value)) {
+                return false;
+            }
+            filter.add(value);
+            return true;
+        }
+        return uniqueElements.add(value);
+    }
+
+    private List<Product> getProducts(Query query, String productType)
+            throws CacheException {
+        try {
+            return fm.query(query, fm.getProductTypeByName(productType));
+        } catch (Exception e) {
+            throw new CacheException("Failed to get product list for query "
+                    + query + " : " + e.getMessage(), e);
+        }
+    }
+
+    private Metadata getMetadata(Product product) throws CacheException {
+        try {
+            return fm.getMetadata(product);
+        } catch (Exception e) {
+            throw new CacheException("Failed to get metadata for product: ["
+                    + product.getProductId() + "] : " + e.getMessage(), e);
+        }
+    }
+
+    private void loadState() {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(stateFile)));
+            if (in.readInt() != STATE_FILE_VERSION) {
+                throw new IOException("unknown state file version");
+            }
+            String stateFmUrl = in.readUTF();
+            String elementName = in.readUTF();
+            String productTypeNames = in.readUTF();
+            String stateWatermark = in.readUTF();
+            BloomFilter stateFilter = BloomFilter.read(in);
+            if (!stateFmUrl.equals(fmUrl.toString())) {
+                LOG.log(Level.INFO, "Ignoring cache state file: [" + stateFile
+                        + "]: it is for file manager: [" + stateFmUrl + "]");
+                return;
+            }
+            filter = stateFilter;
+            syncedElementName = elementName;
+            syncedProductTypeNames = new HashSet<String>(
+                    Arrays.asList(productTypeNames.split(",")));
+            watermark = stateWatermark.length() > 0 ? stateWatermark : null;
+            LOG.log(Level.INFO, "Loaded [" + filter.getCount()
+                    + "] cached values synced up to [" + watermark
+                    + "] from: [" + stateFile + "]");
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to load cache state file: ["
+                    + stateFile + "]: a full sync will be done: Message: "
+                    + e.getMessage());
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    private void saveState() {
+        if (stateFile == null) {
+            return;
+        }
+        // write to a temporary file first, so a crash can't leave half a state
+        File tmpFile = new File(stateFile.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                out.writeInt(STATE_FILE_VERSION);
+                out.writeUTF(fmUrl.toString());
+                out.writeUTF(syncedElementName);
+                StringBuilder productTypeNames = new StringBuilder();
+                for (String productTypeName : syncedProductTypeNames) {
+                    if (productTypeNames.length() > 0) {
+                        productTypeNames.append(',');
+                    }
+                    productTypeNames.append(productTypeName);
+                }
+                out.writeUTF(productTypeNames.toString());
+                out.writeUTF(watermark != null ? watermark : "");
+                filter.write(out);
+            } finally {
+                out.close();
+            }
+            if (stateFile.exists() && !stateFile.delete()) {
+                throw new IOException("unable to replace: [" + stateFile + "]");
+            }
+            if (!tmpFile.renameTo(stateFile)) {
+                throw new IOException("unable to rename: [" + tmpFile + "]");
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to save cache state file: ["
+                    + stateFile + "]: Message: " + e.getMessage());
+        }
+    }
+
+    public void finalize() throws IOException {
+        if (fm != null) {
+            fm.close();
+        }
+    }
+}
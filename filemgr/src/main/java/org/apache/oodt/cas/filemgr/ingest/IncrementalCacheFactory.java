@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.ingest;
+
+//OODT imports
+import org.apache.oodt.cas.metadata.util.PathUtils;
+
+//JDK imports
+import java.io.File;
+
+/**
+ * @version $Revision$
+ * 
+ * <p>
+ * Constructs new {@link IncrementalCache}s
+ * </p>.
+ */
+public class IncrementalCacheFactory extends AbstractCacheServerFactory {
+
+    protected long expectedInsertions;
+
+    protected double falsePositiveProbability;
+
+    protected File stateFile;
+
+    public IncrementalCacheFactory() throws InstantiationException {
+        super();
+        expectedInsertions = Long.getLong(
+                "org.apache.oodt.cas.filemgr.ingest.cache.bloom.expectedInsertions", 0L);
+        try {
+            falsePositiveProbability = Double.parseDouble(System.getProperty(
+                    "org.apache.oodt.cas.filemgr.ingest.cache.bloom.falsePositiveProbability",
+                    "0.01"));
+        } catch (NumberFormatException e) {
+            throw new InstantiationException(
+                    "Invalid bloom filter false positive probability: Message: "
+                            + e.getMessage());
+        }
+        String stateFilePath = System
+                .getProperty("org.apache.oodt.cas.filemgr.ingest.cache.bloom.stateFile");
+        if (stateFilePath != null && stateFilePath.length() > 0) {
+            stateFile = new File(PathUtils.replaceEnvVariables(stateFilePath));
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.oodt.cas.filemgr.ingest.AbstractCacheServerFactory#createCache()
+     */
+    public Cache createCache() throws InstantiationException {
+        return new IncrementalCache(fmUrl, uniqueElementName,
+                productTypeNames, rangeQueryElementName, rangeStartDateTime,
+                rangeEndDateTime, expectedInsertions, falsePositiveProbability,
+                stateFile);
+    }
+
+}
@@ -39,7 +39,9 @@ import java.util.logging.Logger;
  * @author bfoster
  * @author mattmann
  * 
- * A Java RMI based interface to a backend {@link LocalCache}.
+ * A Java RMI based interface to a backend {@link LocalCache} (or any other
+ * {@link Cache}, e.g., an {@link IncrementalCache}), so that one cache can be
+ * shared by all of the crawlers ingesting into a File Manager.
  * 
  */
 public class RmiCacheServer extends UnicastRemoteObject implements RemoteableCache, Serializable{
@@ -47,7 +49,7 @@ public class RmiCacheServer extends UnicastRemoteObject implements RemoteableCac
     private static Logger LOG = Logger.getLogger(RmiCacheServer.class.getName());
     private static final long serialVersionUID = -538329403363156379L;
 
-    private LocalCache cache;
+    private Cache cache;
 
     private String uniqueElementName;
 
@@ -67,6 +69,13 @@ public class RmiCacheServer extends UnicastRemoteObject implements RemoteableCac
 
     }
 
+    public RmiCacheServer(Cache cache, String uniqueElementName,
+            List<String> productTypeNames) throws RemoteException {
+        this.cache = cache;
+        this.uniqueElementName = uniqueElementName;
+        this.uniqueElementProductTypeNames = productTypeNames;
+    }
+
     public void launchServer(int rmiPort) throws RemoteException {
         launchServer(this.cache.getFileManagerUrl(), rmiPort);
     }
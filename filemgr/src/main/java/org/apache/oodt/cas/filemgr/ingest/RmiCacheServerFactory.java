@@ -44,6 +44,12 @@ public class RmiCacheServerFactory extends AbstractCacheServerFactory{
 
     public RmiCacheServer createRemoteCache() throws InstantiationException {
         try {
+            if (Boolean
+                    .getBoolean("org.apache.oodt.cas.filemgr.ingest.cache.incremental")) {
+                return new RmiCacheServer(
+                        new IncrementalCacheFactory().createCache(),
+                        uniqueElementName, productTypeNames);
+            }
             return new RmiCacheServer(fmUrl, rangeQueryElementName,
                     rangeStartDateTime, rangeEndDateTime, uniqueElementName,
                     productTypeNames);
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.structs;
+
+/**
+ * <p>
+ * The outcome of ingesting a single {@link Product} as part of a batch
+ * ingest. A product that was ingested carries its assigned product ID; one
+ * that was not carries the reason it failed.
+ * </p>
+ *
+ */
+public class ProductIngestStatus {
+
+    /* the name of the product that was ingested */
+    private String productName = null;
+
+    /* the ID assigned to the product, if it was ingested */
+    private String productId = null;
+
+    /* whether or not the product made it into the catalog */
+    private boolean ingested = false;
+
+    /* why the product was not ingested */
+    private String message = null;
+
+    /**
+     * <p>
+     * Default Constructor
+     * </p>.
+     */
+    public ProductIngestStatus() {
+    }
+
+    /**
+     * @param productName
+     *            The name of the product.
+     * @param productId
+     *            The ID assigned to the product, or null if it was not
+     *            ingested.
+     * @param ingested
+     *            Whether or not the product was ingested.
+     * @param message
+     *            Why the product was not ingested, or null if it was.
+     */
+    public ProductIngestStatus(String productName, String productId,
+            boolean ingested, String message) {
+        this.productName = productName;
+        this.productId = productId;
+        this.ingested = ingested;
+        this.message = message;
+    }
+
+    /**
+     * @return Returns the productName.
+     */
+    public String getProductName() {
+        return productName;
+    }
+
+    /**
+     * @param productName
+     *            The productName to set.
+     */
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    /**
+     * @return Returns the productId, or null if the product was not ingested.
+     */
+    public String getProductId() {
+        return productId;
+    }
+
+    /**
+     * @param productId
+     *            The productId to set.
+     */
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+    /**
+     * @return Whether or not the product was ingested.
+     */
+    public boolean isIngested() {
+        return ingested;
+    }
+
+    /**
+     * @param ingested
+     *            Whether or not the product was ingested.
+     */
+    public void setIngested(boolean ingested) {
+        this.ingested = ingested;
+    }
+
+    /**
+     * @return Returns why the product was not ingested, or null if it was.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @param message
+     *            The message to set.
+     */
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+}
@@ -49,6 +49,9 @@ public class ProductPage {
     /* the computed number of total hits for the query */
     private long numOfHits;
 
+    /* where the last product on this page sits in the catalog's sort order */
+    private String lastSortValue = null;
+
 
     /**
      * <p>
@@ -168,6 +171,26 @@ public class ProductPage {
       this.numOfHits = numOfHits;
     }    
 
+    /**
+     * @return The position of the last product on this page in the sort
+     *         order of the catalog that produced it, or null if the catalog
+     *         does not support resuming after a page. Its format is private
+     *         to the catalog.
+     */
+    public String getLastSortValue() {
+      return lastSortValue;
+    }
+
+    /**
+     * @param lastSortValue
+     *            The position of the last product on this page in the
+     *            catalog's sort order. Catalogs use it to find the next page
+     *            without collecting every preceding result.
+     */
+    public void setLastSortValue(String lastSortValue) {
+      this.lastSortValue = lastSortValue;
+    }
+
     /**
      * 
      * @return A blank, unpopulated {@link ProductPage}.
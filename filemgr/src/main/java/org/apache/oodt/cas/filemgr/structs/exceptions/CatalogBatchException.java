@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.structs.exceptions;
+
+/**
+ * @version $Revision$
+ *
+ * <p>A {@link CatalogException} thrown by a Catalog that applies a batch one
+ * product at a time and can't undo the part of it that was applied. The
+ * first {@link #getNumCompleted()} products of the batch are in the Catalog,
+ * and the product after them is the one that failed.</p>
+ *
+ */
+public class CatalogBatchException extends CatalogException {
+
+    private static final long serialVersionUID = -2461349771042370514L;
+
+    private final int numCompleted;
+
+    public CatalogBatchException(int numCompleted, String message, Throwable t) {
+        super(message, t);
+        this.numCompleted = numCompleted;
+    }
+
+    /**
+     * @return The number of products at the head of the batch that were
+     *         applied before the failure.
+     */
+    public int getNumCompleted() {
+        return numCompleted;
+    }
+}
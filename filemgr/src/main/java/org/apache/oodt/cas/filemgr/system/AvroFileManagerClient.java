@@ -25,6 +25,7 @@ import org.apache.oodt.cas.filemgr.datatransfer.DataTransfer;
 import org.apache.oodt.cas.filemgr.structs.Element;
 import org.apache.oodt.cas.filemgr.structs.FileTransferStatus;
 import org.apache.oodt.cas.filemgr.structs.Product;
+import org.apache.oodt.cas.filemgr.structs.ProductIngestStatus;
 import org.apache.oodt.cas.filemgr.structs.ProductPage;
 import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.Query;
@@ -32,7 +33,9 @@ import org.apache.oodt.cas.filemgr.structs.Reference;
 import org.apache.oodt.cas.filemgr.structs.avrotypes.AvroElement;
 import org.apache.oodt.cas.filemgr.structs.avrotypes.AvroFileManager;
 import org.apache.oodt.cas.filemgr.structs.avrotypes.AvroFileTransferStatus;
+import org.apache.oodt.cas.filemgr.structs.avrotypes.AvroMetadata;
 import org.apache.oodt.cas.filemgr.structs.avrotypes.AvroProduct;
+import org.apache.oodt.cas.filemgr.structs.avrotypes.AvroProductIngestStatus;
 import org.apache.oodt.cas.filemgr.structs.avrotypes.AvroProductType;
 import org.apache.oodt.cas.filemgr.structs.avrotypes.AvroQueryResult;
 import org.apache.oodt.cas.filemgr.structs.avrotypes.AvroReference;
@@ -604,55 +607,8 @@ public class AvroFileManagerClient implements FileManagerClient {
                             + "Manager ingest");
                 }
 
-                if (dataTransfer == null) {
-                    logger.warn("Data transferer is null. Product: {}", product.getProductName());
-                    throw new Exception("Request to ingest product: ["
-                            + product.getProductName()
-                            + "] using client transfer, but no "
-                            + "dataTransferer specified!");
-                }
-
                 product.setProductId(productId);
-
-                if (!Boolean.getBoolean("org.apache.oodt.cas.filemgr.serverside.versioning")) {
-                    // version the product
-                    Versioner versioner = GenericFileManagerObjectFactory
-                            .getVersionerFromClassName(product.getProductType()
-                                    .getVersioner());
-                    versioner.createDataStoreReferences(product, metadata);
-
-                    // add the newly versioned references to the data store
-                    try {
-                        addProductReferences(product);
-                    } catch (CatalogException e) {
-                        logger.error("Error when adding Product references for Product [{}] to repository manager: {}",
-                                product.getProductName(), e.getMessage());
-                        throw e;
-                    }
-                } else {
-                    product.setProductReferences(getProductReferences(product));
-                }
-
-                // now transfer the product
-                try {
-                    dataTransfer.transferProduct(product);
-                    // now update the product's transfer status in the data
-                    // store
-                    product.setTransferStatus(Product.STATUS_RECEIVED);
-
-                    try {
-                        setProductTransferStatus(product);
-                    } catch (CatalogException e) {
-                        logger.error("Error when updating product transfer status for Product[{}]: {}",
-                                product.getProductName(), e.getMessage());
-                        throw e;
-                    }
-                } catch (Exception e) {
-                    logger.error("DataTransferException when transferring Product[{}]: {}",
-                            product.getProductName(), e.getMessage());
-                    throw new DataTransferException(e);
-                }
-
+                clientTransferProduct(product, metadata);
             }
             return productId;
 
@@ -673,6 +629,101 @@ public class AvroFileManagerClient implements FileManagerClient {
         }
     }
 
+    @Override
+    public List<ProductIngestStatus> ingestProducts(List<Product> products, List<Metadata> metadata,
+                                                    boolean clientTransfer) throws Exception {
+        logger.debug("Ingesting {} products", products.size());
+        List<AvroProduct> avroProducts = new ArrayList<AvroProduct>();
+        for (Product p : products) {
+            avroProducts.add(AvroTypeFactory.getAvroProduct(p));
+        }
+        List<AvroMetadata> avroMetadata = new ArrayList<AvroMetadata>();
+        for (Metadata m : metadata) {
+            avroMetadata.add(AvroTypeFactory.getAvroMetadata(m));
+        }
+
+        List<ProductIngestStatus> statuses = new ArrayList<ProductIngestStatus>();
+        for (AvroProductIngestStatus status : this.proxy.ingestProducts(avroProducts, avroMetadata, clientTransfer)) {
+            statuses.add(AvroTypeFactory.getProductIngestStatus(status));
+        }
+
+        if (clientTransfer) {
+            for (int i = 0; i < statuses.size(); i++) {
+                ProductIngestStatus status = statuses.get(i);
+                if (!status.isIngested()) {
+                    continue;
+                }
+
+                Product product = products.get(i);
+                product.setProductId(status.getProductId());
+                try {
+                    clientTransferProduct(product, metadata.get(i));
+                } catch (Exception e) {
+                    logger.error("Failed to ingest product [{}]. -- rolling back ingest", product, e);
+                    status.setIngested(false);
+                    status.setProductId(null);
+                    status.setMessage(e.getMessage());
+                    try {
+                        this.proxy.removeProduct(AvroTypeFactory.getAvroProduct(product));
+                    } catch (Exception e1) {
+                        logger.error("Failed to rollback ingest of product [{}]", product, e1);
+                    }
+                }
+            }
+        }
+
+        return statuses;
+    }
+
+    private void clientTransferProduct(Product product, Metadata metadata) throws Exception {
+        if (dataTransfer == null) {
+            logger.warn("Data transferer is null. Product: {}", product.getProductName());
+            throw new Exception("Request to ingest product: ["
+                    + product.getProductName()
+                    + "] using client transfer, but no "
+                    + "dataTransferer specified!");
+        }
+
+        if (!Boolean.getBoolean("org.apache.oodt.cas.filemgr.serverside.versioning")) {
+            // version the product
+            Versioner versioner = GenericFileManagerObjectFactory
+                    .getVersionerFromClassName(product.getProductType()
+                            .getVersioner());
+            versioner.createDataStoreReferences(product, metadata);
+
+            // add the newly versioned references to the data store
+            try {
+                addProductReferences(product);
+            } catch (CatalogException e) {
+                logger.error("Error when adding Product references for Product [{}] to repository manager: {}",
+                        product.getProductName(), e.getMessage());
+                throw e;
+            }
+        } else {
+            product.setProductReferences(getProductReferences(product));
+        }
+
+        // now transfer the product
+        try {
+            dataTransfer.transferProduct(product);
+            // now update the product's transfer status in the data
+            // store
+            product.setTransferStatus(Product.STATUS_RECEIVED);
+
+            try {
+                setProductTransferStatus(product);
+            } catch (CatalogException e) {
+                logger.error("Error when updating product transfer status for Product[{}]: {}",
+                        product.getProductName(), e.getMessage());
+                throw e;
+            }
+        } catch (Exception e) {
+            logger.error("DataTransferException when transferring Product[{}]: {}",
+                    product.getProductName(), e.getMessage());
+            throw new DataTransferException(e);
+        }
+    }
+
     @Override
     public Metadata getCatalogValues(Metadata metadata, ProductType productType) throws Exception {
         return AvroTypeFactory.getMetadata(this.proxy.getCatalogValues(
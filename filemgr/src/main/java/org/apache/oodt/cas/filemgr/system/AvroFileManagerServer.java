@@ -24,9 +24,11 @@ import org.apache.avro.ipc.Server;
 import org.apache.avro.ipc.specific.SpecificResponder;
 import org.apache.oodt.cas.filemgr.catalog.Catalog;
 import org.apache.oodt.cas.filemgr.datatransfer.DataTransfer;
+import org.apache.oodt.cas.filemgr.datatransfer.FileStreamServer;
 import org.apache.oodt.cas.filemgr.structs.Element;
 import org.apache.oodt.cas.filemgr.structs.FileTransferStatus;
 import org.apache.oodt.cas.filemgr.structs.Product;
+import org.apache.oodt.cas.filemgr.structs.ProductIngestStatus;
 import org.apache.oodt.cas.filemgr.structs.ProductPage;
 import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.Reference;
@@ -40,6 +42,7 @@ import org.apache.oodt.cas.filemgr.structs.exceptions.VersioningException;
 import org.apache.oodt.cas.filemgr.structs.query.QueryResult;
 import org.apache.oodt.cas.filemgr.util.AvroTypeFactory;
 import org.apache.oodt.cas.filemgr.util.GenericFileManagerObjectFactory;
+import org.apache.oodt.cas.metadata.Metadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,6 +69,9 @@ public class AvroFileManagerServer implements AvroFileManager, FileManagerServer
     /* file manager tools */
     private FileManager fileManager;
 
+    /* streams remote data transfers, if enabled */
+    private FileStreamServer streamServer;
+
     public AvroFileManagerServer(int port){
         this.port = port;
     }
@@ -77,6 +83,14 @@ public class AvroFileManagerServer implements AvroFileManager, FileManagerServer
         try {
             this.fileManager = new FileManager();
             this.loadConfiguration();
+
+            int streamPort = Integer.getInteger(
+                    "org.apache.oodt.cas.filemgr.datatransfer.remote.streamPort", -1);
+            if (streamPort > 0) {
+                streamServer = FileStreamServer.fromSystemProperties(
+                        streamPort, fileManager.getProductTypes());
+                streamServer.start();
+            }
         } catch (Exception e) {
             e.printStackTrace();
             return false;
@@ -105,6 +119,10 @@ public class AvroFileManagerServer implements AvroFileManager, FileManagerServer
 
     @Override
     public boolean shutdown() {
+        if (this.streamServer != null) {
+            this.streamServer.shutdown();
+            this.streamServer = null;
+        }
         this.server.close();
         return true;
     }
@@ -477,6 +495,29 @@ public class AvroFileManagerServer implements AvroFileManager, FileManagerServer
         }
     }
 
+    @Override
+    public List<AvroProductIngestStatus> ingestProducts(List<AvroProduct> avroProducts, List<AvroMetadata> avroMetadata,
+                                                        boolean clientTransfer) throws AvroRemoteException {
+        List<Product> products = new ArrayList<Product>();
+        for (AvroProduct p : avroProducts) {
+            products.add(AvroTypeFactory.getProduct(p));
+        }
+        List<Metadata> metadata = new ArrayList<Metadata>();
+        for (AvroMetadata m : avroMetadata) {
+            metadata.add(AvroTypeFactory.getMetadata(m));
+        }
+
+        List<AvroProductIngestStatus> avroStatuses = new ArrayList<AvroProductIngestStatus>();
+        try {
+            for (ProductIngestStatus status : this.fileManager.ingestProducts(products, metadata, clientTransfer)) {
+                avroStatuses.add(AvroTypeFactory.getAvroProductIngestStatus(status));
+            }
+        } catch (CatalogException e) {
+            throw new AvroRemoteException(e.getMessage());
+        }
+        return avroStatuses;
+    }
+
     @Override
     public ByteBuffer retrieveFile(String filePath, int offset, int numBytes) throws AvroRemoteException {
         try {
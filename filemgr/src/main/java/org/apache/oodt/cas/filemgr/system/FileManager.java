@@ -472,17 +472,21 @@ public class FileManager {
                             .getProductTypeByName(productTypeName));
             }
 
-            // get Metadata
-            List<QueryResult> queryResults = new LinkedList<QueryResult>();
+            // get Products and Metadata in one pass per ProductType
+            List<QueryResult> queryResults = new ArrayList<QueryResult>();
             for (ProductType productType : productTypes) {
-                List<String> productIds = catalog.query(this.getCatalogQuery(
-                        complexQuery, productType), productType);
-                for (String productId : productIds) {
-                    Product product = catalog.getProductById(productId);
+                List<QueryResult> results = catalog.reducedQuery(this
+                        .getCatalogQuery(complexQuery, productType),
+                        productType, complexQuery.getReducedMetadata());
+                if (results == null) {
+                    continue;
+                }
+                for (QueryResult qr : results) {
+                    Product product = qr.getProduct();
                     product.setProductType(productType);
-                    QueryResult qr = new QueryResult(product, this
-                            .getReducedMetadata(product, complexQuery
-                                    .getReducedMetadata()));
+                    Metadata m = qr.getMetadata();
+                    if (this.expandProductMet) m = this.buildProductMetadata(product, m);
+                    qr.setMetadata(this.getOrigValues(m, productType));
                     qr.setToStringFormat(complexQuery
                             .getToStringResultFormat());
                     queryResults.add(qr);
@@ -612,6 +616,214 @@ public class FileManager {
 
     }
 
+    /**
+     * Ingests a batch of products, going to the {@link Catalog} once per
+     * ingest step for the whole batch rather than once per step per product.
+     * A product that fails is rolled back out of the catalog and reported in
+     * its status, without failing the rest of the batch.
+     *
+     * @param products The products to ingest.
+     * @param metadata The metadata of each product, in the same order.
+     * @param clientTransfer Whether or not the client transfers the products.
+     * @return The status of each product, in the same order.
+     * @throws CatalogException If the lists differ in size.
+     */
+    public List<ProductIngestStatus> ingestProducts(List<Product> products,
+            List<Metadata> metadata, boolean clientTransfer)
+            throws CatalogException {
+        if (products.size() != metadata.size()) {
+            throw new CatalogException("Got " + metadata.size()
+                    + " metadata for " + products.size() + " products");
+        }
+
+        List<ProductIngestStatus> statuses = new ArrayList<ProductIngestStatus>(products.size());
+        for (Product p : products) {
+            p.setTransferStatus(Product.STATUS_TRANSFER);
+            statuses.add(new ProductIngestStatus(p.getProductName(), null,
+                    true, null));
+        }
+
+        // first, create the products
+        boolean[] catalogued = new boolean[products.size()];
+        try {
+            catalog.addProducts(products);
+            Arrays.fill(catalogued, true);
+        } catch (CatalogException e) {
+            LOG.log(Level.WARNING, "ingestProducts: CatalogException when adding "
+                    + products.size() + " products to Catalog, adding them "
+                    + "one at a time: Message: " + e.getMessage());
+            int completed = getNumCompleted(e, products.size());
+            for (int i = 0; i < products.size(); i++) {
+                if (i < completed) {
+                    catalogued[i] = true;
+                    continue;
+                } else if (i == completed) {
+                    fail(statuses.get(i), e);
+                    continue;
+                }
+                try {
+                    catalog.addProduct(products.get(i));
+                    catalogued[i] = true;
+                } catch (Exception e2) {
+                    fail(statuses.get(i), e2);
+                }
+            }
+        }
+
+        // now add the metadata
+        Metadata[] expandedMetadata = new Metadata[products.size()];
+        List<Integer> ingesting = getIngesting(statuses);
+        List<Product> batchProducts = new ArrayList<Product>(ingesting.size());
+        List<Metadata> batchMetadata = new ArrayList<Metadata>(ingesting.size());
+        for (int i : ingesting) {
+            expandedMetadata[i] = expandMetadata(products.get(i),
+                    metadata.get(i));
+            batchProducts.add(products.get(i));
+            batchMetadata.add(expandedMetadata[i]);
+        }
+        try {
+            catalog.addMetadata(batchMetadata, batchProducts);
+        } catch (CatalogException e) {
+            LOG.log(Level.WARNING, "ingestProducts: CatalogException when adding "
+                    + "metadata for " + batchProducts.size() + " products, adding "
+                    + "it one product at a time: Message: " + e.getMessage());
+            int completed = getNumCompleted(e, ingesting.size());
+            for (int j = Math.max(completed, 0); j < ingesting.size(); j++) {
+                int i = ingesting.get(j);
+                if (j == completed) {
+                    fail(statuses.get(i), e);
+                    continue;
+                }
+                try {
+                    catalog.addMetadata(expandedMetadata[i], products.get(i));
+                } catch (Exception e2) {
+                    fail(statuses.get(i), e2);
+                }
+            }
+        }
+
+        // version the products
+        if (!clientTransfer || Boolean.getBoolean("org.apache.oodt.cas.filemgr.serverside.versioning")) {
+            List<Integer> versioned = new ArrayList<Integer>(products.size());
+            batchProducts.clear();
+            for (int i : getIngesting(statuses)) {
+                Product p = products.get(i);
+                try {
+                    Versioner versioner = GenericFileManagerObjectFactory
+                            .getVersionerFromClassName(p.getProductType().getVersioner());
+                    versioner.createDataStoreReferences(p, expandedMetadata[i]);
+                    versioned.add(i);
+                    batchProducts.add(p);
+                } catch (Exception e) {
+                    LOG.log(Level.SEVERE,
+                            "ingestProducts: VersioningException when versioning Product: "
+                                    + p.getProductName() + " with Versioner "
+                                    + p.getProductType().getVersioner() + ": Message: "
+                                    + e.getMessage());
+                    fail(statuses.get(i), new VersioningException(e));
+                }
+            }
+
+            // add the newly versioned references to the data store
+            try {
+                catalog.addProductReferences(batchProducts);
+            } catch (CatalogException e) {
+                LOG.log(Level.WARNING, "ingestProducts: CatalogException when adding "
+                        + "references for " + batchProducts.size() + " products, adding "
+                        + "them one product at a time: Message: " + e.getMessage());
+                int completed = getNumCompleted(e, versioned.size());
+                for (int j = Math.max(completed, 0); j < versioned.size(); j++) {
+                    int i = versioned.get(j);
+                    if (j == completed) {
+                        fail(statuses.get(i), e);
+                        continue;
+                    }
+                    try {
+                        catalog.addProductReferences(products.get(i));
+                    } catch (Exception e2) {
+                        fail(statuses.get(i), e2);
+                    }
+                }
+            }
+        }
+
+        if (!clientTransfer) {
+            for (int i : getIngesting(statuses)) {
+                Product p = products.get(i);
+                LOG.log(Level.FINEST,
+                        "File Manager: ingest: no client transfer enabled, "
+                                + "server transfering product: [" + p.getProductName() + "]");
+
+                // now transfer the product
+                try {
+                    dataTransfer.transferProduct(p);
+                    // now update the product's transfer status in the data store
+                    p.setTransferStatus(Product.STATUS_RECEIVED);
+                    catalog.setProductTransferStatus(p);
+                } catch (Exception e) {
+                    LOG.log(Level.SEVERE,
+                            "ingestProducts: Exception when transfering Product: "
+                                    + p.getProductName() + ": Message: " + e.getMessage());
+                    fail(statuses.get(i), e);
+                }
+            }
+        }
+
+        // roll back the products that made it into the catalog but failed a
+        // later step
+        for (int i = 0; i < products.size(); i++) {
+            Product p = products.get(i);
+            ProductIngestStatus status = statuses.get(i);
+            if (status.isIngested()) {
+                status.setProductId(p.getProductId());
+            } else if (catalogued[i]) {
+                LOG.log(Level.WARNING, "ingestProducts: rolling back ingest of Product: "
+                        + p.getProductName() + ": Message: " + status.getMessage());
+                try {
+                    catalog.removeProduct(p);
+                } catch (Exception e) {
+                    LOG.log(Level.SEVERE, "Failed to rollback ingest of product ["
+                            + p.getProductName() + "] : " + e.getMessage());
+                }
+            }
+        }
+
+        return statuses;
+    }
+
+    private List<Integer> getIngesting(List<ProductIngestStatus> statuses) {
+        List<Integer> ingesting = new ArrayList<Integer>(statuses.size());
+        for (int i = 0; i < statuses.size(); i++) {
+            if (statuses.get(i).isIngested()) {
+                ingesting.add(i);
+            }
+        }
+        return ingesting;
+    }
+
+    /**
+     * Gets how many products at the head of a failed batch made it into the
+     * catalog. The catalog undoes a failed batch unless it throws a
+     * {@link CatalogBatchException}, in which case the product after the
+     * completed ones is the one that failed. Otherwise, returns -1, as no
+     * product is known to have failed and all of them need to be redone.
+     */
+    private static int getNumCompleted(CatalogException e, int batchSize) {
+        if (e instanceof CatalogBatchException) {
+            int completed = ((CatalogBatchException) e).getNumCompleted();
+            if (completed >= 0 && completed < batchSize) {
+                return completed;
+            }
+        }
+        return -1;
+    }
+
+    private void fail(ProductIngestStatus status, Exception e) {
+        status.setIngested(false);
+        status.setMessage(e.getMessage() != null ? e.getMessage() : e
+                .toString());
+    }
+
     public byte[] retrieveFile(String filePath, int offset, int numBytes)
             throws DataTransferException {
         FileInputStream is = null;
@@ -816,17 +1028,7 @@ public class FileManager {
 
     public synchronized Metadata addMetadata(Product p, Metadata m)
             throws CatalogException {
-
-        //apply handlers
-        try {
-            m = this.getCatalogValues(m, p.getProductType());
-        } catch (Exception e) {
-            LOG.log(Level.SEVERE, "Failed to get handlers for product '" + p
-                    + "' : " + e.getMessage());
-        }
-
-        // first do server side metadata extraction
-        Metadata metadata = runExtractors(p, m);
+        Metadata metadata = expandMetadata(p, m);
 
         try {
             catalog.addMetadata(metadata, p);
@@ -848,6 +1050,19 @@ public class FileManager {
         return metadata;
     }
 
+    private Metadata expandMetadata(Product p, Metadata m) {
+        //apply handlers
+        try {
+            m = this.getCatalogValues(m, p.getProductType());
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Failed to get handlers for product '" + p
+                    + "' : " + e.getMessage());
+        }
+
+        // first do server side metadata extraction
+        return runExtractors(p, m);
+    }
+
     private Metadata runExtractors(Product product, Metadata metadata) {
         // make sure that the product type definition is present
         try {
@@ -1130,4 +1345,8 @@ public class FileManager {
         this.dataTransfer = dataTransfer;
     }
 
+    public void setRepositoryManager(RepositoryManager repositoryManager) {
+        this.repositoryManager = repositoryManager;
+    }
+
 }
@@ -25,6 +25,7 @@ import org.apache.oodt.cas.filemgr.structs.exceptions.ValidationLayerException;
 import org.apache.oodt.cas.filemgr.structs.exceptions.DataTransferException;
 import org.apache.oodt.cas.filemgr.structs.Element;
 import org.apache.oodt.cas.filemgr.structs.FileTransferStatus;
+import org.apache.oodt.cas.filemgr.structs.ProductIngestStatus;
 import org.apache.oodt.cas.filemgr.structs.ProductPage;
 import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.Product;
@@ -161,6 +162,14 @@ public interface FileManagerClient extends Closeable {
 
     public String ingestProduct(Product product, Metadata metadata,boolean clientTransfer) throws Exception;
 
+    /**
+     * Ingests a batch of products in one round trip. The i-th {@link Metadata}
+     * belongs to the i-th {@link Product}, and the i-th status returned says
+     * what happened to it: a product that fails does not fail the batch.
+     */
+    public List<ProductIngestStatus> ingestProducts(List<Product> products, List<Metadata> metadata,
+                                                    boolean clientTransfer) throws Exception;
+
     @SuppressWarnings("unchecked")
     public Metadata getCatalogValues(Metadata metadata, ProductType productType)throws Exception;
 
@@ -29,6 +29,7 @@ import org.apache.oodt.cas.filemgr.structs.Element;
 import org.apache.oodt.cas.filemgr.structs.ExtractorSpec;
 import org.apache.oodt.cas.filemgr.structs.FileTransferStatus;
 import org.apache.oodt.cas.filemgr.structs.Product;
+import org.apache.oodt.cas.filemgr.structs.ProductIngestStatus;
 import org.apache.oodt.cas.filemgr.structs.ProductPage;
 import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.Query;
@@ -719,17 +720,23 @@ public class XmlRpcFileManager {
         }
       }
 
-      // get Metadata
-      List<QueryResult> queryResults = new LinkedList<QueryResult>();
+      // get Products and Metadata in one pass per ProductType
+      List<QueryResult> queryResults = new ArrayList<QueryResult>();
       for (ProductType productType : productTypes) {
-        List<String> productIds = catalog.query(this.getCatalogQuery(
-            complexQuery, productType), productType);
-        for (String productId : productIds) {
-          Product product = catalog.getProductById(productId);
+        List<QueryResult> results = catalog.reducedQuery(this
+            .getCatalogQuery(complexQuery, productType), productType,
+            complexQuery.getReducedMetadata());
+        if (results == null) {
+          continue;
+        }
+        for (QueryResult qr : results) {
+          Product product = qr.getProduct();
           product.setProductType(productType);
-          QueryResult qr = new QueryResult(product, this
-              .getReducedMetadata(product, complexQuery
-                  .getReducedMetadata()));
+          Metadata m = qr.getMetadata();
+          if (this.expandProductMet) {
+            m = this.buildProductMetadata(product, m);
+          }
+          qr.setMetadata(this.getOrigValues(m, productType));
           qr.setToStringFormat(complexQuery
               .getToStringResultFormat());
           queryResults.add(qr);
@@ -861,6 +868,31 @@ public class XmlRpcFileManager {
   }
 
 
+  public Vector<Map<String, Object>> ingestProducts(Vector<Map<String, Object>> productHashes,
+                                                   Vector<Map<String, String>> metadata, boolean ct)
+      throws CatalogException {
+    if (productHashes.size() != metadata.size()) {
+      throw new CatalogException("Got " + metadata.size() + " metadata for "
+                                 + productHashes.size() + " products");
+    }
+
+    // this server has no batched catalog path, so ingest one at a time
+    List<ProductIngestStatus> statuses = new ArrayList<ProductIngestStatus>(productHashes.size());
+    for (int i = 0; i < productHashes.size(); i++) {
+      Map<String, Object> productHash = productHashes.get(i);
+      String productName = (String) productHash.get("name");
+      try {
+        statuses.add(new ProductIngestStatus(productName,
+            this.ingestProductCore(productHash, metadata.get(i), ct), true, null));
+      } catch (CatalogException e) {
+        statuses.add(new ProductIngestStatus(productName, null, false,
+            e.getMessage()));
+      }
+    }
+
+    return XmlRpcStructFactory.getXmlRpcProductIngestStatuses(statuses);
+  }
+
   public String ingestProductCore(Map<String, Object> productHash,
                                   Map<String, String> metadata, boolean clientTransfer)
       throws
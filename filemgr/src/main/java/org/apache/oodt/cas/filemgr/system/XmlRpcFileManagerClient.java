@@ -31,6 +31,7 @@ import org.apache.oodt.cas.filemgr.exceptions.FileManagerException;
 import org.apache.oodt.cas.filemgr.structs.Element;
 import org.apache.oodt.cas.filemgr.structs.FileTransferStatus;
 import org.apache.oodt.cas.filemgr.structs.Product;
+import org.apache.oodt.cas.filemgr.structs.ProductIngestStatus;
 import org.apache.oodt.cas.filemgr.structs.ProductPage;
 import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.Query;
@@ -1220,69 +1221,8 @@ public class XmlRpcFileManagerClient implements FileManagerClient {
                   + "Manager ingest");
         }
 
-        if (dataTransfer == null) {
-          throw new Exception("Request to ingest product: ["
-                  + product.getProductName()
-                  + "] using client transfer, but no "
-                  + "dataTransferer specified!");
-        }
-
         product.setProductId(productId);
-
-        if (!Boolean.getBoolean("org.apache.oodt.cas.filemgr.serverside.versioning")) {
-          // version the product
-          Versioner versioner = GenericFileManagerObjectFactory
-                  .getVersionerFromClassName(product.getProductType()
-                          .getVersioner());
-          if (versioner != null) {
-            versioner.createDataStoreReferences(product, metadata);
-          }
-
-          // add the newly versioned references to the data store
-          try {
-            addProductReferences(product);
-          } catch (CatalogException e) {
-            LOG
-                    .log(
-                            Level.SEVERE,
-                            "ingestProduct: RepositoryManagerException "
-                                    + "when adding Product References for Product : "
-                                    + product.getProductName()
-                                    + " to RepositoryManager: Message: "
-                                    + e);
-            throw e;
-          }
-        } else {
-          product.setProductReferences(getProductReferences(product));
-        }
-
-        // now transfer the product
-        try {
-          dataTransfer.transferProduct(product);
-          // now update the product's transfer status in the data
-          // store
-          product.setTransferStatus(Product.STATUS_RECEIVED);
-
-          try {
-            setProductTransferStatus(product);
-          } catch (CatalogException e) {
-            LOG
-                    .log(
-                            Level.SEVERE,
-                            "ingestProduct: RepositoryManagerException "
-                                    + "when updating product transfer status for Product: "
-                                    + product.getProductName()
-                                    + " Message: " + e);
-            throw e;
-          }
-        } catch (Exception e) {
-          LOG.log(Level.SEVERE,
-                  "ingestProduct: DataTransferException when transfering Product: "
-                          + product.getProductName() + ": Message: "
-                          + e);
-          throw new DataTransferException(e);
-        }
-
+        clientTransferProduct(product, metadata);
       }
       return productId;
 
@@ -1328,6 +1268,112 @@ public class XmlRpcFileManagerClient implements FileManagerClient {
 
   }
 
+  @SuppressWarnings("unchecked")
+  public List<ProductIngestStatus> ingestProducts(List<Product> products,
+                                                  List<Metadata> metadata, boolean clientTransfer)
+          throws XmlRpcException, IOException {
+    Vector<Object> argList = new Vector<Object>();
+    argList.add(XmlRpcStructFactory.getXmlRpcProductList(products));
+    argList.add(XmlRpcStructFactory.getXmlRpcMetadataList(metadata));
+    argList.add(clientTransfer);
+    List<ProductIngestStatus> statuses = XmlRpcStructFactory
+            .getProductIngestStatusesFromXmlRpc((Vector<Map<String, Object>>) client
+                    .execute("filemgr.ingestProducts", argList));
+
+    if (clientTransfer) {
+      for (int i = 0; i < statuses.size(); i++) {
+        ProductIngestStatus status = statuses.get(i);
+        if (!status.isIngested()) {
+          continue;
+        }
+
+        Product product = products.get(i);
+        product.setProductId(status.getProductId());
+        try {
+          clientTransferProduct(product, metadata.get(i));
+        } catch (Exception e) {
+          LOG.log(Level.SEVERE, "Failed to ingest product [ id: " + product.getProductId() +
+                  "/ name:" + product.getProductName() + "] :" + e + " -- rolling back ingest");
+          status.setIngested(false);
+          status.setProductId(null);
+          status.setMessage(e.getMessage());
+          try {
+            removeProduct(product);
+          } catch (Exception e1) {
+            LOG.log(Level.SEVERE, "Failed to rollback ingest of product ["
+                    + product + "] : " + e1);
+          }
+        }
+      }
+    }
+
+    return statuses;
+  }
+
+  private void clientTransferProduct(Product product, Metadata metadata)
+          throws Exception {
+    if (dataTransfer == null) {
+      throw new Exception("Request to ingest product: ["
+              + product.getProductName()
+              + "] using client transfer, but no "
+              + "dataTransferer specified!");
+    }
+
+    if (!Boolean.getBoolean("org.apache.oodt.cas.filemgr.serverside.versioning")) {
+      // version the product
+      Versioner versioner = GenericFileManagerObjectFactory
+              .getVersionerFromClassName(product.getProductType()
+                      .getVersioner());
+      if (versioner != null) {
+        versioner.createDataStoreReferences(product, metadata);
+      }
+
+      // add the newly versioned references to the data store
+      try {
+        addProductReferences(product);
+      } catch (CatalogException e) {
+        LOG
+                .log(
+                        Level.SEVERE,
+                        "ingestProduct: RepositoryManagerException "
+                                + "when adding Product References for Product : "
+                                + product.getProductName()
+                                + " to RepositoryManager: Message: "
+                                + e);
+        throw e;
+      }
+    } else {
+      product.setProductReferences(getProductReferences(product));
+    }
+
+    // now transfer the product
+    try {
+      dataTransfer.transferProduct(product);
+      // now update the product's transfer status in the data
+      // store
+      product.setTransferStatus(Product.STATUS_RECEIVED);
+
+      try {
+        setProductTransferStatus(product);
+      } catch (CatalogException e) {
+        LOG
+                .log(
+                        Level.SEVERE,
+                        "ingestProduct: RepositoryManagerException "
+                                + "when updating product transfer status for Product: "
+                                + product.getProductName()
+                                + " Message: " + e);
+        throw e;
+      }
+    } catch (Exception e) {
+      LOG.log(Level.SEVERE,
+              "ingestProduct: DataTransferException when transfering Product: "
+                      + product.getProductName() + ": Message: "
+                      + e);
+      throw new DataTransferException(e);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   public Metadata getCatalogValues(Metadata metadata, ProductType productType)
           throws XmlRpcException, IOException {
@@ -19,6 +19,7 @@ package org.apache.oodt.cas.filemgr.system;
 
 import org.apache.oodt.cas.filemgr.catalog.Catalog;
 import org.apache.oodt.cas.filemgr.datatransfer.DataTransfer;
+import org.apache.oodt.cas.filemgr.datatransfer.FileStreamServer;
 import org.apache.oodt.cas.filemgr.structs.FileTransferStatus;
 import org.apache.oodt.cas.filemgr.structs.ProductPage;
 import org.apache.oodt.cas.filemgr.structs.ProductType;
@@ -56,6 +57,9 @@ public class XmlRpcFileManagerServer implements FileManagerServer {
 
     /* file manager tools */
     FileManager fileManager;
+
+    /* streams remote data transfers, if enabled */
+    private FileStreamServer streamServer = null;
     
     public XmlRpcFileManagerServer(int port){
         this.port = port;
@@ -79,6 +83,14 @@ public class XmlRpcFileManagerServer implements FileManagerServer {
         webServer.start();
         this.fileManager = new FileManager();
         this.loadConfiguration();
+
+        int streamPort = Integer.getInteger(
+                "org.apache.oodt.cas.filemgr.datatransfer.remote.streamPort", -1);
+        if (streamPort > 0) {
+            streamServer = FileStreamServer.fromSystemProperties(streamPort,
+                    fileManager.getProductTypes());
+            streamServer.start();
+        }
         return true;
     }
 
@@ -391,6 +403,19 @@ public class XmlRpcFileManagerServer implements FileManagerServer {
         return fileManager.ingestProduct(p, m, clientTransfer);
     }
 
+    public Vector<Map<String, Object>> ingestProducts(
+            Vector<Map<String, Object>> productHashes,
+            Vector<Map<String, Object>> metadata, boolean clientTransfer)
+            throws CatalogException {
+        List<Product> products = XmlRpcStructFactory
+                .getProductListFromXmlRpc(productHashes);
+        List<Metadata> metadataList = XmlRpcStructFactory
+                .getMetadataListFromXmlRpc(metadata);
+
+        return XmlRpcStructFactory.getXmlRpcProductIngestStatuses(fileManager
+                .ingestProducts(products, metadataList, clientTransfer));
+    }
+
     public byte[] retrieveFile(String filePath, int offset, int numBytes)
             throws DataTransferException {
         return fileManager.retrieveFile(filePath, offset, numBytes);
@@ -451,6 +476,10 @@ public class XmlRpcFileManagerServer implements FileManagerServer {
     }
 
     public boolean shutdown() {
+        if (this.streamServer != null) {
+            this.streamServer.shutdown();
+            this.streamServer = null;
+        }
         if (this.webServer != null) {
             this.webServer.shutdown();
             this.webServer = null;
@@ -31,6 +31,7 @@ import org.apache.oodt.cas.filemgr.metadata.CoreMetKeys;
 import org.apache.oodt.cas.filemgr.structs.Product;
 import org.apache.oodt.cas.filemgr.structs.ProductPage;
 import org.apache.oodt.cas.filemgr.structs.ProductType;
+import org.apache.oodt.cas.filemgr.structs.Query;
 import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
 import org.apache.oodt.cas.filemgr.structs.exceptions.ConnectionException;
 import org.apache.oodt.cas.filemgr.structs.exceptions.RepositoryManagerException;
@@ -42,6 +43,7 @@ import org.apache.oodt.cas.metadata.util.PathUtils;
 import org.apache.solr.client.solrj.SolrServer;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.CommonsHttpSolrServer;
+import org.apache.solr.client.solrj.request.UpdateRequest;
 import org.apache.solr.common.SolrInputDocument;
 import org.springframework.util.StringUtils;
 
@@ -49,16 +51,27 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -77,6 +90,12 @@ public class SolrIndexer {
 	private final static String ACCESS_KEY = "access.key";
 	private final static String ACCESS_URL = "access.url";
 	private final static String PRODUCT_NAME = "CAS.ProductName";
+	private final static String REINDEX_WORKERS = "reindex.workers";
+	private final static String REINDEX_BATCH_SIZE = "reindex.batch.size";
+	private final static String REINDEX_CHECKPOINT_FILE = "reindex.checkpoint.file";
+	private final static String CHECKPOINT_COMPLETE = "complete";
+	private final static int DEFAULT_REINDEX_WORKERS = 4;
+	private final static int DEFAULT_REINDEX_BATCH_SIZE = 500;
 	private IndexerConfig config = null;
 	private final SolrServer server;
 	private String fmUrl;
@@ -94,6 +113,22 @@ public class SolrIndexer {
 	 *          URL for the File Manager instance.
 	 */
 	public SolrIndexer(String solrUrl, String fmUrl)
+	    throws InstantiationException {
+		this(solrUrl, fmUrl, null);
+	}
+
+	/**
+	 * Constructor reads in the configuration and uses the given connection to
+	 * the Solr instance, if any.
+	 * 
+	 * @param solrUrl
+	 *          URL for the Solr instance.
+	 * @param fmUrl
+	 *          URL for the File Manager instance.
+	 * @param solrServer
+	 *          The Solr instance, or null to connect to the one at solrUrl.
+	 */
+	SolrIndexer(String solrUrl, String fmUrl, SolrServer solrServer)
 	    throws InstantiationException {
 		InputStream input = null;
 		String filename;
@@ -137,6 +172,10 @@ public class SolrIndexer {
 		LOG.info("Using Solr: " + this.solrUrl + " FileManager: " + this.fmUrl);
 
 
+		if (solrServer != null) {
+			server = solrServer;
+			return;
+		}
 		try {
 			server = new CommonsHttpSolrServer(this.solrUrl);
 		} catch (MalformedURLException e) {
@@ -364,6 +403,226 @@ public class SolrIndexer {
 		}
 	}
 
+	/**
+	 * This method reindexes all products retrieved from the File Manager to the
+	 * Solr index, like {@link #indexAll(boolean)}, but pipelines the work: the
+	 * next page of products is fetched while a pool of workers retrieves the
+	 * metadata of the previous ones and builds their Solr documents, and the
+	 * documents are sent to Solr in batches rather than one at a time. As
+	 * documents replace those with the same id, no deletes are needed.
+	 * 
+	 * If a checkpoint file is given, the index is committed after each batch and
+	 * the last page sent is recorded in the file for its product type, so that a
+	 * reindex which fails part way resumes where it left off when run again.
+	 * The checkpoint doesn't move past a page with products that could not be
+	 * indexed, so that they are retried when the reindex is run again.
+	 * 
+	 * @param workers
+	 *          The number of workers retrieving metadata and building documents.
+	 * @param batchSize
+	 *          The number of documents to send to Solr at once (batches can be
+	 *          up to a page of products larger).
+	 * @param checkpointFile
+	 *          The file to record progress in, or null to not record it.
+	 * @return Returns the number of products indexed.
+	 * @throws SolrServerException
+	 *           When an error occurs communicating with the Solr server instance.
+	 */
+	public long reindexAll(int workers, int batchSize, File checkpointFile)
+	    throws SolrServerException, IOException, ConnectionException,
+	    CatalogException, RepositoryManagerException {
+		LOG.info("Reindexing products with " + workers + " workers in batches of "
+		    + batchSize + "...");
+		Properties checkpoints = loadCheckpoints(checkpointFile);
+		ReindexProgress progress = new ReindexProgress();
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		// a File Manager client for each worker, handed out one at a time
+		BlockingQueue<FileManagerClient> clients = new ArrayBlockingQueue<FileManagerClient>(
+		    workers);
+		FileManagerClient fmClient = RpcCommunicationFactory.createClient(new URL(
+		    this.fmUrl));
+		try {
+			for (int i = 0; i < workers; i++) {
+				clients.add(RpcCommunicationFactory.createClient(new URL(this.fmUrl)));
+			}
+			LOG.info("Retrieving list of product types.");
+			for (ProductType type : fmClient.getProductTypes()) {
+				if (config.getIgnoreTypes().contains(type.getName().trim())) {
+					continue;
+				}
+				String checkpoint = checkpoints.getProperty(type.getName());
+				if (CHECKPOINT_COMPLETE.equals(checkpoint)) {
+					LOG.info("Already reindexed product type: " + type.getName());
+					continue;
+				}
+				int lastPage = checkpoint != null ? Integer.parseInt(checkpoint) : 0;
+				LOG.info("Paging through products for product type: " + type.getName()
+				    + (lastPage > 0 ? " from page " + (lastPage + 1) : ""));
+				if (reindexProductType(type, lastPage, fmClient, pool, clients,
+				    workers, batchSize, checkpoints, checkpointFile, progress)) {
+					checkpoints.setProperty(type.getName(), CHECKPOINT_COMPLETE);
+					saveCheckpoints(checkpoints, checkpointFile);
+				} else {
+					LOG.warning("Not all products of product type " + type.getName()
+					    + " could be reindexed: they are retried on the next run");
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+			fmClient.close();
+			for (FileManagerClient client : clients) {
+				client.close();
+			}
+		}
+		LOG.info("Finished reindexing products: " + progress);
+		return progress.indexed;
+	}
+
+	/**
+	 * @return Returns whether all products of the type were reindexed.
+	 */
+	private boolean reindexProductType(final ProductType type, int lastPage,
+	    FileManagerClient fmClient, ExecutorService pool,
+	    final BlockingQueue<FileManagerClient> clients, int workers,
+	    int batchSize, Properties checkpoints, File checkpointFile,
+	    ReindexProgress progress) throws SolrServerException, IOException,
+	    CatalogException {
+		ProductPage page = safeFirstPage(fmClient, type);
+		if (page != null && lastPage > 0) {
+			page = lastPage < page.getTotalPages() ? fmClient.pagedQuery(
+			    new Query(), type, lastPage + 1) : null;
+		}
+
+		// pages whose documents are still being built, oldest first
+		Deque<PendingPage> pending = new ArrayDeque<PendingPage>();
+		ReindexBatch batch = new ReindexBatch();
+		while (page != null && page.getPageProducts() != null
+		    && !page.getPageProducts().isEmpty()) {
+			PendingPage pendingPage = new PendingPage(page.getPageNum());
+			for (final Product product : page.getPageProducts()) {
+				pendingPage.products.add(product.getProductId());
+				pendingPage.documents.add(pool.submit(new Callable<SolrInputDocument>() {
+					public SolrInputDocument call() throws Exception {
+						FileManagerClient client = clients.take();
+						try {
+							return buildProductDocument(product.getProductId(), client
+							    .getMetadata(product), type.getTypeMetadata());
+						} finally {
+							clients.put(client);
+						}
+					}
+				}));
+			}
+			pending.add(pendingPage);
+			// keep the workers busy, but don't run too far ahead of Solr
+			while (pending.size() > workers) {
+				if (collect(pending.poll(), batch, progress) >= batchSize) {
+					sendBatch(type, batch, checkpoints, checkpointFile, progress);
+				}
+			}
+			if (page.isLastPage()) {
+				break;
+			}
+			page = fmClient.getNextPage(type, page);
+		}
+		while (!pending.isEmpty()) {
+			if (collect(pending.poll(), batch, progress) >= batchSize || pending.isEmpty()) {
+				sendBatch(type, batch, checkpoints, checkpointFile, progress);
+			}
+		}
+		return batch.firstFailedPage == 0;
+	}
+
+	/**
+	 * Waits for the documents of a page and adds them to the batch.
+	 * 
+	 * @return Returns the size of the batch.
+	 */
+	private int collect(PendingPage page, ReindexBatch batch,
+	    ReindexProgress progress) throws IOException {
+		for (int i = 0; i < page.documents.size(); i++) {
+			try {
+				SolrInputDocument doc = page.documents.get(i).get();
+				if (doc != null) {
+					batch.documents.add(doc);
+				}
+			} catch (ExecutionException e) {
+				LOG.severe("Could not index " + page.products.get(i) + ": "
+				    + e.getCause().getMessage());
+				progress.failed++;
+				if (batch.firstFailedPage == 0) {
+					batch.firstFailedPage = page.pageNum;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while reindexing", e);
+			}
+		}
+		batch.lastPage = page.pageNum;
+		return batch.documents.size();
+	}
+
+	/**
+	 * Sends a batch of documents to Solr and, if there is a checkpoint file,
+	 * commits them and records the last page they came from, or the page before
+	 * the first one with products that could not be indexed.
+	 */
+	private void sendBatch(ProductType type, ReindexBatch batch,
+	    Properties checkpoints, File checkpointFile, ReindexProgress progress)
+	    throws SolrServerException, IOException {
+		if (!batch.documents.isEmpty()) {
+			UpdateRequest request = new UpdateRequest();
+			request.add(batch.documents);
+			request.process(server);
+			progress.indexed += batch.documents.size();
+			batch.documents.clear();
+		}
+		if (checkpointFile != null) {
+			server.commit();
+			checkpoints.setProperty(type.getName(), String
+			    .valueOf(batch.firstFailedPage > 0 ? batch.firstFailedPage - 1
+			        : batch.lastPage));
+			saveCheckpoints(checkpoints, checkpointFile);
+		}
+		LOG.info("Reindexed product type " + type.getName() + " through page "
+		    + batch.lastPage + ": " + progress);
+	}
+
+	private Properties loadCheckpoints(File checkpointFile) throws IOException {
+		Properties checkpoints = new Properties();
+		if (checkpointFile != null && checkpointFile.exists()) {
+			InputStream in = new FileInputStream(checkpointFile);
+			try {
+				checkpoints.load(in);
+			} finally {
+				in.close();
+			}
+			LOG.info("Resuming from checkpoint file " + checkpointFile);
+		}
+		return checkpoints;
+	}
+
+	private void saveCheckpoints(Properties checkpoints, File checkpointFile)
+	    throws IOException {
+		if (checkpointFile == null) {
+			return;
+		}
+		// write a new file and move it into place, so a failure can't leave
+		// the checkpoints half written
+		File tmpFile = new File(checkpointFile.getPath() + ".tmp");
+		OutputStream out = new FileOutputStream(tmpFile);
+		try {
+			checkpoints.store(out, "SolrIndexer reindex checkpoints");
+		} finally {
+			out.close();
+		}
+		if (!tmpFile.renameTo(checkpointFile)
+		    && !(checkpointFile.delete() && tmpFile.renameTo(checkpointFile))) {
+			throw new IOException("Could not write checkpoint file "
+			    + checkpointFile);
+		}
+	}
+
 	/**
 	 * This method adds a single product retrieved from the File Manager by its
 	 * product identifier to the Solr index. Metadata from the ProductType is also
@@ -449,6 +708,25 @@ public class SolrIndexer {
 	private void indexProduct(String productId, Metadata productMetadata,
 	    Metadata typeMetadata) throws SolrServerException,
 	    java.text.ParseException {
+		SolrInputDocument doc = buildProductDocument(productId, productMetadata,
+		    typeMetadata);
+		if (doc != null) {
+			try {
+				server.add(doc);
+				LOG.info("Indexed product: " + productId);
+			} catch (IOException e) {
+				LOG.severe("Could not index product: " + productId);
+			}
+		}
+	}
+
+	/**
+	 * This method builds the Solr document of a product, or returns null if the
+	 * product has no metadata.
+	 */
+	SolrInputDocument buildProductDocument(String productId,
+	    Metadata productMetadata, Metadata typeMetadata)
+	    throws java.text.ParseException {
 		Metadata metadata = new Metadata();
 		metadata.addMetadata("id", productId);
 		// Add in product type metadata
@@ -470,14 +748,10 @@ public class SolrIndexer {
 			// the value in brakets will be updated with the value from the
 			// CAS.ProductId.
 			performSubstitution(metadata);
-			try {
-				server.add(this.getSolrDocument(metadata));
-				LOG.info("Indexed product: " + productId);
-			} catch (IOException e) {
-				LOG.severe("Could not index product: " + productId);
-			}
+			return this.getSolrDocument(metadata);
 		} else {
 			LOG.info("Could not find metadata for product: " + productId);
+			return null;
 		}
 	}
 
@@ -566,7 +840,10 @@ public class SolrIndexer {
 		if (config.getIgnoreValues().contains(value.trim())) {
 		  return value;
 		}
-		return solrFormat.format(format.parse(value));
+		// solrFormat is shared by the reindex workers
+		synchronized (solrFormat) {
+			return solrFormat.format(format.parse(value));
+		}
 	}
 
 	/**
@@ -589,6 +866,15 @@ public class SolrIndexer {
 		options.addOption(OptionBuilder.withArgName("Filemgr URL").hasArg()
 		    .withDescription("URL to the File Manager").withLongOpt("fmUrl")
 		    .create("fmu"));
+		options.addOption(OptionBuilder.withArgName("number").hasArg()
+		    .withDescription("Number of reindex workers").withLongOpt("workers")
+		    .create("w"));
+		options.addOption(OptionBuilder.withArgName("number").hasArg()
+		    .withDescription("Number of documents sent to Solr at once when reindexing")
+		    .withLongOpt("batchSize").create("bs"));
+		options.addOption(OptionBuilder.withArgName("file").hasArg()
+		    .withDescription("File recording reindex progress, to resume from")
+		    .withLongOpt("checkpointFile").create("cf"));
 
 		OptionGroup group = new OptionGroup();
 		Option all = new Option("a", "all", false,
@@ -605,6 +891,8 @@ public class SolrIndexer {
 		    "Index all product types from the File Manager");
 		Option deleteAll = new Option("da", "deleteAll", false,
 		    "Delete all products/types from the Solr index");
+		Option reindex = new Option("ri", "reindex", false,
+		    "Reindex all products from the File Manager using a pool of workers");
 
 		group.addOption(all);
 		group.addOption(product);
@@ -612,6 +900,7 @@ public class SolrIndexer {
 		group.addOption(read);
 		group.addOption(types);
 		group.addOption(deleteAll);
+		group.addOption(reindex);
 		options.addOptionGroup(group);
 
 		return options;
@@ -639,7 +928,8 @@ public class SolrIndexer {
 			formatter.printHelp("java " + SolrIndexer.class.getName(), options);
 		} else if (line.hasOption("all") || line.hasOption("product")
 		    || line.hasOption("metFile") || line.hasOption("read")
-		    || line.hasOption("types") || line.hasOption("deleteAll")) {
+		    || line.hasOption("types") || line.hasOption("deleteAll")
+		    || line.hasOption("reindex")) {
 			SolrIndexer indexer;
 			String solrUrl = null;
 			String fmUrl = null;
@@ -666,6 +956,17 @@ public class SolrIndexer {
 					indexer.indexProductTypes(line.hasOption("delete"));
 				} else if (line.hasOption("deleteAll")) {
 					indexer.delete();
+				} else if (line.hasOption("reindex")) {
+					int workers = Integer.parseInt(line.getOptionValue("workers",
+					    indexer.config.getProperty(REINDEX_WORKERS, String
+					        .valueOf(DEFAULT_REINDEX_WORKERS))).trim());
+					int batchSize = Integer.parseInt(line.getOptionValue("batchSize",
+					    indexer.config.getProperty(REINDEX_BATCH_SIZE, String
+					        .valueOf(DEFAULT_REINDEX_BATCH_SIZE))).trim());
+					String checkpointFile = line.getOptionValue("checkpointFile",
+					    indexer.config.getProperty(REINDEX_CHECKPOINT_FILE));
+					indexer.reindexAll(workers, batchSize,
+					    checkpointFile != null ? new File(checkpointFile.trim()) : null);
 				} else {
 					LOG.severe("Option not supported.");
 				}
@@ -709,6 +1010,46 @@ public class SolrIndexer {
 		return productIds;
 	}
 
+	/**
+	 * The products of a page and the futures of their Solr documents.
+	 */
+	private static class PendingPage {
+		private final int pageNum;
+		private final List<String> products = new ArrayList<String>();
+		private final List<Future<SolrInputDocument>> documents = new ArrayList<Future<SolrInputDocument>>();
+
+		PendingPage(int pageNum) {
+			this.pageNum = pageNum;
+		}
+	}
+
+	/**
+	 * Documents waiting to be sent to Solr, the last page they came from, and
+	 * the first page with products that could not be indexed, if any.
+	 */
+	private static class ReindexBatch {
+		private final List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+		private int lastPage;
+		private int firstFailedPage;
+	}
+
+	/**
+	 * Counts the products reindexed and reports the throughput.
+	 */
+	private static class ReindexProgress {
+		private final long startTime = System.currentTimeMillis();
+		private long indexed;
+		private long failed;
+
+		@Override
+		public String toString() {
+			double seconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+			return indexed + " products (" + failed + " failed) in "
+			    + String.format("%.1f", seconds) + " seconds ("
+			    + String.format("%.1f", indexed / seconds) + " products/second)";
+		}
+	}
+
 	/**
 	 * This class manages the Indexer configuration.
 	 */
@@ -284,6 +284,22 @@ public class AvroTypeFactory {
         return product;
     }
 
+    public static AvroProductIngestStatus getAvroProductIngestStatus(ProductIngestStatus productIngestStatus){
+        return new AvroProductIngestStatus(
+                productIngestStatus.getProductName(),
+                productIngestStatus.getProductId(),
+                productIngestStatus.isIngested(),
+                productIngestStatus.getMessage());
+    }
+
+    public static ProductIngestStatus getProductIngestStatus(AvroProductIngestStatus avroProductIngestStatus){
+        return new ProductIngestStatus(
+                avroProductIngestStatus.getProductName(),
+                avroProductIngestStatus.getProductId(),
+                avroProductIngestStatus.getIngested(),
+                avroProductIngestStatus.getMessage());
+    }
+
     public static AvroFileTransferStatus getAvroFileTransferStatus(FileTransferStatus fileTransferStatus){
         return new AvroFileTransferStatus(
                 getAvroReference(fileTransferStatus.getFileRef()),
@@ -385,7 +401,8 @@ public class AvroTypeFactory {
                 productPage.getTotalPages(),
                 productPage.getPageSize(),
                 avroProducts,
-                productPage.getNumOfHits());
+                productPage.getNumOfHits(),
+                productPage.getLastSortValue());
     }
 
     public static ProductPage getProductPage(AvroProductPage avroProductPage){
@@ -400,6 +417,7 @@ public class AvroTypeFactory {
                 products
                 );
         pp.setNumOfHits(avroProductPage.getNumOfHits());
+        pp.setLastSortValue(avroProductPage.getLastSortValue());
         return pp;
     }
 
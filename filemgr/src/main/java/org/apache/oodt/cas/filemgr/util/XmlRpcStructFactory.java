@@ -22,6 +22,7 @@ import org.apache.oodt.cas.filemgr.structs.Element;
 import org.apache.oodt.cas.filemgr.structs.ExtractorSpec;
 import org.apache.oodt.cas.filemgr.structs.FileTransferStatus;
 import org.apache.oodt.cas.filemgr.structs.Product;
+import org.apache.oodt.cas.filemgr.structs.ProductIngestStatus;
 import org.apache.oodt.cas.filemgr.structs.ProductPage;
 import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.Query;
@@ -110,6 +111,80 @@ public final class XmlRpcStructFactory {
     return statuses;
   }
 
+  public static Map<String, Object> getXmlRpcProductIngestStatus(
+      ProductIngestStatus status) {
+    Map<String, Object> statusHash = new Hashtable<String, Object>();
+    statusHash.put("productName", status.getProductName());
+    statusHash.put("ingested", status.isIngested());
+    if (status.getProductId() != null) {
+      statusHash.put("productId", status.getProductId());
+    }
+    if (status.getMessage() != null) {
+      statusHash.put("message", status.getMessage());
+    }
+    return statusHash;
+  }
+
+  public static ProductIngestStatus getProductIngestStatusFromXmlRpc(
+      Map<String, Object> statusHash) {
+    ProductIngestStatus status = new ProductIngestStatus();
+    status.setProductName((String) statusHash.get("productName"));
+    status.setIngested((Boolean) statusHash.get("ingested"));
+    status.setProductId((String) statusHash.get("productId"));
+    status.setMessage((String) statusHash.get("message"));
+    return status;
+  }
+
+  public static Vector<Map<String, Object>> getXmlRpcProductIngestStatuses(List<ProductIngestStatus> statuses) {
+    Vector<Map<String, Object>> statusVector = new Vector<Map<String, Object>>();
+
+    if (statuses != null && statuses.size() > 0) {
+      for (ProductIngestStatus status : statuses) {
+        statusVector.add(getXmlRpcProductIngestStatus(status));
+      }
+    }
+
+    return statusVector;
+  }
+
+  public static List<ProductIngestStatus> getProductIngestStatusesFromXmlRpc(Vector<Map<String, Object>> statusVector) {
+    List<ProductIngestStatus> statuses = new Vector<ProductIngestStatus>();
+
+    if (statusVector != null && statusVector.size() > 0) {
+      for (Map<String, Object> statusHash : statusVector) {
+        statuses.add(getProductIngestStatusFromXmlRpc(statusHash));
+      }
+    }
+
+    return statuses;
+  }
+
+  public static Vector<Map<String, Object>> getXmlRpcMetadataList(List<Metadata> metadataList) {
+    Vector<Map<String, Object>> metadataVector = new Vector<Map<String, Object>>();
+
+    if (metadataList != null && metadataList.size() > 0) {
+      for (Metadata metadata : metadataList) {
+        metadataVector.add(metadata.getHashTable());
+      }
+    }
+
+    return metadataVector;
+  }
+
+  public static List<Metadata> getMetadataListFromXmlRpc(Vector<Map<String, Object>> metadataVector) {
+    List<Metadata> metadataList = new Vector<Metadata>();
+
+    if (metadataVector != null && metadataVector.size() > 0) {
+      for (Map<String, Object> metadataHash : metadataVector) {
+        Metadata metadata = new Metadata();
+        metadata.addMetadata(metadataHash);
+        metadataList.add(metadata);
+      }
+    }
+
+    return metadataList;
+  }
+
   public static Map<String, Object> getXmlRpcProductPage(ProductPage page) {
     Hashtable<String, Object> productPageHash = new Hashtable<String, Object>();
     productPageHash.put("totalPages", page.getTotalPages());
@@ -117,6 +192,9 @@ public final class XmlRpcStructFactory {
     productPageHash.put("pageSize", page.getPageSize());
     productPageHash.put("pageProducts", getXmlRpcProductList(page
         .getPageProducts()));
+    if (page.getLastSortValue() != null) {
+      productPageHash.put("lastSortValue", page.getLastSortValue());
+    }
     return productPageHash;
   }
 
@@ -129,6 +207,7 @@ public final class XmlRpcStructFactory {
     page.setTotalPages((Integer) productPageHash.get("totalPages"));
     page.setPageProducts(getProductListFromXmlRpc((Vector<Map<String, Object>>) productPageHash
         .get("pageProducts")));
+    page.setLastSortValue((String) productPageHash.get("lastSortValue"));
     return page;
   }
 
@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.validation;
+
+//OODT imports
+import org.apache.oodt.cas.filemgr.structs.Element;
+import org.apache.oodt.cas.filemgr.structs.ProductType;
+import org.apache.oodt.cas.filemgr.structs.exceptions.ValidationLayerException;
+
+//JDK imports
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @version $Revision$
+ *
+ * <p>
+ * A {@link ValidationLayer} that sits in front of another one (e.g., a
+ * {@link DataSourceValidationLayer}) and keeps the {@link Element}s it has
+ * looked up, by id, by name and by {@link ProductType}, in memory, so that
+ * catalogs asking for the same elements for every product they add or read
+ * don't go back to the underlying store each time.
+ * </p>
+ *
+ * <p>
+ * Everything cached is dropped whenever an element or a product type mapping
+ * is added, modified or removed through this layer, and, if a time to live is
+ * given, once it has been cached for that long, so that changes made to the
+ * underlying store by other means are eventually picked up.
+ * </p>
+ *
+ */
+public class CachingValidationLayer implements ValidationLayer {
+
+    private final ValidationLayer delegate;
+
+    private final long ttlMillis;
+
+    private final ConcurrentHashMap<String, Element> elementsById = new ConcurrentHashMap<String, Element>();
+
+    private final ConcurrentHashMap<String, Element> elementsByName = new ConcurrentHashMap<String, Element>();
+
+    private final ConcurrentHashMap<String, List<Element>> elementsByProductType = new ConcurrentHashMap<String, List<Element>>();
+
+    private volatile List<Element> allElements = null;
+
+    /* bumped on every invalidation, so that loads that raced it are dropped */
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile long expiresAt;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param delegate
+     *            The {@link ValidationLayer} to cache.
+     * @param ttlMillis
+     *            The number of milliseconds to keep cached elements for, or
+     *            zero (or less) to keep them until they are invalidated by a
+     *            change made through this layer.
+     */
+    public CachingValidationLayer(ValidationLayer delegate, long ttlMillis) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate validation layer is required");
+        }
+        this.delegate = delegate;
+        this.ttlMillis = ttlMillis;
+        this.expiresAt = nextExpiry();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.validation.ValidationLayer#addElement(org.apache.oodt.cas.filemgr.structs.Element)
+     */
+    public void addElement(Element element) throws ValidationLayerException {
+        try {
+            delegate.addElement(element);
+        } finally {
+            invalidate();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.validation.ValidationLayer#modifyElement(org.apache.oodt.cas.filemgr.structs.Element)
+     */
+    public void modifyElement(Element element) throws ValidationLayerException {
+        try {
+            delegate.modifyElement(element);
+        } finally {
+            invalidate();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.validation.ValidationLayer#removeElement(org.apache.oodt.cas.filemgr.structs.Element)
+     */
+    public void removeElement(Element element) throws ValidationLayerException {
+        try {
+            delegate.removeElement(element);
+        } finally {
+            invalidate();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.validation.ValidationLayer#addElementToProductType(org.apache.oodt.cas.filemgr.structs.ProductType,
+     *      org.apache.oodt.cas.filemgr.structs.Element)
+     */
+    public void addElementToProductType(ProductType type, Element element)
+            throws ValidationLayerException {
+        try {
+            delegate.addElementToProductType(type, element);
+        } finally {
+            invalidate();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.validation.ValidationLayer#removeElementFromProductType(org.apache.oodt.cas.filemgr.structs.ProductType,
+     *      org.apache.oodt.cas.filemgr.structs.Element)
+     */
+    public void removeElementFromProductType(ProductType type, Element element)
+            throws ValidationLayerException {
+        try {
+            delegate.removeElementFromProductType(type, element);
+        } finally {
+            invalidate();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.validation.ValidationLayer#getElements(org.apache.oodt.cas.filemgr.structs.ProductType)
+     */
+    public List<Element> getElements(ProductType type)
+            throws ValidationLayerException {
+        if (type == null || type.getProductTypeId() == null) {
+            return delegate.getElements(type);
+        }
+        long gen = checkExpiry();
+        List<Element> elements = elementsByProductType.get(type
+                .getProductTypeId());
+        if (elements != null) {
+            hits.incrementAndGet();
+            return new ArrayList<Element>(elements);
+        }
+        misses.incrementAndGet();
+        elements = delegate.getElements(type);
+        if (elements != null) {
+            List<Element> copy = new ArrayList<Element>(elements);
+            if (generation.get() == gen) {
+                elementsByProductType.put(type.getProductTypeId(), copy);
+            }
+            return new ArrayList<Element>(copy);
+        }
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.validation.ValidationLayer#getElements()
+     */
+    public List<Element> getElements() throws ValidationLayerException {
+        long gen = checkExpiry();
+        List<Element> elements = allElements;
+        if (elements != null) {
+            hits.incrementAndGet();
+            return new ArrayList<Element>(elements);
+        }
+        misses.incrementAndGet();
+        elements = delegate.getElements();
+        if (elements != null) {
+            List<Element> copy = new ArrayList<Element>(elements);
+            if (generation.get() == gen) {
+                allElements = copy;
+            }
+            return new ArrayList<Element>(copy);
+        }
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.validation.ValidationLayer#getElementById(java.lang.String)
+     */
+    public Element getElementById(String elementId)
+            throws ValidationLayerException {
+        if (elementId == null) {
+            return delegate.getElementById(elementId);
+        }
+        long gen = checkExpiry();
+        Element element = elementsById.get(elementId);
+        if (element != null) {
+            hits.incrementAndGet();
+            return element;
+        }
+        misses.incrementAndGet();
+        element = delegate.getElementById(elementId);
+        if (element != null && generation.get() == gen) {
+            elementsById.put(elementId, element);
+        }
+        return element;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.validation.ValidationLayer#getElementByName(java.lang.String)
+     */
+    public Element getElementByName(String elementName)
+            throws ValidationLayerException {
+        if (elementName == null) {
+            return delegate.getElementByName(elementName);
+        }
+        long gen = checkExpiry();
+        Element element = elementsByName.get(elementName);
+        if (element != null) {
+            hits.incrementAndGet();
+            return element;
+        }
+        misses.incrementAndGet();
+        element = delegate.getElementByName(elementName);
+        if (element != null && generation.get() == gen) {
+            elementsByName.put(elementName, element);
+        }
+        return element;
+    }
+
+    /**
+     * Drops everything cached, so that the next lookups go to the underlying
+     * {@link ValidationLayer}.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        elementsById.clear();
+        elementsByName.clear();
+        elementsByProductType.clear();
+        allElements = null;
+        expiresAt = nextExpiry();
+    }
+
+    /**
+     * @return The number of lookups answered from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of lookups that went to the underlying
+     *         {@link ValidationLayer}.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The {@link ValidationLayer} being cached.
+     */
+    public ValidationLayer getDelegate() {
+        return delegate;
+    }
+
+    private long checkExpiry() {
+        if (ttlMillis > 0 && System.currentTimeMillis() >= expiresAt) {
+            invalidate();
+        }
+        return generation.get();
+    }
+
+    private long nextExpiry() {
+        return ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis
+                : Long.MAX_VALUE;
+    }
+
+}
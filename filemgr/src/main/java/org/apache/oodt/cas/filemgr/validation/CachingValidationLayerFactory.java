@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.validation;
+
+//OODT imports
+import org.apache.oodt.cas.filemgr.util.GenericFileManagerObjectFactory;
+
+/**
+ * @version $Revision$
+ *
+ * <p>
+ * A Factory class for creating {@link CachingValidationLayer}s in front of the
+ * {@link ValidationLayer} made by another {@link ValidationLayerFactory}.
+ * </p>
+ *
+ */
+public class CachingValidationLayerFactory implements ValidationLayerFactory {
+
+    private static final String DEFAULT_DELEGATE_FACTORY = "org.apache.oodt.cas.filemgr.validation.DataSourceValidationLayerFactory";
+
+    /* the factory of the validation layer to cache */
+    private String delegateFactory;
+
+    /* how long to keep cached elements for */
+    private long ttlMillis;
+
+    /**
+     * <p>
+     * Default Constructor
+     * </p>
+     */
+    public CachingValidationLayerFactory() {
+        delegateFactory = System.getProperty(
+                "org.apache.oodt.cas.filemgr.validation.cache.factory",
+                DEFAULT_DELEGATE_FACTORY);
+        ttlMillis = Long.getLong(
+                "org.apache.oodt.cas.filemgr.validation.cache.ttl.seconds", 0L) * 1000L;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.oodt.cas.filemgr.validation.ValidationLayerFactory#createValidationLayer()
+     */
+    public ValidationLayer createValidationLayer() {
+        ValidationLayer delegate = GenericFileManagerObjectFactory
+                .getValidationLayerFromFactory(delegateFactory);
+        return delegate != null ? new CachingValidationLayer(delegate,
+                ttlMillis) : null;
+    }
+
+}
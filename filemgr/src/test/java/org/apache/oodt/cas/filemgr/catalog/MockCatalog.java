@@ -27,6 +27,7 @@ import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.Query;
 import org.apache.oodt.cas.filemgr.structs.Reference;
 import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
+import org.apache.oodt.cas.filemgr.structs.query.QueryResult;
 import org.apache.oodt.cas.filemgr.validation.ValidationLayer;
 import org.apache.oodt.cas.metadata.Metadata;
 
@@ -109,6 +110,26 @@ public class MockCatalog implements Catalog {
       ingestedProduct.setProductReferences(references);
    }
 
+   @Override
+   public void addProducts(List<Product> products) throws CatalogException {
+      for (Product product : products) {
+         addProduct(product);
+      }
+   }
+
+   @Override
+   public void addMetadata(List<Metadata> metadata, List<Product> products)
+         throws CatalogException {
+   }
+
+   @Override
+   public void addProductReferences(List<Product> products)
+         throws CatalogException {
+      for (Product product : products) {
+         addProductReferences(product);
+      }
+   }
+
    @Override
    public Product getProductById(String productId) throws CatalogException {
       return products.get(productId);
@@ -158,6 +179,12 @@ public class MockCatalog implements Catalog {
       return null;
    }
 
+   @Override
+   public List<QueryResult> reducedQuery(Query query, ProductType type,
+         List<String> elements) throws CatalogException {
+      return null;
+   }
+
    @Override
    public ProductPage pagedQuery(Query query, ProductType type, int pageNum)
          throws CatalogException {
@@ -27,6 +27,7 @@ import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.Query;
 import org.apache.oodt.cas.filemgr.structs.Reference;
 import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
+import org.apache.oodt.cas.filemgr.structs.query.QueryResult;
 import org.apache.oodt.cas.filemgr.util.SqlParser;
 import org.apache.oodt.cas.metadata.Metadata;
 import org.apache.oodt.commons.database.DatabaseConnectionBuilder;
@@ -36,6 +37,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Level;
@@ -373,6 +375,26 @@ public class TestDataSourceCatalog extends TestCase {
 
     }
 
+    public void testAddMetadataWithManyValues() throws CatalogException {
+        Metadata met = new Metadata();
+        met.addMetadata("CAS.ProductName", "it's a product");
+        List<String> filenames = new ArrayList<String>();
+        for (int i = 0; i < 200; i++) {
+            filenames.add("file" + i + ".txt");
+        }
+        met.addMetadata("Filename", filenames);
+
+        Product testProduct = getTestProduct();
+        testProduct.setProductId("1");
+        myCat.addMetadata(met, testProduct);
+
+        Metadata retMet = myCat.getMetadata(testProduct);
+        assertEquals("it's a product", retMet.getMetadata("CAS.ProductName"));
+        List<String> retFilenames = retMet.getAllMetadata("Filename");
+        assertEquals(200, retFilenames.size());
+        assertTrue(retFilenames.containsAll(filenames));
+    }
+
     public void testRemoveMetadata() {
         Metadata met = new Metadata();
         met.addMetadata("Filename", "tempProduct");
@@ -434,6 +456,41 @@ public class TestDataSourceCatalog extends TestCase {
 
     }
 
+    public void testAddProductsInBatch() throws CatalogException {
+        List<Product> products = new ArrayList<Product>();
+        List<Metadata> metadata = new ArrayList<Metadata>();
+        for (int i = 0; i < 3; i++) {
+            Product p = getTestProduct();
+            p.setProductName("batch" + i);
+            Reference ref = new Reference("file:///batch" + i + ".txt",
+                "file:///archive/batch" + i + ".txt", 100 + i);
+            ref.setMimeType("text/plain");
+            List<Reference> refs = new ArrayList<Reference>();
+            refs.add(ref);
+            p.setProductReferences(refs);
+            products.add(p);
+            metadata.add(getTestMetadata("batch" + i));
+        }
+
+        myCat.addProducts(products);
+        myCat.addMetadata(metadata, products);
+        myCat.addProductReferences(products);
+
+        for (int i = 0; i < products.size(); i++) {
+            Product p = products.get(i);
+            assertNotNull(p.getProductId());
+            Product retProduct = myCat.getProductById(p.getProductId());
+            assertNotNull(retProduct);
+            assertEquals("batch" + i, retProduct.getProductName());
+            assertEquals("batch" + i, myCat.getMetadata(p).getMetadata(
+                "CAS.ProductName"));
+
+            List<Reference> productReferences = myCat.getProductReferences(p);
+            assertEquals(1, productReferences.size());
+            assertEquals(100 + i, productReferences.get(0).getFileSize());
+        }
+    }
+
     public void testQuery() throws Exception {
         // ingest first file
         Product testProduct = getTestProduct();
@@ -495,6 +552,43 @@ public class TestDataSourceCatalog extends TestCase {
         assertEquals("[24, 23]", productIds.toString());
     }
 
+    public void testReducedQuery() throws Exception {
+        List<Product> products = new ArrayList<Product>();
+        List<Metadata> metadata = new ArrayList<Metadata>();
+        for (int i = 0; i < 3; i++) {
+            Product p = getTestProduct();
+            p.setProductName("reduced" + i);
+            products.add(p);
+            Metadata met = getTestMetadata("reduced" + i);
+            met.addMetadata(CoreMetKeys.FILENAME, i < 2 ? "a.txt" : "b.txt");
+            metadata.add(met);
+        }
+        myCat.addProducts(products);
+        myCat.addMetadata(metadata, products);
+
+        Query query = new Query();
+        query.addCriterion(SqlParser.parseSqlWhereClause("Filename == 'a.txt'"));
+        ProductType type = products.get(0).getProductType();
+        List<String> productIds = myCat.query(query, type);
+        assertEquals(2, productIds.size());
+
+        List<QueryResult> results = myCat.reducedQuery(query, type,
+            Collections.singletonList("CAS.ProductName"));
+        assertEquals(2, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            QueryResult result = results.get(i);
+            assertEquals(productIds.get(i), result.getProduct().getProductId());
+            assertEquals(result.getProduct().getProductName(), result
+                .getMetadata().getMetadata("CAS.ProductName"));
+            assertFalse(result.getMetadata().containsKey(CoreMetKeys.FILENAME));
+        }
+
+        results = myCat.reducedQuery(query, type, null);
+        assertEquals(2, results.size());
+        assertEquals("a.txt", results.get(0).getMetadata().getMetadata(
+            CoreMetKeys.FILENAME));
+    }
+
     public void testNullValidationLayer(){
 
         setUpProperties();
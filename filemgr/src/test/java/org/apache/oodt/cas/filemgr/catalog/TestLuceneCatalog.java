@@ -27,6 +27,7 @@ import org.apache.oodt.cas.filemgr.structs.Query;
 import org.apache.oodt.cas.filemgr.structs.Reference;
 import org.apache.oodt.cas.filemgr.structs.TermQueryCriteria;
 import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
+import org.apache.oodt.cas.filemgr.structs.query.QueryResult;
 import org.apache.oodt.cas.metadata.Metadata;
 
 import com.google.common.collect.Lists;
@@ -37,6 +38,8 @@ import org.junit.Assert;
 import java.io.File;
 import java.io.FileInputStream;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.Vector;
@@ -931,6 +934,46 @@ public class TestLuceneCatalog extends TestCase {
         }
     }
     
+    public void testReducedQuery() throws CatalogException {
+        for (int i = 0; i < 3; i++) {
+            Product testProduct = Product.getDefaultFlatProduct("test" + i,
+                    "urn:oodt:GenericFile");
+            testProduct.getProductType().setName("GenericFile");
+            Reference ref = new Reference("file:///foo.txt", "file:///bar.txt", 100);
+            Vector<Reference> references = new Vector<Reference>();
+            references.add(ref);
+            testProduct.setProductReferences(references);
+            Metadata met = new Metadata();
+            met.addMetadata("CAS.ProductName", "test" + i);
+            met.addMetadata("Filename", i < 2 ? "a.txt" : "b.txt");
+            myCat.addProduct(testProduct);
+            myCat.addMetadata(met, testProduct);
+        }
+
+        Query query = new Query();
+        TermQueryCriteria tqc = new TermQueryCriteria();
+        tqc.setElementName("Filename");
+        tqc.setValue("a.txt");
+        query.addCriterion(tqc);
+        ProductType type = myCat.getProductByName("test0").getProductType();
+
+        List<String> productIds = myCat.query(query, type);
+        List<QueryResult> results = myCat.reducedQuery(query, type,
+                Collections.singletonList("CAS.ProductName"));
+        assertEquals(2, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            QueryResult result = results.get(i);
+            assertEquals(productIds.get(i), result.getProduct().getProductId());
+            assertEquals(result.getProduct().getProductName(), result
+                    .getMetadata().getMetadata("CAS.ProductName"));
+            assertFalse(result.getMetadata().containsKey("Filename"));
+        }
+
+        results = myCat.reducedQuery(query, type, null);
+        assertEquals(2, results.size());
+        assertEquals("a.txt", results.get(0).getMetadata().getMetadata("Filename"));
+    }
+
     public void testPagedQuery(){
     	// Add a couple of Products and associated Metadata
     	Product testProduct = null;
@@ -1014,6 +1057,189 @@ public class TestLuceneCatalog extends TestCase {
         }
     }*/
 
+    public void testNextPageResumesAfterLastSortValue() throws CatalogException {
+        // distinct products, several sharing a received time
+        int numProducts = catPageSize * 2 + 5;
+        for (int i = 0; i < numProducts; i++) {
+            Product p = getTestProduct();
+            p.setProductName("paged" + i);
+            Metadata met = getTestMetadata("paged" + i);
+            met.addMetadata("CAS.ProductReceivedTime",
+                "2018-01-01T00:00:" + (10 + i / 3) + ".000Z");
+            myCat.addProduct(p);
+            myCat.addMetadata(met, p);
+        }
+
+        ProductType type = new ProductType();
+        type.setProductTypeId("urn:oodt:GenericFile");
+        type.setName("GenericFile");
+
+        List<String> walked = new Vector<String>();
+        ProductPage page = myCat.getFirstPage(type);
+        assertNotNull(page.getLastSortValue());
+        assertEquals(numProducts, page.getNumOfHits());
+        walked.addAll(getNames(page));
+        while (!page.isLastPage()) {
+            page = myCat.getNextPage(type, page);
+            walked.addAll(getNames(page));
+        }
+        assertEquals(3, page.getPageNum());
+
+        // cursor paging must agree with offset paging
+        List<String> paged = new Vector<String>();
+        for (int i = 1; i <= 3; i++) {
+            paged.addAll(getNames(myCat.pagedQuery(new Query(), type, i)));
+        }
+        assertEquals(numProducts, walked.size());
+        assertEquals(paged, walked);
+        assertEquals("paged" + (numProducts - 1), walked.get(0));
+        assertEquals(getNames(myCat.getLastProductPage(type)),
+            walked.subList(catPageSize * 2, numProducts));
+
+        // a cursor from an older reader falls back to product ids
+        ProductPage firstPage = myCat.getFirstPage(type);
+        Product late = getTestProduct();
+        late.setProductName("late");
+        myCat.addProduct(late);
+        myCat.addMetadata(getTestMetadata("late"), late);
+        assertEquals(walked.subList(catPageSize, catPageSize * 2),
+            getNames(myCat.getNextPage(type, firstPage)));
+    }
+
+    private static List<String> getNames(ProductPage page) {
+        List<String> names = new Vector<String>();
+        for (Product p : page.getPageProducts()) {
+            names.add(p.getProductName());
+        }
+        return names;
+    }
+
+    public void testNearRealTimeReadsOwnWrites() throws CatalogException {
+        LuceneCatalog nrtCat = new LuceneCatalog(tmpDirPath, null, catPageSize,
+            60, 60, 20, true, 60000L, 60L);
+        try {
+            Product testProduct = getTestProduct();
+            nrtCat.addProduct(testProduct);
+            nrtCat.addMetadata(getTestMetadata("test"), testProduct);
+
+            // the refresh interval is far away, so this must not be stale
+            Product retProduct = nrtCat.getProductByName("test");
+            assertNotNull(retProduct);
+            assertEquals(testProduct.getProductId(), retProduct.getProductId());
+
+            testProduct.setProductName("f002");
+            nrtCat.modifyProduct(testProduct);
+            assertNull(nrtCat.getProductByName("test"));
+            assertEquals("test", nrtCat.getMetadata(nrtCat.getProductByName("f002"))
+                .getMetadata("CAS.ProductName"));
+            assertEquals(1, nrtCat.getNumProducts(testProduct.getProductType()));
+        } finally {
+            nrtCat.close();
+        }
+    }
+
+    public void testNearRealTimeConcurrentUpdates() throws Exception {
+        final LuceneCatalog nrtCat = new LuceneCatalog(tmpDirPath, null,
+            catPageSize, 60, 60, 20, true, 60000L, 60L);
+        try {
+            final Product testProduct = getTestProduct();
+            nrtCat.addProduct(testProduct);
+            nrtCat.addMetadata(getTestMetadata("test"), testProduct);
+
+            // each update reads, deletes and re-adds the product
+            final List<Exception> errors = Collections
+                .synchronizedList(new Vector<Exception>());
+            Thread[] updaters = new Thread[4];
+            for (int i = 0; i < updaters.length; i++) {
+                updaters[i] = new Thread() {
+                    public void run() {
+                        try {
+                            for (int j = 0; j < 10; j++) {
+                                nrtCat.addMetadata(getTestMetadata("test"),
+                                    testProduct);
+                            }
+                        } catch (Exception e) {
+                            errors.add(e);
+                        }
+                    }
+                };
+                updaters[i].start();
+            }
+            for (Thread updater : updaters) {
+                updater.join();
+            }
+
+            assertTrue(errors.toString(), errors.isEmpty());
+            assertNotNull(nrtCat.getProductById(testProduct.getProductId()));
+            assertEquals(1, nrtCat.getNumProducts(testProduct.getProductType()));
+        } finally {
+            nrtCat.close();
+        }
+    }
+
+    public void testNearRealTimeCommitsOnClose() throws CatalogException {
+        LuceneCatalog nrtCat = new LuceneCatalog(tmpDirPath, null, catPageSize,
+            60, 60, 20, true, 1000L, 3600L);
+        Product testProduct = getTestProduct();
+        nrtCat.addProduct(testProduct);
+        nrtCat.addMetadata(getTestMetadata("test"), testProduct);
+        nrtCat.close();
+
+        // a catalog without a shared writer only sees committed changes
+        Product retProduct = myCat.getProductById(testProduct.getProductId());
+        assertNotNull(retProduct);
+        assertEquals("test", retProduct.getProductName());
+    }
+
+    public void testAddProductsInBatch() throws CatalogException {
+        List<Product> products = new Vector<Product>();
+        List<Metadata> metadata = new Vector<Metadata>();
+        for (int i = 0; i < 3; i++) {
+            Product p = getTestProduct();
+            p.setProductName("batch" + i);
+            // not versioned yet
+            p.getProductReferences().get(0).setDataStoreReference(null);
+            products.add(p);
+            metadata.add(getTestMetadata("batch" + i));
+        }
+
+        myCat.addProducts(products);
+        for (Product p : products) {
+            assertNotNull(p.getProductId());
+        }
+        myCat.addMetadata(metadata, products);
+        assertEquals(0, myCat.getNumProducts(products.get(0).getProductType()));
+
+        for (Product p : products) {
+            p.getProductReferences().get(0).setDataStoreReference(
+                "file:///archive/" + p.getProductName() + ".txt");
+        }
+        myCat.addProductReferences(products);
+
+        assertEquals(3, myCat.getNumProducts(products.get(0).getProductType()));
+        for (Product p : products) {
+            Product retProduct = myCat.getProductById(p.getProductId());
+            assertNotNull(retProduct);
+            assertEquals(p.getProductName(), retProduct.getProductName());
+            assertEquals(p.getProductName(), myCat.getMetadata(retProduct)
+                .getMetadata("CAS.ProductName"));
+            assertEquals(1, myCat.getProductReferences(retProduct).size());
+        }
+
+        // a batch with a product that is already there adds none of it
+        Product fresh = getTestProduct();
+        fresh.setProductName("fresh");
+        Product existing = getTestProduct();
+        existing.setProductName("existing");
+        myCat.addProduct(existing);
+        try {
+            myCat.addProducts(Arrays.asList(fresh, existing));
+            fail("Expected a CatalogException");
+        } catch (CatalogException expected) {
+            assertNull(fresh.getProductId());
+        }
+    }
+
     public void testCreateCatalogException(){
 
         //TODO Use the TestAppender to make sure that an exception thrown is caught and logged.
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.catalog.solr;
+
+//JDK imports
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+//OODT imports
+import org.apache.oodt.cas.filemgr.structs.Product;
+import org.apache.oodt.cas.filemgr.structs.ProductType;
+import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogBatchException;
+import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
+import org.apache.oodt.cas.metadata.Metadata;
+
+//Junit imports
+import junit.framework.TestCase;
+
+/**
+ * Tests the bulk operations of the {@link SolrCatalog} against a
+ * {@link SolrClient} that records its requests instead of sending them.
+ *
+ * @version $Revision$
+ */
+public class TestSolrCatalog extends TestCase {
+
+  private RecordingSolrClient solrClient;
+
+  private SolrCatalog catalog;
+
+  protected void setUp() throws Exception {
+    solrClient = new RecordingSolrClient();
+    catalog = new SolrCatalog(solrClient, new UUIDProductIdGenerator(),
+        new DefaultProductSerializer(), 2);
+  }
+
+  protected void tearDown() throws Exception {
+    solrClient.close();
+  }
+
+  public void testAddProductsSplitsBatchesAndCommitsOnce()
+      throws CatalogException {
+    List<Product> products = products(5);
+    for (int i = 0; i < products.size(); i++) {
+      products.get(i).setProductId("id" + i);
+    }
+    catalog.addProducts(products);
+
+    // one document per product, two per request
+    assertEquals(Arrays.asList(2, 2, 1), solrClient.indexSizes);
+    assertEquals(Arrays.asList(false, false, true), solrClient.indexCommits);
+    assertEquals(1, solrClient.queries.size());
+    assertEquals(5, solrClient.queries.get(0).size());
+  }
+
+  public void testAddProductsRejectsDuplicateIds() {
+    List<Product> products = products(3);
+    products.get(0).setProductId("dup");
+    products.get(2).setProductId("dup");
+    try {
+      catalog.addProducts(products);
+      fail("Expected a duplicate product id to be rejected");
+    } catch (CatalogException expected) {
+    }
+    assertTrue(solrClient.queries.isEmpty());
+    assertTrue(solrClient.indexSizes.isEmpty());
+  }
+
+  public void testAddProductsRejectsExistingIds() {
+    List<Product> products = products(3);
+    products.get(1).setProductId("existing");
+    solrClient.existingIds.add("existing");
+    try {
+      catalog.addProducts(products);
+      fail("Expected an existing product id to be rejected");
+    } catch (CatalogException e) {
+      assertTrue(e.getMessage().contains("file1.txt"));
+    }
+    assertTrue(solrClient.indexSizes.isEmpty());
+  }
+
+  public void testFailedProductBatchIsDeleted() {
+    List<Product> products = products(5);
+    solrClient.failingIndexCall = 2;
+    try {
+      catalog.addProducts(products);
+      fail("Expected the second request to fail");
+    } catch (CatalogBatchException e) {
+      fail("Expected the products of the batch to be deleted");
+    } catch (CatalogException expected) {
+    }
+
+    // the first request went through, so all products are deleted again
+    assertEquals(2, solrClient.indexSizes.size());
+    assertEquals(1, solrClient.deletes.size());
+    List<String> ids = new ArrayList<String>();
+    for (Product product : products) {
+      ids.add(product.getProductId());
+    }
+    assertEquals(ids, solrClient.deletes.get(0));
+    assertEquals(Collections.singletonList(true), solrClient.deleteCommits);
+  }
+
+  public void testFailedMetadataBatchReportsProductsSent() {
+    List<Product> products = products(5);
+    List<Metadata> metadata = new ArrayList<Metadata>();
+    for (int i = 0; i < products.size(); i++) {
+      products.get(i).setProductId("id" + i);
+      Metadata met = new Metadata();
+      met.addMetadata("Key", "value" + i);
+      metadata.add(met);
+    }
+    solrClient.failingIndexCall = 3;
+    try {
+      catalog.addMetadata(metadata, products);
+      fail("Expected the third request to fail");
+    } catch (CatalogBatchException e) {
+      assertEquals(4, e.getNumCompleted());
+    } catch (CatalogException e) {
+      fail("Expected the number of products sent to be reported");
+    }
+    assertTrue(solrClient.deletes.isEmpty());
+  }
+
+  public void testDeleteSendsIdsAsTheyAre() throws Exception {
+    final List<String> posted = new ArrayList<String>();
+    SolrClient client = new SolrClient("http://localhost:8983/solr") {
+      @Override
+      protected String doPost(String url, String document, String mimeType) {
+        posted.add(document);
+        return "";
+      }
+    };
+    try {
+      client.delete(Arrays.asList("a b:*", "x&<y>"), true);
+    } finally {
+      client.close();
+    }
+    assertEquals(Collections
+        .singletonList("<delete><id>a b:*</id><id>x&amp;&lt;y&gt;</id></delete>"),
+        posted);
+  }
+
+  private static List<Product> products(int numProducts) {
+    List<Product> products = new ArrayList<Product>();
+    for (int i = 0; i < numProducts; i++) {
+      ProductType type = new ProductType();
+      type.setProductTypeId("urn:oodt:GenericFile");
+      type.setName("GenericFile");
+      Product product = new Product();
+      product.setProductName("file" + i + ".txt");
+      product.setProductType(type);
+      products.add(product);
+    }
+    return products;
+  }
+
+  /**
+   * Records the requests it is given instead of posting them, answers id
+   * queries with the ids it is told exist, and fails the index request it is
+   * told to.
+   */
+  private static class RecordingSolrClient extends SolrClient {
+
+    List<Integer> indexSizes = new ArrayList<Integer>();
+
+    List<Boolean> indexCommits = new ArrayList<Boolean>();
+
+    List<List<String>> queries = new ArrayList<List<String>>();
+
+    List<List<String>> deletes = new ArrayList<List<String>>();
+
+    List<Boolean> deleteCommits = new ArrayList<Boolean>();
+
+    Set<String> existingIds = new HashSet<String>();
+
+    int failingIndexCall = -1;
+
+    RecordingSolrClient() {
+      super("http://localhost:8983/solr");
+    }
+
+    @Override
+    public String index(List<String> docs, boolean commit, String mimeType)
+        throws CatalogException {
+      indexSizes.add(docs.size());
+      indexCommits.add(commit);
+      if (indexSizes.size() == failingIndexCall) {
+        throw new CatalogException("index request failed");
+      }
+      return "";
+    }
+
+    @Override
+    public String delete(List<String> ids, boolean commit)
+        throws CatalogException {
+      deletes.add(new ArrayList<String>(ids));
+      deleteCommits.add(commit);
+      return "";
+    }
+
+    @Override
+    public String queryProductsByIds(List<String> ids, String mimeType)
+        throws CatalogException {
+      queries.add(new ArrayList<String>(ids));
+      StringBuilder docs = new StringBuilder();
+      int numFound = 0;
+      for (String id : ids) {
+        if (existingIds.contains(id)) {
+          docs.append("<doc><str name=\"").append(Parameters.PRODUCT_ID)
+              .append("\">").append(id).append("</str></doc>");
+          numFound++;
+        }
+      }
+      return "<response><result numFound=\"" + numFound + "\" start=\"0\">"
+          + docs + "</result></response>";
+    }
+  }
+
+}
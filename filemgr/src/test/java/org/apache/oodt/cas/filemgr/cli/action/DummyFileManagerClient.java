@@ -251,6 +251,12 @@ public class DummyFileManagerClient implements FileManagerClient {
         return null;
     }
 
+    @Override
+    public List<ProductIngestStatus> ingestProducts(List<Product> products, List<Metadata> metadata,
+                                                    boolean clientTransfer) throws Exception {
+        return null;
+    }
+
     @Override
     public Metadata getCatalogValues(Metadata metadata, ProductType productType) throws XmlRpcException, IOException {
         return null;
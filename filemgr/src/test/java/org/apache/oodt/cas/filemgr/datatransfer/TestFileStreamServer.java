@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.datatransfer;
+
+//Apache imports
+import org.apache.commons.io.FileUtils;
+
+//JDK imports
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Random;
+import java.util.UUID;
+
+//Junit imports
+import junit.framework.TestCase;
+
+/**
+ * Test class for {@link FileStreamServer} and {@link FileStreamClient}.
+ */
+public class TestFileStreamServer extends TestCase {
+
+   private FileStreamServer server;
+
+   private FileStreamClient client;
+
+   private File testDir;
+
+   private File outsideDir;
+
+   private Properties initialProperties = new Properties(
+      System.getProperties());
+
+   public void setUp() throws Exception {
+      File testFile = File.createTempFile("test", ".txt");
+      testDir = new File(testFile.getParentFile(), UUID.randomUUID().toString());
+      outsideDir = new File(testFile.getParentFile(), UUID.randomUUID().toString());
+      if (!testDir.mkdirs() || !outsideDir.mkdirs()) {
+         throw new Exception("Failed to create test directory!");
+      }
+      testFile.delete();
+
+      server = new FileStreamServer("localhost", 0, Collections
+         .singletonList(testDir), 4);
+      server.start();
+      // small windows and several streams so a file is split into ranges
+      client = new FileStreamClient("localhost", server.getPort(), 1024, 4, 1);
+   }
+
+   public void tearDown() throws Exception {
+      server.shutdown();
+      FileUtils.forceDelete(testDir);
+      FileUtils.forceDelete(outsideDir);
+      System.setProperties(initialProperties);
+   }
+
+   public void testPutAndGet() throws Exception {
+      byte[] data = new byte[10 * 1024 + 17];
+      new Random(42).nextBytes(data);
+      File origFile = new File(testDir, "orig.dat");
+      FileUtils.writeByteArrayToFile(origFile, data);
+
+      File remoteFile = new File(testDir, "remote/sub/remote.dat");
+      client.put(origFile, remoteFile.getAbsolutePath());
+      assertTrue(remoteFile.exists());
+      assertEquals(data.length, client.size(remoteFile.getAbsolutePath()));
+      assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(remoteFile)));
+
+      File destFile = new File(testDir, "dest.dat");
+      client.get(remoteFile.getAbsolutePath(), destFile);
+      assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(destFile)));
+   }
+
+   public void testPutReplacesLongerFile() throws Exception {
+      File remoteFile = new File(testDir, "remote.dat");
+      FileUtils.writeByteArrayToFile(remoteFile, new byte[4096]);
+
+      byte[] data = "short".getBytes("UTF-8");
+      File origFile = new File(testDir, "orig.dat");
+      FileUtils.writeByteArrayToFile(origFile, data);
+
+      client.put(origFile, remoteFile.getAbsolutePath());
+      assertTrue(Arrays.equals(data, FileUtils.readFileToByteArray(remoteFile)));
+   }
+
+   public void testEmptyAndMissingFiles() throws Exception {
+      File origFile = new File(testDir, "empty.dat");
+      assertTrue(origFile.createNewFile());
+      File remoteFile = new File(testDir, "remote.dat");
+      client.put(origFile, remoteFile.getAbsolutePath());
+      assertEquals(0, client.size(remoteFile.getAbsolutePath()));
+
+      File missing = new File(testDir, "missing.dat");
+      assertEquals(-1, client.size(missing.getAbsolutePath()));
+      try {
+         client.get(missing.getAbsolutePath(), new File(testDir, "dest.dat"));
+         fail("Retrieved a file that does not exist");
+      } catch (FileNotFoundException expected) {
+      }
+   }
+
+   public void testRefusesFilesOutsideRoots() throws Exception {
+      File outsideFile = new File(outsideDir, "secret.dat");
+      FileUtils.writeByteArrayToFile(outsideFile, new byte[16]);
+      String[] paths = { outsideFile.getAbsolutePath(),
+         testDir.getAbsolutePath() + "/../" + outsideDir.getName() + "/secret.dat",
+         "secret.dat" };
+      for (String path : paths) {
+         try {
+            client.size(path);
+            fail("Served a file outside of the root: " + path);
+         } catch (IOException expected) {
+         }
+         try {
+            client.get(path, new File(testDir, "dest.dat"));
+            fail("Served a file outside of the root: " + path);
+         } catch (IOException expected) {
+         }
+      }
+
+      File origFile = new File(testDir, "orig.dat");
+      FileUtils.writeByteArrayToFile(origFile, "overwritten".getBytes("UTF-8"));
+      try {
+         client.put(origFile, outsideFile.getAbsolutePath());
+         fail("Wrote a file outside of the root");
+      } catch (IOException expected) {
+      }
+      try {
+         client.put(origFile, new File(outsideDir, "new.dat").getAbsolutePath());
+         fail("Wrote a file outside of the root");
+      } catch (IOException expected) {
+      }
+      assertEquals(16, outsideFile.length());
+      assertFalse(new File(outsideDir, "new.dat").exists());
+   }
+
+   public void testRefusesBadRanges() throws Exception {
+      File remoteFile = new File(testDir, "remote.dat");
+      long[][] ranges = { { 0, 16, 0 }, { 0, 16, -1 }, { 0, 0, 1024 },
+         { 0, -16, 1024 }, { -1, 16, 1024 }, { Long.MAX_VALUE, 16, 1024 } };
+      for (long[] range : ranges) {
+         Socket socket = new Socket("localhost", server.getPort());
+         try {
+            DataOutputStream out = new DataOutputStream(socket
+               .getOutputStream());
+            out.writeByte(FileStreamServer.PUT);
+            out.writeUTF(remoteFile.getAbsolutePath());
+            for (long value : range) {
+               out.writeLong(value);
+            }
+            out.flush();
+            assertEquals("Accepted range " + Arrays.toString(range), -1L,
+               new DataInputStream(socket.getInputStream()).readLong());
+         } finally {
+            socket.close();
+         }
+         assertFalse(remoteFile.exists());
+      }
+   }
+
+   public void testListensOnFileManagerHost() throws Exception {
+      System.clearProperty(
+         "org.apache.oodt.cas.filemgr.datatransfer.remote.streamHost");
+      System.clearProperty("org.apache.oodt.cas.filemgr.url");
+      try {
+         FileStreamServer.fromSystemProperties(0, null);
+         fail("Picked an address to listen on without being told one");
+      } catch (IOException expected) {
+      }
+
+      System.setProperty("org.apache.oodt.cas.filemgr.url",
+         "http://127.0.0.1:9000");
+      FileStreamServer fmHostServer = FileStreamServer.fromSystemProperties(0,
+         null);
+      fmHostServer.start();
+      try {
+         FileStreamClient fmHostClient = new FileStreamClient("127.0.0.1",
+            fmHostServer.getPort(), 1024, 1, 0);
+         // no roots, so the request is refused, but it is heard
+         try {
+            fmHostClient.size(new File(testDir, "remote.dat")
+               .getAbsolutePath());
+            fail("Served a file outside of the roots");
+         } catch (IOException expected) {
+         }
+      } finally {
+         fmHostServer.shutdown();
+      }
+   }
+
+}
@@ -93,6 +93,48 @@ public class TestLocalDataTransferer extends TestCase {
             FileUtils.contentEquals(origFile, destFile));
    }
 
+   public void testParallelTransfer() throws Exception {
+      LocalDataTransferer parallel = new LocalDataTransferer(4, false);
+      Product testProduct = Product.getDefaultFlatProduct("test",
+            "urn:oodt:GenericFile");
+      File srcDir = new File(testDir, "src");
+      for (int i = 0; i < 10; i++) {
+         File src = new File(srcDir, "file" + i + ".txt");
+         FileUtils.writeStringToFile(src, "contents of file " + i, "UTF-8");
+         testProduct.getProductReferences().add(
+               new Reference(src.toURI().toString(), new File(repoDir,
+                     src.getName()).toURI().toString(), src.length()));
+      }
+
+      parallel.transferProduct(testProduct);
+
+      for (Reference r : testProduct.getProductReferences()) {
+         File src = new File(new URL(r.getOrigReference()).getFile());
+         File repo = new File(new URL(r.getDataStoreReference()).getFile());
+         assertTrue(src.exists());
+         assertTrue(FileUtils.contentEquals(src, repo));
+      }
+
+      parallel.retrieveProduct(testProduct, destDir);
+      assertEquals(10, destDir.list().length);
+   }
+
+   public void testMoveFiles() throws Exception {
+      LocalDataTransferer mover = new LocalDataTransferer(1, true);
+      File src = new File(testDir, "move.txt");
+      FileUtils.copyFile(origFile, src);
+      Product testProduct = Product.getDefaultFlatProduct("test",
+            "urn:oodt:GenericFile");
+      testProduct.getProductReferences().add(
+            new Reference(src.toURI().toString(), repoFile.toURI().toString(),
+                  src.length()));
+
+      mover.transferProduct(testProduct);
+
+      assertFalse("Source file was not moved", src.exists());
+      assertTrue(FileUtils.contentEquals(origFile, repoFile));
+   }
+
    private Product createDummyProduct() {
       Product testProduct = Product.getDefaultFlatProduct("test",
             "urn:oodt:GenericFile");
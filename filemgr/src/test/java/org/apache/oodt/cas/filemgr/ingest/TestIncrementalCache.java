@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.ingest;
+
+//OODT imports
+import org.apache.oodt.cas.filemgr.metadata.CoreMetKeys;
+import org.apache.oodt.cas.filemgr.system.FileManagerServer;
+import org.apache.oodt.cas.filemgr.util.RpcCommunicationFactory;
+import org.apache.oodt.cas.metadata.Metadata;
+import org.apache.oodt.commons.util.DateConvert;
+
+//JDK imports
+import java.io.File;
+import java.io.FileInputStream;
+import java.net.URL;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.Vector;
+
+//Junit imports
+import junit.framework.TestCase;
+
+/**
+ * @version $Revision$
+ *
+ * <p>
+ * Test suite for the {@link IncrementalCache}.
+ * </p>.
+ */
+public class TestIncrementalCache extends TestCase {
+
+    private static final int FM_PORT = 50010;
+
+    private static final String FM_URL = "http://localhost:" + FM_PORT;
+
+    private static final String RANGE_QUERY_ELEM = "CAS.ProductReceivedTime";
+
+    private static final String UNIQUE_ELEM = "CAS.ProductName";
+
+    private static final String GENERIC_FILE_TYPE = "GenericFile";
+
+    private static final String transferServiceFacClass = "org.apache.oodt.cas."
+            + "filemgr.datatransfer.LocalDataTransferFactory";
+
+    private FileManagerServer fm;
+
+    private String luceneCatLoc;
+
+    private File stateFile;
+
+    private StdIngester ingester = new StdIngester(transferServiceFacClass);
+
+    private List<String> cachedProductTypes = new Vector<String>();
+
+    private String dateRangeStart;
+
+    private String dateRangeEnd;
+
+    private Properties initialProperties = new Properties(
+        System.getProperties());
+
+    public void testIncrementalSync() throws Exception {
+        IncrementalCache cache = new IncrementalCache(new URL(FM_URL),
+                UNIQUE_ELEM, cachedProductTypes, RANGE_QUERY_ELEM,
+                dateRangeStart, dateRangeEnd);
+        cache.sync();
+        assertEquals(1, cache.size());
+        assertTrue(cache.contains("test.txt"));
+        assertNotNull(cache.getWatermark());
+
+        ingest("test-file-1.txt");
+        assertFalse(cache.contains("test-file-1.txt"));
+        cache.sync();
+        assertEquals(2, cache.size());
+        assertTrue(cache.contains("test.txt"));
+        assertTrue(cache.contains("test-file-1.txt"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.getWatermark());
+    }
+
+    public void testBloomFilterState() throws Exception {
+        IncrementalCache cache = new IncrementalCache(new URL(FM_URL),
+                UNIQUE_ELEM, cachedProductTypes, RANGE_QUERY_ELEM,
+                dateRangeStart, dateRangeEnd, 1000, 0.01, stateFile);
+        cache.sync();
+        assertEquals(1, cache.size());
+        assertTrue(cache.contains("test.txt"));
+        assertFalse(cache.contains("test-file-1.txt"));
+        assertTrue(stateFile.exists());
+
+        // a new cache picks up where the last one left off
+        IncrementalCache restarted = new IncrementalCache(new URL(FM_URL),
+                UNIQUE_ELEM, cachedProductTypes, RANGE_QUERY_ELEM,
+                dateRangeStart, dateRangeEnd, 1000, 0.01, stateFile);
+        assertEquals(cache.getWatermark(), restarted.getWatermark());
+        assertTrue(restarted.contains("test.txt"));
+
+        ingest("test-file-1.txt");
+        restarted.sync();
+        assertEquals(2, restarted.size());
+        assertTrue(restarted.contains("test-file-1.txt"));
+    }
+
+    public void testBloomFilter() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("product-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("product-" + i));
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 50);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp() throws Exception {
+        Date startDate = new Date();
+        Date endDate = new Date(startDate.getTime() + 60L * 60L * 1000L);
+        dateRangeStart = DateConvert.isoFormat(startDate);
+        dateRangeEnd = DateConvert.isoFormat(endDate);
+        cachedProductTypes.add(GENERIC_FILE_TYPE);
+
+        File tmp = File.createTempFile("ingestcache", ".state");
+        tmp.delete();
+        stateFile = tmp;
+
+        startXmlRpcFileManager();
+        ingest("test.txt");
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see junit.framework.TestCase#tearDown()
+     */
+    protected void tearDown() throws Exception {
+        fm.shutdown();
+        fm = null;
+
+        // blow away lucene cat
+        deleteAllFiles(luceneCatLoc);
+
+        // blow away test files
+        deleteAllFiles("/tmp/test.txt");
+        deleteAllFiles("/tmp/test-file-1.txt");
+        stateFile.delete();
+
+        // Reset the System properties to initial values.
+        System.setProperties(initialProperties);
+    }
+
+    private void ingest(String fileName) throws Exception {
+        URL ingestUrl = this.getClass().getResource("/ingest");
+        URL refUrl = this.getClass().getResource("/ingest/" + fileName);
+
+        Metadata prodMet = new Metadata();
+        prodMet.addMetadata(CoreMetKeys.FILENAME, fileName);
+        prodMet.addMetadata(CoreMetKeys.PRODUCT_TYPE, GENERIC_FILE_TYPE);
+        prodMet.addMetadata(CoreMetKeys.FILE_LOCATION, new File(
+            ingestUrl.getFile()).getCanonicalPath());
+        ingester.ingest(new URL(FM_URL), new File(refUrl.getFile()), prodMet);
+        assertTrue(RpcCommunicationFactory.createClient(new URL(FM_URL))
+                .hasProduct(fileName));
+    }
+
+    private void deleteAllFiles(String startDir) {
+        File startDirFile = new File(startDir);
+        File[] delFiles = startDirFile.listFiles();
+
+        if (delFiles != null && delFiles.length > 0) {
+            for (File delFile : delFiles) {
+                delFile.delete();
+            }
+        }
+
+        startDirFile.delete();
+
+    }
+
+    private void startXmlRpcFileManager() throws Exception {
+        Properties properties = new Properties(System.getProperties());
+
+        // set the log levels
+        URL loggingPropertiesUrl = this.getClass().getResource(
+            "/test.logging.properties");
+        properties.setProperty("java.util.logging.config.file", new File(
+            loggingPropertiesUrl.getFile()).getAbsolutePath());
+
+        // first load the example configuration
+        URL filemgrPropertiesUrl = this.getClass().getResource(
+            "/filemgr.properties");
+        properties.load(
+            new FileInputStream(new File(filemgrPropertiesUrl.getFile())));
+
+        // override the catalog to use: we'll use lucene
+        URL ingestUrl = this.getClass().getResource("/ingest");
+        luceneCatLoc = new File(ingestUrl.getFile()).getCanonicalPath()
+            + "/cat";
+        properties.setProperty("filemgr.catalog.factory",
+                "org.apache.oodt.cas.filemgr.catalog.LuceneCatalogFactory");
+        properties.setProperty(
+                "org.apache.oodt.cas.filemgr.catalog.lucene.idxPath",
+                luceneCatLoc);
+
+        // now override the repo mgr policy
+        URL fmpolicyUrl = this.getClass().getResource("/ingest/fmpolicy");
+        properties.setProperty(
+                "org.apache.oodt.cas.filemgr.repositorymgr.dirs",
+                "file://"
+                    + new File(fmpolicyUrl.getFile()).getCanonicalPath());
+
+        // now override the val layer ones
+        URL examplesCoreUrl = this.getClass().getResource("/examples/core");
+        properties.setProperty("org.apache.oodt.cas.filemgr.validation.dirs",
+                "file://"
+                    + new File(examplesCoreUrl.getFile()).getAbsolutePath());
+
+        // set up mime repo path
+        URL mimeTypesUrl = this.getClass().getResource("/mime-types.xml");
+        properties.setProperty(
+                "org.apache.oodt.cas.filemgr.mime.type.repository", new File(
+                     mimeTypesUrl.getFile()).getAbsolutePath());
+
+        System.setProperties(properties);
+
+        fm = RpcCommunicationFactory.createServer(FM_PORT);
+        fm.startUp();
+    }
+
+}
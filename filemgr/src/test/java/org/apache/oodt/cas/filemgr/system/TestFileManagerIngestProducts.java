@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.system;
+
+//JDK imports
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//OODT imports
+import org.apache.oodt.cas.filemgr.catalog.MockCatalog;
+import org.apache.oodt.cas.filemgr.repository.XMLRepositoryManager;
+import org.apache.oodt.cas.filemgr.structs.Product;
+import org.apache.oodt.cas.filemgr.structs.ProductIngestStatus;
+import org.apache.oodt.cas.filemgr.structs.ProductType;
+import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogBatchException;
+import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
+import org.apache.oodt.cas.metadata.Metadata;
+
+//Junit imports
+import junit.framework.TestCase;
+
+/**
+ * Tests how {@link FileManager#ingestProducts(List, List, boolean)} recovers
+ * from a failed catalog batch.
+ *
+ * @version $Revision$
+ */
+public class TestFileManagerIngestProducts extends TestCase {
+
+  private FileManager fm;
+
+  private RecordingCatalog catalog;
+
+  protected void setUp() throws Exception {
+    catalog = new RecordingCatalog();
+    fm = new FileManager();
+    fm.setCatalog(catalog);
+    fm.setRepositoryManager(new XMLRepositoryManager(Collections
+        .singletonList(new File(getClass().getResource("/repomgr").getFile())
+            .toURI().toString())));
+  }
+
+  public void testAtomicProductBatchFailureRetriesEveryProduct()
+      throws CatalogException {
+    catalog.productBatchFailure = new CatalogException("batch failed");
+    List<ProductIngestStatus> statuses = ingest(3);
+
+    for (ProductIngestStatus status : statuses) {
+      assertTrue(status.isIngested());
+    }
+    assertEquals(3, catalog.productAdds.size());
+  }
+
+  public void testPartialProductBatchFailureRetriesOnlyTheRest()
+      throws CatalogException {
+    catalog.productBatchFailure = new CatalogBatchException(1, "product 1",
+        null);
+    List<ProductIngestStatus> statuses = ingest(3);
+
+    assertTrue(statuses.get(0).isIngested());
+    assertFalse(statuses.get(1).isIngested());
+    assertEquals("product 1", statuses.get(1).getMessage());
+    assertTrue(statuses.get(2).isIngested());
+
+    // product 0 was added by the batch, and is not added again
+    assertEquals(Collections.singletonList("file2.txt"),
+        catalog.productAdds);
+  }
+
+  public void testPartialMetadataBatchFailureAddsMetadataOnce()
+      throws CatalogException {
+    catalog.metadataBatchFailure = new CatalogBatchException(1, "metadata 1",
+        null);
+    List<ProductIngestStatus> statuses = ingest(3);
+
+    assertTrue(statuses.get(0).isIngested());
+    assertFalse(statuses.get(1).isIngested());
+    assertTrue(statuses.get(2).isIngested());
+
+    // only the products after the one that failed are redone, and the one
+    // that failed is rolled back out of the catalog
+    assertEquals(Collections.singletonList("file2.txt"),
+        catalog.metadataAdds);
+    assertEquals(Collections.singletonList("file1.txt"),
+        catalog.productRemoves);
+  }
+
+  private List<ProductIngestStatus> ingest(int numProducts)
+      throws CatalogException {
+    List<Product> products = new ArrayList<Product>();
+    List<Metadata> metadata = new ArrayList<Metadata>();
+    for (int i = 0; i < numProducts; i++) {
+      ProductType type = new ProductType();
+      type.setProductTypeId("urn:oodt:GenericFile");
+      Product product = new Product();
+      product.setProductName("file" + i + ".txt");
+      product.setProductType(type);
+      products.add(product);
+      metadata.add(new Metadata());
+    }
+    return fm.ingestProducts(products, metadata, true);
+  }
+
+  /**
+   * Records the products that were added one at a time, and fails the
+   * batches it is told to, after applying the part of them it says it did.
+   */
+  private static class RecordingCatalog extends MockCatalog {
+
+    CatalogException productBatchFailure;
+
+    CatalogException metadataBatchFailure;
+
+    List<String> productAdds = new ArrayList<String>();
+
+    List<String> metadataAdds = new ArrayList<String>();
+
+    List<String> productRemoves = new ArrayList<String>();
+
+    private int nextId = 0;
+
+    @Override
+    public void addProduct(Product product) throws CatalogException {
+      productAdds.add(product.getProductName());
+      assign(product);
+    }
+
+    @Override
+    public void addProducts(List<Product> products) throws CatalogException {
+      if (productBatchFailure != null) {
+        for (int i = 0; i < getNumCompleted(productBatchFailure); i++) {
+          assign(products.get(i));
+        }
+        throw productBatchFailure;
+      }
+      for (Product product : products) {
+        assign(product);
+      }
+    }
+
+    @Override
+    public void addMetadata(Metadata m, Product product)
+        throws CatalogException {
+      metadataAdds.add(product.getProductName());
+    }
+
+    @Override
+    public void addMetadata(List<Metadata> metadata, List<Product> products)
+        throws CatalogException {
+      if (metadataBatchFailure != null) {
+        throw metadataBatchFailure;
+      }
+    }
+
+    @Override
+    public void removeProduct(Product product) throws CatalogException {
+      productRemoves.add(product.getProductName());
+      super.removeProduct(product);
+    }
+
+    private void assign(Product product) throws CatalogException {
+      product.setProductId(String.valueOf(nextId++));
+      super.addProduct(product);
+    }
+
+    private static int getNumCompleted(CatalogException e) {
+      return e instanceof CatalogBatchException ? ((CatalogBatchException) e)
+          .getNumCompleted() : 0;
+    }
+  }
+
+}
@@ -22,11 +22,14 @@ package org.apache.oodt.cas.filemgr.system;
 import org.apache.oodt.cas.filemgr.ingest.StdIngester;
 import org.apache.oodt.cas.filemgr.metadata.CoreMetKeys;
 import org.apache.oodt.cas.filemgr.structs.Product;
+import org.apache.oodt.cas.filemgr.structs.ProductIngestStatus;
 import org.apache.oodt.cas.filemgr.structs.ProductType;
 import org.apache.oodt.cas.filemgr.structs.query.ComplexQuery;
 import org.apache.oodt.cas.filemgr.structs.query.QueryResult;
+import org.apache.oodt.cas.filemgr.util.GenericFileManagerObjectFactory;
 import org.apache.oodt.cas.filemgr.util.RpcCommunicationFactory;
 import org.apache.oodt.cas.filemgr.util.SqlParser;
+import org.apache.oodt.cas.filemgr.versioning.VersioningUtils;
 import org.apache.oodt.cas.metadata.Metadata;
 import org.apache.oodt.cas.metadata.SerializableMetadata;
 
@@ -40,6 +43,9 @@ import java.util.List;
 import java.util.Properties;
 import java.util.Vector;
 
+//Google imports
+import com.google.common.collect.Lists;
+
 //Junit imports
 import junit.framework.TestCase;
 
@@ -146,6 +152,57 @@ public class TestRpcFileManagerClient extends TestCase {
         deleteAllFiles("/tmp/test-type");
     }
 
+    public void testIngestProducts() throws Exception {
+        URL ingestUrl = this.getClass().getResource("/ingest");
+        String fileLocation = new File(ingestUrl.getFile()).getCanonicalPath();
+        FileManagerClient fmc = RpcCommunicationFactory.createClient(new URL(
+                "http://localhost:" + FM_PORT));
+        fmc.setDataTransfer(GenericFileManagerObjectFactory
+                .getDataTransferServiceFromFactory(transferServiceFacClass));
+        ProductType genericFileType = fmc.getProductTypeByName("GenericFile");
+
+        List<Product> products = new ArrayList<Product>();
+        List<Metadata> metadata = new ArrayList<Metadata>();
+        for (String fileName : new String[] { "test-file-1.txt",
+                "missing-file.txt", "test-file-2.txt" }) {
+            Product product = new Product();
+            product.setProductName(fileName);
+            product.setProductStructure(Product.STRUCTURE_FLAT);
+            product.setProductType(genericFileType);
+            VersioningUtils.addRefsFromUris(product, Lists.newArrayList(
+                new File(fileLocation, fileName).toURI().toString()));
+            products.add(product);
+
+            Metadata prodMet = new Metadata();
+            prodMet.addMetadata(CoreMetKeys.FILE_LOCATION, fileLocation);
+            prodMet.addMetadata(CoreMetKeys.FILENAME, fileName);
+            prodMet.addMetadata(CoreMetKeys.PRODUCT_TYPE, "GenericFile");
+            metadata.add(prodMet);
+        }
+
+        List<ProductIngestStatus> statuses = fmc.ingestProducts(products,
+            metadata, true);
+        assertEquals(3, statuses.size());
+
+        // the missing file fails on its own, and is rolled back
+        assertFalse(statuses.get(1).isIngested());
+        assertNull(statuses.get(1).getProductId());
+        assertNotNull(statuses.get(1).getMessage());
+        assertFalse(fmc.hasProduct("missing-file.txt"));
+
+        for (int i : new int[] { 0, 2 }) {
+            ProductIngestStatus status = statuses.get(i);
+            assertTrue(status.isIngested());
+            assertEquals(products.get(i).getProductName(),
+                status.getProductName());
+            Product product = fmc.getProductById(status.getProductId());
+            assertEquals(Product.STATUS_RECEIVED, product.getTransferStatus());
+            assertEquals(products.get(i).getProductName(), fmc.getMetadata(
+                product).getMetadata("Filename"));
+        }
+        deleteAllFiles("/tmp/test-type");
+    }
+
     /**
      * @since OODT-404
      *
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.tools;
+
+//OODT imports
+import org.apache.oodt.cas.filemgr.ingest.StdIngester;
+import org.apache.oodt.cas.filemgr.metadata.CoreMetKeys;
+import org.apache.oodt.cas.filemgr.system.FileManagerServer;
+import org.apache.oodt.cas.filemgr.util.RpcCommunicationFactory;
+import org.apache.oodt.cas.metadata.Metadata;
+
+//Solr imports
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+
+//JDK imports
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Junit imports
+import junit.framework.TestCase;
+
+/**
+ * @version $Revision$
+ *
+ * <p>
+ * Test suite for the {@link SolrIndexer}'s reindexing.
+ * </p>.
+ */
+public class TestSolrIndexer extends TestCase {
+
+    private static final int FM_PORT = 50011;
+
+    private static final String FM_URL = "http://localhost:" + FM_PORT;
+
+    private static final String GENERIC_FILE_TYPE = "GenericFile";
+
+    private static final String transferServiceFacClass = "org.apache.oodt.cas."
+            + "filemgr.datatransfer.LocalDataTransferFactory";
+
+    private FileManagerServer fm;
+
+    private String luceneCatLoc;
+
+    private File checkpointFile;
+
+    private RecordingSolrServer solrServer = new RecordingSolrServer();
+
+    private Properties initialProperties = new Properties(
+        System.getProperties());
+
+    public void testReindexAll() throws Exception {
+        SolrIndexer indexer = new SolrIndexer(null, FM_URL, solrServer);
+        assertEquals(3, indexer.reindexAll(2, 2, checkpointFile));
+        assertEquals(3, solrServer.ids.size());
+        assertEquals(3, new HashSet<String>(solrServer.ids).size());
+        // one commit per batch sent, when checkpointing
+        assertTrue(solrServer.commits >= 2);
+        assertEquals("complete", loadCheckpoints().getProperty(GENERIC_FILE_TYPE));
+
+        // everything has been reindexed: nothing left to do
+        solrServer.ids.clear();
+        assertEquals(0, indexer.reindexAll(2, 2, checkpointFile));
+        assertEquals(0, solrServer.ids.size());
+    }
+
+    public void testResumeReindex() throws Exception {
+        // one product per page: pretend the first two pages were reindexed
+        Properties checkpoints = new Properties();
+        checkpoints.setProperty(GENERIC_FILE_TYPE, "2");
+        OutputStream out = new FileOutputStream(checkpointFile);
+        checkpoints.store(out, null);
+        out.close();
+
+        SolrIndexer indexer = new SolrIndexer(null, FM_URL, solrServer);
+        assertEquals(1, indexer.reindexAll(4, 100, checkpointFile));
+        assertEquals(1, solrServer.ids.size());
+        assertEquals("complete", loadCheckpoints().getProperty(GENERIC_FILE_TYPE));
+    }
+
+    public void testFailedProductsAreRetried() throws Exception {
+        final List<String> failed = new ArrayList<String>();
+        SolrIndexer failing = new SolrIndexer(null, FM_URL, solrServer) {
+            SolrInputDocument buildProductDocument(String productId,
+                    Metadata productMetadata, Metadata typeMetadata)
+                    throws ParseException {
+                if ("test-file-1.txt".equals(productMetadata
+                        .getMetadata(CoreMetKeys.FILENAME))) {
+                    failed.add(productId);
+                    throw new IllegalStateException("simulated failure");
+                }
+                return super.buildProductDocument(productId, productMetadata,
+                        typeMetadata);
+            }
+        };
+        assertEquals(2, failing.reindexAll(2, 1, checkpointFile));
+        assertEquals(1, failed.size());
+        // the checkpoint stops before the page that failed
+        String checkpoint = loadCheckpoints().getProperty(GENERIC_FILE_TYPE);
+        assertFalse("complete".equals(checkpoint));
+
+        solrServer.ids.clear();
+        SolrIndexer indexer = new SolrIndexer(null, FM_URL, solrServer);
+        assertEquals(3 - Integer.parseInt(checkpoint), indexer.reindexAll(2, 1,
+                checkpointFile));
+        assertTrue(solrServer.ids.contains(failed.get(0)));
+        assertEquals("complete", loadCheckpoints().getProperty(GENERIC_FILE_TYPE));
+    }
+
+    public void testReindexWithoutCheckpoints() throws Exception {
+        SolrIndexer indexer = new SolrIndexer(null, FM_URL, solrServer);
+        assertEquals(3, indexer.reindexAll(1, 1, null));
+        assertEquals(3, solrServer.ids.size());
+        assertEquals(0, solrServer.commits);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp() throws Exception {
+        File tmp = File.createTempFile("solrindexer", ".checkpoint");
+        tmp.delete();
+        checkpointFile = tmp;
+
+        startXmlRpcFileManager();
+        ingest("test.txt");
+        ingest("test-file-1.txt");
+        ingest("test-file-2.txt");
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see junit.framework.TestCase#tearDown()
+     */
+    protected void tearDown() throws Exception {
+        fm.shutdown();
+        fm = null;
+
+        // blow away lucene cat
+        deleteAllFiles(luceneCatLoc);
+
+        // blow away test files
+        deleteAllFiles("/tmp/test.txt");
+        deleteAllFiles("/tmp/test-file-1.txt");
+        deleteAllFiles("/tmp/test-file-2.txt");
+        checkpointFile.delete();
+
+        // Reset the System properties to initial values.
+        System.setProperties(initialProperties);
+    }
+
+    private Properties loadCheckpoints() throws IOException {
+        Properties checkpoints = new Properties();
+        InputStream in = new FileInputStream(checkpointFile);
+        try {
+            checkpoints.load(in);
+        } finally {
+            in.close();
+        }
+        return checkpoints;
+    }
+
+    private void ingest(String fileName) throws Exception {
+        URL ingestUrl = this.getClass().getResource("/ingest");
+        URL refUrl = this.getClass().getResource("/ingest/" + fileName);
+
+        Metadata prodMet = new Metadata();
+        prodMet.addMetadata(CoreMetKeys.FILENAME, fileName);
+        prodMet.addMetadata(CoreMetKeys.PRODUCT_TYPE, GENERIC_FILE_TYPE);
+        prodMet.addMetadata(CoreMetKeys.FILE_LOCATION, new File(
+            ingestUrl.getFile()).getCanonicalPath());
+        new StdIngester(transferServiceFacClass).ingest(new URL(FM_URL),
+            new File(refUrl.getFile()), prodMet);
+    }
+
+    private void deleteAllFiles(String startDir) {
+        File startDirFile = new File(startDir);
+        File[] delFiles = startDirFile.listFiles();
+
+        if (delFiles != null && delFiles.length > 0) {
+            for (File delFile : delFiles) {
+                delFile.delete();
+            }
+        }
+
+        startDirFile.delete();
+
+    }
+
+    private void startXmlRpcFileManager() throws Exception {
+        Properties properties = new Properties(System.getProperties());
+
+        // set the log levels
+        URL loggingPropertiesUrl = this.getClass().getResource(
+            "/test.logging.properties");
+        properties.setProperty("java.util.logging.config.file", new File(
+            loggingPropertiesUrl.getFile()).getAbsolutePath());
+
+        // first load the example configuration
+        URL filemgrPropertiesUrl = this.getClass().getResource(
+            "/filemgr.properties");
+        properties.load(
+            new FileInputStream(new File(filemgrPropertiesUrl.getFile())));
+
+        // override the catalog to use: we'll use lucene, a product per page
+        URL ingestUrl = this.getClass().getResource("/ingest");
+        luceneCatLoc = new File(ingestUrl.getFile()).getCanonicalPath()
+            + "/cat";
+        properties.setProperty("filemgr.catalog.factory",
+                "org.apache.oodt.cas.filemgr.catalog.LuceneCatalogFactory");
+        properties.setProperty(
+                "org.apache.oodt.cas.filemgr.catalog.lucene.idxPath",
+                luceneCatLoc);
+        properties.setProperty(
+                "org.apache.oodt.cas.filemgr.catalog.lucene.pageSize", "1");
+
+        // now override the repo mgr policy
+        URL fmpolicyUrl = this.getClass().getResource("/ingest/fmpolicy");
+        properties.setProperty(
+                "org.apache.oodt.cas.filemgr.repositorymgr.dirs",
+                "file://"
+                    + new File(fmpolicyUrl.getFile()).getCanonicalPath());
+
+        // now override the val layer ones
+        URL examplesCoreUrl = this.getClass().getResource("/examples/core");
+        properties.setProperty("org.apache.oodt.cas.filemgr.validation.dirs",
+                "file://"
+                    + new File(examplesCoreUrl.getFile()).getAbsolutePath());
+
+        // set up mime repo path
+        URL mimeTypesUrl = this.getClass().getResource("/mime-types.xml");
+        properties.setProperty(
+                "org.apache.oodt.cas.filemgr.mime.type.repository", new File(
+                     mimeTypesUrl.getFile()).getAbsolutePath());
+
+        System.setProperties(properties);
+
+        fm = RpcCommunicationFactory.createServer(FM_PORT);
+        fm.startUp();
+    }
+
+    /**
+     * Records the ids of the documents added, and the number of commits,
+     * instead of talking to a Solr instance.
+     */
+    private static class RecordingSolrServer extends SolrServer {
+
+        private static final Pattern ID_FIELD = Pattern
+                .compile("<field name=\"id\"[^>]*>([^<]*)</field>");
+
+        private final List<String> ids = new ArrayList<String>();
+
+        private int commits;
+
+        public synchronized NamedList<Object> request(SolrRequest request)
+                throws IOException {
+            UpdateRequest update = (UpdateRequest) request;
+            if (update.getAction() != null) {
+                commits++;
+            } else {
+                Matcher matcher = ID_FIELD.matcher(update.getXML());
+                while (matcher.find()) {
+                    ids.add(matcher.group(1));
+                }
+            }
+            return new NamedList<Object>();
+        }
+    }
+
+}
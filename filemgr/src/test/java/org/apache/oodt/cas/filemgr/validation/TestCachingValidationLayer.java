@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.filemgr.validation;
+
+//OODT imports
+import org.apache.commons.io.FileUtils;
+import org.apache.oodt.cas.filemgr.structs.Element;
+import org.apache.oodt.cas.filemgr.structs.ProductType;
+
+//JDK imports
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+//Junit imports
+import junit.framework.TestCase;
+
+/**
+ * @version $Revision$
+ *
+ * <p>
+ * Unit tests for the CachingValidationLayer.
+ * </p>
+ *
+ */
+public class TestCachingValidationLayer extends TestCase {
+
+    private File tmpDir;
+
+    private ProductType type;
+
+    private CachingValidationLayer validationLayer;
+
+    public void testCachesLookups() throws Exception {
+        List<Element> elements = validationLayer.getElements(type);
+        assertEquals(0, validationLayer.getHits());
+        assertEquals(1, validationLayer.getMisses());
+
+        assertEquals(elements, validationLayer.getElements(type));
+        assertEquals(1, validationLayer.getHits());
+
+        Element byId = validationLayer.getElementById("urn:oodt:Filename");
+        assertNotNull(byId);
+        assertSame(byId, validationLayer.getElementById("urn:oodt:Filename"));
+        Element byName = validationLayer.getElementByName(byId
+                .getElementName());
+        assertSame(byName, validationLayer.getElementByName(byId
+                .getElementName()));
+        assertEquals(3, validationLayer.getHits());
+        assertEquals(3, validationLayer.getMisses());
+
+        // callers can't change what's cached
+        validationLayer.getElements(type).clear();
+        assertEquals(elements, validationLayer.getElements(type));
+    }
+
+    public void testInvalidatesOnChange() throws Exception {
+        int before = validationLayer.getElements(type).size();
+
+        Element element = new Element();
+        element.setElementId("urn:test:NewElement");
+        element.setElementName("NewElement");
+        validationLayer.addElement(element);
+        validationLayer.addElementToProductType(type, element);
+
+        assertEquals(before + 1, validationLayer.getElements(type).size());
+        assertNotNull(validationLayer.getElementById("urn:test:NewElement"));
+
+        validationLayer.removeElementFromProductType(type, element);
+        assertEquals(before, validationLayer.getElements(type).size());
+    }
+
+    public void testTimeToLive() throws Exception {
+        validationLayer = new CachingValidationLayer(
+                validationLayer.getDelegate(), 50);
+        validationLayer.getElementById("urn:oodt:Filename");
+        validationLayer.getElementById("urn:oodt:Filename");
+        assertEquals(1, validationLayer.getMisses());
+        Thread.sleep(100);
+        validationLayer.getElementById("urn:oodt:Filename");
+        assertEquals(2, validationLayer.getMisses());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see junit.framework.TestCase#setUp()
+     */
+    @Override
+    protected void setUp() throws Exception {
+        File tmp = File.createTempFile("foo", "bar");
+        tmp.deleteOnExit();
+        tmpDir = new File(tmp.getParentFile(), "cachingValLayer"
+                + System.currentTimeMillis());
+        FileUtils.copyDirectory(new File(getClass().getResource("/vallayer")
+                .getFile()), tmpDir);
+
+        type = new ProductType();
+        type.setProductTypeId("urn:oodt:GenericFile");
+        type.setName("GenericFile");
+
+        validationLayer = new CachingValidationLayer(new XMLValidationLayer(
+                Collections.singletonList(tmpDir.toURI().toString())), 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see junit.framework.TestCase#tearDown()
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+}
@@ -0,0 +1,588 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.pcs.pedigree;
+
+//OODT imports
+import org.apache.oodt.cas.filemgr.metadata.CoreMetKeys;
+import org.apache.oodt.cas.filemgr.structs.Product;
+import org.apache.oodt.cas.filemgr.structs.ProductPage;
+import org.apache.oodt.cas.filemgr.structs.ProductType;
+import org.apache.oodt.cas.metadata.Metadata;
+import org.apache.oodt.pcs.metadata.PCSMetadata;
+import org.apache.oodt.pcs.util.FileManagerUtils;
+
+//JDK imports
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ *
+ * A persistent index of PCS product lineage: for each product, the products
+ * it was generated from (its <code>InputFiles</code>) and the workflow
+ * instance (its <code>JobId</code>) that generated it, along with the reverse
+ * of both. It lets a {@link Pedigree} be traced with in-memory lookups rather
+ * than a set of File Manager queries per product type per level.
+ *
+ * The index is a text file of one record per product, appended to as
+ * products are ingested (see {@link LineageIndexingAction}); a later record
+ * for the same product replaces the earlier one. Each record ends with a
+ * checksum of the rest of it, so that one cut short by a writer that died
+ * part way through is skipped rather than read as a truncated record once the
+ * next writer ends it. Readers pick up records
+ * appended by other processes through {@link #refresh()}. The whole file can
+ * be rebuilt from the File Manager catalog with {@link #rebuild(FileManagerUtils)}.
+ *
+ * @version $Revision$
+ */
+public class LineageIndex implements PCSMetadata {
+
+  /* our log stream */
+  private static final Logger LOG = Logger.getLogger(LineageIndex.class
+      .getName());
+
+  /* version 2 records end with a checksum */
+  private static final String HEADER_PREFIX = "# OODT PCS lineage index v2 ";
+
+  private static final String RECORD = "P";
+
+  private static final String ENCODING = "UTF-8";
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private final File indexFile;
+
+  /* product name to its lineage */
+  private Map<String, Entry> entries;
+
+  /* product name to the names of the products generated from it */
+  private Map<String, Set<String>> consumers;
+
+  /* workflow instance id to the names of the products it generated */
+  private Map<String, Set<String>> jobProducts;
+
+  /* identifies the file we have read from, changed when it is rebuilt */
+  private String header;
+
+  /* how far into the file we have read */
+  private long offset;
+
+  /**
+   * Opens the lineage index stored in the given file, creating it if it
+   * doesn't exist yet.
+   *
+   * @param indexFile
+   *          The file the index is stored in.
+   * @throws IOException
+   *           If the index can't be created or read.
+   */
+  public LineageIndex(File indexFile) throws IOException {
+    this.indexFile = indexFile;
+    File parent = indexFile.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      throw new IOException("Unable to create directory for lineage index: ["
+          + parent + "]");
+    }
+    if (!indexFile.exists()) {
+      writeFile(indexFile, Collections.<Entry> emptyList());
+    }
+    this.reload();
+  }
+
+  /**
+   * Records the lineage of a product, replacing whatever was recorded for it
+   * before.
+   *
+   * @param productName
+   *          The name of the product.
+   * @param productId
+   *          The File Manager id of the product, or null if not known.
+   * @param productTypeName
+   *          The name of the product's type.
+   * @param jobId
+   *          The id of the workflow instance that generated the product, or
+   *          null.
+   * @param inputFiles
+   *          The names of the products it was generated from.
+   * @throws IOException
+   *           If the record can't be written.
+   */
+  public synchronized void addProduct(String productName, String productId,
+      String productTypeName, String jobId, List<String> inputFiles)
+      throws IOException {
+    Entry entry = new Entry(productName, productId, productTypeName, jobId,
+        inputFiles);
+    byte[] record = encode(entry).getBytes(ENCODING);
+
+    RandomAccessFile raf = new RandomAccessFile(this.indexFile, "rw");
+    try {
+      FileChannel channel = raf.getChannel();
+      FileLock lock = channel.lock();
+      try {
+        // catch up with anything other writers appended first
+        this.catchUp(raf);
+        long end = channel.size();
+        ByteBuffer buffer;
+        if (end > this.offset) {
+          // the last writer died part way through a record: end it, so that
+          // it fails its checksum rather than running into ours
+          buffer = ByteBuffer.allocate(record.length + 1);
+          buffer.put((byte) '\n');
+          buffer.put(record);
+          buffer.flip();
+        } else {
+          buffer = ByteBuffer.wrap(record);
+        }
+        long position = end;
+        while (buffer.hasRemaining()) {
+          position += channel.write(buffer, position);
+        }
+        this.offset = position;
+      } finally {
+        lock.release();
+      }
+    } finally {
+      raf.close();
+    }
+    this.put(entry);
+  }
+
+  /**
+   * Records the lineage of a product from its PCS metadata.
+   *
+   * @param productMetadata
+   *          The product's metadata.
+   * @throws IOException
+   *           If the record can't be written.
+   */
+  public void addProduct(Metadata productMetadata) throws IOException {
+    String productName = productMetadata.getMetadata(CoreMetKeys.PRODUCT_NAME);
+    if (productName == null) {
+      productName = productMetadata.getMetadata(CoreMetKeys.FILENAME);
+    }
+    if (productName == null) {
+      throw new IOException("Product metadata has neither a ["
+          + CoreMetKeys.PRODUCT_NAME + "] nor a [" + CoreMetKeys.FILENAME
+          + "]");
+    }
+    this.addProduct(productName, productMetadata
+        .getMetadata(CoreMetKeys.PRODUCT_ID), productMetadata
+        .getMetadata(CoreMetKeys.PRODUCT_TYPE), productMetadata
+        .getMetadata(JOB_ID), productMetadata.getAllMetadata(INPUT_FILES));
+  }
+
+  /**
+   * Reads any records appended to the index by other processes since it was
+   * last read, or the whole index if it has been rebuilt.
+   *
+   * @throws IOException
+   *           If the index can't be read.
+   */
+  public synchronized void refresh() throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(this.indexFile, "r");
+    try {
+      this.catchUp(raf);
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Replaces the index with one built from every product in the File
+   * Manager catalog. Records added by other processes while the catalog is
+   * being read are not carried over, so rebuild while nothing is ingesting.
+   *
+   * @param fm
+   *          The File Manager to read the catalog from.
+   * @return The number of products indexed.
+   * @throws IOException
+   *           If the new index can't be written.
+   */
+  public int rebuild(FileManagerUtils fm) throws IOException {
+    List<Entry> rebuilt = new ArrayList<Entry>();
+    List types = fm.safeGetProductTypes();
+    if (types != null) {
+      for (Object typeObj : types) {
+        ProductType type = (ProductType) typeObj;
+        ProductPage page = fm.safeFirstPage(type);
+        while (page != null && page.getPageProducts() != null
+            && page.getPageProducts().size() > 0) {
+          for (Product product : page.getPageProducts()) {
+            Metadata met = fm.safeGetMetadata(product);
+            if (met == null) {
+              met = new Metadata();
+            }
+            rebuilt.add(new Entry(product.getProductName(), product
+                .getProductId(), type.getName(), met.getMetadata(JOB_ID), met
+                .getAllMetadata(INPUT_FILES)));
+          }
+          if (page.isLastPage()) {
+            break;
+          }
+          page = fm.safeGetNextPage(type, page);
+        }
+      }
+    }
+
+    File tmp = new File(this.indexFile.getPath() + ".rebuild");
+    writeFile(tmp, rebuilt);
+    Files.move(tmp.toPath(), this.indexFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    synchronized (this) {
+      this.reload();
+    }
+    LOG.log(Level.INFO, "Rebuilt lineage index: [" + this.indexFile
+        + "]: indexed " + rebuilt.size() + " products");
+    return rebuilt.size();
+  }
+
+  /**
+   * @param productName
+   *          The name of a product.
+   * @return Whether or not the lineage of the product has been recorded.
+   */
+  public synchronized boolean contains(String productName) {
+    return this.entries.containsKey(productName);
+  }
+
+  /**
+   * @param productName
+   *          The name of a product.
+   * @return The recorded lineage of the product, or null if there is none.
+   */
+  public synchronized Entry getEntry(String productName) {
+    return this.entries.get(productName);
+  }
+
+  /**
+   * @param productName
+   *          The name of a product.
+   * @return The names of the products it was generated from.
+   */
+  public synchronized List<String> getInputFiles(String productName) {
+    Entry entry = this.entries.get(productName);
+    return entry != null ? entry.getInputFiles() : Collections
+        .<String> emptyList();
+  }
+
+  /**
+   * @param productName
+   *          The name of a product.
+   * @return The names of the products generated from it.
+   */
+  public synchronized List<String> getConsumers(String productName) {
+    return copy(this.consumers.get(productName));
+  }
+
+  /**
+   * @param jobId
+   *          The id of a workflow instance.
+   * @return The names of the products it generated.
+   */
+  public synchronized List<String> getProductsForJob(String jobId) {
+    return copy(this.jobProducts.get(jobId));
+  }
+
+  /**
+   * @return The number of products in the index.
+   */
+  public synchronized int size() {
+    return this.entries.size();
+  }
+
+  private void reload() throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(this.indexFile, "r");
+    try {
+      this.load(raf);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private void catchUp(RandomAccessFile raf) throws IOException {
+    if (this.header.equals(readHeader(raf))) {
+      this.readFrom(raf.getChannel());
+    } else {
+      // rebuilt since we last read it
+      this.load(raf);
+    }
+  }
+
+  private void load(RandomAccessFile raf) throws IOException {
+    this.entries = new HashMap<String, Entry>();
+    this.consumers = new HashMap<String, Set<String>>();
+    this.jobProducts = new HashMap<String, Set<String>>();
+    this.header = readHeader(raf);
+    if (this.header == null) {
+      throw new IOException("Not a lineage index, or one written by an "
+          + "older version that needs rebuilding: [" + this.indexFile + "]");
+    }
+    this.offset = raf.getFilePointer();
+    this.readFrom(raf.getChannel());
+  }
+
+  /*
+   * reads the complete records past our offset: a record still being written
+   * by another process is left for the next read
+   */
+  private void readFrom(FileChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    long position = this.offset;
+    int read;
+    while ((read = channel.read(buffer, position)) > 0) {
+      position += read;
+      byte[] bytes = buffer.array();
+      for (int i = 0; i < read; i++) {
+        if (bytes[i] == '\n') {
+          Entry entry = decode(line.toString(ENCODING));
+          if (entry != null) {
+            this.put(entry);
+          }
+          this.offset += line.size() + 1;
+          line.reset();
+        } else {
+          line.write(bytes[i]);
+        }
+      }
+      buffer.clear();
+    }
+  }
+
+  private void put(Entry entry) {
+    Entry previous = this.entries.put(entry.getProductName(), entry);
+    if (previous != null) {
+      for (String input : previous.getInputFiles()) {
+        remove(this.consumers, input, previous.getProductName());
+      }
+      if (previous.getJobId() != null) {
+        remove(this.jobProducts, previous.getJobId(), previous
+            .getProductName());
+      }
+    }
+    for (String input : entry.getInputFiles()) {
+      add(this.consumers, input, entry.getProductName());
+    }
+    if (entry.getJobId() != null) {
+      add(this.jobProducts, entry.getJobId(), entry.getProductName());
+    }
+  }
+
+  private static void add(Map<String, Set<String>> map, String key,
+      String value) {
+    Set<String> values = map.get(key);
+    if (values == null) {
+      values = new LinkedHashSet<String>();
+      map.put(key, values);
+    }
+    values.add(value);
+  }
+
+  private static void remove(Map<String, Set<String>> map, String key,
+      String value) {
+    Set<String> values = map.get(key);
+    if (values != null) {
+      values.remove(value);
+      if (values.isEmpty()) {
+        map.remove(key);
+      }
+    }
+  }
+
+  private static List<String> copy(Set<String> values) {
+    return values != null ? new ArrayList<String>(values) : Collections
+        .<String> emptyList();
+  }
+
+  private static String readHeader(RandomAccessFile raf) throws IOException {
+    raf.seek(0L);
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = raf.read()) >= 0 && b != '\n') {
+      line.write(b);
+    }
+    String header = line.toString(ENCODING);
+    return b == '\n' && header.startsWith(HEADER_PREFIX) ? header : null;
+  }
+
+  private static void writeFile(File file, List<Entry> entries)
+      throws IOException {
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+        ENCODING);
+    try {
+      writer.write(HEADER_PREFIX + UUID.randomUUID() + "\n");
+      for (Entry entry : entries) {
+        writer.write(encode(entry));
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  private static String encode(Entry entry)
+      throws UnsupportedEncodingException {
+    StringBuilder record = new StringBuilder(RECORD);
+    record.append('\t').append(encodeField(entry.getProductName()));
+    record.append('\t').append(encodeField(entry.getProductId()));
+    record.append('\t').append(encodeField(entry.getProductTypeName()));
+    record.append('\t').append(encodeField(entry.getJobId()));
+    for (String input : entry.getInputFiles()) {
+      record.append('\t').append(encodeField(input));
+    }
+    String checksum = checksum(record.toString());
+    return record.append('\t').append(checksum).append('\n').toString();
+  }
+
+  /*
+   * returns null for a record that is not whole: one cut short and ended by
+   * the next writer fails its checksum, wherever it was cut
+   */
+  private static Entry decode(String line) throws UnsupportedEncodingException {
+    int checksumStart = line.lastIndexOf('\t');
+    if (checksumStart < 0
+        || !checksum(line.substring(0, checksumStart)).equals(
+            line.substring(checksumStart + 1))) {
+      LOG.log(Level.WARNING, "Skipping incomplete lineage record: [" + line
+          + "]");
+      return null;
+    }
+    String[] fields = line.substring(0, checksumStart).split("\t", -1);
+    if (fields.length < 5 || !RECORD.equals(fields[0])) {
+      LOG.log(Level.WARNING, "Skipping unreadable lineage record: [" + line
+          + "]");
+      return null;
+    }
+    try {
+      List<String> inputs = new ArrayList<String>(fields.length - 5);
+      for (int i = 5; i < fields.length; i++) {
+        inputs.add(decodeField(fields[i]));
+      }
+      return new Entry(decodeField(fields[1]), decodeField(fields[2]),
+          decodeField(fields[3]), decodeField(fields[4]), inputs);
+    } catch (IllegalArgumentException e) {
+      LOG.log(Level.WARNING, "Skipping unreadable lineage record: [" + line
+          + "]: Message: " + e.getMessage());
+      return null;
+    }
+  }
+
+  private static String checksum(String record)
+      throws UnsupportedEncodingException {
+    CRC32 crc = new CRC32();
+    crc.update(record.getBytes(ENCODING));
+    return String.format("%08x", crc.getValue());
+  }
+
+  private static String encodeField(String value)
+      throws UnsupportedEncodingException {
+    return value != null ? URLEncoder.encode(value, ENCODING) : "";
+  }
+
+  private static String decodeField(String field)
+      throws UnsupportedEncodingException {
+    return field.length() > 0 ? URLDecoder.decode(field, ENCODING) : null;
+  }
+
+  /**
+   * The recorded lineage of a single product.
+   */
+  public static final class Entry {
+
+    private final String productName;
+
+    private final String productId;
+
+    private final String productTypeName;
+
+    private final String jobId;
+
+    private final List<String> inputFiles;
+
+    Entry(String productName, String productId, String productTypeName,
+        String jobId, List<String> inputFiles) {
+      this.productName = productName;
+      this.productId = productId;
+      this.productTypeName = productTypeName;
+      this.jobId = jobId;
+      List<String> inputs = new ArrayList<String>();
+      if (inputFiles != null) {
+        for (String input : inputFiles) {
+          if (input != null && input.length() > 0) {
+            inputs.add(input);
+          }
+        }
+      }
+      this.inputFiles = Collections.unmodifiableList(inputs);
+    }
+
+    public String getProductName() {
+      return productName;
+    }
+
+    public String getProductId() {
+      return productId;
+    }
+
+    public String getProductTypeName() {
+      return productTypeName;
+    }
+
+    public String getJobId() {
+      return jobId;
+    }
+
+    public List<String> getInputFiles() {
+      return inputFiles;
+    }
+
+    /**
+     * @return A {@link Product} standing in for the indexed product, with its
+     *         name, id and product type name filled in.
+     */
+    public Product toProduct() {
+      Product product = Product.getDefaultFlatProduct(productName, null);
+      product.setProductId(productId);
+      product.getProductType().setName(productTypeName);
+      return product;
+    }
+  }
+
+}
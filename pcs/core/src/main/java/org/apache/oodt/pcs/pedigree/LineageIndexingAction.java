@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.pcs.pedigree;
+
+//OODT imports
+import org.apache.oodt.cas.crawl.action.CrawlerAction;
+import org.apache.oodt.cas.crawl.structs.exceptions.CrawlerActionException;
+import org.apache.oodt.cas.metadata.Metadata;
+import org.apache.oodt.cas.metadata.util.PathUtils;
+
+//JDK imports
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+
+/**
+ *
+ * Crawler action that records the lineage of each ingested product in a
+ * {@link LineageIndex}. Meant to run in the <code>postIngestSuccess</code>
+ * phase.
+ *
+ * @version $Revision$
+ */
+public class LineageIndexingAction extends CrawlerAction {
+
+  /* where the lineage index is kept */
+  private String indexFilePath;
+
+  private LineageIndex lineageIndex;
+
+  @Override
+  public boolean performAction(File product, Metadata productMetadata)
+      throws CrawlerActionException {
+    try {
+      LOG.log(Level.FINE, "Recording lineage of product: [" + product
+          + "] in lineage index: [" + indexFilePath + "]");
+      getLineageIndex().addProduct(productMetadata);
+      return true;
+    } catch (IOException e) {
+      throw new CrawlerActionException("Unable to record lineage of product: ["
+          + product + "]: Message: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void validate() throws CrawlerActionException {
+    super.validate();
+    if (indexFilePath == null) {
+      throw new CrawlerActionException("Must specify indexFilePath");
+    }
+  }
+
+  public void setIndexFilePath(String indexFilePath) {
+    this.indexFilePath = indexFilePath;
+  }
+
+  public String getIndexFilePath() {
+    return indexFilePath;
+  }
+
+  private synchronized LineageIndex getLineageIndex() throws IOException {
+    if (lineageIndex == null) {
+      lineageIndex = new LineageIndex(new File(
+          PathUtils.replaceEnvVariables(indexFilePath)));
+    }
+    return lineageIndex;
+  }
+
+}
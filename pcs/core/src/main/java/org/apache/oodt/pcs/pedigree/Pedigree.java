@@ -28,9 +28,12 @@ import org.apache.oodt.cas.filemgr.structs.Product;
 import org.apache.oodt.cas.metadata.Metadata;
 
 //JDK imports
+import java.io.IOException;
 import java.util.List;
 import java.util.Stack;
 import java.util.Vector;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * 
@@ -41,6 +44,9 @@ import java.util.Vector;
  */
 public class Pedigree implements PCSMetadata, PCSConfigMetadata {
 
+  /* our log stream */
+  private static final Logger LOG = Logger.getLogger(Pedigree.class.getName());
+
   /* our file manager interface */
   private FileManagerUtils fm;
 
@@ -50,6 +56,9 @@ public class Pedigree implements PCSMetadata, PCSConfigMetadata {
   /* are there any product types that we should exclude from the pedigree? */
   private List prodTypeExcludeList;
 
+  /* lineage recorded at ingest time, or null to query the file manager */
+  private LineageIndex lineageIndex;
+
   /**
    * 
    * Constructs a new Pedigree object that will connect to the file manager at
@@ -86,9 +95,35 @@ public class Pedigree implements PCSMetadata, PCSConfigMetadata {
    *          excluded from the Pedigree.
    */
   public Pedigree(FileManagerUtils fm, boolean listNotCat, List excludeList) {
+    this(fm, listNotCat, excludeList, null);
+  }
+
+  /**
+   * 
+   * Constructs a new Pedigree object that looks up lineage in the given
+   * {@link LineageIndex}, and only goes to the File Manager for products the
+   * index doesn't know about. Where the index does have an answer, it is taken
+   * to be complete: products should be indexed as they are ingested (see
+   * {@link LineageIndexingAction}), or the index rebuilt.
+   * 
+   * @param fm
+   *          The PCS interface to the File Manager.
+   * @param listNotCat
+   *          Whether or not we should include non-cataloged products in the
+   *          pedigree.
+   * @param excludeList
+   *          A {@link List} of String {@link ProductType} names that should be
+   *          excluded from the Pedigree.
+   * @param lineageIndex
+   *          The index of product lineage, or null to query the File Manager
+   *          for all of it.
+   */
+  public Pedigree(FileManagerUtils fm, boolean listNotCat, List excludeList,
+      LineageIndex lineageIndex) {
     this.fm = fm;
     this.listNotCataloged = listNotCat;
     this.prodTypeExcludeList = excludeList;
+    this.lineageIndex = lineageIndex;
   }
 
   /**
@@ -110,6 +145,7 @@ public class Pedigree implements PCSMetadata, PCSConfigMetadata {
 
     Stack roots = new Stack();
     roots.add(origRoot);
+    refreshLineageIndex();
 
     do {
 
@@ -151,6 +187,11 @@ public class Pedigree implements PCSMetadata, PCSConfigMetadata {
    *         {@link Product}.
    */
   public List getUpstreamPedigreedProducts(Product orig) {
+    if (orig != null && this.lineageIndex != null
+        && this.lineageIndex.contains(orig.getProductName())) {
+      return getProducts(this.lineageIndex.getInputFiles(orig
+          .getProductName()));
+    }
     if (orig == null || (orig.getProductType() == null) ||
         (orig.getProductType().getName() == null) || (orig.getProductType().getName().equals(UNKNOWN))) {
       return new Vector();
@@ -170,6 +211,14 @@ public class Pedigree implements PCSMetadata, PCSConfigMetadata {
    *         given {@link Product}.
    */
   public List getDownstreamPedigreedProducts(Product orig) {
+    if (this.lineageIndex != null) {
+      List consumers = this.lineageIndex.getConsumers(orig.getProductName());
+      // products ingested without being indexed are only known to the
+      // File Manager
+      if (consumers.size() > 0) {
+        return getProducts(consumers);
+      }
+    }
     return fm.queryAllTypes(new InputFilesQuery(orig.getProductName(), fm)
         .buildQuery(), this.prodTypeExcludeList);
   }
@@ -186,6 +235,13 @@ public class Pedigree implements PCSMetadata, PCSConfigMetadata {
    *         Workflow Instance ID.
    */
   public List getWorkflowInstProds(String wInstId) {
+    if (this.lineageIndex != null) {
+      refreshLineageIndex();
+      List jobProds = this.lineageIndex.getProductsForJob(wInstId);
+      if (jobProds.size() > 0) {
+        return getProducts(jobProds);
+      }
+    }
     return fm.queryAllTypes(new JobIdQuery(wInstId, fm).buildQuery(),
         this.prodTypeExcludeList);
   }
@@ -199,6 +255,15 @@ public class Pedigree implements PCSMetadata, PCSConfigMetadata {
 
     for (Object prodName1 : prodNames) {
       String prodName = (String) prodName1;
+      LineageIndex.Entry entry = this.lineageIndex != null ? this.lineageIndex
+          .getEntry(prodName) : null;
+      if (entry != null) {
+        if (this.prodTypeExcludeList == null
+            || !this.prodTypeExcludeList.contains(entry.getProductTypeName())) {
+          prods.add(entry.toProduct());
+        }
+        continue;
+      }
       List prodList = fm.queryAllTypes(new FilenameQuery(prodName, fm)
           .buildQuery(), this.prodTypeExcludeList);
       if (prodList != null && prodList.size() > 0) {
@@ -214,4 +279,15 @@ public class Pedigree implements PCSMetadata, PCSConfigMetadata {
     return prods;
   }
 
+  private void refreshLineageIndex() {
+    if (this.lineageIndex != null) {
+      try {
+        this.lineageIndex.refresh();
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "Unable to refresh lineage index: Message: "
+            + e.getMessage());
+      }
+    }
+  }
+
 }
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.pcs.tools;
+
+//OODT imports
+import org.apache.oodt.pcs.pedigree.LineageIndex;
+import org.apache.oodt.pcs.util.FileManagerUtils;
+
+//JDK imports
+import java.io.File;
+import java.io.IOException;
+
+/**
+ *
+ * A program to rebuild a PCS {@link LineageIndex} from the File Manager
+ * catalog, e.g., when first setting one up for products that were ingested
+ * without it.
+ *
+ * @version $Revision$
+ *
+ */
+public final class PCSLineageIndexer {
+
+  private PCSLineageIndexer() {
+  }
+
+  /**
+   *
+   * @param args
+   */
+  public static void main(String[] args) {
+    String filemgrUrlStr = null, indexPath = null;
+
+    String usage = "PCSLineageIndexer --fm <url> --index <lineage index file>\n";
+
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--fm")) {
+        filemgrUrlStr = args[++i];
+      } else if (args[i].equals("--index")) {
+        indexPath = args[++i];
+      }
+    }
+
+    if (filemgrUrlStr == null || indexPath == null) {
+      System.err.println(usage);
+      System.exit(1);
+    }
+
+    try {
+      LineageIndex index = new LineageIndex(new File(indexPath));
+      int indexed = index.rebuild(new FileManagerUtils(filemgrUrlStr));
+      System.out.println("Indexed lineage of " + indexed + " products into: ["
+          + indexPath + "]");
+    } catch (IOException e) {
+      System.err.println("Unable to rebuild lineage index: [" + indexPath
+          + "]: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+}
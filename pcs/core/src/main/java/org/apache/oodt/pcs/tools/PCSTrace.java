@@ -23,11 +23,14 @@ import org.apache.oodt.cas.metadata.Metadata;
 import org.apache.oodt.cas.workflow.structs.WorkflowInstance;
 import org.apache.oodt.pcs.metadata.PCSConfigMetadata;
 import org.apache.oodt.pcs.metadata.PCSMetadata;
+import org.apache.oodt.pcs.pedigree.LineageIndex;
 import org.apache.oodt.pcs.pedigree.Pedigree;
 import org.apache.oodt.pcs.pedigree.PedigreeTree;
 import org.apache.oodt.pcs.util.FileManagerUtils;
 import org.apache.oodt.pcs.util.WorkflowManagerUtils;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
@@ -56,6 +59,9 @@ public final class PCSTrace implements PCSMetadata, PCSConfigMetadata {
   /* exclude list */
   private List excludeTypeList;
 
+  /* lineage recorded at ingest time, if any */
+  private LineageIndex lineageIndex;
+
   private static final String REPORT_LINE_SEPARATOR = "-------------------------------------------------- ";
 
   public PCSTrace(URL wmgrUrl, URL fmUrl) {
@@ -83,6 +89,22 @@ public final class PCSTrace implements PCSMetadata, PCSConfigMetadata {
     return excludeTypeList;
   }
 
+  /**
+   * @param lineageIndex
+   *          the lineageIndex to trace lineage with, or null to query the file
+   *          manager for it
+   */
+  public void setLineageIndex(LineageIndex lineageIndex) {
+    this.lineageIndex = lineageIndex;
+  }
+
+  /**
+   * @return the lineageIndex
+   */
+  public LineageIndex getLineageIndex() {
+    return lineageIndex;
+  }
+
   /**
    * Outputs a trace report in the following format:
    * 
@@ -122,7 +144,7 @@ public final class PCSTrace implements PCSMetadata, PCSConfigMetadata {
     Product prod = fm.safeGetProductByName(productName);
 
     Pedigree pedigree = new Pedigree(fm, this.listNotCataloged,
-        this.excludeTypeList);
+        this.excludeTypeList, this.lineageIndex);
 
     System.out.println("");
     System.out.println(REPORT_LINE_SEPARATOR);
@@ -196,9 +218,11 @@ public final class PCSTrace implements PCSMetadata, PCSConfigMetadata {
     String workflowUrlStr = null, filemgrUrlStr = null;
     boolean enableNotCat = false;
     List exList = null;
+    String indexPath = null;
 
     String usage = "PCSTrace --fm <url> --wm <url> --product <name> "
-        + " [--enableNonCat] [--exclude <type name 1>,<type name 2>...,<type name n>]\n";
+        + " [--enableNonCat] [--exclude <type name 1>,<type name 2>...,<type name n>]"
+        + " [--index <lineage index file>]\n";
 
     for (int i = 0; i < args.length; i++) {
       if (args[i].equals("--fm")) {
@@ -212,6 +236,8 @@ public final class PCSTrace implements PCSMetadata, PCSConfigMetadata {
       } else if (args[i].equals("--exclude")) {
         String[] excludeTypes = args[++i].split(",");
         exList = Arrays.asList(excludeTypes);
+      } else if (args[i].equals("--index")) {
+        indexPath = args[++i];
       }
 
     }
@@ -228,6 +254,15 @@ public final class PCSTrace implements PCSMetadata, PCSConfigMetadata {
     if (exList != null) {
       tracer.setExcludeTypeList(exList);
     }
+    if (indexPath != null) {
+      try {
+        tracer.setLineageIndex(new LineageIndex(new File(indexPath)));
+      } catch (IOException e) {
+        System.err.println("Unable to open lineage index: [" + indexPath
+            + "]: " + e.getMessage());
+        System.exit(1);
+      }
+    }
     tracer.doTrace(productName);
 
   }
@@ -391,6 +391,29 @@ public class FileManagerUtils implements PCSConfigMetadata {
     return page;
   }
 
+  /**
+   * Get the next page of Products using the pagination API.
+   * 
+   * @param type
+   *          Gets the next page of products for this type.
+   * @param currPage
+   *          The page of products before the one to get.
+   * @return The next page of products for this type.
+   */
+  public ProductPage safeGetNextPage(ProductType type, ProductPage currPage) {
+    if (!isConnected())
+      return ProductPage.blankPage();
+    ProductPage page = null;
+    try {
+      page = this.fmgrClient.getNextPage(type, currPage);
+    } catch (Exception e) {
+      LOG.log(Level.WARNING, "Exception getting page ["
+          + (currPage.getPageNum() + 1) + "] of products for type: ["
+          + type.getName() + "]: Message: " + e.getMessage());
+    }
+    return page;
+  }
+
   public String getFilePath(Product prod) {
     if (!isConnected())
       return "N/A";
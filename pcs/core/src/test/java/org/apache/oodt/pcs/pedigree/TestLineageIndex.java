@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.pcs.pedigree;
+
+//JDK imports
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+//Junit imports
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link LineageIndex}, and the way separate instances share the
+ * file it is stored in.
+ *
+ * @version $Revision$
+ */
+public class TestLineageIndex extends TestCase {
+
+  private File indexFile;
+
+  protected void setUp() throws Exception {
+    indexFile = File.createTempFile("lineage", ".idx");
+    indexFile.delete();
+  }
+
+  protected void tearDown() throws Exception {
+    indexFile.delete();
+  }
+
+  public void testRefreshPicksUpRecordsAppendedByAnotherInstance()
+      throws IOException {
+    LineageIndex writer = new LineageIndex(indexFile);
+    LineageIndex reader = new LineageIndex(indexFile);
+
+    writer.addProduct("out.dat", "1", "L1", "job1", Arrays.asList("in.dat"));
+    assertFalse(reader.contains("out.dat"));
+
+    reader.refresh();
+    assertTrue(reader.contains("out.dat"));
+    assertEquals(Arrays.asList("in.dat"), reader.getInputFiles("out.dat"));
+    assertEquals(Arrays.asList("out.dat"), reader.getConsumers("in.dat"));
+    assertEquals(Arrays.asList("out.dat"), reader.getProductsForJob("job1"));
+    assertEquals("1", reader.getEntry("out.dat").getProductId());
+    assertEquals("L1", reader.getEntry("out.dat").getProductTypeName());
+
+    // and the other way around, without losing what was read already
+    reader.addProduct("out2.dat", "2", "L2", "job2", Arrays.asList("out.dat"));
+    writer.refresh();
+    assertEquals(2, writer.size());
+    assertEquals(Arrays.asList("out2.dat"), writer.getConsumers("out.dat"));
+  }
+
+  public void testTornLastRecordIsSkipped() throws IOException {
+    LineageIndex writer = new LineageIndex(indexFile);
+    writer.addProduct("out.dat", "1", "L1", "job1", Arrays.asList("in.dat"));
+
+    // a writer that died part way through its record
+    append("P\ttorn.dat\t3");
+
+    LineageIndex reader = new LineageIndex(indexFile);
+    assertEquals(1, reader.size());
+    assertFalse(reader.contains("torn.dat"));
+
+    // the next record is appended after the torn one, not run into it
+    writer.addProduct("out2.dat", "2", "L1", "job1", Arrays.asList("in.dat"));
+    reader.refresh();
+    assertEquals(2, reader.size());
+    assertFalse(reader.contains("torn.dat"));
+    assertEquals(Arrays.asList("out.dat", "out2.dat"), reader
+        .getProductsForJob("job1"));
+    assertEquals(2, new LineageIndex(indexFile).size());
+  }
+
+  public void testRecordsCutAnywhereAreSkipped() throws IOException {
+    LineageIndex writer = new LineageIndex(indexFile);
+    writer.addProduct("out.dat", "1", "L1", "job1", Arrays.asList("in.dat"));
+
+    // writers that died inside the input list, inside an escape, and inside
+    // the checksum, each ended by the next writer
+    String[] torn = { "P\ttorn1.dat\t3\tL1\tjob1\tin.dat\tin2.d",
+        "P\ttorn2.dat\t4\tL1\tjob1\tin%2",
+        "P\ttorn3.dat\t5\tL1\tjob1\tin.dat\t0a1b" };
+    for (int i = 0; i < torn.length; i++) {
+      append(torn[i]);
+      writer.addProduct("next" + i + ".dat", "n" + i, "L1", "job1", Arrays
+          .asList("in.dat"));
+    }
+
+    LineageIndex reader = new LineageIndex(indexFile);
+    assertEquals(4, reader.size());
+    for (int i = 1; i <= torn.length; i++) {
+      assertFalse(reader.contains("torn" + i + ".dat"));
+    }
+    assertEquals(Arrays.asList("out.dat", "next0.dat", "next1.dat",
+        "next2.dat"), reader.getConsumers("in.dat"));
+    assertEquals(Collections.emptyList(), reader.getConsumers("in2.d"));
+  }
+
+  public void testAddProductReplacesItsRecord() throws IOException {
+    LineageIndex index = new LineageIndex(indexFile);
+    index.addProduct("out.dat", "1", "L1", "job1", Arrays.asList("in.dat"));
+    index.addProduct("out.dat", "1", "L1", "job2", Arrays.asList("in2.dat"));
+
+    assertReplaced(index);
+    // and a fresh read of the file agrees
+    assertReplaced(new LineageIndex(indexFile));
+  }
+
+  /* appends the start of a record, as a writer that died would leave it */
+  private void append(String record) throws IOException {
+    FileOutputStream out = new FileOutputStream(indexFile, true);
+    try {
+      out.write(record.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void assertReplaced(LineageIndex index) {
+    assertEquals(1, index.size());
+    assertEquals(Arrays.asList("in2.dat"), index.getInputFiles("out.dat"));
+    assertEquals(Collections.emptyList(), index.getConsumers("in.dat"));
+    assertEquals(Arrays.asList("out.dat"), index.getConsumers("in2.dat"));
+    assertEquals(Collections.emptyList(), index.getProductsForJob("job1"));
+    assertEquals(Arrays.asList("out.dat"), index.getProductsForJob("job2"));
+  }
+
+}
@@ -18,12 +18,16 @@
 package org.apache.oodt.pcs.services;
 
 //JDK imports
+import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 //JAX-RS imports
 import javax.ws.rs.GET;
@@ -35,6 +39,7 @@ import javax.ws.rs.Produces;
 import net.sf.json.JSONObject;
 
 //OODT imports
+import org.apache.oodt.pcs.pedigree.LineageIndex;
 import org.apache.oodt.pcs.pedigree.Pedigree;
 import org.apache.oodt.pcs.pedigree.PedigreeTree;
 import org.apache.oodt.pcs.pedigree.PedigreeTreeNode;
@@ -54,6 +59,9 @@ public class PedigreeResource extends PCSService {
 
   private static final long serialVersionUID = 4851623546718112205L;
 
+  private static final Logger LOG = Logger.getLogger(PedigreeResource.class
+      .getName());
+
   private Pedigree trace;
 
   private FileManagerUtils fm;
@@ -62,7 +70,7 @@ public class PedigreeResource extends PCSService {
     this.fm = new FileManagerUtils(PCSService.conf.getFmUrl());
     this.trace = new Pedigree(this.fm, PCSService.conf
         .isTraceNotCatalogedFiles(), Arrays.asList(PCSService.conf
-        .getTraceProductTypeExcludeList().split(",")));
+        .getTraceProductTypeExcludeList().split(",")), openLineageIndex());
   }
 
   @GET
@@ -95,6 +103,21 @@ public class PedigreeResource extends PCSService {
     return this.encodePedigreeAsJson(null, downstreamTree);
   }
 
+  private static LineageIndex openLineageIndex() {
+    String indexPath = PCSService.conf.getTraceLineageIndexFilePath();
+    if (indexPath == null) {
+      return null;
+    }
+    try {
+      return new LineageIndex(new File(indexPath));
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to open lineage index: [" + indexPath
+          + "]: tracing pedigree through the file manager: Message: "
+          + e.getMessage());
+      return null;
+    }
+  }
+
   private String encodePedigreeAsJson(PedigreeTree up, PedigreeTree down) {
     Map<String, Object> output = new ConcurrentHashMap<String, Object>();
     if (up != null) {
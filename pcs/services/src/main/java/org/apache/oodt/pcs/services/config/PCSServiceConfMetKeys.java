@@ -43,4 +43,6 @@ public interface PCSServiceConfMetKeys {
   
   String PCS_TRACE_PTYPE_EXCLUDE_LIST = "org.apache.oodt.pcs.trace.productTypeExcludeList";
 
+  String PCS_TRACE_LINEAGE_INDEX_PATH = "org.apache.oodt.pcs.trace.lineageIndex.filePath";
+
 }
@@ -113,6 +113,16 @@ public class PCSServiceConfig implements PCSServiceConfMetKeys {
     return PathUtils.replaceEnvVariables(this.parameters.get(PCS_TRACE_PTYPE_EXCLUDE_LIST));
   }
 
+  /**
+   * @return The path to the lineage index to trace pedigree with, or null if
+   *         pedigree should be traced by querying the file manager.
+   */
+  public String getTraceLineageIndexFilePath() {
+    String path = this.parameters.get(PCS_TRACE_LINEAGE_INDEX_PATH);
+    return path != null && path.trim().length() > 0 ? PathUtils
+        .replaceEnvVariables(path) : null;
+  }
+
   @SuppressWarnings("unchecked")
   private void readContextParams(ServletConfig config) {
     for (Enumeration<String> paramNames = config.getServletContext()
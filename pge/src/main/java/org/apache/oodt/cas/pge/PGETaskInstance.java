@@ -19,6 +19,7 @@ package org.apache.oodt.cas.pge;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.commons.lang.Validate;
 import org.apache.oodt.cas.crawl.AutoDetectProductCrawler;
 import org.apache.oodt.cas.crawl.ProductCrawler;
@@ -39,6 +40,7 @@ import org.apache.oodt.cas.pge.config.DynamicConfigFile;
 import org.apache.oodt.cas.pge.config.OutputDir;
 import org.apache.oodt.cas.pge.config.PgeConfig;
 import org.apache.oodt.cas.pge.config.RegExprOutputFiles;
+import org.apache.oodt.cas.pge.config.RegExprOutputFilesMatcher;
 import org.apache.oodt.cas.pge.config.XmlFilePgeConfigBuilder;
 import org.apache.oodt.cas.pge.exceptions.PGEException;
 import org.apache.oodt.cas.pge.metadata.PgeMetadata;
@@ -72,9 +74,14 @@ import java.text.ParseException;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.FileHandler;
 import java.util.logging.SimpleFormatter;
-import java.util.regex.Pattern;
 
 import static org.apache.oodt.cas.pge.metadata.PgeTaskMetKeys.*;
 import static org.apache.oodt.cas.pge.metadata.PgeTaskStatus.CONF_FILE_BUILD;
@@ -83,6 +90,7 @@ import static org.apache.oodt.cas.pge.metadata.PgeTaskStatus.RUNNING_PGE;
 import static org.apache.oodt.cas.pge.metadata.PgeTaskStatus.STAGING_INPUT;
 import static org.apache.oodt.cas.pge.util.GenericPgeObjectFactory.createConfigFilePropertyAdder;
 import static org.apache.oodt.cas.pge.util.GenericPgeObjectFactory.createFileStager;
+import static org.apache.oodt.cas.pge.util.GenericPgeObjectFactory.createPcsMetFileWriter;
 import static org.apache.oodt.cas.pge.util.GenericPgeObjectFactory.createPgeConfigBuilder;
 import static org.apache.oodt.cas.pge.util.GenericPgeObjectFactory.createSciPgeConfigFileWriter;
 
@@ -432,36 +440,108 @@ public class PGETaskInstance implements WorkflowTaskInstance {
 
    protected void processOutput() throws IOException {
       logger.debug("Processing output");
-      for (final OutputDir outputDir : this.pgeConfig.getOuputDirs()) {
-         File[] createdFiles = new File(outputDir.getPath()).listFiles();
-         if (createdFiles != null) {
-            for (File createdFile : createdFiles) {
-               Metadata outputMetadata = new Metadata();
-               for (RegExprOutputFiles regExprFiles : outputDir
-                       .getRegExprOutputFiles()) {
-                  if (Pattern.matches(regExprFiles.getRegExp(), createdFile
-                          .getName())) {
-                     try {
-                        PcsMetFileWriter writer = (PcsMetFileWriter) Class
-                                .forName(regExprFiles.getConverterClass())
-                                .newInstance();
-                        outputMetadata.replaceMetadata(this.getMetadataForFile(
-                                (regExprFiles.getRenamingConv() != null)
-                                        ? createdFile = this.renameFile(createdFile, regExprFiles.getRenamingConv())
-                                        : createdFile, writer, regExprFiles.getArgs()));
-                     } catch (Exception e) {
-                        logger.error("Failed to create metadata file for '{}'", createdFile, e);
+      int workers = getMetFileWriterWorkers();
+      ExecutorService executor = workers > 1 ? Executors.newFixedThreadPool(workers) : null;
+      try {
+         for (final OutputDir outputDir : this.pgeConfig.getOuputDirs()) {
+            File[] createdFiles = new File(outputDir.getPath()).listFiles();
+            if (createdFiles == null) {
+               continue;
+            }
+            final RegExprOutputFilesMatcher matcher = new RegExprOutputFilesMatcher(
+                    outputDir.getRegExprOutputFiles());
+            final Map<String, PcsMetFileWriter> writers = createMetFileWriters(matcher);
+            List<Future<Void>> metFileWrites = Lists.newArrayList();
+            for (final File createdFile : createdFiles) {
+               if (!matcher.matchesAny(createdFile.getName())) {
+                  continue;
+               }
+               if (executor == null) {
+                  processOutputFile(createdFile, matcher, writers);
+               } else {
+                  metFileWrites.add(executor.submit(new Callable<Void>() {
+                     @Override
+                     public Void call() throws IOException {
+                        processOutputFile(createdFile, matcher, writers);
+                        return null;
                      }
+                  }));
+               }
+            }
+            for (Future<Void> metFileWrite : metFileWrites) {
+               try {
+                  metFileWrite.get();
+               } catch (ExecutionException e) {
+                  if (e.getCause() instanceof IOException) {
+                     throw (IOException) e.getCause();
                   }
+                  throw new IOException(e.getCause());
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  throw new IOException("Interrupted writing metadata files", e);
                }
+            }
+         }
+      } finally {
+         if (executor != null) {
+            executor.shutdownNow();
+         }
+      }
+   }
 
-               if (outputMetadata.getAllKeys().size() > 0) {
-                  this.writeFromMetadata(outputMetadata, createdFile.getAbsolutePath()
-                          + "." + this.pgeMetadata.getMetadata(MET_FILE_EXT));
+   private void processOutputFile(File createdFile,
+           RegExprOutputFilesMatcher matcher, Map<String, PcsMetFileWriter> writers)
+           throws IOException {
+      Metadata outputMetadata = new Metadata();
+      for (RegExprOutputFiles regExprFiles : matcher.getRegExprOutputFiles()) {
+         if (regExprFiles.getPattern().matcher(createdFile.getName()).matches()) {
+            try {
+               PcsMetFileWriter writer = writers.get(regExprFiles.getConverterClass());
+               if (writer == null) {
+                  throw new PGEException("No PcsMetFileWriter ["
+                          + regExprFiles.getConverterClass() + "]");
                }
+               outputMetadata.replaceMetadata(this.getMetadataForFile(
+                       (regExprFiles.getRenamingConv() != null)
+                               ? createdFile = this.renameFile(createdFile, regExprFiles.getRenamingConv())
+                               : createdFile, writer, regExprFiles.getArgs()));
+            } catch (Exception e) {
+               logger.error("Failed to create metadata file for '{}'", createdFile, e);
             }
          }
       }
+
+      if (outputMetadata.getAllKeys().size() > 0) {
+         this.writeFromMetadata(outputMetadata, createdFile.getAbsolutePath()
+                 + "." + this.pgeMetadata.getMetadata(MET_FILE_EXT));
+      }
+   }
+
+   /**
+    * Creates one {@link PcsMetFileWriter} per converter class, to be shared by
+    * all of an {@link OutputDir}'s files; writers must not keep per file state.
+    */
+   private Map<String, PcsMetFileWriter> createMetFileWriters(
+           RegExprOutputFilesMatcher matcher) {
+      Map<String, PcsMetFileWriter> writers = Maps.newHashMap();
+      for (RegExprOutputFiles regExprFiles : matcher.getRegExprOutputFiles()) {
+         if (!writers.containsKey(regExprFiles.getConverterClass())) {
+            writers.put(regExprFiles.getConverterClass(), createPcsMetFileWriter(
+                    regExprFiles.getConverterClass(), logger));
+         }
+      }
+      return writers;
+   }
+
+   private int getMetFileWriterWorkers() {
+      String workers = pgeMetadata.getMetadata(MET_FILE_WRITER_WORKERS);
+      try {
+         return workers != null ? Integer.parseInt(workers) : 1;
+      } catch (NumberFormatException e) {
+         logger.warn("Invalid [{}] : [{}], writing metadata files one at a time",
+                 MET_FILE_WRITER_WORKERS, workers);
+         return 1;
+      }
    }
 
 	protected File renameFile(File file, PathUtilsNamingConvention renamingConv)
@@ -481,8 +561,13 @@ public class PGETaskInstance implements WorkflowTaskInstance {
 
 	protected void writeFromMetadata(Metadata metadata, String toMetFilePath)
 			throws IOException {
-		new SerializableMetadata(metadata, "UTF-8", false)
-				.writeMetadataToXmlStream(new FileOutputStream(toMetFilePath));
+		FileOutputStream out = new FileOutputStream(toMetFilePath);
+		try {
+			new SerializableMetadata(metadata, "UTF-8", false)
+					.writeMetadataToXmlStream(out);
+		} finally {
+			out.close();
+		}
 	}
 
    protected ProductCrawler createProductCrawler()
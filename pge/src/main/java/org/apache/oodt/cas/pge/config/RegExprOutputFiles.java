@@ -20,6 +20,8 @@ package org.apache.oodt.cas.pge.config;
 
 import org.apache.oodt.cas.metadata.filenaming.PathUtilsNamingConvention;
 
+import java.util.regex.Pattern;
+
 /**
  * 
  * @author bfoster
@@ -39,6 +41,8 @@ public class RegExprOutputFiles {
     private Object[] args;
 
     private PathUtilsNamingConvention renamingConv;
+
+    private volatile Pattern pattern;
     
     public RegExprOutputFiles(String regExp, String converterClass, 
     		PathUtilsNamingConvention renamingConv, Object[] args) {
@@ -56,6 +60,16 @@ public class RegExprOutputFiles {
         return this.regExp;
     }
 
+    /**
+     * @return The regular expression, compiled once on first use.
+     */
+    public Pattern getPattern() {
+        if (this.pattern == null) {
+            this.pattern = Pattern.compile(this.regExp);
+        }
+        return this.pattern;
+    }
+
     public String getConverterClass() {
         return this.converterClass;
     }
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.pge.config;
+
+//JDK imports
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+//Google imports
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Matches file names against all of an {@link OutputDir}'s
+ * {@link RegExprOutputFiles} at once: their expressions are compiled a single
+ * time and, where possible, combined into one alternation, so that a file
+ * matching none of them is turned away in a single pass.
+ *
+ * @version $Revision$
+ */
+public class RegExprOutputFilesMatcher {
+
+   /*
+    * expressions that can't simply be wrapped in a group: back references
+    * would be renumbered, and an unterminated quote or a comment (with the
+    * COMMENTS flag on) would swallow the closing parenthesis
+    */
+   private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\(\\d|k<|Q)|\\(\\?[a-zA-Z]*x");
+
+   private final List<RegExprOutputFiles> regExprOutputFiles;
+
+   private final Pattern combined;
+
+   public RegExprOutputFilesMatcher(List<RegExprOutputFiles> regExprOutputFiles) {
+      this.regExprOutputFiles = ImmutableList.copyOf(regExprOutputFiles);
+      this.combined = combine(this.regExprOutputFiles);
+   }
+
+   /**
+    * @return The {@link RegExprOutputFiles}, in the order they were given.
+    */
+   public List<RegExprOutputFiles> getRegExprOutputFiles() {
+      return regExprOutputFiles;
+   }
+
+   /**
+    * @param fileName
+    *           A file name.
+    * @return Whether or not the name matches any of the expressions.
+    */
+   public boolean matchesAny(String fileName) {
+      if (combined != null) {
+         return combined.matcher(fileName).matches();
+      }
+      for (RegExprOutputFiles files : regExprOutputFiles) {
+         if (files.getPattern().matcher(fileName).matches()) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static Pattern combine(List<RegExprOutputFiles> regExprOutputFiles) {
+      if (regExprOutputFiles.size() < 2) {
+         return null;
+      }
+      StringBuilder alternation = new StringBuilder();
+      for (RegExprOutputFiles files : regExprOutputFiles) {
+         // compile each on its own first, so a bad one fails as it would have
+         files.getPattern();
+         if (NOT_COMBINABLE.matcher(files.getRegExp()).find()) {
+            return null;
+         }
+         if (alternation.length() > 0) {
+            alternation.append('|');
+         }
+         alternation.append("(?:").append(files.getRegExp()).append(')');
+      }
+      try {
+         return Pattern.compile(alternation.toString());
+      } catch (PatternSyntaxException e) {
+         // e.g., two expressions that each define the same named group
+         return null;
+      }
+   }
+}
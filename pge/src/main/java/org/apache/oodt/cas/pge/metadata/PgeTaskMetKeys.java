@@ -63,6 +63,20 @@ public enum PgeTaskMetKeys {
    FILE_STAGER(
          "PGETask/FileStager",
          "PGETask_FileStager"),
+   /**
+    * Number of files the {@link FileStager} stages at once (defaults to 1).
+    */
+   FILE_STAGER_WORKERS(
+         "PGETask/FileStager/Workers",
+         "PGETask_FileStager_Workers"),
+   /**
+    * Set to 'hard' or 'symbolic' to have the {@link FileStager} link local
+    * files into the staging directory, instead of copying them, when both are
+    * on the same file system.
+    */
+   FILE_STAGER_LINK(
+         "PGETask/FileStager/Link",
+         "PGETask_FileStager_Link"),
    /**
     * List of {@link ConfigFilePropertyAdder}s classpaths to be run.
     */
@@ -161,7 +175,15 @@ public enum PgeTaskMetKeys {
     * version of the key for forward compat.
     */
    MET_FILE_EXT("PGETask/Ingest/MetFileExtension", 
-                "PCS_MetFileExtension");
+                "PCS_MetFileExtension"),
+
+   /**
+    * Number of output files CAS-PGE generates metadata files for at once
+    * (defaults to 1).
+    */
+   MET_FILE_WRITER_WORKERS(
+         "PGETask/Ingest/MetFileWriterWorkers",
+         "PGETask_MetFileWriterWorkers");
 
 
    public static final String USE_LEGACY_PROPERTY = "org.apache.oodt.cas.pge.task.metkeys.legacyMode";
@@ -27,9 +27,11 @@ import org.apache.oodt.cas.filemgr.util.RpcCommunicationFactory;
 import org.apache.oodt.cas.pge.config.FileStagingInfo;
 import org.apache.oodt.cas.pge.exceptions.PGEException;
 import org.apache.oodt.cas.pge.metadata.PgeMetadata;
+import org.apache.oodt.cas.pge.metadata.PgeTaskMetKeys;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 
 import java.io.File;
@@ -38,40 +40,78 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.apache.oodt.cas.pge.metadata.PgeTaskMetKeys.FILE_STAGER_LINK;
+import static org.apache.oodt.cas.pge.metadata.PgeTaskMetKeys.FILE_STAGER_WORKERS;
 import static org.apache.oodt.cas.pge.metadata.PgeTaskMetKeys.QUERY_FILE_MANAGER_URL;
 
 /**
  * Responsible for transferring Product files to a directory accessible by
  * by CAS-PGE.
  *
+ * <p>
+ * Product references are all looked up before any file is staged, and files
+ * can be staged several at a time (see
+ * {@link PgeTaskMetKeys#FILE_STAGER_WORKERS}). Local files that are already
+ * in the staging directory, with the same size and modification time, are
+ * not staged again, and local files can be hard or symbolically linked into
+ * the staging directory, rather than transferred, when both are on the same
+ * file system (see {@link PgeTaskMetKeys#FILE_STAGER_LINK}).
+ * </p>
+ *
  * @author bfoster (Brian Foster)
  */
 public abstract class FileStager {
 
+   /* value of FILE_STAGER_LINK for hard links; anything else means symbolic */
+   private static final String HARD_LINK = "hard";
+
    public void stageFiles(FileStagingInfo fileStagingInfo, PgeMetadata pgeMetadata, Logger logger)
        throws PGEException, CatalogException, URISyntaxException, IOException, ConnectionException,
        InstantiationException, DataTransferException {
       logger.info("Creating staging directory [{}]", fileStagingInfo.getStagingDir());
-      new File(fileStagingInfo.getStagingDir()).mkdirs();
-      for (String file : fileStagingInfo.getFilePaths()) {
-         File fileHandle = new File(file);
-         if (fileStagingInfo.isForceStaging() || !fileHandle.exists()) {
-            logger.info("Staging file [{}] to directory [{}]", file,  fileStagingInfo.getStagingDir());
-            stageFile(asURI(file), new File(fileStagingInfo.getStagingDir()), pgeMetadata, logger);
+      File stagingDir = new File(fileStagingInfo.getStagingDir());
+      stagingDir.mkdirs();
+
+      int workers = getWorkers(pgeMetadata);
+      ExecutorService executor = workers > 1 ? Executors.newFixedThreadPool(workers) : null;
+      try {
+         List<URI> uris = Lists.newArrayList();
+         for (String file : fileStagingInfo.getFilePaths()) {
+            File fileHandle = new File(file);
+            if (fileStagingInfo.isForceStaging() || !fileHandle.exists()) {
+               logger.info("Staging file [{}] to directory [{}]", file,  fileStagingInfo.getStagingDir());
+               uris.add(asURI(file));
+            }
          }
-      }
-      if (!fileStagingInfo.getProductIds().isEmpty()) {
-         FileManagerClient fmClient = createFileManagerClient(pgeMetadata);
-         for (String productId : fileStagingInfo.getProductIds()) {
-            logger.info("Staging product [{}] to directory [{}]", productId, fileStagingInfo.getStagingDir());
-            for (URI uri : getProductReferences(productId, fmClient)) {
-               logger.info("Staging product [{}] reference [{}] to directory [{}]",
-                       productId, uri, fileStagingInfo.getStagingDir());
-               stageFile(uri, new File(fileStagingInfo.getStagingDir()), pgeMetadata, logger);
+         if (!fileStagingInfo.getProductIds().isEmpty()) {
+            FileManagerClient fmClient = createFileManagerClient(pgeMetadata);
+            Map<String, List<URI>> productReferences = getProductReferences(
+                  fileStagingInfo.getProductIds(), fmClient, executor);
+            for (Map.Entry<String, List<URI>> entry : productReferences.entrySet()) {
+               logger.info("Staging product [{}] to directory [{}]", entry.getKey(),
+                       fileStagingInfo.getStagingDir());
+               for (URI uri : entry.getValue()) {
+                  logger.info("Staging product [{}] reference [{}] to directory [{}]",
+                          entry.getKey(), uri, fileStagingInfo.getStagingDir());
+                  uris.add(uri);
+               }
             }
          }
+         stageAll(uris, stagingDir, pgeMetadata, logger, executor);
+      } finally {
+         if (executor != null) {
+            executor.shutdownNow();
+         }
       }
    }
 
@@ -100,6 +140,48 @@ public abstract class FileStager {
       return files;
    }
 
+   /**
+    * Looks up the references of all the given products, several at a time
+    * if an {@link ExecutorService} is given.
+    */
+   @VisibleForTesting
+   static Map<String, List<URI>> getProductReferences(List<String> productIds,
+         final FileManagerClient fmClient, ExecutorService executor)
+         throws URISyntaxException, CatalogException {
+      Map<String, List<URI>> references = Maps.newLinkedHashMap();
+      if (executor == null) {
+         for (String productId : productIds) {
+            references.put(productId, getProductReferences(productId, fmClient));
+         }
+         return references;
+      }
+
+      Map<String, Future<List<URI>>> lookups = Maps.newLinkedHashMap();
+      for (final String productId : productIds) {
+         lookups.put(productId, executor.submit(new Callable<List<URI>>() {
+            @Override
+            public List<URI> call() throws Exception {
+               return getProductReferences(productId, fmClient);
+            }
+         }));
+      }
+      for (Map.Entry<String, Future<List<URI>>> lookup : lookups.entrySet()) {
+         try {
+            references.put(lookup.getKey(), lookup.getValue().get());
+         } catch (ExecutionException e) {
+            if (e.getCause() instanceof URISyntaxException) {
+               throw (URISyntaxException) e.getCause();
+            }
+            throw new CatalogException("Failed to get references for product ["
+                  + lookup.getKey() + "] : " + e.getCause().getMessage(), e.getCause());
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CatalogException("Interrupted getting product references", e);
+         }
+      }
+      return references;
+   }
+
    @VisibleForTesting
    static URI asURI(String path) {
       Validate.notNull(path, "path must not be null");
@@ -111,6 +193,109 @@ public abstract class FileStager {
       return uri;
    }
 
+   @VisibleForTesting
+   static boolean isAlreadyStaged(File source, File dest) {
+      return source.isFile() && dest.isFile()
+            && source.length() == dest.length()
+            && source.lastModified() == dest.lastModified();
+   }
+
+   /**
+    * Links the source file into the destination directory, if the two are on
+    * the same file system.
+    *
+    * @return Whether or not the file was linked.
+    */
+   @VisibleForTesting
+   static boolean link(File source, File destDir, String linkType, Logger logger) {
+      Path sourcePath = source.toPath().toAbsolutePath();
+      Path destPath = new File(destDir, source.getName()).toPath();
+      try {
+         if (!Files.getFileStore(sourcePath).equals(Files.getFileStore(destDir.toPath()))) {
+            return false;
+         }
+         Files.deleteIfExists(destPath);
+         if (HARD_LINK.equalsIgnoreCase(linkType)) {
+            Files.createLink(destPath, sourcePath);
+         } else {
+            Files.createSymbolicLink(destPath, sourcePath);
+         }
+         return true;
+      } catch (IOException | UnsupportedOperationException e) {
+         logger.warn("Unable to link [{}] into [{}], staging it instead: {}",
+                 source, destDir, e.getMessage());
+         return false;
+      }
+   }
+
+   private void stageAll(List<URI> uris, final File destDir,
+         final PgeMetadata pgeMetadata, final Logger logger, ExecutorService executor)
+         throws IOException, DataTransferException, InstantiationException {
+      final String linkType = pgeMetadata.getMetadata(FILE_STAGER_LINK);
+      if (executor == null) {
+         for (URI uri : uris) {
+            stage(uri, destDir, linkType, pgeMetadata, logger);
+         }
+         return;
+      }
+
+      List<Future<Void>> stagings = Lists.newArrayList();
+      for (final URI uri : uris) {
+         stagings.add(executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+               stage(uri, destDir, linkType, pgeMetadata, logger);
+               return null;
+            }
+         }));
+      }
+      for (Future<Void> staging : stagings) {
+         try {
+            staging.get();
+         } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+               throw (IOException) cause;
+            } else if (cause instanceof DataTransferException) {
+               throw (DataTransferException) cause;
+            } else if (cause instanceof InstantiationException) {
+               throw (InstantiationException) cause;
+            }
+            throw new DataTransferException("Failed to stage file : "
+                  + cause.getMessage(), cause);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataTransferException("Interrupted staging files", e);
+         }
+      }
+   }
+
+   private void stage(URI uri, File destDir, String linkType,
+         PgeMetadata pgeMetadata, Logger logger)
+         throws IOException, DataTransferException, InstantiationException {
+      if ("file".equals(uri.getScheme())) {
+         File source = new File(uri);
+         if (isAlreadyStaged(source, new File(destDir, source.getName()))) {
+            logger.info("File [{}] is already staged in [{}]", uri, destDir);
+            return;
+         }
+         if (linkType != null && link(source, destDir, linkType, logger)) {
+            logger.info("Linked file [{}] into [{}]", uri, destDir);
+            return;
+         }
+      }
+      stageFile(uri, destDir, pgeMetadata, logger);
+   }
+
+   private static int getWorkers(PgeMetadata pgeMetadata) throws PGEException {
+      String workers = pgeMetadata.getMetadata(FILE_STAGER_WORKERS);
+      try {
+         return workers != null ? Integer.parseInt(workers) : 1;
+      } catch (NumberFormatException e) {
+         throw new PGEException("Invalid [" + FILE_STAGER_WORKERS + "] : " + workers, e);
+      }
+   }
+
    protected abstract void stageFile(URI stageFile, File destDir,
          PgeMetadata pgeMetadata, Logger logger)
        throws IOException, DataTransferException, InstantiationException;
@@ -20,6 +20,7 @@ import org.apache.oodt.cas.pge.ConfigFilePropertyAdder;
 import org.apache.oodt.cas.pge.PGETaskInstance;
 import org.apache.oodt.cas.pge.config.PgeConfigBuilder;
 import org.apache.oodt.cas.pge.staging.FileStager;
+import org.apache.oodt.cas.pge.writers.PcsMetFileWriter;
 import org.apache.oodt.cas.pge.writers.SciPgeConfigFileWriter;
 
 
@@ -77,4 +78,13 @@ public class GenericPgeObjectFactory {
          return null;
       }
    }
+
+   public static PcsMetFileWriter createPcsMetFileWriter(String clazz, org.slf4j.Logger logger) {
+      try {
+         return (PcsMetFileWriter) Class.forName(clazz).newInstance();
+      } catch (Exception e) {
+         logger.error("Failed to create PcsMetFileWriter [{}]", clazz, e);
+         return null;
+      }
+   }
 }
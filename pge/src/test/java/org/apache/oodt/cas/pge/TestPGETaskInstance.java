@@ -32,10 +32,12 @@ import org.apache.oodt.cas.pge.config.DynamicConfigFile;
 import org.apache.oodt.cas.pge.config.MockPgeConfigBuilder;
 import org.apache.oodt.cas.pge.config.OutputDir;
 import org.apache.oodt.cas.pge.config.PgeConfig;
+import org.apache.oodt.cas.pge.config.RegExprOutputFiles;
 import org.apache.oodt.cas.pge.metadata.PgeMetadata;
 import org.apache.oodt.cas.pge.metadata.PgeTaskMetKeys;
 import org.apache.oodt.cas.pge.metadata.PgeTaskStatus;
 import org.apache.oodt.cas.pge.writers.MockDynamicConfigFileWriter;
+import org.apache.oodt.cas.pge.writers.MockPcsMetFileWriter;
 import org.apache.oodt.cas.workflow.metadata.CoreMetKeys;
 import org.apache.oodt.cas.workflow.structs.WorkflowTaskConfiguration;
 import org.apache.oodt.cas.workflow.system.AvroRpcWorkflowManagerClient;
@@ -321,6 +323,33 @@ public class TestPGETaskInstance {
       assertFalse(outputDir3.exists());
    }
 
+  @Test
+   public void testProcessOutput() throws Exception {
+      PGETaskInstance pgeTask = createTestInstance();
+      pgeTask.pgeMetadata.replaceMetadata(MET_FILE_EXT, "met");
+      pgeTask.pgeMetadata.replaceMetadata(MET_FILE_WRITER_WORKERS, "4");
+      File outputDir = createTmpDir();
+      for (int i = 0; i < 20; i++) {
+         FileUtils.touch(new File(outputDir, "data-" + i + ".dat"));
+      }
+      FileUtils.touch(new File(outputDir, "other.txt"));
+      OutputDir outputDirConfig = new OutputDir(outputDir.getAbsolutePath(), false);
+      outputDirConfig.addRegExprOutputFiles(new RegExprOutputFiles(
+            "data-\\d+\\.dat", MockPcsMetFileWriter.class.getName(), null,
+            new Object[0]));
+      outputDirConfig.addRegExprOutputFiles(new RegExprOutputFiles(
+            ".*\\.xyz", MockPcsMetFileWriter.class.getName(), null,
+            new Object[0]));
+      pgeTask.pgeConfig.addOuputDirAndExpressions(outputDirConfig);
+
+      pgeTask.processOutput();
+
+      for (int i = 0; i < 20; i++) {
+         assertTrue(new File(outputDir, "data-" + i + ".dat.met").exists());
+      }
+      assertFalse(new File(outputDir, "other.txt.met").exists());
+   }
+
   @Test
    public void testCreateDynamicConfigFile() throws Exception {
       File tmpDir = createTmpDir();
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.oodt.cas.pge.config;
+
+//Google imports
+import com.google.common.collect.Lists;
+
+//JUnit imports
+import junit.framework.TestCase;
+
+/**
+ * Test class for {@link RegExprOutputFilesMatcher}.
+ */
+public class TestRegExprOutputFilesMatcher extends TestCase {
+
+   public void testMatchesAny() {
+      RegExprOutputFilesMatcher matcher = new RegExprOutputFilesMatcher(
+            Lists.newArrayList(files(".*\\.dat"), files("(?i)report\\.txt"),
+                  files("log|out")));
+      assertTrue(matcher.matchesAny("granule.dat"));
+      assertTrue(matcher.matchesAny("REPORT.TXT"));
+      assertTrue(matcher.matchesAny("log"));
+      assertFalse(matcher.matchesAny("granule.dat.met"));
+      assertFalse(matcher.matchesAny("logout"));
+      // a flag in one expression doesn't leak into the others
+      assertFalse(matcher.matchesAny("LOG"));
+      assertEquals(3, matcher.getRegExprOutputFiles().size());
+   }
+
+   public void testMatchesAnyWithBackReferences() {
+      RegExprOutputFilesMatcher matcher = new RegExprOutputFilesMatcher(
+            Lists.newArrayList(files("(a)\\1\\.dat"), files("(b)\\1\\.dat")));
+      assertTrue(matcher.matchesAny("aa.dat"));
+      assertTrue(matcher.matchesAny("bb.dat"));
+      assertFalse(matcher.matchesAny("ab.dat"));
+   }
+
+   public void testMatchesAnyWithSameNamedGroups() {
+      RegExprOutputFilesMatcher matcher = new RegExprOutputFilesMatcher(
+            Lists.newArrayList(files("(?<d>\\d+)\\.dat"),
+                  files("(?<d>\\d+)\\.hdf")));
+      assertTrue(matcher.matchesAny("42.dat"));
+      assertTrue(matcher.matchesAny("42.hdf"));
+      assertFalse(matcher.matchesAny("x.dat"));
+   }
+
+   private static RegExprOutputFiles files(String regExp) {
+      return new RegExprOutputFiles(regExp, null, null, new Object[0]);
+   }
+}
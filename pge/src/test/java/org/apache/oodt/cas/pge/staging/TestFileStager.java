@@ -25,9 +25,12 @@ import static org.easymock.EasyMock.verify;
 
 //JDK imports
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 //OODT imports
 import org.apache.oodt.cas.filemgr.structs.Product;
@@ -36,12 +39,20 @@ import org.apache.oodt.cas.filemgr.structs.exceptions.CatalogException;
 import org.apache.oodt.cas.filemgr.system.FileManagerClient;
 import org.apache.oodt.cas.filemgr.system.FileManagerServer;
 import org.apache.oodt.cas.filemgr.util.RpcCommunicationFactory;
+import org.apache.oodt.cas.pge.config.FileStagingInfo;
 import org.apache.oodt.cas.pge.metadata.PgeMetadata;
 import org.apache.oodt.cas.pge.metadata.PgeTaskMetKeys;
 
 //EasyMock imports
 import org.easymock.IArgumentMatcher;
 
+//Apache imports
+import org.apache.commons.io.FileUtils;
+
+//SLF4J imports
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 //Google imports
 import com.google.common.collect.Lists;
 
@@ -55,6 +66,8 @@ import junit.framework.TestCase;
  */
 public class TestFileStager extends TestCase {
 
+   private static final Logger LOG = LoggerFactory.getLogger(TestFileStager.class);
+
    public void testCreateFileManagerClient() throws Exception {
       // Test throws case.
       PgeMetadata pgeMetadata = createStrictMock(PgeMetadata.class);
@@ -111,6 +124,57 @@ public class TestFileStager extends TestCase {
       verify(fmClient);
    }
 
+   public void testStageFilesConcurrently() throws Exception {
+      File sourceDir = createTempDir("source");
+      File stagingDir = createTempDir("staging");
+      FileStagingInfo fileStagingInfo = new FileStagingInfo(
+            stagingDir.getAbsolutePath(), true);
+      for (int i = 0; i < 5; i++) {
+         File file = new File(sourceDir, "file" + i + ".dat");
+         FileUtils.writeStringToFile(file, "data" + i);
+         fileStagingInfo.addFilePath(file.getAbsolutePath());
+      }
+      PgeMetadata pgeMetadata = new PgeMetadata();
+      pgeMetadata.replaceMetadata(PgeTaskMetKeys.FILE_STAGER_WORKERS, "3");
+      CopyingFileStager fileStager = new CopyingFileStager();
+
+      try {
+         fileStager.stageFiles(fileStagingInfo, pgeMetadata, LOG);
+         assertEquals(5, fileStager.staged.get());
+         assertEquals(5, stagingDir.listFiles().length);
+
+         // identical files already in the staging dir aren't staged again
+         fileStager.stageFiles(fileStagingInfo, pgeMetadata, LOG);
+         assertEquals(5, fileStager.staged.get());
+      } finally {
+         FileUtils.deleteDirectory(sourceDir);
+         FileUtils.deleteDirectory(stagingDir);
+      }
+   }
+
+   public void testStageFilesByLinking() throws Exception {
+      File sourceDir = createTempDir("source");
+      File stagingDir = createTempDir("staging");
+      File file = new File(sourceDir, "file.dat");
+      FileUtils.writeStringToFile(file, "data");
+      FileStagingInfo fileStagingInfo = new FileStagingInfo(
+            stagingDir.getAbsolutePath(), true);
+      fileStagingInfo.addFilePath(file.getAbsolutePath());
+      PgeMetadata pgeMetadata = new PgeMetadata();
+      pgeMetadata.replaceMetadata(PgeTaskMetKeys.FILE_STAGER_LINK, "hard");
+      CopyingFileStager fileStager = new CopyingFileStager();
+
+      try {
+         fileStager.stageFiles(fileStagingInfo, pgeMetadata, LOG);
+         assertEquals(0, fileStager.staged.get());
+         assertTrue(Files.isSameFile(file.toPath(),
+               new File(stagingDir, "file.dat").toPath()));
+      } finally {
+         FileUtils.deleteDirectory(sourceDir);
+         FileUtils.deleteDirectory(stagingDir);
+      }
+   }
+
    public void testAsURI() throws URISyntaxException {
       String absoluteHttpUri = "http://somewhere.com/path/to/data.dat";
       String absoluteFileUri = "file:///path/to/data.dat";
@@ -127,6 +191,25 @@ public class TestFileStager extends TestCase {
             .toString());
    }
 
+   private static File createTempDir(String prefix) throws IOException {
+      File dir = File.createTempFile(prefix, "");
+      dir.delete();
+      dir.mkdirs();
+      return dir;
+   }
+
+   private static class CopyingFileStager extends FileStager {
+
+      private final AtomicInteger staged = new AtomicInteger();
+
+      @Override
+      protected void stageFile(URI stageFile, File destDir,
+            PgeMetadata pgeMetadata, Logger logger) throws IOException {
+         FileUtils.copyFileToDirectory(new File(stageFile), destDir);
+         staged.incrementAndGet();
+      }
+   }
+
    public static class ProductIdMatcher implements IArgumentMatcher {
 
       private String productId;
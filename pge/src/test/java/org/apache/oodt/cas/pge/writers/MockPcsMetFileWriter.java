@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.oodt.cas.pge.writers;
+
+//JDK imports
+import java.io.File;
+
+//OODT imports
+import org.apache.oodt.cas.metadata.Metadata;
+
+/**
+ * Mock implementation of {@link PcsMetFileWriter}.
+ */
+public class MockPcsMetFileWriter extends PcsMetFileWriter {
+
+   public static final String WRITER_KEY = "MockPcsMetFileWriter";
+
+   @Override
+   protected Metadata getSciPgeSpecificMetadata(File sciPgeCreatedDataFile,
+         Metadata inputMetadata, Object... customArgs) {
+      Metadata metadata = new Metadata();
+      metadata.addMetadata(WRITER_KEY, sciPgeCreatedDataFile.getName());
+      return metadata;
+   }
+}
@@ -28,13 +28,32 @@ import org.apache.oodt.cas.resource.structs.ResourceNode;
 import org.apache.oodt.cas.resource.structs.exceptions.JobExecutionException;
 import org.apache.oodt.cas.resource.structs.exceptions.JobRepositoryException;
 import org.apache.oodt.cas.resource.structs.exceptions.MonitorException;
+import org.apache.oodt.cas.resource.util.XmlRpcStructFactory;
+
+//APACHE imports
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.xmlrpc.CommonsXmlRpcTransport;
+import org.apache.xmlrpc.XmlRpcClient;
+import org.apache.xmlrpc.XmlRpcException;
+import org.apache.xmlrpc.XmlRpcTransport;
+import org.apache.xmlrpc.XmlRpcTransportFactory;
 
 //JDK imports
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,6 +65,16 @@ import java.util.logging.Logger;
  * <p>
  * An XML-RPC interface to the batch manager.
  * </p>
+ *
+ * <p>
+ * Jobs are handed to each node's batch stub with <code>submitJob</code>,
+ * which returns as soon as the stub has queued the job. A single background
+ * thread then polls every node with outstanding jobs for all of their
+ * statuses at once, acknowledging the finished jobs it was told about in the
+ * previous reply so that the stub can forget them. One client, backed by a
+ * shared pool of HTTP connections, is kept per node. Nodes whose stub predates <code>submitJob</code> get the
+ * old thread-per-job {@link XmlRpcBatchMgrProxy}.
+ * </p>
  */
 public class XmlRpcBatchMgr implements Batchmgr {
     /* our log stream */
@@ -60,9 +89,56 @@ public class XmlRpcBatchMgr implements Batchmgr {
 
     private Map specToProxyMap;
 
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 2000L;
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_NODE = 4;
+
+    /* jobs submitted asynchronously that haven't finished yet */
+    private Map<String, RemoteJob> remoteJobs;
+
+    /* node id to its client */
+    private Map<String, XmlRpcClient> clients;
+
+    /* node id to whether its batch stub takes submitJob */
+    private Map<String, Boolean> asyncNodes;
+
+    /* node id to the instance id of its batch stub, when last heard from */
+    private Map<String, String> stubInstances;
+
+    /* node id to the finished jobs whose status is yet to be acknowledged:
+       only touched by the poller */
+    private Map<String, Vector<String>> acknowledgements;
+
+    /* node id to the node, for the nodes with acknowledgements to send */
+    private Map<String, ResourceNode> acknowledgementNodes;
+
+    private HttpClient httpClient;
+
+    private long pollIntervalMillis;
+
+    private ScheduledExecutorService poller;
+
     public XmlRpcBatchMgr() {
+        this(DEFAULT_POLL_INTERVAL_MILLIS, DEFAULT_MAX_CONNECTIONS_PER_NODE);
+    }
+
+    public XmlRpcBatchMgr(long pollIntervalMillis, int maxConnectionsPerNode) {
         nodeToJobMap = new ConcurrentHashMap();
         specToProxyMap = new ConcurrentHashMap();
+        remoteJobs = new ConcurrentHashMap<String, RemoteJob>();
+        clients = new ConcurrentHashMap<String, XmlRpcClient>();
+        asyncNodes = new ConcurrentHashMap<String, Boolean>();
+        stubInstances = new ConcurrentHashMap<String, String>();
+        acknowledgements = new HashMap<String, Vector<String>>();
+        acknowledgementNodes = new HashMap<String, ResourceNode>();
+        this.pollIntervalMillis = pollIntervalMillis;
+
+        MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+        connectionManager.getParams().setDefaultMaxConnectionsPerHost(
+                maxConnectionsPerNode);
+        connectionManager.getParams().setMaxTotalConnections(
+                Integer.MAX_VALUE);
+        httpClient = new HttpClient(connectionManager);
     }
 
     /*
@@ -73,23 +149,42 @@ public class XmlRpcBatchMgr implements Batchmgr {
      */
     public boolean executeRemotely(JobSpec jobSpec, ResourceNode resNode)
             throws JobExecutionException {
-
-        XmlRpcBatchMgrProxy proxy = new XmlRpcBatchMgrProxy(jobSpec, resNode,
-                this);
-        if (!proxy.nodeAlive()) {
+        XmlRpcClient client = getClient(resNode);
+        if (!nodeAlive(client)) {
             throw new JobExecutionException("Node: [" + resNode.getNodeId()
                     + "] is down: Unable to execute job!");
         }
 
-        synchronized (this.specToProxyMap) {
-            specToProxyMap.put(jobSpec.getJob().getId(), proxy);
-        }
+        String jobId = jobSpec.getJob().getId();
+        this.nodeToJobMap.put(jobId, resNode.getNodeId());
 
-        synchronized (this.nodeToJobMap) {
-            this.nodeToJobMap
-                    .put(jobSpec.getJob().getId(), resNode.getNodeId());
+        if (supportsSubmit(client, resNode)) {
+            try {
+                String stubInstance = getStubInstance(client, resNode);
+                if (submitJob(client, jobSpec)) {
+                    jobExecuting(jobSpec);
+                    remoteJobs.put(jobId, new RemoteJob(jobSpec, resNode,
+                            stubInstance));
+                    startPolling();
+                    return true;
+                }
+                throw new JobExecutionException("Node: ["
+                        + resNode.getNodeId() + "] did not accept job: ["
+                        + jobId + "]");
+            } catch (JobExecutionException e) {
+                this.nodeToJobMap.remove(jobId);
+                throw e;
+            } catch (Exception e) {
+                this.nodeToJobMap.remove(jobId);
+                throw new JobExecutionException("Unable to submit job: ["
+                        + jobId + "] to node: [" + resNode.getNodeId()
+                        + "]: Message: " + e.getMessage(), e);
+            }
         }
 
+        XmlRpcBatchMgrProxy proxy = new XmlRpcBatchMgrProxy(jobSpec, resNode,
+                this);
+        specToProxyMap.put(jobId, proxy);
         proxy.start();
 
         return true;
@@ -139,9 +234,39 @@ public class XmlRpcBatchMgr implements Batchmgr {
             return false;
         }
 
-        XmlRpcBatchMgrProxy proxy = new XmlRpcBatchMgrProxy(spec, node, this);
+        XmlRpcBatchMgrProxy proxy = new XmlRpcBatchMgrProxy(spec, node, this,
+                getClient(node));
         return proxy.killJob();
     }
+
+    /**
+     * Asks a node's batch stub how busy it is.
+     * 
+     * @param node
+     *            The node to ask.
+     * @return The stub's <code>activeJobs</code>, <code>queuedJobs</code>,
+     *         <code>maxJobs</code> and <code>completedJobs</code> counts.
+     * @throws JobExecutionException
+     *             If the stub can't be reached, or is too old to say.
+     */
+    public Map<String, Integer> getNodeMetrics(ResourceNode node)
+            throws JobExecutionException {
+        try {
+            return (Map<String, Integer>) getClient(node).execute(
+                    "batchstub.getMetrics", new Vector());
+        } catch (Exception e) {
+            throw new JobExecutionException("Unable to get metrics for node: ["
+                    + node.getNodeId() + "]: Message: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return The number of asynchronously submitted jobs that haven't
+     *         finished yet.
+     */
+    public int getNumOutstandingJobs() {
+        return remoteJobs.size();
+    }
     
     public List getJobsOnNode(String nodeId){
     	Vector<String> jobIds = new Vector();
@@ -229,4 +354,260 @@ public class XmlRpcBatchMgr implements Batchmgr {
         }
     }
 
+    private XmlRpcClient getClient(ResourceNode node) {
+        XmlRpcClient client = clients.get(node.getNodeId());
+        if (client == null
+                || !client.getURL().toString().equals(
+                        node.getIpAddr().toString())) {
+            client = new XmlRpcClient(node.getIpAddr(),
+                    new PooledTransportFactory(node.getIpAddr(), httpClient));
+            clients.put(node.getNodeId(), client);
+        }
+        return client;
+    }
+
+    private static boolean nodeAlive(XmlRpcClient client) {
+        try {
+            return (Boolean) client.execute("batchstub.isAlive", new Vector());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /*
+     * batch stubs that take submitJob also answer getMetrics: ask each node
+     * once, and remember
+     */
+    private boolean supportsSubmit(XmlRpcClient client, ResourceNode node)
+            throws JobExecutionException {
+        Boolean supported = asyncNodes.get(node.getNodeId());
+        if (supported == null) {
+            try {
+                client.execute("batchstub.getMetrics", new Vector());
+                supported = Boolean.TRUE;
+            } catch (XmlRpcException e) {
+                LOG.log(Level.INFO, "Node: [" + node.getNodeId()
+                        + "] does not support asynchronous job submission: "
+                        + "running jobs on it one thread per job");
+                supported = Boolean.FALSE;
+            } catch (IOException e) {
+                throw new JobExecutionException("Node: [" + node.getNodeId()
+                        + "] is down: Unable to execute job!", e);
+            }
+            asyncNodes.put(node.getNodeId(), supported);
+        }
+        return supported;
+    }
+
+    /* the stub instance last heard from on the node, asked for if need be */
+    private String getStubInstance(XmlRpcClient client, ResourceNode node)
+            throws XmlRpcException, IOException {
+        String instanceId = stubInstances.get(node.getNodeId());
+        if (instanceId == null) {
+            instanceId = (String) client.execute("batchstub.getInstanceId",
+                    new Vector());
+            stubInstances.put(node.getNodeId(), instanceId);
+        }
+        return instanceId;
+    }
+
+    private static boolean submitJob(XmlRpcClient client, JobSpec jobSpec)
+            throws XmlRpcException, IOException {
+        Vector argList = new Vector();
+        argList.add(XmlRpcStructFactory.getXmlRpcJob(jobSpec.getJob()));
+        argList.add(toXmlRpc(jobSpec.getIn().write()));
+        return (Boolean) client.execute("batchstub.submitJob", argList);
+    }
+
+    /* XML-RPC only knows how to send Hashtables and Vectors */
+    private static Object toXmlRpc(Object value) {
+        if (value instanceof Map && !(value instanceof Hashtable)) {
+            Hashtable<Object, Object> table = new Hashtable<Object, Object>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                table.put(entry.getKey(), toXmlRpc(entry.getValue()));
+            }
+            return table;
+        } else if (value instanceof List && !(value instanceof Vector)) {
+            Vector<Object> vector = new Vector<Object>();
+            for (Object element : (List<?>) value) {
+                vector.add(toXmlRpc(element));
+            }
+            return vector;
+        }
+        return value;
+    }
+
+    private synchronized void startPolling() {
+        if (poller != null) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "XmlRpcBatchMgr job poller");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        poller.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    pollJobs();
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Error polling batch stubs for job "
+                            + "statuses: Message: " + e.getMessage(), e);
+                }
+            }
+        }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Asks each node with outstanding jobs for all of their statuses in one
+     * call, and wraps up the jobs that have finished. A job the node no longer
+     * knows about is only failed once its stub says it is not the instance the
+     * job was given to, or that it dropped the job unacknowledged.
+     */
+    void pollJobs() {
+        Map<String, List<RemoteJob>> jobsByNode = new HashMap<String, List<RemoteJob>>();
+        Map<String, ResourceNode> nodes = new HashMap<String, ResourceNode>(
+                acknowledgementNodes);
+        for (RemoteJob job : remoteJobs.values()) {
+            List<RemoteJob> jobs = jobsByNode.get(job.node.getNodeId());
+            if (jobs == null) {
+                jobs = new ArrayList<RemoteJob>();
+                jobsByNode.put(job.node.getNodeId(), jobs);
+            }
+            jobs.add(job);
+            nodes.put(job.node.getNodeId(), job.node);
+        }
+
+        for (ResourceNode node : nodes.values()) {
+            List<RemoteJob> jobs = jobsByNode.get(node.getNodeId());
+            if (jobs == null) {
+                jobs = Collections.emptyList();
+            }
+            Vector<String> jobIds = new Vector<String>();
+            for (RemoteJob job : jobs) {
+                jobIds.add(job.spec.getJob().getId());
+            }
+            Vector<String> acknowledged = acknowledgements.get(node
+                    .getNodeId());
+            Vector argList = new Vector();
+            argList.add(jobIds);
+            argList.add(acknowledged != null ? acknowledged
+                    : new Vector<String>());
+
+            Map reply;
+            try {
+                reply = (Map) getClient(node).execute(
+                        "batchstub.getJobStatuses", argList);
+            } catch (Exception e) {
+                // the acknowledgements go again with the next poll
+                LOG.log(Level.WARNING, "Unable to get job statuses from node: ["
+                        + node.getNodeId() + "]: Message: " + e.getMessage());
+                continue;
+            }
+            acknowledgements.remove(node.getNodeId());
+            acknowledgementNodes.remove(node.getNodeId());
+            String instanceId = (String) reply.get("instanceId");
+            Map statuses = (Map) reply.get("statuses");
+            stubInstances.put(node.getNodeId(), instanceId);
+
+            for (RemoteJob job : jobs) {
+                String jobId = job.spec.getJob().getId();
+                String status = (String) statuses.get(jobId);
+                if (status == null) {
+                    if (instanceId.equals(job.stubInstance)) {
+                        LOG.log(Level.WARNING, "Node: [" + node.getNodeId()
+                                + "] dropped job: [" + jobId + "] before its "
+                                + "status was acknowledged");
+                    } else {
+                        LOG.log(Level.WARNING, "Node: [" + node.getNodeId()
+                                + "] restarted, losing job: [" + jobId + "]");
+                    }
+                    jobFinished(job, JobStatus.FAILURE);
+                    continue;
+                }
+                job.stubInstance = instanceId;
+                if (JobStatus.SUCCESS.equals(status)
+                        || JobStatus.FAILURE.equals(status)
+                        || JobStatus.KILLED.equals(status)) {
+                    jobFinished(job, status);
+                    acknowledge(node, jobId);
+                }
+            }
+        }
+
+        LOG.log(Level.FINE, remoteJobs.size() + " jobs outstanding on "
+                + jobsByNode.size() + " nodes");
+    }
+
+    private void acknowledge(ResourceNode node, String jobId) {
+        Vector<String> jobIds = acknowledgements.get(node.getNodeId());
+        if (jobIds == null) {
+            jobIds = new Vector<String>();
+            acknowledgements.put(node.getNodeId(), jobIds);
+            acknowledgementNodes.put(node.getNodeId(), node);
+        }
+        jobIds.add(jobId);
+    }
+
+    private void jobFinished(RemoteJob job, String status) {
+        if (remoteJobs.remove(job.spec.getJob().getId()) == null) {
+            return;
+        }
+        try {
+            if (JobStatus.SUCCESS.equals(status)) {
+                jobSuccess(job.spec);
+            } else if (JobStatus.KILLED.equals(status)) {
+                jobKilled(job.spec);
+            } else {
+                jobFailure(job.spec);
+            }
+        } finally {
+            notifyMonitor(job.node, job.spec);
+        }
+    }
+
+    private static class RemoteJob {
+
+        private final JobSpec spec;
+
+        private final ResourceNode node;
+
+        /* the instance of the node's batch stub known to have the job */
+        private volatile String stubInstance;
+
+        RemoteJob(JobSpec spec, ResourceNode node, String stubInstance) {
+            this.spec = spec;
+            this.node = node;
+            this.stubInstance = stubInstance;
+        }
+    }
+
+    /**
+     * Creates transports that draw on a shared, keep-alive connection pool.
+     */
+    private static class PooledTransportFactory implements
+            XmlRpcTransportFactory {
+
+        private final URL url;
+
+        private final HttpClient httpClient;
+
+        PooledTransportFactory(URL url, HttpClient httpClient) {
+            this.url = url;
+            this.httpClient = httpClient;
+        }
+
+        public XmlRpcTransport createTransport() {
+            CommonsXmlRpcTransport transport = new CommonsXmlRpcTransport(url,
+                    httpClient);
+            transport.setHttp11(true);
+            return transport;
+        }
+
+        public void setProperty(String propertyName, Object value) {
+        }
+    }
+
 }
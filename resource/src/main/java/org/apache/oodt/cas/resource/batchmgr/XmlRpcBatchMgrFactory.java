@@ -43,7 +43,13 @@ public class XmlRpcBatchMgrFactory implements BatchmgrFactory {
 	 * @see org.apache.oodt.cas.resource.batchmgr.BatchmgrFactory#createBatchmgr()
 	 */
 	public Batchmgr createBatchmgr() {
-		return new XmlRpcBatchMgr();
+		long pollIntervalMillis = Long.getLong(
+				"org.apache.oodt.cas.resource.batchmgr.xmlrpc.poll.millis",
+				XmlRpcBatchMgr.DEFAULT_POLL_INTERVAL_MILLIS);
+		int maxConnectionsPerNode = Integer.getInteger(
+				"org.apache.oodt.cas.resource.batchmgr.xmlrpc.max.connections.per.node",
+				XmlRpcBatchMgr.DEFAULT_MAX_CONNECTIONS_PER_NODE);
+		return new XmlRpcBatchMgr(pollIntervalMillis, maxConnectionsPerNode);
 	}
 
 }
@@ -65,8 +65,21 @@ public class XmlRpcBatchMgrProxy extends Thread implements Runnable {
         this.parent = par;
     }
 
+    public XmlRpcBatchMgrProxy(JobSpec jobSpec, ResourceNode remoteHost,
+            XmlRpcBatchMgr par, XmlRpcClient client) {
+        this(jobSpec, remoteHost, par);
+        this.client = client;
+    }
+
+    private XmlRpcClient getClient() {
+        if (client == null) {
+            client = new XmlRpcClient(remoteHost.getIpAddr());
+        }
+        return client;
+    }
+
     public boolean nodeAlive() {
-        client = new XmlRpcClient(remoteHost.getIpAddr());
+        XmlRpcClient client = getClient();
         Vector argList = new Vector();
 
         boolean alive;
@@ -84,7 +97,7 @@ public class XmlRpcBatchMgrProxy extends Thread implements Runnable {
     }
 
     public boolean killJob() {
-        client = new XmlRpcClient(remoteHost.getIpAddr());
+        XmlRpcClient client = getClient();
         Vector argList = new Vector();
         argList.add(XmlRpcStructFactory.getXmlRpcJob(jobSpec.getJob()));
 
@@ -107,7 +120,7 @@ public class XmlRpcBatchMgrProxy extends Thread implements Runnable {
     }
 
     public void run() {
-        client = new XmlRpcClient(remoteHost.getIpAddr());
+        XmlRpcClient client = getClient();
         Vector argList = new Vector();
         argList.add(XmlRpcStructFactory.getXmlRpcJob(jobSpec.getJob()));
         argList.add(jobSpec.getIn().write());
@@ -17,12 +17,15 @@
 
 package org.apache.oodt.cas.resource.jobqueue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -37,12 +40,17 @@ import org.apache.oodt.cas.resource.structs.exceptions.JobRepositoryException;
  * This implementation provides a "queue-aware" {@link JobQueue} that ensures
  * the FIFO execution of jobs.
  * 
+ * Each queue keeps, in memory, the ids of its jobs in order along with the
+ * ids of those flagged as ready to schedule, so finding the next job does not
+ * need to load every queued job from the {@link JobRepository}. A job's ready
+ * flag is read when it is added or requeued.
+ * 
  * @author resneck
  *
  */
 public class FifoMappedJobQueue implements MappedJobQueue {
 
-  private Map<String, Vector<String>> queues;
+  private Map<String, JobList> queues;
   private int maxQueueSize;
   private JobRepository repo;
   private static final Logger LOG = Logger
@@ -51,7 +59,7 @@ public class FifoMappedJobQueue implements MappedJobQueue {
   public FifoMappedJobQueue(int maxSize, JobRepository repo) {
     this.maxQueueSize = maxSize;
     this.repo = repo;
-    this.queues = new HashMap<String, Vector<String>>();
+    this.queues = new HashMap<String, JobList>();
   }
 
   /**
@@ -67,7 +75,7 @@ public class FifoMappedJobQueue implements MappedJobQueue {
     validateQueueName(queueName);
 
     // Check if the jobs queue is full
-    List<String> queue = queues.get(queueName);
+    JobList queue = queues.get(queueName);
     if (queue.size() == maxQueueSize) {
       throw new JobQueueException(
           "The queue " + spec.getJob().getQueueName() + " is full.  The job "
@@ -84,7 +92,7 @@ public class FifoMappedJobQueue implements MappedJobQueue {
     }
 
     // Add the job to the queue
-    queue.add(spec.getJob().getId());
+    queue.addLast(spec.getJob().getId(), spec.getJob().getReady());
 
     // Update the jobs status
     spec.getJob().setStatus(JobStatus.QUEUED);
@@ -115,10 +123,10 @@ public class FifoMappedJobQueue implements MappedJobQueue {
     String queueName = spec.getJob().getQueueName();
     validateQueueName(queueName);
 
-    List<String> queue = queues.get(queueName);
+    JobList queue = queues.get(queueName);
 
     // Place the job at the front of the queue
-    queue.add(0, spec.getJob().getId());
+    queue.addFirst(spec.getJob().getId(), spec.getJob().getReady());
 
     // Set the jobs status
     spec.getJob().setStatus(JobStatus.QUEUED);
@@ -140,10 +148,10 @@ public class FifoMappedJobQueue implements MappedJobQueue {
   public synchronized List getQueuedJobs() {
 
     List<JobSpec> allJobs = new Vector<JobSpec>();
-    for (Iterator<Vector<String>> i = queues.values().iterator(); i
+    for (Iterator<JobList> i = queues.values().iterator(); i
         .hasNext();) {
-      List<String> queue = i.next();
-      for (String jobId : queue) {
+      JobList queue = i.next();
+      for (String jobId : queue.getJobIds()) {
         try {
           allJobs.add(this.repo.getJobById(jobId));
         } catch (JobRepositoryException e) {
@@ -163,7 +171,7 @@ public class FifoMappedJobQueue implements MappedJobQueue {
     validateQueueName(queueName);
 
     List<JobSpec> queueJobs = new Vector<JobSpec>();
-    for (String jobId : this.queues.get(queueName)) {
+    for (String jobId : this.queues.get(queueName).getJobIds()) {
       queueJobs.add(this.repo.getJobById(jobId));
     }
 
@@ -176,9 +184,9 @@ public class FifoMappedJobQueue implements MappedJobQueue {
    */
   public synchronized void purge() {
 
-    for (Iterator<Vector<String>> i = this.queues.values().iterator(); i
+    for (Iterator<JobList> i = this.queues.values().iterator(); i
         .hasNext();) {
-      i.next().removeAllElements();
+      i.next().clear();
     }
 
   }
@@ -220,45 +228,37 @@ public class FifoMappedJobQueue implements MappedJobQueue {
     // Look in each queue for a job
     for (Iterator<String> i = this.queues.keySet().iterator(); i.hasNext();) {
 
-      // Check if the queue is empty
-      List<String> queue = this.queues.get(i.next());
-      if (!queue.isEmpty()) {
-
-        // Check jobs from the front of the queue until we find one that
-        // is flagged as ready to schedule
-        for (int index = 0; index < queue.size(); index++) {
-
-          // Check how the job is flagged
-          String jobId = queue.get(index);
-          JobSpec spec = null;
-          try {
-            spec = this.repo.getJobById(jobId);
-          } catch (JobRepositoryException e) {
-            LOG.log(Level.WARNING,
-                "Failed to fetch JobSpec from repo: " + jobId);
-          }
-          if (spec.getJob().getReady()) {
-
-            // Remove the job from the queue
-            queue.remove(index);
-
-            // Set the status of the fetched job
-            spec.getJob().setStatus(JobStatus.SCHEDULED);
-            try {
-              this.repo.updateJob(spec);
-            } catch (JobRepositoryException e) {
-              LOG.log(Level.WARNING,
-                  "The status of job " + spec.getJob().getId()
-                      + "was not properly set "
-                      + "after being dequeued. Message: " + e.getMessage());
-            }
-
-            return spec;
-
-          }
+      // Take the job closest to the front of the queue that is flagged as
+      // ready to schedule, if any
+      JobList queue = this.queues.get(i.next());
+      String jobId = queue.getFirstReadyJobId();
+      if (jobId != null) {
+
+        JobSpec spec = null;
+        try {
+          spec = this.repo.getJobById(jobId);
+        } catch (JobRepositoryException e) {
+          LOG.log(Level.WARNING,
+              "Failed to fetch JobSpec from repo: " + jobId);
+          continue;
+        }
 
+        // Remove the job from the queue
+        queue.remove(jobId);
+
+        // Set the status of the fetched job
+        spec.getJob().setStatus(JobStatus.SCHEDULED);
+        try {
+          this.repo.updateJob(spec);
+        } catch (JobRepositoryException e) {
+          LOG.log(Level.WARNING,
+              "The status of job " + spec.getJob().getId()
+                  + "was not properly set "
+                  + "after being dequeued. Message: " + e.getMessage());
         }
 
+        return spec;
+
       }
 
     }
@@ -274,42 +274,32 @@ public class FifoMappedJobQueue implements MappedJobQueue {
     // Check if the given queue name is null and if it exists
     validateQueueName(queueName);
 
-    // If the queue contains no jobs, return null
-    List<String> queue = queues.get(queueName);
-    if (queue.isEmpty()) {
+    // If the queue contains no jobs ready to schedule, return null
+    JobList queue = queues.get(queueName);
+    String jobId = queue.getFirstReadyJobId();
+    if (jobId == null) {
       return null;
     }
 
-    // Check jobs from the front of the queue until we find one that
-    // is flagged as ready to schedule
-    for (int index = 0; index < queue.size(); index++) {
-
-      // Check how the job is flagged
-      String jobId = queue.get(index);
-      JobSpec spec = this.repo.getJobById(jobId);
-      if (spec.getJob().getReady()) {
-
-        // Remove the job from the queue
-        queue.remove(index);
-
-        // Set the status of the fetched job
-        spec.getJob().setStatus(JobStatus.SCHEDULED);
-        try {
-          this.repo.updateJob(spec);
-        } catch (JobRepositoryException e) {
-          LOG.log(Level.WARNING,
-              "The status of job " + spec.getJob().getId()
-                  + "was not properly set after being" + " dequeued. Message: "
-                  + e.getMessage());
-        }
-
-        return spec;
+    // Take the job closest to the front of the queue that is flagged as
+    // ready to schedule
+    JobSpec spec = this.repo.getJobById(jobId);
 
-      }
+    // Remove the job from the queue
+    queue.remove(jobId);
 
+    // Set the status of the fetched job
+    spec.getJob().setStatus(JobStatus.SCHEDULED);
+    try {
+      this.repo.updateJob(spec);
+    } catch (JobRepositoryException e) {
+      LOG.log(Level.WARNING,
+          "The status of job " + spec.getJob().getId()
+              + "was not properly set after being" + " dequeued. Message: "
+              + e.getMessage());
     }
 
-    return null;
+    return spec;
 
   }
 
@@ -328,7 +318,7 @@ public class FifoMappedJobQueue implements MappedJobQueue {
   public synchronized int getSize() {
 
     int totalJobs = 0;
-    for (Iterator<Vector<String>> i = queues.values().iterator(); i
+    for (Iterator<JobList> i = queues.values().iterator(); i
         .hasNext();) {
       totalJobs += i.next().size();
     }
@@ -373,13 +363,9 @@ public class FifoMappedJobQueue implements MappedJobQueue {
     String id = spec.getJob().getId();
 
     // Find the job in the queue and remove it
-    List<String> queue = this.queues.get(queueName);
-    int index = getIndexInQueue(id, queue);
-    if (index == -1) {
+    if (!this.queues.get(queueName).remove(id)) {
       LOG.log(Level.WARNING, "No job with ID " + id + "could be removed "
           + "since it was not found in the queue.");
-    } else {
-      queue.remove(index);
     }
 
   }
@@ -396,7 +382,7 @@ public class FifoMappedJobQueue implements MappedJobQueue {
     }
 
     // Add the new queue to our map
-    this.queues.put(queueName, new Vector());
+    this.queues.put(queueName, new JobList());
 
   }
 
@@ -432,13 +418,9 @@ public class FifoMappedJobQueue implements MappedJobQueue {
     String id = spec.getJob().getId();
 
     // Find the job in the queue and move it to the front
-    List<String> queue = this.queues.get(queueName);
-    int index = getIndexInQueue(id, queue);
-    if (index == -1) {
+    if (!this.queues.get(queueName).moveToFront(id)) {
       LOG.log(Level.WARNING, "No job with ID " + id + "could be promoted "
           + "since it was not found in the queue.");
-    } else {
-      queue.add(0, queue.remove(index));
     }
 
   }
@@ -456,10 +438,10 @@ public class FifoMappedJobQueue implements MappedJobQueue {
 
     List<JobSpec> specsToPromote = new Vector<JobSpec>();
 
-    for (Iterator<Vector<String>> i = queues.values().iterator(); i
+    for (Iterator<JobList> i = queues.values().iterator(); i
         .hasNext();) {
-      List<String> queue = i.next();
-      for (String jobId : queue) {
+      JobList queue = i.next();
+      for (String jobId : queue.getJobIds()) {
         JobSpec spec = null;
         try {
           spec = this.repo.getJobById(jobId);
@@ -498,13 +480,74 @@ public class FifoMappedJobQueue implements MappedJobQueue {
 
   }
 
-  private int getIndexInQueue(String id, List<String> queue) {
-    for (int i = 0; i < queue.size(); i++) {
-      if (queue.get(i).equals(id)) {
-        return i;
+  /**
+   * The ids of the jobs in a queue, in order, and of those among them that are
+   * ready to schedule. Each job is keyed by its position: jobs added to the
+   * back get increasing keys and jobs put at the front decreasing ones, so
+   * both maps stay in queue order.
+   */
+  private static class JobList {
+
+    private final TreeMap<Long, String> jobIds = new TreeMap<Long, String>();
+    private final TreeMap<Long, String> readyJobIds = new TreeMap<Long, String>();
+    private final Map<String, Long> positions = new HashMap<String, Long>();
+    private long front = 0;
+    private long back = 0;
+
+    void addLast(String jobId, boolean ready) {
+      put(jobId, back++, ready);
+    }
+
+    void addFirst(String jobId, boolean ready) {
+      put(jobId, --front, ready);
+    }
+
+    boolean moveToFront(String jobId) {
+      Long position = positions.get(jobId);
+      if (position == null) {
+        return false;
+      }
+      addFirst(jobId, readyJobIds.containsKey(position));
+      return true;
+    }
+
+    boolean remove(String jobId) {
+      Long position = positions.remove(jobId);
+      if (position == null) {
+        return false;
+      }
+      jobIds.remove(position);
+      readyJobIds.remove(position);
+      return true;
+    }
+
+    String getFirstReadyJobId() {
+      return readyJobIds.isEmpty() ? null : readyJobIds.firstEntry().getValue();
+    }
+
+    Collection<String> getJobIds() {
+      return new ArrayList<String>(jobIds.values());
+    }
+
+    int size() {
+      return jobIds.size();
+    }
+
+    void clear() {
+      jobIds.clear();
+      readyJobIds.clear();
+      positions.clear();
+    }
+
+    private void put(String jobId, long position, boolean ready) {
+      // a job is only ever queued once
+      remove(jobId);
+      positions.put(jobId, position);
+      jobIds.put(position, jobId);
+      if (ready) {
+        readyJobIds.put(position, jobId);
       }
     }
-    return -1;
   }
 
 }
\ No newline at end of file
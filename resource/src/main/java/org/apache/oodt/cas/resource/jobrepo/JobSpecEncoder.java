@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.resource.jobrepo;
+
+//JDK imports
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+//OODT imports
+import org.apache.oodt.cas.resource.structs.Job;
+import org.apache.oodt.cas.resource.structs.JobInput;
+import org.apache.oodt.cas.resource.structs.JobSpec;
+import org.apache.oodt.cas.resource.structs.exceptions.JobRepositoryException;
+import org.apache.oodt.cas.resource.util.GenericResourceManagerObjectFactory;
+
+/**
+ * Encodes {@link JobSpec}s in a compact binary form. The {@link Job} is
+ * written field by field; the {@link JobInput} is written as its class name
+ * and the XML-RPC safe form returned by {@link JobInput#write()}, and read
+ * back with {@link JobInput#read(Object)}, as when it is sent to a batch
+ * manager.
+ *
+ * @version $Revision$
+ */
+final class JobSpecEncoder {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /* value types */
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte BOOLEAN = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte DATE = 5;
+  private static final byte BYTES = 6;
+  private static final byte MAP = 7;
+  private static final byte HASHTABLE = 8;
+  private static final byte LIST = 9;
+  private static final byte LONG = 10;
+
+  private JobSpecEncoder() {
+  }
+
+  static byte[] encode(JobSpec spec) throws JobRepositoryException {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+      DataOutputStream out = new DataOutputStream(bytes);
+      Job job = spec.getJob();
+      writeString(out, job.getId());
+      writeString(out, job.getName());
+      writeString(out, job.getJobInstanceClassName());
+      writeString(out, job.getJobInputClassName());
+      writeString(out, job.getQueueName());
+      writeValue(out, job.getLoadValue());
+      writeString(out, job.getStatus());
+      out.writeBoolean(job.getReady());
+      JobInput in = spec.getIn();
+      if (in == null) {
+        writeString(out, null);
+      } else {
+        writeString(out, in.getClass().getName());
+        writeValue(out, in.write());
+      }
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new JobRepositoryException("Failed to encode job spec : "
+          + e.getMessage(), e);
+    }
+  }
+
+  static JobSpec decode(byte[] encoded) throws JobRepositoryException {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+          encoded));
+      Job job = new Job();
+      job.setId(readString(in));
+      job.setName(readString(in));
+      job.setJobInstanceClassName(readString(in));
+      job.setJobInputClassName(readString(in));
+      job.setQueueName(readString(in));
+      job.setLoadValue((Integer) readValue(in));
+      job.setStatus(readString(in));
+      job.setReady(in.readBoolean());
+      JobInput input = null;
+      String inputClassName = readString(in);
+      if (inputClassName != null) {
+        input = GenericResourceManagerObjectFactory
+            .getJobInputFromClassName(inputClassName);
+        if (input == null) {
+          throw new JobRepositoryException("Failed to create job input "
+              + inputClassName + " for job " + job.getId());
+        }
+        input.read(readValue(in));
+      }
+      return new JobSpec(input, job);
+    } catch (IOException e) {
+      throw new JobRepositoryException("Failed to decode job spec : "
+          + e.getMessage(), e);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value)
+      throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = value.getBytes(UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static void writeValue(DataOutputStream out, Object value)
+      throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      writeString(out, (String) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Date) {
+      out.writeByte(DATE);
+      out.writeLong(((Date) value).getTime());
+    } else if (value instanceof byte[]) {
+      out.writeByte(BYTES);
+      out.writeInt(((byte[]) value).length);
+      out.write((byte[]) value);
+    } else if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      out.writeByte(value instanceof Hashtable ? HASHTABLE : MAP);
+      out.writeInt(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeValue(out, entry.getKey());
+        writeValue(out, entry.getValue());
+      }
+    } else if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      out.writeByte(LIST);
+      out.writeInt(list.size());
+      for (Object element : list) {
+        writeValue(out, element);
+      }
+    } else {
+      throw new IOException("Can't encode job input value of type "
+          + value.getClass().getName());
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+    case NULL:
+      return null;
+    case STRING:
+      return readString(in);
+    case INTEGER:
+      return in.readInt();
+    case LONG:
+      return in.readLong();
+    case BOOLEAN:
+      return in.readBoolean();
+    case DOUBLE:
+      return in.readDouble();
+    case DATE:
+      return new Date(in.readLong());
+    case BYTES:
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      return bytes;
+    case MAP:
+    case HASHTABLE:
+      int size = in.readInt();
+      Map<Object, Object> map = type == HASHTABLE ? new Hashtable<Object, Object>()
+          : new HashMap<Object, Object>();
+      for (int i = 0; i < size; i++) {
+        map.put(readValue(in), readValue(in));
+      }
+      return map;
+    case LIST:
+      int length = in.readInt();
+      List<Object> list = new Vector<Object>(length);
+      for (int i = 0; i < length; i++) {
+        list.add(readValue(in));
+      }
+      return list;
+    default:
+      throw new IOException("Unknown value type " + type);
+    }
+  }
+
+}
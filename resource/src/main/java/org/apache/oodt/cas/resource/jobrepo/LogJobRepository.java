@@ -0,0 +1,572 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.resource.jobrepo;
+
+//JDK imports
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+//OODT imports
+import org.apache.oodt.cas.resource.structs.JobSpec;
+import org.apache.oodt.cas.resource.structs.JobStatus;
+import org.apache.oodt.cas.resource.structs.exceptions.JobRepositoryException;
+
+/**
+ * A durable {@link JobRepository} backed by an append-only log.
+ *
+ * Every add, update and removal appends one checksummed record to a single
+ * log file, and an in-memory index maps each job id to its latest record and
+ * status. Reading a job reads just that record, and {@link #getStatus(JobSpec)}
+ * doesn't touch the disk at all. {@link JobSpec}s are stored in the compact
+ * binary form of {@link JobSpecEncoder}.
+ *
+ * When syncing is on, writers wait for their record to be forced to disk, but
+ * one force covers every record appended before it, so concurrent writers
+ * share fsyncs. Once the log holds more dead records than live ones it is
+ * compacted, dropping superseded records and jobs evicted past maxHistory.
+ *
+ * A record torn by a crash is detected by its checksum and cut off the end of
+ * the log when the repository is reopened.
+ *
+ * @version $Revision$
+ */
+public class LogJobRepository implements JobRepository {
+
+  private static final Logger LOG = Logger.getLogger(LogJobRepository.class
+      .getName());
+
+  static final String LOG_FILE_NAME = "jobs.log";
+
+  private static final byte[] MAGIC = { 'O', 'O', 'D', 'T', 'J', 'L', 'O', 'G' };
+
+  private static final int VERSION = 1;
+
+  private static final int HEADER_LENGTH = MAGIC.length + 4;
+
+  private static final byte PUT = 1;
+
+  private static final byte REMOVE = 2;
+
+  /* logs smaller than this are never compacted */
+  private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+  private final File logFile;
+
+  private final int maxHistory;
+
+  private final boolean sync;
+
+  /* job id to its latest record, oldest job first */
+  private final LinkedHashMap<String, IndexEntry> index = new LinkedHashMap<String, IndexEntry>();
+
+  /* guards the index and the log file: reads share it, writes don't */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /* guards forcing the log to disk */
+  private final Object syncLock = new Object();
+
+  private RandomAccessFile raf;
+
+  private FileChannel channel;
+
+  /* bytes of records in the log that are still current */
+  private long liveBytes;
+
+  /* the end of the log, and how much of it is known to be on disk */
+  private volatile long writtenTo;
+
+  private long syncedTo;
+
+  /* bumped by compaction, which rewrites (and syncs) the whole log */
+  private long generation;
+
+  /**
+   * @param workingDir
+   *          The directory to keep the log in.
+   * @param maxHistory
+   *          The number of jobs to keep, or -1 to keep them all.
+   * @param sync
+   *          Whether writes wait for their record to reach the disk.
+   * @throws JobRepositoryException
+   *           If the log can't be opened or read.
+   */
+  public LogJobRepository(File workingDir, int maxHistory, boolean sync)
+      throws JobRepositoryException {
+    this.logFile = new File(workingDir, LOG_FILE_NAME);
+    this.maxHistory = Math.max(maxHistory == -1 ? Integer.MAX_VALUE
+        : maxHistory, 1);
+    this.sync = sync;
+    try {
+      open();
+    } catch (IOException e) {
+      throw new JobRepositoryException("Failed to open job log "
+          + logFile + " : " + e.getMessage(), e);
+    }
+  }
+
+  public String addJob(JobSpec spec) throws JobRepositoryException {
+    long[] durable;
+    lock.writeLock().lock();
+    try {
+      if (spec.getJob().getId() == null) {
+        spec.getJob().setId(UUID.randomUUID().toString());
+      } else if (index.containsKey(spec.getJob().getId())) {
+        throw new JobRepositoryException("JobId '" + spec.getJob().getId()
+            + "' already in use -- must pick unique JobId");
+      }
+      // make room, oldest job first
+      while (index.size() >= maxHistory) {
+        Iterator<String> oldest = index.keySet().iterator();
+        appendRemove(oldest.next());
+      }
+      durable = appendPut(spec);
+    } catch (IOException e) {
+      throw new JobRepositoryException("Failed to add job spec to repo : "
+          + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    awaitDurable(durable);
+    return spec.getJob().getId();
+  }
+
+  public void updateJob(JobSpec spec) throws JobRepositoryException {
+    long[] durable;
+    lock.writeLock().lock();
+    try {
+      if (!index.containsKey(spec.getJob().getId())) {
+        throw new JobRepositoryException("No job with id '"
+            + spec.getJob().getId() + "' in repo");
+      }
+      durable = appendPut(spec);
+    } catch (IOException e) {
+      throw new JobRepositoryException("Failed to update job spec in repo : "
+          + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    awaitDurable(durable);
+  }
+
+  public void removeJob(JobSpec spec) throws JobRepositoryException {
+    long[] durable;
+    lock.writeLock().lock();
+    try {
+      if (!index.containsKey(spec.getJob().getId())) {
+        throw new JobRepositoryException("Failed to delete job '"
+            + spec.getJob().getId() + "' : no such job");
+      }
+      durable = appendRemove(spec.getJob().getId());
+      compactIfWorthwhile();
+    } catch (IOException e) {
+      throw new JobRepositoryException("Failed to delete job '"
+          + spec.getJob().getId() + "' : " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    awaitDurable(durable);
+  }
+
+  public JobSpec getJobById(String jobId) throws JobRepositoryException {
+    byte[] record;
+    lock.readLock().lock();
+    try {
+      IndexEntry entry = index.get(jobId);
+      if (entry == null) {
+        throw new JobRepositoryException("Failed to load job spec from repo by id '"
+            + jobId + "' : no such job");
+      }
+      record = new byte[entry.length];
+      ByteBuffer buffer = ByteBuffer.wrap(record);
+      long position = entry.offset;
+      while (buffer.hasRemaining()) {
+        int read = channel.read(buffer, position);
+        if (read < 0) {
+          throw new EOFException("Job log ends inside record of job " + jobId);
+        }
+        position += read;
+      }
+    } catch (IOException e) {
+      throw new JobRepositoryException("Failed to load job spec from repo by id '"
+          + jobId + "' : " + e.getMessage(), e);
+    } finally {
+      lock.readLock().unlock();
+    }
+    return JobSpecEncoder.decode(record);
+  }
+
+  public String getStatus(JobSpec spec) throws JobRepositoryException {
+    lock.readLock().lock();
+    try {
+      IndexEntry entry = index.get(spec.getJob().getId());
+      if (entry == null) {
+        throw new JobRepositoryException("No job with id '"
+            + spec.getJob().getId() + "' in repo");
+      }
+      return entry.status;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public boolean jobFinished(JobSpec spec) throws JobRepositoryException {
+    return JobStatus.SUCCESS.equals(this.getStatus(spec));
+  }
+
+  /**
+   * @return The number of jobs in the repository.
+   */
+  public int getSize() {
+    lock.readLock().lock();
+    try {
+      return index.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Rewrites the log with only the current record of each job.
+   *
+   * @throws JobRepositoryException
+   *           If the log can't be rewritten.
+   */
+  public void compact() throws JobRepositoryException {
+    lock.writeLock().lock();
+    try {
+      doCompact();
+    } catch (IOException e) {
+      throw new JobRepositoryException("Failed to compact job log "
+          + logFile + " : " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Syncs and closes the log. The repository can't be used afterwards.
+   */
+  public void close() {
+    lock.writeLock().lock();
+    try {
+      synchronized (syncLock) {
+        channel.force(false);
+        raf.close();
+      }
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Failed to close job log " + logFile + " : "
+          + e.getMessage());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void open() throws IOException, JobRepositoryException {
+    boolean exists = logFile.exists() && logFile.length() > 0;
+    long validLength = HEADER_LENGTH;
+    if (exists) {
+      validLength = load();
+    }
+    raf = new RandomAccessFile(logFile, "rw");
+    channel = raf.getChannel();
+    if (!exists) {
+      ByteArrayOutputStream header = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(header);
+      out.write(MAGIC);
+      out.writeInt(VERSION);
+      channel.write(ByteBuffer.wrap(header.toByteArray()), 0);
+      channel.force(true);
+    } else if (validLength < channel.size()) {
+      LOG.log(Level.WARNING, "Discarding " + (channel.size() - validLength)
+          + " bytes of incomplete records at the end of job log " + logFile);
+      channel.truncate(validLength);
+      channel.force(true);
+    }
+    writtenTo = channel.size();
+    syncedTo = writtenTo;
+    compactIfWorthwhile();
+  }
+
+  /**
+   * Rebuilds the index from the log.
+   *
+   * @return The length of the log up to its last intact record.
+   */
+  private long load() throws IOException, JobRepositoryException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new FileInputStream(logFile)));
+    try {
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      int version = in.readInt();
+      if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+        throw new JobRepositoryException(logFile + " is not a version "
+            + VERSION + " job log");
+      }
+      long position = HEADER_LENGTH;
+      CRC32 crc = new CRC32();
+      while (true) {
+        byte[] body;
+        try {
+          int length = in.readInt();
+          if (length < 1 || length > logFile.length()) {
+            return position;
+          }
+          body = new byte[length];
+          in.readFully(body);
+          crc.reset();
+          crc.update(body);
+          if (in.readInt() != (int) crc.getValue()) {
+            return position;
+          }
+        } catch (EOFException e) {
+          return position;
+        }
+        apply(body, position);
+        position += body.length + 8;
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /* updates the index with a record read back from the log */
+  private void apply(byte[] body, long position) throws IOException,
+      JobRepositoryException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+    byte op = in.readByte();
+    String jobId = in.readUTF();
+    IndexEntry previous = index.remove(jobId);
+    if (previous != null) {
+      liveBytes -= previous.recordLength();
+    }
+    if (op == PUT) {
+      int specOffset = 1 + 2 + utfLength(jobId);
+      JobSpec spec = JobSpecEncoder.decode(Arrays.copyOfRange(body,
+          specOffset, body.length));
+      IndexEntry entry = new IndexEntry(position + 4 + specOffset,
+          body.length - specOffset, spec.getJob().getStatus(), body.length);
+      index.put(jobId, entry);
+      liveBytes += entry.recordLength();
+    } else if (op != REMOVE) {
+      throw new JobRepositoryException("Unknown record type " + op
+          + " in job log " + logFile);
+    }
+  }
+
+  private long[] appendPut(JobSpec spec) throws IOException,
+      JobRepositoryException {
+    String jobId = spec.getJob().getId();
+    byte[] encoded = JobSpecEncoder.encode(spec);
+    ByteArrayOutputStream body = new ByteArrayOutputStream(encoded.length + 64);
+    DataOutputStream out = new DataOutputStream(body);
+    out.writeByte(PUT);
+    out.writeUTF(jobId);
+    int specOffset = out.size();
+    out.write(encoded);
+    long position = append(body.toByteArray());
+
+    IndexEntry previous = index.remove(jobId);
+    if (previous != null) {
+      liveBytes -= previous.recordLength();
+    }
+    IndexEntry entry = new IndexEntry(position + 4 + specOffset,
+        encoded.length, spec.getJob().getStatus(), body.size());
+    index.put(jobId, entry);
+    liveBytes += entry.recordLength();
+    compactIfWorthwhile();
+    return new long[] { generation, writtenTo };
+  }
+
+  private long[] appendRemove(String jobId) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(body);
+    out.writeByte(REMOVE);
+    out.writeUTF(jobId);
+    append(body.toByteArray());
+    IndexEntry previous = index.remove(jobId);
+    if (previous != null) {
+      liveBytes -= previous.recordLength();
+    }
+    return new long[] { generation, writtenTo };
+  }
+
+  /* writes a framed record at the end of the log, returning where it starts */
+  private long append(byte[] body) throws IOException {
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    ByteBuffer record = ByteBuffer.allocate(body.length + 8);
+    record.putInt(body.length).put(body).putInt((int) crc.getValue());
+    record.flip();
+    long position = writtenTo;
+    long at = position;
+    while (record.hasRemaining()) {
+      at += channel.write(record, at);
+    }
+    writtenTo = at;
+    return position;
+  }
+
+  /*
+   * Waits until the log is on disk up to the given point. Whoever gets the
+   * lock first forces everything written so far, so the writers queued up
+   * behind it usually find their records already synced.
+   */
+  private void awaitDurable(long[] durable) throws JobRepositoryException {
+    if (!sync) {
+      return;
+    }
+    synchronized (syncLock) {
+      if (durable[0] != generation || syncedTo >= durable[1]) {
+        return;
+      }
+      long target = writtenTo;
+      try {
+        channel.force(false);
+      } catch (IOException e) {
+        throw new JobRepositoryException("Failed to sync job log " + logFile
+            + " : " + e.getMessage(), e);
+      }
+      syncedTo = target;
+    }
+  }
+
+  private void compactIfWorthwhile() throws IOException {
+    long logBytes = writtenTo - HEADER_LENGTH;
+    if (logBytes >= MIN_COMPACTION_BYTES && logBytes > 2 * liveBytes) {
+      doCompact();
+    }
+  }
+
+  /* called holding the write lock */
+  private void doCompact() throws IOException {
+    long before = writtenTo;
+    File compacted = new File(logFile.getPath() + ".compact");
+    RandomAccessFile newRaf = new RandomAccessFile(compacted, "rw");
+    FileChannel newChannel = newRaf.getChannel();
+    Map<String, IndexEntry> newIndex = new LinkedHashMap<String, IndexEntry>();
+    long newLiveBytes = 0;
+    try {
+      newChannel.truncate(0);
+      ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+      header.put(MAGIC).putInt(VERSION);
+      header.flip();
+      long at = 0;
+      while (header.hasRemaining()) {
+        at += newChannel.write(header, at);
+      }
+      for (Map.Entry<String, IndexEntry> job : index.entrySet()) {
+        IndexEntry entry = job.getValue();
+        // copy the whole record, frame and all
+        long recordStart = entry.offset - (entry.bodyLength - entry.length) - 4;
+        long copied = 0;
+        long recordLength = entry.recordLength();
+        while (copied < recordLength) {
+          copied += channel.transferTo(recordStart + copied, recordLength
+              - copied, newChannel.position(at + copied));
+        }
+        newIndex.put(job.getKey(), new IndexEntry(entry.offset - recordStart
+            + at, entry.length, entry.status, entry.bodyLength));
+        at += recordLength;
+        newLiveBytes += recordLength;
+      }
+      newChannel.force(true);
+    } catch (IOException e) {
+      newRaf.close();
+      compacted.delete();
+      throw e;
+    }
+
+    synchronized (syncLock) {
+      raf.close();
+      if (!compacted.renameTo(logFile)) {
+        newRaf.close();
+        compacted.delete();
+        // carry on with the log as it was
+        raf = new RandomAccessFile(logFile, "rw");
+        channel = raf.getChannel();
+        throw new IOException("Could not replace " + logFile + " with "
+            + compacted);
+      }
+      raf = newRaf;
+      channel = newChannel;
+      index.clear();
+      index.putAll(newIndex);
+      liveBytes = newLiveBytes;
+      writtenTo = channel.size();
+      syncedTo = writtenTo;
+      generation++;
+    }
+    LOG.log(Level.INFO, "Compacted job log " + logFile + " from " + before
+        + " to " + writtenTo + " bytes");
+  }
+
+  private static int utfLength(String value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new DataOutputStream(bytes).writeUTF(value);
+    return bytes.size() - 2;
+  }
+
+  /**
+   * Where a job's latest record is in the log, and the job's status.
+   */
+  private static final class IndexEntry {
+
+    /* where the encoded job spec starts, and its length */
+    private final long offset;
+
+    private final int length;
+
+    private final String status;
+
+    /* the length of the record's body: op, id and job spec */
+    private final int bodyLength;
+
+    IndexEntry(long offset, int length, String status, int bodyLength) {
+      this.offset = offset;
+      this.length = length;
+      this.status = status;
+      this.bodyLength = bodyLength;
+    }
+
+    long recordLength() {
+      return bodyLength + 8;
+    }
+  }
+
+}
@@ -25,10 +25,18 @@ import org.apache.oodt.cas.resource.structs.exceptions.MonitorException;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,16 +48,28 @@ import static org.apache.oodt.cas.resource.monitor.ganglia.GangliaMetKeys.NAME;
  * @author rajith
  * @author mattmann
  * @version $Revision$
+ *
+ * <p>
+ * Ganglia meta daemons are polled on a background schedule. Each poll builds
+ * an immutable snapshot of the nodes they report and of their loads, which
+ * the scheduler then reads without locking or going over the network. A
+ * meta daemon that can't be reached keeps its nodes from the last snapshot.
+ * </p>
  */
 public class GangliaResourceMonitor implements Monitor {
 
 	private static final Logger LOG = Logger
 			.getLogger(GangliaResourceMonitor.class.getName());
+	public static final long DEFAULT_POLL_INTERVAL_MILLIS = 15000L;
 	private LoadCalculator loadCalculator;
 	private Map<String, Integer> loadMap;
 	private Map<String, Map<String, String>> gmetaNodes;
 	private Map<String, GangliaAdapter> gmetaAdapters;
 	private static final int DEFAULT_PORT = 8649;
+	private final long pollIntervalMillis;
+	private volatile NodeSnapshot snapshot;
+	private final AtomicLong failedPolls = new AtomicLong();
+	private ScheduledExecutorService poller;
 
 	/**
 	 * Make a new GangliaResourceMonitor that reads information from a ganglia
@@ -62,10 +82,30 @@ public class GangliaResourceMonitor implements Monitor {
 	 */
 	public GangliaResourceMonitor(LoadCalculator loadCalculator,
 			String gmetadHost, int gmetadPort) {
+		this(loadCalculator, gmetadHost, gmetadPort,
+				DEFAULT_POLL_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Make a new GangliaResourceMonitor that reads information from a ganglia
+	 * meta daemon every <code>pollIntervalMillis</code>.
+	 * 
+	 * @param loadCalculator
+	 *            LoadCalculator
+	 *            {@link org.apache.oodt.cas.resource.monitor.ganglia.loadcalc.LoadCalculator}
+	 *            to calculate load
+	 * @param pollIntervalMillis
+	 *            How often to poll the meta daemons; 0 or less to only poll
+	 *            when {@link #refresh()} is called.
+	 */
+	public GangliaResourceMonitor(LoadCalculator loadCalculator,
+			String gmetadHost, int gmetadPort, long pollIntervalMillis) {
 		this.loadCalculator = loadCalculator;
 		this.loadMap = new ConcurrentHashMap<String, Integer>();
 		this.gmetaNodes = new ConcurrentHashMap<String, Map<String, String>>();
 		this.gmetaAdapters = new ConcurrentHashMap<String, GangliaAdapter>();
+		this.pollIntervalMillis = pollIntervalMillis;
+		this.snapshot = NodeSnapshot.EMPTY;
 		try {
 			this.initGmetaNodes(gmetadHost, gmetadPort);
 		} catch (Exception e) {
@@ -75,25 +115,21 @@ public class GangliaResourceMonitor implements Monitor {
 							+ ":" + gmetadPort + "]: Message: "
 							+ e.getMessage());
 		}
-
+		this.refresh();
+		if (pollIntervalMillis > 0) {
+			this.startPolling();
+		}
 	}
 
 	@Override
 	public int getLoad(ResourceNode node) throws MonitorException {
-		Map<String, String> nodeProperties;
 		String nodeId = node.getNodeId();
-		nodeProperties = this.locateNode(nodeId);
-		if (nodeProperties == null) {
+		Integer load = this.snapshot.loads.get(nodeId);
+		if (load == null) {
 			throw new MonitorException(
 					"GangliaMonitor: not tracking requested node: [" + nodeId
 							+ "]");
 		}
-
-		// calculate load
-		double calcLoad = this.loadCalculator.calculateLoad(nodeProperties);
-		System.out.println(calcLoad);
-		int load = Long.valueOf(Math.round(calcLoad)).intValue();
-		System.out.println("LOAD is: "+load);
 		return load;
 	}
 
@@ -120,6 +156,7 @@ public class GangliaResourceMonitor implements Monitor {
 	public void addNode(ResourceNode node) {
 		this.addGmetadNode(node.getIpAddr().getHost(), node.getIpAddr()
 				.getPort());
+		this.refresh();
 	}
 
 	/**
@@ -127,64 +164,35 @@ public class GangliaResourceMonitor implements Monitor {
 	 */
 	@Override
 	public void removeNodeById(String nodeId) {
-		this.removeGmetadNode(nodeId);
+		if (this.removeGmetadNode(nodeId)) {
+			this.refresh();
+		}
 	}
 
 	@Override
 	public List getNodes() throws MonitorException {
-		List<ResourceNode> nodes = new Vector<ResourceNode>();
-		if (this.gmetaAdapters != null) {
-			for (GangliaAdapter adapter : this.gmetaAdapters.values()) {
-				Map<String, Map<String, String>> aNodes = adapter
-						.getResourceNodeStatus();
-				for (Map<String, String> map : aNodes.values()) {
-					try {
-						nodes.add(this.nodeFromMap(map));
-					} catch (MalformedURLException e) {
-						LOG.log(Level.SEVERE, e.getMessage());
-						throw new MonitorException(e.getMessage());
-					}
-				}
-			}
+		NodeSnapshot current = this.snapshot;
+		List<ResourceNode> nodes = new Vector<ResourceNode>(
+				current.nodes.size());
+		for (ResourceNode node : current.nodes.values()) {
+			nodes.add(copy(node));
 		}
-
 		return nodes;
 	}
 
 	@Override
 	public ResourceNode getNodeById(String nodeId) throws MonitorException {
-		try {
-			return this.nodeFromMap(this.locateNode(nodeId));
-		} catch (MalformedURLException e) {
-			LOG.log(Level.SEVERE, e.getMessage());
-			throw new MonitorException(e.getMessage());
-		}
+		return copy(this.snapshot.nodes.get(nodeId));
 	}
 
 	@Override
 	public ResourceNode getNodeByURL(URL ipAddr) throws MonitorException {
-		if (this.gmetaAdapters != null) {
-			for (GangliaAdapter adapter : this.gmetaAdapters.values()) {
-				Map<String, Map<String, String>> aNodes = adapter
-						.getResourceNodeStatus();
-				for (Map.Entry<String, Map<String, String>> aNodeId : aNodes.entrySet()) {
-					String host = ipAddr.getHost();
-					int port = ipAddr.getPort();
-					Map<String, String> nodeProps = aNodeId.getValue();
-					if (aNodeId.getKey().equals(host)
-							&& nodeProps.get(DEFAULT_PORT).equals(
-									String.valueOf(port))) {
-						try {
-							return this.nodeFromMap(aNodeId.getValue());
-						} catch (MalformedURLException e) {
-							LOG.log(Level.SEVERE, e.getMessage());
-							throw new MonitorException(e.getMessage());
-						}
-					}
-				}
+		for (ResourceNode node : this.snapshot.nodes.values()) {
+			if (node.getIpAddr().getHost().equals(ipAddr.getHost())
+					&& node.getIpAddr().getPort() == ipAddr.getPort()) {
+				return copy(node);
 			}
 		}
-
 		return null;
 	}
 
@@ -203,30 +211,135 @@ public class GangliaResourceMonitor implements Monitor {
 		return true;
 	}
 
-	private Map<String, String> locateNode(String nodeId) {
-		if (this.gmetaAdapters != null && this.gmetaAdapters.size() > 0) {
-			for (Map.Entry<String, GangliaAdapter> nId : this.gmetaAdapters.entrySet()) {
-				GangliaAdapter adapter = nId.getValue();
+	/**
+	 * Polls every ganglia meta daemon now, and replaces the snapshot the
+	 * monitor answers from.
+	 */
+	public synchronized void refresh() {
+		long start = System.currentTimeMillis();
+		NodeSnapshot previous = this.snapshot;
+		Map<String, Map<String, Map<String, String>>> nodesByGmetad = new HashMap<String, Map<String, Map<String, String>>>();
+		boolean failed = false;
+		for (Map.Entry<String, GangliaAdapter> entry : this.gmetaAdapters
+				.entrySet()) {
+			GangliaAdapter adapter = entry.getValue();
+			try {
+				nodesByGmetad.put(entry.getKey(),
+						adapter.getResourceNodeStatus());
+			} catch (MonitorException e) {
+				LOG.log(Level.WARNING,
+						"MonitorException contacting Ganglia: ["
+								+ adapter.getUrlString() + "]: Message: "
+								+ e.getMessage());
+				failed = true;
+				Map<String, Map<String, String>> lastKnown = previous.nodesByGmetad
+						.get(entry.getKey());
+				if (lastKnown != null) {
+					nodesByGmetad.put(entry.getKey(), lastKnown);
+				}
+			}
+		}
+		if (failed) {
+			this.failedPolls.incrementAndGet();
+		}
+
+		Map<String, ResourceNode> nodes = new LinkedHashMap<String, ResourceNode>();
+		Map<String, Integer> loads = new HashMap<String, Integer>();
+		for (Map<String, Map<String, String>> gmetadNodes : nodesByGmetad
+				.values()) {
+			for (Map.Entry<String, Map<String, String>> node : gmetadNodes
+					.entrySet()) {
+				if (nodes.containsKey(node.getKey())) {
+					continue;
+				}
 				try {
-					System.out.println("Querying gmetad: ["+adapter.getUrlString()+"]");
-					Map<String, Map<String, String>> nodeStatus = adapter
-							.getResourceNodeStatus();
-					System.out.println("Looking for nodeid: ["+nodeId+"]");
-					if (nodeStatus.containsKey(nodeId)) {
-						System.out.println("NODE met: "+nodeStatus.get(nodeId));
-						return nodeStatus.get(nodeId);
-					}
-				} catch (MonitorException e) {
-					LOG.log(Level.WARNING,
-							"MonitorException contacting Ganglia: ["
-									+ adapter.getUrlString() + "]");
-					LOG.log(Level.SEVERE, e.getMessage());
+					nodes.put(node.getKey(), this.nodeFromMap(node.getValue()));
+				} catch (MalformedURLException e) {
+					LOG.log(Level.WARNING, "Skipping node: [" + node.getKey()
+							+ "]: Message: " + e.getMessage());
+					continue;
+				}
+				try {
+					loads.put(node.getKey(), this.calculateLoad(node.getValue()));
+				} catch (RuntimeException e) {
+					LOG.log(Level.WARNING, "Unable to calculate load for node: ["
+							+ node.getKey() + "]: Message: " + e.getMessage());
 				}
 			}
+		}
 
+		long end = System.currentTimeMillis();
+		this.snapshot = new NodeSnapshot(nodesByGmetad, nodes, loads,
+				failed ? previous.updated : end, end - start);
+	}
+
+	/**
+	 * @return How long ago, in milliseconds, every meta daemon was last
+	 *         polled successfully.
+	 */
+	public long getSnapshotAgeMillis() {
+		return System.currentTimeMillis() - this.snapshot.updated;
+	}
+
+	/**
+	 * @return How long, in milliseconds, the last poll of the meta daemons
+	 *         took.
+	 */
+	public long getLastPollLatencyMillis() {
+		return this.snapshot.pollLatency;
+	}
+
+	/**
+	 * @return The number of polls in which a meta daemon couldn't be read.
+	 */
+	public long getFailedPolls() {
+		return this.failedPolls.get();
+	}
+
+	/**
+	 * Stops polling the meta daemons in the background.
+	 */
+	public synchronized void stop() {
+		if (this.poller != null) {
+			this.poller.shutdownNow();
+			this.poller = null;
 		}
+	}
 
-		return null;
+	private synchronized void startPolling() {
+		this.poller = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r,
+								"GangliaResourceMonitor poller");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		this.poller.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					refresh();
+				} catch (Exception e) {
+					LOG.log(Level.WARNING, "Error polling Ganglia: Message: "
+							+ e.getMessage(), e);
+				}
+			}
+		}, this.pollIntervalMillis, this.pollIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	private int calculateLoad(Map<String, String> nodeProperties) {
+		double calcLoad = this.loadCalculator.calculateLoad(nodeProperties);
+		return Long.valueOf(Math.round(calcLoad)).intValue();
+	}
+
+	private static ResourceNode copy(ResourceNode node) {
+		if (node == null) {
+			return null;
+		}
+		return new ResourceNode(node.getNodeId(), node.getIpAddr(),
+				node.getCapacity());
 	}
 
 	private ResourceNode nodeFromMap(Map<String, String> map)
@@ -235,8 +348,6 @@ public class GangliaResourceMonitor implements Monitor {
 		  return null;
 		}
 		ResourceNode node = new ResourceNode();
-		System.out.println("MAP IS "+map);
-		System.out.println("Setting hostname to "+map.get(NAME));
 		node.setId(map.get(NAME));
 		node.setIpAddr(new URL("http://" + map.get(NAME) + ":" + DEFAULT_PORT));
 		return node;
@@ -259,7 +370,7 @@ public class GangliaResourceMonitor implements Monitor {
 		this.gmetaAdapters.put(host, this.createAdapter(rootNode));
 	}
 
-	private void removeGmetadNode(String host) {
+	private boolean removeGmetadNode(String host) {
 		if (this.gmetaNodes.containsKey(host)
 				&& this.gmetaAdapters.containsKey(host)) {
 			LOG.log(Level.FINE,
@@ -267,6 +378,42 @@ public class GangliaResourceMonitor implements Monitor {
 							+ gmetaAdapters.get(host).getUrlString() + "]");
 			this.gmetaAdapters.remove(host);
 			this.gmetaNodes.remove(host);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * What the meta daemons reported as of one poll. Never changed once
+	 * built.
+	 */
+	private static final class NodeSnapshot {
+
+		static final NodeSnapshot EMPTY = new NodeSnapshot(
+				Collections.<String, Map<String, Map<String, String>>> emptyMap(),
+				Collections.<String, ResourceNode> emptyMap(),
+				Collections.<String, Integer> emptyMap(), 0L, 0L);
+
+		/* gmetad host to the node metrics it reported */
+		final Map<String, Map<String, Map<String, String>>> nodesByGmetad;
+
+		final Map<String, ResourceNode> nodes;
+
+		final Map<String, Integer> loads;
+
+		final long updated;
+
+		final long pollLatency;
+
+		NodeSnapshot(
+				Map<String, Map<String, Map<String, String>>> nodesByGmetad,
+				Map<String, ResourceNode> nodes, Map<String, Integer> loads,
+				long updated, long pollLatency) {
+			this.nodesByGmetad = Collections.unmodifiableMap(nodesByGmetad);
+			this.nodes = Collections.unmodifiableMap(nodes);
+			this.loads = Collections.unmodifiableMap(loads);
+			this.updated = updated;
+			this.pollLatency = pollLatency;
 		}
 	}
 
@@ -51,10 +51,15 @@ public class GangliaResourceMonitorFactory implements MonitorFactory {
 			int gmetadPort = Integer.valueOf(System
 		                .getProperty("org.apache.oodt.cas.resource.monitor.ganglia.gemtad.host.port"));
 
+			long pollIntervalMillis = Long.getLong(
+					"org.apache.oodt.cas.resource.monitor.ganglia.poll.seconds",
+					GangliaResourceMonitor.DEFAULT_POLL_INTERVAL_MILLIS / 1000L) * 1000L;
+
 			LoadCalculator loadCalculator = GenericResourceManagerObjectFactory
 					.getLoadCalculatorFromServiceFactory(loadCalculatorFactoryStr);
 
-			return new GangliaResourceMonitor(loadCalculator, gmetadHost, gmetadPort);
+			return new GangliaResourceMonitor(loadCalculator, gmetadHost,
+					gmetadPort, pollIntervalMillis);
 		} catch (Exception e) {
 			LOG.log(Level.SEVERE,
 					"Failed to create Resource Monitor : " + e.getMessage(), e);
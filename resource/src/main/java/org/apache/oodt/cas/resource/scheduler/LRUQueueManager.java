@@ -19,7 +19,6 @@ package org.apache.oodt.cas.resource.scheduler;
 
 //JDK imports
 import java.util.LinkedHashSet;
-import java.util.Vector;
 
 //OODT imports
 import org.apache.oodt.cas.resource.structs.exceptions.QueueManagerException;
@@ -44,12 +43,11 @@ public class LRUQueueManager extends QueueManager {
 	}
 	
     public synchronized void usedNode(String queueName, String nodeId) {
-    	Vector<String> nodes = new Vector<String>(this.queueToNodesMapping.get(queueName));
-		nodes.remove(nodeId);
-		nodes.add(nodeId);
-		LinkedHashSet<String> nodeSet = new LinkedHashSet<String>();
-		nodeSet.addAll(nodes);
-		this.queueToNodesMapping.put(queueName, nodeSet);
+    	// moving the node to the end of the set keeps it in LRU order
+    	LinkedHashSet<String> nodes = this.queueToNodesMapping.get(queueName);
+    	if (nodes != null && nodes.remove(nodeId)) {
+    		nodes.add(nodeId);
+    	}
     }
     
 }
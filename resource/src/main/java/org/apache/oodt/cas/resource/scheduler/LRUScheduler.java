@@ -19,17 +19,22 @@
 package org.apache.oodt.cas.resource.scheduler;
 
 //JDKimports
+import java.net.URL;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 //OODT imports
 import org.apache.oodt.cas.resource.jobqueue.JobQueue;
+import org.apache.oodt.cas.resource.jobrepo.JobRepository;
 import org.apache.oodt.cas.resource.monitor.Monitor;
 import org.apache.oodt.cas.resource.batchmgr.Batchmgr;
 import org.apache.oodt.cas.resource.structs.JobSpec;
 import org.apache.oodt.cas.resource.structs.ResourceNode;
 import org.apache.oodt.cas.resource.structs.exceptions.JobExecutionException;
+import org.apache.oodt.cas.resource.structs.exceptions.JobQueueException;
 import org.apache.oodt.cas.resource.structs.exceptions.MonitorException;
+import org.apache.oodt.cas.resource.structs.exceptions.QueueManagerException;
 import org.apache.oodt.cas.resource.structs.exceptions.SchedulerException;
 
 /**
@@ -43,6 +48,19 @@ import org.apache.oodt.cas.resource.structs.exceptions.SchedulerException;
  * href="http://en.wikipedia.org/wiki/Cache_algorithms">least-recently-used</a>
  * algorithm for scheduling {@link Job}s.
  * </p>
+ *
+ * <p>
+ * The scheduler drains its {@link JobQueue} for as long as there are nodes
+ * with the capacity to take jobs on, and then sleeps until a job is submitted
+ * or a job's load is returned to the {@link Monitor}, or for at most
+ * <code>org.apache.oodt.cas.resource.scheduler.wait.seconds</code>. Nodes are
+ * picked from a {@link NodeCapacityIndex}: the node in the job's queue with
+ * the most free load, the least recently used of them on a tie. The index is
+ * kept current through the {@link Monitor} returned by {@link #getMonitor()}
+ * (which the {@link Batchmgr} is also given) and rebuilt from the
+ * {@link QueueManager} and {@link Monitor} whenever the scheduler wakes up
+ * without being signalled.
+ * </p>
  */
 public class LRUScheduler implements Scheduler {
 
@@ -65,12 +83,23 @@ public class LRUScheduler implements Scheduler {
     /* our wait time between checking the queue */
     private double waitTime = -1;
 
+    /* the free load on each node, per queue */
+    private final NodeCapacityIndex capacityIndex = new NodeCapacityIndex();
+
+    /* signalled when a job is submitted or load is returned to a node */
+    private final Object wakeLock = new Object();
+
+    private boolean wakeRequested = false;
+
     public LRUScheduler(Monitor m, Batchmgr b, JobQueue q, LRUQueueManager qm) {
 
     	queueManager = qm;
-        myMonitor = m;
+        myMonitor = new IndexingMonitor(m);
         myBatchmgr = b;
-        myJobQueue = q;
+        myJobQueue = new SignallingJobQueue(q);
+
+        // so that load returned by finished jobs reaches the index
+        myBatchmgr.setMonitor(myMonitor);
 
         String waitStr = System.getProperty(
                 "org.apache.oodt.cas.resource.scheduler.wait.seconds", "20");
@@ -84,42 +113,84 @@ public class LRUScheduler implements Scheduler {
      */
     public void run() {
         for (;;) {
+            int scheduled = drainQueue();
+            if (scheduled > 0 && !myJobQueue.isEmpty()) {
+                // capacity may remain for the jobs passed over
+                continue;
+            }
 
-            try {
-            	long sleepTime = (long)(waitTime * DOUBLE);
-                Thread.currentThread().sleep(sleepTime);
-            } catch (Exception ignore) {}
+            if (!awaitWakeUp()) {
+                // nothing told us about it, but loads, nodes and queues may
+                // have changed underneath the index
+                capacityIndex.clearQueues();
+            }
+        }
 
-            if (!myJobQueue.isEmpty()) {
-                JobSpec exec;
+    }
 
+    /*
+     * Offers each job currently on the queue to the scheduler once, returning
+     * the number that were sent off for execution.
+     */
+    private int drainQueue() {
+        int scheduled = 0;
+        for (int remaining = myJobQueue.getSize(); remaining > 0
+                && !myJobQueue.isEmpty(); remaining--) {
+            JobSpec exec;
+
+            try {
+                exec = myJobQueue.getNextJob();
+                LOG.log(Level.INFO, "Obtained Job: ["
+                        + exec.getJob().getId()
+                        + "] from Queue: Scheduling for execution");
+            } catch (Exception e) {
+                LOG.log(Level.WARNING,
+                        "Error getting next job from JobQueue: Message: "
+                                + e.getMessage());
+                break;
+            }
+
+            try {
+                if (schedule(exec)) {
+                    scheduled++;
+                }
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Error scheduling job: ["
+                        + exec.getJob().getId() + "]: Message: "
+                        + e.getMessage());
+                // place the job spec back on the queue
                 try {
-                    exec = myJobQueue.getNextJob();
-                    LOG.log(Level.INFO, "Obtained Job: ["
-                            + exec.getJob().getId()
-                            + "] from Queue: Scheduling for execution");
-                } catch (Exception e) {
-                    LOG.log(Level.WARNING,
-                            "Error getting next job from JobQueue: Message: "
-                                    + e.getMessage());
-                    continue;
+                    myJobQueue.requeueJob(exec);
+                } catch (Exception ignore) {
                 }
+            }
+        }
+        return scheduled;
+    }
 
+    /*
+     * Waits to be signalled or for waitTime seconds, returning whether we
+     * were signalled.
+     */
+    private boolean awaitWakeUp() {
+        synchronized (wakeLock) {
+            if (!wakeRequested) {
                 try {
-                    schedule(exec);
-                } catch (Exception e) {
-                    LOG.log(Level.WARNING, "Error scheduling job: ["
-                            + exec.getJob().getId() + "]: Message: "
-                            + e.getMessage());
-                    // place the job spec back on the queue
-                    try {
-                        myJobQueue.requeueJob(exec);
-                    } catch (Exception ignore) {
-                    }
+                    wakeLock.wait(Math.max(1L, (long) (waitTime * DOUBLE)));
+                } catch (InterruptedException ignore) {
                 }
             }
+            boolean signalled = wakeRequested;
+            wakeRequested = false;
+            return signalled;
         }
+    }
 
+    private void wakeUp() {
+        synchronized (wakeLock) {
+            wakeRequested = true;
+            wakeLock.notifyAll();
+        }
     }
 
     /*
@@ -136,8 +207,13 @@ public class LRUScheduler implements Scheduler {
 
         if (node != null) {
             try {
-                myMonitor.assignLoad(node, load);
+                if (!myMonitor.assignLoad(node, load)) {
+                    // lost the capacity since we looked
+                    requeue(spec);
+                    return false;
+                }
                 queueManager.usedNode(queueName, node.getNodeId());
+                capacityIndex.usedNode(node.getNodeId());
                 
                 // assign via batch system
                 LOG.log(Level.INFO, "Assigning job: ["
@@ -160,6 +236,7 @@ public class LRUScheduler implements Scheduler {
                         myMonitor.reduceLoad(node, load);
                     } catch (Exception ignore) {
                     }
+                    return false;
                 }
             } catch (MonitorException e) {
                 LOG.log(Level.WARNING, "Exception assigning load to resource "
@@ -167,14 +244,19 @@ public class LRUScheduler implements Scheduler {
                         + "]: Message: " + e.getMessage());
                 throw new SchedulerException(e.getMessage());
             }
+            return true;
         } else {
             // could not find resource, push onto JobQueue
-            try {
-                myJobQueue.requeueJob(spec);
-            } catch (Exception ignore) {
-            }
+            requeue(spec);
+            return false;
+        }
+    }
+
+    private void requeue(JobSpec spec) {
+        try {
+            myJobQueue.requeueJob(spec);
+        } catch (Exception ignore) {
         }
-        return true;
     }
 
     /*
@@ -223,13 +305,28 @@ public class LRUScheduler implements Scheduler {
         try {
 	    	String queueName = spec.getJob().getQueueName();
 	        int load = spec.getJob().getLoadValue();
-	
-	        for (String nodeId : queueManager.getNodes(queueName)) {
+
+	        if (!capacityIndex.containsQueue(queueName)) {
+	            indexQueue(queueName);
+	        }
+
+	        // each pass either finds the index agrees with the monitor or
+	        // corrects one node, so at most one pass per node is needed
+	        for (int passes = capacityIndex.getNumNodes(queueName); passes >= 0; passes--) {
+	            String nodeId = capacityIndex.getMostAvailableNode(queueName);
+	            if (nodeId == null) {
+	                return null;
+	            }
+
 	            int nodeLoad;
 	            ResourceNode resNode = null;
 	
 	            try {
 	                resNode = myMonitor.getNodeById(nodeId);
+	                if (resNode == null) {
+	                    capacityIndex.removeNode(nodeId);
+	                    continue;
+	                }
 	                nodeLoad = myMonitor.getLoad(resNode);
 	            } catch (MonitorException e) {
 	                LOG
@@ -238,10 +335,13 @@ public class LRUScheduler implements Scheduler {
 	                                + "]: Message: " + e.getMessage());
 	                throw new SchedulerException(e.getMessage());
 	            }
-	
-	            if (load <= nodeLoad) {
-	                return resNode;
+
+	            if (nodeLoad != capacityIndex.getFreeLoad(nodeId)) {
+	                capacityIndex.setFreeLoad(nodeId, nodeLoad);
+	                continue;
 	            }
+	
+	            return load <= nodeLoad ? resNode : null;
 	        }
 	
 	        return null;
@@ -250,4 +350,125 @@ public class LRUScheduler implements Scheduler {
         }
     }
 
+    /* adds the nodes of the given queue, in least recently used order */
+    private void indexQueue(String queueName) throws QueueManagerException,
+            MonitorException {
+        for (String nodeId : queueManager.getNodes(queueName)) {
+            ResourceNode resNode = myMonitor.getNodeById(nodeId);
+            if (resNode != null) {
+                capacityIndex.addNode(queueName, nodeId, myMonitor
+                        .getLoad(resNode));
+            }
+        }
+        // remember queues without usable nodes too, so we don't look again
+        capacityIndex.addQueue(queueName);
+    }
+
+    /*
+     * The Monitor handed out by this scheduler: keeps the capacity index up
+     * to date with the load assigned to and returned by nodes, and wakes the
+     * scheduler when load is returned.
+     */
+    private class IndexingMonitor implements Monitor {
+
+        private final Monitor monitor;
+
+        IndexingMonitor(Monitor monitor) {
+            this.monitor = monitor;
+        }
+
+        public int getLoad(ResourceNode node) throws MonitorException {
+            return monitor.getLoad(node);
+        }
+
+        public List getNodes() throws MonitorException {
+            return monitor.getNodes();
+        }
+
+        public ResourceNode getNodeById(String nodeId) throws MonitorException {
+            return monitor.getNodeById(nodeId);
+        }
+
+        public ResourceNode getNodeByURL(URL ipAddr) throws MonitorException {
+            return monitor.getNodeByURL(ipAddr);
+        }
+
+        public boolean reduceLoad(ResourceNode node, int loadValue)
+                throws MonitorException {
+            boolean reduced = monitor.reduceLoad(node, loadValue);
+            capacityIndex.setFreeLoad(node.getNodeId(), monitor.getLoad(node));
+            wakeUp();
+            return reduced;
+        }
+
+        public boolean assignLoad(ResourceNode node, int loadValue)
+                throws MonitorException {
+            boolean assigned = monitor.assignLoad(node, loadValue);
+            capacityIndex.setFreeLoad(node.getNodeId(), monitor.getLoad(node));
+            return assigned;
+        }
+
+        public void addNode(ResourceNode node) throws MonitorException {
+            monitor.addNode(node);
+            capacityIndex.clearQueues();
+            wakeUp();
+        }
+
+        public void removeNodeById(String nodeId) throws MonitorException {
+            monitor.removeNodeById(nodeId);
+            capacityIndex.removeNode(nodeId);
+        }
+    }
+
+    /*
+     * The JobQueue handed out by this scheduler: wakes the scheduler when a
+     * job is submitted.
+     */
+    private class SignallingJobQueue implements JobQueue {
+
+        private final JobQueue queue;
+
+        SignallingJobQueue(JobQueue queue) {
+            this.queue = queue;
+        }
+
+        public String addJob(JobSpec spec) throws JobQueueException {
+            String jobId = queue.addJob(spec);
+            wakeUp();
+            return jobId;
+        }
+
+        public String requeueJob(JobSpec spec) throws JobQueueException {
+            return queue.requeueJob(spec);
+        }
+
+        public List getQueuedJobs() {
+            return queue.getQueuedJobs();
+        }
+
+        public void purge() {
+            queue.purge();
+        }
+
+        public boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        public JobSpec getNextJob() {
+            return queue.getNextJob();
+        }
+
+        public JobRepository getJobRepository() {
+            return queue.getJobRepository();
+        }
+
+        public int getSize() {
+            return queue.getSize();
+        }
+
+        public int getCapacity() {
+            return queue.getCapacity();
+        }
+    }
+
 }
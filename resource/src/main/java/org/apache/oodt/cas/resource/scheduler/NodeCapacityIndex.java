@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.oodt.cas.resource.scheduler;
+
+//JDK imports
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ *
+ * <p>
+ * An index of the free load on each node, kept per queue and ordered by most
+ * free load first and then least recently used, so that the
+ * {@link LRUScheduler} can find the node to run a job on in O(log n) rather
+ * than by asking the {@link org.apache.oodt.cas.resource.monitor.Monitor}
+ * about every node in the queue. The index only knows what it is told: it is
+ * up to the caller to keep the free loads current.
+ * </p>
+ */
+class NodeCapacityIndex {
+
+    /* most free load first, then least recently used */
+    private static final Comparator<NodeEntry> MOST_AVAILABLE = new Comparator<NodeEntry>() {
+        public int compare(NodeEntry a, NodeEntry b) {
+            if (a.freeLoad != b.freeLoad) {
+                return a.freeLoad > b.freeLoad ? -1 : 1;
+            }
+            if (a.lastUsed != b.lastUsed) {
+                return a.lastUsed < b.lastUsed ? -1 : 1;
+            }
+            return a.nodeId.compareTo(b.nodeId);
+        }
+    };
+
+    private final Map<String, NodeEntry> nodes = new HashMap<String, NodeEntry>();
+
+    private final Map<String, TreeSet<NodeEntry>> queues = new HashMap<String, TreeSet<NodeEntry>>();
+
+    /* hands out the lastUsed stamps */
+    private long clock = 0;
+
+    /**
+     * @param queueName
+     *            The name of the queue.
+     * @return Whether or not the nodes of the given queue have been indexed.
+     */
+    public synchronized boolean containsQueue(String queueName) {
+        return queues.containsKey(queueName);
+    }
+
+    /**
+     * Indexes a queue, without any nodes, if it is not already indexed.
+     *
+     * @param queueName
+     *            The name of the queue.
+     */
+    public synchronized void addQueue(String queueName) {
+        if (!queues.containsKey(queueName)) {
+            queues.put(queueName, new TreeSet<NodeEntry>(MOST_AVAILABLE));
+        }
+    }
+
+    /**
+     * Adds a node to a queue, creating the queue if it is not yet indexed.
+     * Nodes are treated as used in the order they are added.
+     *
+     * @param queueName
+     *            The name of the queue.
+     * @param nodeId
+     *            The node's id.
+     * @param freeLoad
+     *            The load the node can currently take on.
+     */
+    public synchronized void addNode(String queueName, String nodeId,
+            int freeLoad) {
+        addQueue(queueName);
+        NodeEntry entry = nodes.get(nodeId);
+        if (entry == null) {
+            entry = new NodeEntry(nodeId, freeLoad, clock++);
+            nodes.put(nodeId, entry);
+        } else {
+            detach(entry);
+            entry.freeLoad = freeLoad;
+        }
+        entry.queueNames.add(queueName);
+        attach(entry);
+    }
+
+    /**
+     * Forgets a node, in every queue.
+     *
+     * @param nodeId
+     *            The node's id.
+     */
+    public synchronized void removeNode(String nodeId) {
+        NodeEntry entry = nodes.remove(nodeId);
+        if (entry != null) {
+            detach(entry);
+        }
+    }
+
+    /**
+     * Forgets every queue, keeping how recently each node was used so that
+     * re-adding them preserves the least recently used order.
+     */
+    public synchronized void clearQueues() {
+        queues.clear();
+        for (NodeEntry entry : nodes.values()) {
+            entry.queueNames.clear();
+        }
+    }
+
+    /**
+     * @param nodeId
+     *            The node's id.
+     * @param freeLoad
+     *            The load the node can currently take on.
+     */
+    public synchronized void setFreeLoad(String nodeId, int freeLoad) {
+        NodeEntry entry = nodes.get(nodeId);
+        if (entry != null && entry.freeLoad != freeLoad) {
+            detach(entry);
+            entry.freeLoad = freeLoad;
+            attach(entry);
+        }
+    }
+
+    /**
+     * @param nodeId
+     *            The node's id.
+     * @return The free load last recorded for the node, or -1 if the node is
+     *         not indexed.
+     */
+    public synchronized int getFreeLoad(String nodeId) {
+        NodeEntry entry = nodes.get(nodeId);
+        return entry != null ? entry.freeLoad : -1;
+    }
+
+    /**
+     * Marks a node as the most recently used in every queue it belongs to.
+     *
+     * @param nodeId
+     *            The node's id.
+     */
+    public synchronized void usedNode(String nodeId) {
+        NodeEntry entry = nodes.get(nodeId);
+        if (entry != null) {
+            detach(entry);
+            entry.lastUsed = clock++;
+            attach(entry);
+        }
+    }
+
+    /**
+     * @param queueName
+     *            The name of the queue.
+     * @return The id of the node in the queue with the most free load (the
+     *         least recently used of them, on a tie), or null if the queue
+     *         has no nodes.
+     */
+    public synchronized String getMostAvailableNode(String queueName) {
+        TreeSet<NodeEntry> queue = queues.get(queueName);
+        return queue != null && !queue.isEmpty() ? queue.first().nodeId : null;
+    }
+
+    /**
+     * @param queueName
+     *            The name of the queue.
+     * @return The number of nodes indexed for the queue.
+     */
+    public synchronized int getNumNodes(String queueName) {
+        TreeSet<NodeEntry> queue = queues.get(queueName);
+        return queue != null ? queue.size() : 0;
+    }
+
+    /* entries must be taken out of their queues before their ordering changes */
+    private void detach(NodeEntry entry) {
+        for (String queueName : entry.queueNames) {
+            TreeSet<NodeEntry> queue = queues.get(queueName);
+            if (queue != null) {
+                queue.remove(entry);
+            }
+        }
+    }
+
+    private void attach(NodeEntry entry) {
+        for (String queueName : entry.queueNames) {
+            TreeSet<NodeEntry> queue = queues.get(queueName);
+            if (queue != null) {
+                queue.add(entry);
+            }
+        }
+    }
+
+    private static class NodeEntry {
+
+        private final String nodeId;
+
+        private final Set<String> queueNames = new HashSet<String>();
+
+        private int freeLoad;
+
+        private long lastUsed;
+
+        NodeEntry(String nodeId, int freeLoad, long lastUsed) {
+            this.nodeId = nodeId;
+            this.freeLoad = freeLoad;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+}
@@ -22,16 +22,27 @@ package org.apache.oodt.cas.resource.system.extern;
 import org.apache.oodt.cas.resource.structs.Job;
 import org.apache.oodt.cas.resource.structs.JobInput;
 import org.apache.oodt.cas.resource.structs.JobInstance;
+import org.apache.oodt.cas.resource.structs.JobStatus;
 import org.apache.oodt.cas.resource.structs.exceptions.JobException;
-import org.apache.oodt.cas.resource.structs.exceptions.JobInputException;
 import org.apache.oodt.cas.resource.util.GenericResourceManagerObjectFactory;
 import org.apache.oodt.cas.resource.util.XmlRpcStructFactory;
 import org.apache.xmlrpc.WebServer;
 
 import java.util.Date;
+import java.util.Hashtable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.UUID;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,10 +57,31 @@ import java.util.logging.Logger;
  * An XML RPC-based Batch Submission System.
  * </p>
  *
+ * <p>
+ * Jobs run on a bounded pool of worker threads. <code>submitJob</code> hands
+ * a job to the pool and returns straight away; callers then poll
+ * <code>getJobStatuses</code> for many jobs at once. The blocking
+ * <code>executeJob</code> calls are kept for older batch managers.
+ * </p>
+ *
+ * <p>
+ * A finished job is kept until a later <code>getJobStatuses</code> call
+ * acknowledges its status, so that a reply lost on the way is sent again, or
+ * until it has been finished for the retention period, so that jobs whose
+ * manager went away don't pile up. Each run of the stub has its own instance
+ * id, so that callers can tell a job it lost by being restarted.
+ * </p>
+ *
  */
 @Deprecated
 public class XmlRpcBatchStub {
 
+    public static final int DEFAULT_MAX_JOBS = 10;
+
+    public static final int DEFAULT_MAX_QUEUED_JOBS = 100;
+
+    public static final long DEFAULT_FINISHED_JOB_RETENTION_MILLIS = 60L * 60L * 1000L;
+
     /* the port to run the XML RPC web server on, default is 2000 */
     private int webServerPort = 2000;
 
@@ -60,26 +92,60 @@ public class XmlRpcBatchStub {
     private static Logger LOG = Logger.getLogger(XmlRpcBatchStub.class
         .getName());
 
-    private Map jobThreadMap = null;
+    /* jobs that are queued, running, or finished but not yet acknowledged */
+    private Map<String, RunnableJob> jobMap = null;
+
+    /* identifies this run of the stub */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /* how long to keep finished jobs nobody acknowledges */
+    private final long finishedJobRetentionMillis;
+
+    private ThreadPoolExecutor jobExecutor = null;
+
+    private AtomicLong completedJobs = new AtomicLong();
 
     public XmlRpcBatchStub(int port) {
+        this(port, DEFAULT_MAX_JOBS, DEFAULT_MAX_QUEUED_JOBS);
+    }
+
+    public XmlRpcBatchStub(int port, int maxJobs, int maxQueuedJobs) {
+        this(port, maxJobs, maxQueuedJobs,
+            DEFAULT_FINISHED_JOB_RETENTION_MILLIS);
+    }
+
+    public XmlRpcBatchStub(int port, int maxJobs, int maxQueuedJobs,
+        long finishedJobRetentionMillis) {
         webServerPort = port;
+        this.finishedJobRetentionMillis = finishedJobRetentionMillis;
+
+        jobMap = new ConcurrentHashMap<String, RunnableJob>();
+        jobExecutor = new ThreadPoolExecutor(maxJobs, maxJobs, 60L,
+            TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(
+                Math.max(1, maxQueuedJobs)));
+        jobExecutor.allowCoreThreadTimeOut(true);
 
         // start up the web server
         webServer = new WebServer(webServerPort);
         webServer.addHandler("batchstub", this);
         webServer.start();
 
-        jobThreadMap = new ConcurrentHashMap();
-
         LOG.log(Level.INFO, "XmlRpc Batch Stub started by "
-                            + System.getProperty("user.name", "unknown"));
+                            + System.getProperty("user.name", "unknown")
+                            + ": running up to " + maxJobs + " jobs at once");
     }
 
     public boolean isAlive() {
         return true;
     }
 
+    /**
+     * @return The id of this run of the stub, which changes when it restarts.
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+
     public boolean executeJob(Map jobHash, Map jobInput)
         throws JobException {
         return genericExecuteJob(jobHash, jobInput);
@@ -115,80 +181,203 @@ public class XmlRpcBatchStub {
         return genericExecuteJob(jobHash, jobInput);
     }
 
-    public synchronized boolean killJob(Map jobHash) {
+    public boolean submitJob(Hashtable jobHash, Hashtable jobInput) {
+        return genericSubmitJob(jobHash, jobInput) != null;
+    }
+
+    public boolean submitJob(Hashtable jobHash, String jobInput) {
+        return genericSubmitJob(jobHash, jobInput) != null;
+    }
+
+    public boolean submitJob(Hashtable jobHash, Date jobInput) {
+        return genericSubmitJob(jobHash, jobInput) != null;
+    }
+
+    public boolean submitJob(Hashtable jobHash, double jobInput) {
+        return genericSubmitJob(jobHash, jobInput) != null;
+    }
+
+    public boolean submitJob(Hashtable jobHash, int jobInput) {
+        return genericSubmitJob(jobHash, jobInput) != null;
+    }
+
+    public boolean submitJob(Hashtable jobHash, boolean jobInput) {
+        return genericSubmitJob(jobHash, jobInput) != null;
+    }
+
+    public boolean submitJob(Hashtable jobHash, Vector jobInput) {
+        return genericSubmitJob(jobHash, jobInput) != null;
+    }
+
+    public boolean submitJob(Hashtable jobHash, byte[] jobInput) {
+        return genericSubmitJob(jobHash, jobInput) != null;
+    }
+
+    /**
+     * Reports the status of each of the given jobs, after forgetting the
+     * finished jobs whose status the caller has acknowledged. Jobs this stub
+     * does not know about are left out.
+     *
+     * @param jobIds
+     *            The ids of the jobs to report on.
+     * @param acknowledgedJobIds
+     *            The ids of finished jobs whose status the caller has
+     *            received.
+     * @return A map with this stub's <code>instanceId</code>, and under
+     *         <code>statuses</code> a map of job id to {@link JobStatus}.
+     */
+    public Hashtable<String, Object> getJobStatuses(Vector jobIds,
+        Vector acknowledgedJobIds) {
+        for (Object jobId : acknowledgedJobIds) {
+            RunnableJob runner = jobMap.get((String) jobId);
+            if (runner != null && isFinished(runner.getStatus())) {
+                jobMap.remove(jobId);
+            }
+        }
+        forgetExpiredJobs();
+
+        Hashtable<String, String> statuses = new Hashtable<String, String>();
+        for (Object jobId : jobIds) {
+            RunnableJob runner = jobMap.get((String) jobId);
+            if (runner != null) {
+                statuses.put((String) jobId, runner.getStatus());
+            }
+        }
+        Hashtable<String, Object> reply = new Hashtable<String, Object>();
+        reply.put("instanceId", instanceId);
+        reply.put("statuses", statuses);
+        return reply;
+    }
+
+    /**
+     * @return The number of running and queued jobs, the size of the worker
+     *         pool, and the number of jobs completed since startup.
+     */
+    public Hashtable<String, Integer> getMetrics() {
+        Hashtable<String, Integer> metrics = new Hashtable<String, Integer>();
+        metrics.put("activeJobs", jobExecutor.getActiveCount());
+        metrics.put("queuedJobs", jobExecutor.getQueue().size());
+        metrics.put("maxJobs", jobExecutor.getMaximumPoolSize());
+        metrics.put("completedJobs", (int) Math.min(Integer.MAX_VALUE,
+            completedJobs.get()));
+        return metrics;
+    }
+
+    public boolean killJob(Hashtable jobHash) {
         Job job = XmlRpcStructFactory.getJobFromXmlRpc(jobHash);
-        Thread jobThread = (Thread) jobThreadMap.get(job.getId());
-        if (jobThread == null) {
+        RunnableJob runner = jobMap.get(job.getId());
+        if (runner == null) {
             LOG.log(Level.WARNING, "Job: [" + job.getId()
                                    + "] not managed by this batch stub");
             return false;
         }
 
         // okay, so interrupt it, which should cause it to stop
-        jobThread.interrupt();
+        runner.kill();
         return true;
     }
 
-    private boolean genericExecuteJob(Map jobHash, Object jobInput) {
-        JobInstance exec = null;
-        JobInput in = null;
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        if (webServer != null) {
+            webServer.shutdown();
+            webServer = null;
+        }
+    }
+
+    private RunnableJob genericSubmitJob(Map jobHash, Object jobInput) {
         try {
             Job job = XmlRpcStructFactory.getJobFromXmlRpc(jobHash);
 
-            LOG.log(Level.INFO, "stub attempting to execute class: ["
+            LOG.log(Level.INFO, "stub queueing class: ["
                                 + job.getJobInstanceClassName() + "]");
 
-            exec = GenericResourceManagerObjectFactory
+            JobInstance exec = GenericResourceManagerObjectFactory
                 .getJobInstanceFromClassName(job.getJobInstanceClassName());
-            in = GenericResourceManagerObjectFactory
+            JobInput in = GenericResourceManagerObjectFactory
                 .getJobInputFromClassName(job.getJobInputClassName());
 
             // load the input obj
             in.read(jobInput);
 
-            // create threaded job
-            // so that it can be interrupted
-            RunnableJob runner = new RunnableJob(exec, in);
-            Thread threadRunner = new Thread(runner);
-            /* save this job thread in a map so we can kill it later */
-            jobThreadMap.put(job.getId(), threadRunner);
-            threadRunner.start();
-
+            RunnableJob runner = new RunnableJob(job, exec, in);
+            /* save this job in a map so we can report on and kill it later */
+            jobMap.put(job.getId(), runner);
             try {
-                threadRunner.join();
-            } catch (InterruptedException e) {
-                LOG.log(Level.INFO, "Current job: [" + job.getName()
-                                    + "]: killed: exiting gracefully");
-                synchronized (jobThreadMap) {
-                    Thread endThread = (Thread) jobThreadMap.get(job.getId());
-                    if (endThread != null) {
-                        endThread = null;
-                    }
-                }
-                return false;
-            }
-
-            synchronized (jobThreadMap) {
-                Thread endThread = (Thread) jobThreadMap.get(job.getId());
-                if (endThread != null) {
-                    endThread = null;
-                }
+                runner.setFuture(jobExecutor.submit(runner));
+            } catch (RejectedExecutionException e) {
+                jobMap.remove(job.getId());
+                LOG.log(Level.WARNING, "Job: [" + job.getId()
+                                       + "] rejected: batch stub is full");
+                return null;
             }
-
-            return runner.wasSuccessful();
+            return runner;
         } catch (Exception e) {
             LOG.log(Level.SEVERE, e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean genericExecuteJob(Map jobHash, Object jobInput) {
+        RunnableJob runner = genericSubmitJob(jobHash, jobInput);
+        if (runner == null) {
             return false;
         }
+        try {
+            runner.getFuture().get();
+        } catch (InterruptedException e) {
+            runner.kill();
+        } catch (CancellationException ignore) {
+        } catch (ExecutionException e) {
+            LOG.log(Level.SEVERE, e.getMessage());
+        } finally {
+            jobMap.remove(runner.getJobId());
+        }
+
+        if (JobStatus.KILLED.equals(runner.getStatus())) {
+            LOG.log(Level.INFO, "Current job: [" + runner.getJobName()
+                                + "]: killed: exiting gracefully");
+        }
+        return JobStatus.SUCCESS.equals(runner.getStatus());
+    }
+
+    private void forgetExpiredJobs() {
+        long expiry = System.currentTimeMillis() - finishedJobRetentionMillis;
+        for (Iterator<RunnableJob> i = jobMap.values().iterator(); i.hasNext();) {
+            RunnableJob runner = i.next();
+            if (runner.finishedBefore(expiry)) {
+                LOG.log(Level.WARNING, "Forgetting job: [" + runner.getJobId()
+                                       + "]: its status was never acknowledged");
+                i.remove();
+            }
+        }
+    }
+
+    private static boolean isFinished(String status) {
+        return JobStatus.SUCCESS.equals(status)
+               || JobStatus.FAILURE.equals(status)
+               || JobStatus.KILLED.equals(status);
     }
 
     public static void main(String[] args)  {
         int portNum = -1;
-        String usage = "XmlRpcBatchStub --portNum <port number for xml rpc service>\n";
+        int maxJobs = DEFAULT_MAX_JOBS;
+        int maxQueuedJobs = DEFAULT_MAX_QUEUED_JOBS;
+        long retentionMillis = DEFAULT_FINISHED_JOB_RETENTION_MILLIS;
+        String usage = "XmlRpcBatchStub --portNum <port number for xml rpc service>\n"
+                       + "[--maxJobs <jobs run at once>]\n"
+                       + "[--maxQueuedJobs <jobs waiting to run>]\n"
+                       + "[--finishedJobRetentionSecs <seconds to keep unacknowledged finished jobs>]\n";
 
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("--portNum")) {
                 portNum = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--maxJobs")) {
+                maxJobs = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--maxQueuedJobs")) {
+                maxQueuedJobs = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--finishedJobRetentionSecs")) {
+                retentionMillis = Long.parseLong(args[++i]) * 1000L;
             }
         }
 
@@ -197,7 +386,8 @@ public class XmlRpcBatchStub {
             System.exit(1);
         }
 
-        XmlRpcBatchStub stub = new XmlRpcBatchStub(portNum);
+        XmlRpcBatchStub stub = new XmlRpcBatchStub(portNum, maxJobs,
+            maxQueuedJobs, retentionMillis);
 
         for (;;) {
             try {
@@ -209,16 +399,24 @@ public class XmlRpcBatchStub {
 
     private class RunnableJob implements Runnable {
 
+        private final Job jobInfo;
+
         private JobInput in;
 
         private JobInstance job;
 
-        private boolean successful;
+        private String status;
+
+        private Future<?> future;
+
+        /* when the job finished, or 0 */
+        private long finishedAt;
 
-        public RunnableJob(JobInstance job, JobInput in) {
+        public RunnableJob(Job jobInfo, JobInstance job, JobInput in) {
+            this.jobInfo = jobInfo;
             this.job = job;
             this.in = in;
-            this.successful = false;
+            this.status = JobStatus.QUEUED;
         }
 
         /*
@@ -227,17 +425,67 @@ public class XmlRpcBatchStub {
          * @see java.lang.Runnable#run()
          */
         public void run() {
+            if (!setStatus(JobStatus.EXECUTED)) {
+                return;
+            }
+            boolean successful;
             try {
-                this.successful = job.execute(in);
-            } catch (JobInputException e) {
+                successful = job.execute(in);
+            } catch (Exception e) {
                 LOG.log(Level.SEVERE, e.getMessage());
-                this.successful = false;
+                successful = false;
+            }
+            setStatus(successful ? JobStatus.SUCCESS : JobStatus.FAILURE);
+            completedJobs.incrementAndGet();
+        }
+
+        public synchronized void kill() {
+            if (!isFinished(status)) {
+                status = JobStatus.KILLED;
+                finishedAt = System.currentTimeMillis();
+                if (future != null) {
+                    future.cancel(true);
+                }
             }
+        }
 
+        public synchronized String getStatus() {
+            return status;
+        }
+
+        public synchronized Future<?> getFuture() {
+            return future;
+        }
+
+        public synchronized void setFuture(Future<?> future) {
+            this.future = future;
+            if (JobStatus.KILLED.equals(status)) {
+                future.cancel(true);
+            }
+        }
+
+        public String getJobId() {
+            return jobInfo.getId();
+        }
+
+        public String getJobName() {
+            return jobInfo.getName();
+        }
+
+        /* a killed job stays killed */
+        private synchronized boolean setStatus(String newStatus) {
+            if (JobStatus.KILLED.equals(status)) {
+                return false;
+            }
+            status = newStatus;
+            if (isFinished(newStatus)) {
+                finishedAt = System.currentTimeMillis();
+            }
+            return true;
         }
 
-        public boolean wasSuccessful() {
-            return this.successful;
+        public synchronized boolean finishedBefore(long time) {
+            return finishedAt > 0 && finishedAt < time;
         }
     }
-}
\ No newline at end of file
+}
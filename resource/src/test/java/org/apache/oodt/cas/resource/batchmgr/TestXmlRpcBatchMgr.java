@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.resource.batchmgr;
+
+//OODT imports
+import org.apache.oodt.cas.resource.examples.HelloWorldJob;
+import org.apache.oodt.cas.resource.examples.LongJob;
+import org.apache.oodt.cas.resource.jobrepo.MemoryJobRepository;
+import org.apache.oodt.cas.resource.mux.mocks.MockMonitor;
+import org.apache.oodt.cas.resource.structs.Job;
+import org.apache.oodt.cas.resource.structs.JobSpec;
+import org.apache.oodt.cas.resource.structs.JobStatus;
+import org.apache.oodt.cas.resource.structs.NameValueJobInput;
+import org.apache.oodt.cas.resource.structs.ResourceNode;
+import org.apache.oodt.cas.resource.structs.exceptions.JobExecutionException;
+import org.apache.oodt.cas.resource.system.extern.XmlRpcBatchStub;
+
+//JDK imports
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Vector;
+
+//Junit imports
+import junit.framework.TestCase;
+
+/**
+ * @version $Revision$
+ *
+ * <p>
+ * Test suite for the {@link XmlRpcBatchMgr} running jobs on an
+ * {@link XmlRpcBatchStub}.
+ * </p>.
+ */
+public class TestXmlRpcBatchMgr extends TestCase {
+
+  private static final int STUB_PORT = 50055;
+
+  private XmlRpcBatchStub stub;
+
+  private XmlRpcBatchMgr batchmgr;
+
+  private MemoryJobRepository repo;
+
+  private ResourceNode node;
+
+  public void testSubmitAndPoll() throws Exception {
+    startStub(2, 10);
+    JobSpec spec = addJob(HelloWorldJob.class.getName(), "user.name", "test");
+    assertTrue(batchmgr.executeRemotely(spec, node));
+    assertEquals("node", batchmgr.getExecutionNode(spec.getJob().getId()));
+
+    waitForStatus(spec, JobStatus.SUCCESS);
+    assertNull(batchmgr.getExecutionNode(spec.getJob().getId()));
+    assertEquals(0, batchmgr.getNumOutstandingJobs());
+    assertEquals(Integer.valueOf(1),
+        batchmgr.getNodeMetrics(node).get("completedJobs"));
+    // the load the job took is given back
+    assertEquals(9, node.getCapacity());
+  }
+
+  public void testKillJob() throws Exception {
+    startStub(2, 10);
+    JobSpec spec = addJob(LongJob.class.getName(), "wait", "30");
+    assertTrue(batchmgr.executeRemotely(spec, node));
+    assertTrue(batchmgr.killJob(spec.getJob().getId(), node));
+
+    waitForStatus(spec, JobStatus.KILLED);
+    long deadline = System.currentTimeMillis() + 10000L;
+    while (batchmgr.getNumOutstandingJobs() > 0
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50L);
+    }
+    assertEquals(0, batchmgr.getNumOutstandingJobs());
+  }
+
+  public void testFullStubRejectsJobs() throws Exception {
+    startStub(1, 1);
+    JobSpec running = addJob(LongJob.class.getName(), "wait", "30");
+    JobSpec queued = addJob(LongJob.class.getName(), "wait", "30");
+    assertTrue(batchmgr.executeRemotely(running, node));
+    assertTrue(batchmgr.executeRemotely(queued, node));
+
+    JobSpec rejected = addJob(HelloWorldJob.class.getName(), "user.name",
+        "test");
+    try {
+      batchmgr.executeRemotely(rejected, node);
+      fail("A full batch stub accepted a job");
+    } catch (JobExecutionException expected) {
+    }
+    assertNull(batchmgr.getExecutionNode(rejected.getJob().getId()));
+    assertEquals(2, batchmgr.getNumOutstandingJobs());
+    assertEquals(Integer.valueOf(1),
+        batchmgr.getNodeMetrics(node).get("queuedJobs"));
+
+    assertTrue(batchmgr.killJob(queued.getJob().getId(), node));
+    assertTrue(batchmgr.killJob(running.getJob().getId(), node));
+    waitForStatus(queued, JobStatus.KILLED);
+    waitForStatus(running, JobStatus.KILLED);
+  }
+
+  public void testFinishedJobsAreKeptUntilAcknowledged() throws Exception {
+    startStub(2, 10, XmlRpcBatchStub.DEFAULT_FINISHED_JOB_RETENTION_MILLIS);
+    // a manager that won't poll during the test
+    batchmgr = newBatchmgr(60000L);
+    JobSpec spec = addJob(HelloWorldJob.class.getName(), "user.name", "test");
+    assertTrue(batchmgr.executeRemotely(spec, node));
+    String jobId = spec.getJob().getId();
+    waitForStubStatus(jobId, JobStatus.SUCCESS);
+
+    // a reply that went missing is sent again
+    assertEquals(JobStatus.SUCCESS, getStubStatuses(jobId, false).get(jobId));
+    // and forgotten once acknowledged
+    assertTrue(getStubStatuses(jobId, true).isEmpty());
+  }
+
+  public void testUnacknowledgedJobsAreForgotten() throws Exception {
+    startStub(2, 10, 200L);
+    batchmgr = newBatchmgr(60000L);
+    JobSpec spec = addJob(HelloWorldJob.class.getName(), "user.name", "test");
+    assertTrue(batchmgr.executeRemotely(spec, node));
+    String jobId = spec.getJob().getId();
+    waitForStubStatus(jobId, JobStatus.SUCCESS);
+
+    Thread.sleep(400L);
+    assertTrue(getStubStatuses(jobId, false).isEmpty());
+  }
+
+  public void testRestartedStubFailsItsJobs() throws Exception {
+    startStub(2, 10);
+    JobSpec spec = addJob(LongJob.class.getName(), "wait", "30");
+    assertTrue(batchmgr.executeRemotely(spec, node));
+    // let it be polled while the stub has it
+    Thread.sleep(300L);
+    assertEquals(1, batchmgr.getNumOutstandingJobs());
+
+    // the node comes back with a new stub, which doesn't have the job
+    XmlRpcBatchStub restarted = new XmlRpcBatchStub(STUB_PORT + 1, 2, 10);
+    try {
+      node.setIpAddr(new URL("http://localhost:" + (STUB_PORT + 1)));
+      waitForStatus(spec, JobStatus.FAILURE);
+      assertEquals(0, batchmgr.getNumOutstandingJobs());
+    } finally {
+      restarted.shutdown();
+    }
+  }
+
+  protected void setUp() throws Exception {
+    repo = new MemoryJobRepository();
+    node = new ResourceNode("node", new URL("http://localhost:" + STUB_PORT),
+        10);
+    batchmgr = newBatchmgr(50L);
+  }
+
+  private XmlRpcBatchMgr newBatchmgr(long pollIntervalMillis) {
+    XmlRpcBatchMgr batchmgr = new XmlRpcBatchMgr(pollIntervalMillis, 2);
+    batchmgr.setJobRepository(repo);
+    batchmgr.setMonitor(new MockMonitor(0,
+        Collections.singletonList(node), node, node, node));
+    return batchmgr;
+  }
+
+  protected void tearDown() throws Exception {
+    if (stub != null) {
+      stub.shutdown();
+      stub = null;
+    }
+  }
+
+  private void startStub(int maxJobs, int maxQueuedJobs) {
+    stub = new XmlRpcBatchStub(STUB_PORT, maxJobs, maxQueuedJobs);
+  }
+
+  private void startStub(int maxJobs, int maxQueuedJobs,
+      long finishedJobRetentionMillis) {
+    stub = new XmlRpcBatchStub(STUB_PORT, maxJobs, maxQueuedJobs,
+        finishedJobRetentionMillis);
+  }
+
+  private Map getStubStatuses(String jobId, boolean acknowledge) {
+    Vector<String> jobIds = new Vector<String>();
+    jobIds.add(jobId);
+    Map reply = stub.getJobStatuses(jobIds, acknowledge ? jobIds
+        : new Vector<String>());
+    assertEquals(stub.getInstanceId(), reply.get("instanceId"));
+    return (Map) reply.get("statuses");
+  }
+
+  private void waitForStubStatus(String jobId, String status)
+      throws Exception {
+    long deadline = System.currentTimeMillis() + 10000L;
+    while (!status.equals(getStubStatuses(jobId, false).get(jobId))
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50L);
+    }
+    assertEquals(status, getStubStatuses(jobId, false).get(jobId));
+  }
+
+  private JobSpec addJob(String jobInstanceClassName, String key, String value)
+      throws Exception {
+    Job job = new Job(null, "job", jobInstanceClassName,
+        NameValueJobInput.class.getName(), "queue", 1);
+    NameValueJobInput input = new NameValueJobInput();
+    input.setNameValuePair(key, value);
+    JobSpec spec = new JobSpec(input, job);
+    repo.addJob(spec);
+    // keep the ids apart: the memory repository uses timestamps
+    Thread.sleep(2L);
+    return spec;
+  }
+
+  private void waitForStatus(JobSpec spec, String status) throws Exception {
+    long deadline = System.currentTimeMillis() + 10000L;
+    while (!status.equals(repo.getJobById(spec.getJob().getId()).getJob()
+        .getStatus())
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50L);
+    }
+    assertEquals(status, repo.getJobById(spec.getJob().getId()).getJob()
+        .getStatus());
+  }
+
+}
@@ -67,6 +67,43 @@ public class TestFifoMappedJobQueue extends TestCase {
     }
   }
 
+  public void testGetNextJobSkipsJobsNotReady() throws Exception {
+    jobs[0].getJob().setReady(false);
+    String notReady = addJob(q, this.jobs[0]);
+    String ready = addJob(q, this.jobs[2]);
+    assertEquals(ready, q.getNextJob("queue0").getJob().getId());
+    assertNull(q.getNextJob("queue0"));
+    assertEquals(1, q.getSize("queue0"));
+
+    // once requeued as ready, the job is scheduled
+    jobs[0].getJob().setReady(true);
+    q.requeueJob(this.jobs[0]);
+    assertEquals(1, q.getSize("queue0"));
+    assertEquals(notReady, q.getNextJob().getJob().getId());
+    assertTrue(q.isEmpty());
+  }
+
+  public void testGetNextJobInQueueOrder() throws Exception {
+    q = new FifoMappedJobQueue(3, repo);
+    q.addQueue("queue0");
+    addJob(q, this.jobs[0]);
+    String second = addJob(q, this.jobs[2]);
+    String third = addJob(q, this.jobs[3]);
+    q.promoteJob(this.jobs[3]);
+    q.removeJob(this.jobs[0]);
+    assertEquals(2, q.getSize("queue0"));
+    assertEquals(third, q.getNextJob("queue0").getJob().getId());
+    assertEquals(second, q.getNextJob("queue0").getJob().getId());
+    assertTrue(q.isEmpty("queue0"));
+  }
+
+  private String addJob(FifoMappedJobQueue queue, JobSpec spec)
+      throws Exception {
+    // the repository's job ids are timestamps: keep them apart
+    Thread.sleep(2);
+    return queue.addJob(spec);
+  }
+
   public void testPurge() {
     try {
       q.addJob(this.jobs[0]);
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.resource.jobrepo;
+
+//OODT imports
+import org.apache.oodt.cas.resource.structs.Job;
+import org.apache.oodt.cas.resource.structs.JobSpec;
+import org.apache.oodt.cas.resource.structs.JobStatus;
+import org.apache.oodt.cas.resource.structs.NameValueJobInput;
+import org.apache.oodt.cas.resource.structs.exceptions.JobRepositoryException;
+
+//JDK imports
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//Apache imports
+import org.apache.commons.io.FileUtils;
+
+//Junit imports
+import junit.framework.TestCase;
+
+/**
+ * @version $Revision$
+ *
+ * <p>
+ * Test suite for the {@link LogJobRepository}.
+ * </p>.
+ */
+public class TestLogJobRepository extends TestCase {
+
+  private File workingDir;
+
+  private LogJobRepository repo;
+
+  public void testAddUpdateAndGet() throws Exception {
+    String jobId = repo.addJob(newJobSpec(null, "value"));
+    assertNotNull(jobId);
+
+    JobSpec spec = repo.getJobById(jobId);
+    assertEquals("job", spec.getJob().getName());
+    assertEquals("queue", spec.getJob().getQueueName());
+    assertEquals(Integer.valueOf(3), spec.getJob().getLoadValue());
+    assertFalse(spec.getJob().getReady());
+    assertEquals("value", ((NameValueJobInput) spec.getIn()).getValue("key"));
+    assertEquals(JobStatus.QUEUED, repo.getStatus(spec));
+
+    spec.getJob().setStatus(JobStatus.SUCCESS);
+    repo.updateJob(spec);
+    assertEquals(JobStatus.SUCCESS, repo.getJobById(jobId).getJob().getStatus());
+    assertTrue(repo.jobFinished(spec));
+
+    try {
+      repo.addJob(newJobSpec(jobId, "value"));
+      fail("Added a job with an id already in use");
+    } catch (JobRepositoryException expected) {
+    }
+
+    repo.removeJob(spec);
+    assertEquals(0, repo.getSize());
+    try {
+      repo.getJobById(jobId);
+      fail("Found a removed job");
+    } catch (JobRepositoryException expected) {
+    }
+  }
+
+  public void testReopen() throws Exception {
+    String kept = repo.addJob(newJobSpec(null, "kept"));
+    String removed = repo.addJob(newJobSpec(null, "removed"));
+    JobSpec spec = repo.getJobById(kept);
+    spec.getJob().setStatus(JobStatus.EXECUTED);
+    repo.updateJob(spec);
+    repo.removeJob(repo.getJobById(removed));
+    repo.close();
+
+    repo = new LogJobRepository(workingDir, -1, true);
+    assertEquals(1, repo.getSize());
+    assertEquals(JobStatus.EXECUTED, repo.getStatus(spec));
+    assertEquals("kept",
+        ((NameValueJobInput) repo.getJobById(kept).getIn()).getValue("key"));
+  }
+
+  public void testTornRecordIsDropped() throws Exception {
+    String jobId = repo.addJob(newJobSpec(null, "value"));
+    repo.addJob(newJobSpec(null, "torn"));
+    repo.close();
+
+    // cut the last record short, as a crash mid-write would
+    File log = new File(workingDir, LogJobRepository.LOG_FILE_NAME);
+    RandomAccessFile raf = new RandomAccessFile(log, "rw");
+    raf.setLength(raf.length() - 5);
+    raf.close();
+
+    repo = new LogJobRepository(workingDir, -1, true);
+    assertEquals(1, repo.getSize());
+    assertEquals("value",
+        ((NameValueJobInput) repo.getJobById(jobId).getIn()).getValue("key"));
+
+    // and the log can be appended to again
+    String next = repo.addJob(newJobSpec(null, "next"));
+    repo.close();
+    repo = new LogJobRepository(workingDir, -1, true);
+    assertEquals(2, repo.getSize());
+    assertNotNull(repo.getJobById(next));
+  }
+
+  public void testMaxHistoryAndCompaction() throws Exception {
+    repo.close();
+    repo = new LogJobRepository(workingDir, 2, false);
+    String first = repo.addJob(newJobSpec(null, "1"));
+    String second = repo.addJob(newJobSpec(null, "2"));
+    String third = repo.addJob(newJobSpec(null, "3"));
+    assertEquals(2, repo.getSize());
+    try {
+      repo.getJobById(first);
+      fail("Oldest job was not evicted");
+    } catch (JobRepositoryException expected) {
+    }
+
+    File log = new File(workingDir, LogJobRepository.LOG_FILE_NAME);
+    long before = log.length();
+    repo.compact();
+    assertTrue(log.length() < before);
+    assertEquals("2",
+        ((NameValueJobInput) repo.getJobById(second).getIn()).getValue("key"));
+
+    // compacted records are read back, and appended to, as before
+    String fourth = repo.addJob(newJobSpec(null, "4"));
+    repo.close();
+    repo = new LogJobRepository(workingDir, 2, false);
+    assertEquals(2, repo.getSize());
+    assertEquals("3",
+        ((NameValueJobInput) repo.getJobById(third).getIn()).getValue("key"));
+    assertEquals("4",
+        ((NameValueJobInput) repo.getJobById(fourth).getIn()).getValue("key"));
+  }
+
+  public void testConcurrentWriters() throws Exception {
+    final List<String> jobIds = Collections
+        .synchronizedList(new ArrayList<String>());
+    final List<Exception> errors = Collections
+        .synchronizedList(new ArrayList<Exception>());
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 8; i++) {
+      Thread thread = new Thread() {
+        public void run() {
+          try {
+            for (int j = 0; j < 25; j++) {
+              JobSpec spec = newJobSpec(null, "value");
+              jobIds.add(repo.addJob(spec));
+              spec.getJob().setStatus(JobStatus.SCHEDULED);
+              repo.updateJob(spec);
+            }
+          } catch (Exception e) {
+            errors.add(e);
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(errors.toString(), errors.isEmpty());
+
+    repo.close();
+    repo = new LogJobRepository(workingDir, -1, true);
+    assertEquals(200, repo.getSize());
+    for (String jobId : jobIds) {
+      assertEquals(JobStatus.SCHEDULED,
+          repo.getJobById(jobId).getJob().getStatus());
+    }
+  }
+
+  protected void setUp() throws Exception {
+    workingDir = File.createTempFile("logjobrepo", "");
+    workingDir.delete();
+    workingDir.mkdirs();
+    repo = new LogJobRepository(workingDir, -1, true);
+  }
+
+  protected void tearDown() throws Exception {
+    repo.close();
+    FileUtils.deleteDirectory(workingDir);
+  }
+
+  private static JobSpec newJobSpec(String jobId, String value) {
+    Job job = new Job(jobId, "job", "org.example.JobInstance",
+        NameValueJobInput.class.getName(), "queue", 3);
+    job.setStatus(JobStatus.QUEUED);
+    job.setReady(false);
+    NameValueJobInput input = new NameValueJobInput();
+    input.setNameValuePair("key", value);
+    return new JobSpec(input, job);
+  }
+
+}
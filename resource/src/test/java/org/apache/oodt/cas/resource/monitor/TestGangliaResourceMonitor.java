@@ -27,6 +27,7 @@ import org.apache.oodt.cas.resource.structs.ResourceNode;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.net.URL;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -60,6 +61,7 @@ public class TestGangliaResourceMonitor extends TestCase {
 
     @Override
     protected void tearDown(){
+        gangliaResourceMonitor.stop();
         mockGmetad.remove();
     }
 
@@ -131,6 +133,40 @@ public class TestGangliaResourceMonitor extends TestCase {
     	}
     }
 
+    public void testGetNodeByURL() throws Exception {
+        ResourceNode node = gangliaResourceMonitor.getNodeByURL(
+            new URL("http://localhost2:8649"));
+        assertNotNull(node);
+        assertEquals("localhost2", node.getNodeId());
+        assertNull(gangliaResourceMonitor.getNodeByURL(
+            new URL("http://localhost2:8650")));
+    }
+
+    public void testSnapshot() throws Exception {
+        assertEquals(0, gangliaResourceMonitor.getFailedPolls());
+        assertTrue(gangliaResourceMonitor.getLastPollLatencyMillis() >= 0);
+        assertTrue(gangliaResourceMonitor.getSnapshotAgeMillis() < 60000L);
+
+        // callers get their own copies of the nodes
+        ResourceNode node = gangliaResourceMonitor.getNodeById("localhost");
+        node.setCapacity(42);
+        assertFalse(42 == gangliaResourceMonitor.getNodeById("localhost")
+            .getCapacity());
+    }
+
+    public void testUnreachableGmetadKeepsLastSnapshot() throws Exception {
+        // point the localhost meta daemon at a port nothing listens on
+        ResourceNode gmetad = new ResourceNode();
+        gmetad.setIpAddr(new URL("http://localhost:1"));
+        gangliaResourceMonitor.addNode(gmetad);
+
+        assertEquals(1, gangliaResourceMonitor.getFailedPolls());
+        assertEquals(3, gangliaResourceMonitor.getNodes().size());
+        ResourceNode resourceNode = new ResourceNode();
+        resourceNode.setId("localhost");
+        assertEquals(1, gangliaResourceMonitor.getLoad(resourceNode));
+    }
+
     private void runMockGmetad() {
         int port = Integer.valueOf(System
                 .getProperty("org.apache.oodt.cas.resource.monitor.ganglia.gemtad.host.port"));
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.resource.scheduler;
+
+//JDK imports
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+//OODT imports
+import org.apache.oodt.cas.resource.batchmgr.Batchmgr;
+import org.apache.oodt.cas.resource.jobqueue.JobStack;
+import org.apache.oodt.cas.resource.jobrepo.JobRepository;
+import org.apache.oodt.cas.resource.jobrepo.MemoryJobRepository;
+import org.apache.oodt.cas.resource.monitor.AssignmentMonitor;
+import org.apache.oodt.cas.resource.monitor.Monitor;
+import org.apache.oodt.cas.resource.structs.Job;
+import org.apache.oodt.cas.resource.structs.JobSpec;
+import org.apache.oodt.cas.resource.structs.ResourceNode;
+
+//Junit imports
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * Test Suite for the {@link LRUScheduler}.
+ * </p>.
+ */
+public class TestLRUScheduler extends TestCase {
+
+    private RecordingBatchmgr batchmgr;
+
+    private LRUScheduler scheduler;
+
+    private String oldWaitSeconds;
+
+    protected void setUp() throws Exception {
+        oldWaitSeconds = System.setProperty(
+                "org.apache.oodt.cas.resource.scheduler.wait.seconds", "60");
+
+        List<ResourceNode> nodes = Arrays.asList(new ResourceNode("node1",
+                null, 2), new ResourceNode("node2", null, 2));
+        QueueManager queues = new QueueManager();
+        queues.addQueue("quick");
+        queues.addNodeToQueue("node1", "quick");
+        queues.addNodeToQueue("node2", "quick");
+
+        batchmgr = new RecordingBatchmgr();
+        JobRepository repo = new MemoryJobRepository();
+        scheduler = new LRUScheduler(new AssignmentMonitor(nodes), batchmgr,
+                new JobStack(1000, repo), new LRUQueueManager(queues));
+    }
+
+    protected void tearDown() throws Exception {
+        if (oldWaitSeconds != null) {
+            System.setProperty(
+                    "org.apache.oodt.cas.resource.scheduler.wait.seconds",
+                    oldWaitSeconds);
+        } else {
+            System.clearProperty("org.apache.oodt.cas.resource.scheduler.wait.seconds");
+        }
+    }
+
+    public void testSpreadsJobsAcrossNodes() throws Exception {
+        assertTrue(scheduler.schedule(newJob("job1", 1)));
+        assertTrue(scheduler.schedule(newJob("job2", 1)));
+        assertTrue(scheduler.schedule(newJob("job3", 1)));
+        assertTrue(scheduler.schedule(newJob("job4", 1)));
+        assertEquals(Arrays.asList("node1", "node2", "node1", "node2"),
+                batchmgr.getNodeIds());
+
+        // the queue is full: the job goes back on the queue
+        assertFalse(scheduler.schedule(newJob("job5", 1)));
+        assertEquals(1, scheduler.getJobQueue().getSize());
+        assertEquals(4, batchmgr.getNodeIds().size());
+    }
+
+    public void testPicksNodeWithCapacityForLoad() throws Exception {
+        assertTrue(scheduler.schedule(newJob("job1", 1)));
+        assertEquals("node2", scheduler.nodeAvailable(newJob("job2", 2))
+                .getNodeId());
+        assertTrue(scheduler.schedule(newJob("job2", 2)));
+
+        // neither node has 2 free any more
+        assertNull(scheduler.nodeAvailable(newJob("job3", 2)));
+
+        // returning load makes the node available again
+        ResourceNode node1 = scheduler.getMonitor().getNodeById("node1");
+        scheduler.getMonitor().reduceLoad(node1, 1);
+        assertEquals("node1", scheduler.nodeAvailable(newJob("job3", 2))
+                .getNodeId());
+    }
+
+    public void testDrainsQueueWithoutWaiting() throws Exception {
+        Thread schedulerThread = new Thread(scheduler);
+        schedulerThread.setDaemon(true);
+        schedulerThread.start();
+
+        for (int i = 0; i < 6; i++) {
+            scheduler.getJobQueue().addJob(newJob("job" + i, 1));
+        }
+        // four fit, well before the 60 second wait is up
+        assertTrue(batchmgr.awaitJobs(4, 5000));
+
+        // a finished job makes room for another one
+        Monitor monitor = scheduler.getMonitor();
+        monitor.reduceLoad(monitor.getNodeById("node1"), 1);
+        assertTrue(batchmgr.awaitJobs(5, 5000));
+        assertEquals("node1", batchmgr.getNodeIds().get(4));
+    }
+
+    private JobSpec newJob(String id, int load) {
+        Job job = new Job(id, id, null, null, "quick", load);
+        return new JobSpec(null, job);
+    }
+
+    /* records where jobs were sent instead of running them */
+    private static class RecordingBatchmgr implements Batchmgr {
+
+        private final List<String> nodeIds = new Vector<String>();
+
+        public synchronized boolean executeRemotely(JobSpec job,
+                ResourceNode resNode) {
+            nodeIds.add(resNode.getNodeId());
+            notifyAll();
+            return true;
+        }
+
+        synchronized List<String> getNodeIds() {
+            return new Vector<String>(nodeIds);
+        }
+
+        synchronized boolean awaitJobs(int numJobs, long timeout)
+                throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (nodeIds.size() < numJobs) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+
+        public void setMonitor(Monitor monitor) {
+        }
+
+        public void setJobRepository(JobRepository repository) {
+        }
+
+        public boolean killJob(String jobId, ResourceNode node) {
+            return false;
+        }
+
+        public String getExecutionNode(String jobId) {
+            return null;
+        }
+
+        public List getJobsOnNode(String nodeId) {
+            return new Vector();
+        }
+    }
+
+}
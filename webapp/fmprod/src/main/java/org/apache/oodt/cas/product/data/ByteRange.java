@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.product.data;
+
+/**
+ *
+ * A single byte range of a file, as asked for by an HTTP <code>Range</code>
+ * header. Only single ranges are supported: a request for several ranges is
+ * answered with the whole file, which HTTP allows.
+ *
+ * @version $Revision$
+ */
+public final class ByteRange {
+
+  private static final String BYTES_UNIT = "bytes=";
+
+  private final long start;
+
+  private final long end;
+
+  private final long length;
+
+  private ByteRange(long start, long end, long length) {
+    this.start = start;
+    this.end = end;
+    this.length = length;
+  }
+
+  /**
+   * @param header
+   *          The value of the <code>Range</code> header, or null.
+   * @param length
+   *          The length of the file.
+   * @return The range asked for, or null if the whole file should be sent.
+   *         The range may not be satisfiable; see {@link #isSatisfiable()}.
+   */
+  public static ByteRange parse(String header, long length) {
+    if (header == null || !header.startsWith(BYTES_UNIT)) {
+      return null;
+    }
+    String spec = header.substring(BYTES_UNIT.length()).trim();
+    if (spec.indexOf(',') != -1) {
+      return null;
+    }
+    int dash = spec.indexOf('-');
+    if (dash == -1) {
+      return null;
+    }
+
+    try {
+      String first = spec.substring(0, dash).trim();
+      String last = spec.substring(dash + 1).trim();
+      if (first.length() == 0) {
+        // a suffix: the last N bytes
+        long suffix = Long.parseLong(last);
+        if (suffix <= 0) {
+          return new ByteRange(length, length - 1, length);
+        }
+        return new ByteRange(Math.max(0, length - suffix), length - 1, length);
+      }
+
+      long start = Long.parseLong(first);
+      long end = last.length() == 0 ? length - 1 : Math.min(
+          Long.parseLong(last), length - 1);
+      if (start < 0 || (last.length() > 0 && Long.parseLong(last) < start)) {
+        return null;
+      }
+      return new ByteRange(start, end, length);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return Whether or not any of the range lies within the file. If not, the
+   *         request should be answered with a 416.
+   */
+  public boolean isSatisfiable() {
+    return start < length && start <= end;
+  }
+
+  /**
+   * @return The offset of the first byte of the range.
+   */
+  public long getStart() {
+    return start;
+  }
+
+  /**
+   * @return The offset of the last byte of the range.
+   */
+  public long getEnd() {
+    return end;
+  }
+
+  /**
+   * @return The number of bytes in the range.
+   */
+  public long getCount() {
+    return end - start + 1;
+  }
+
+  /**
+   * @return The value of the <code>Content-Range</code> header for this
+   *         range.
+   */
+  public String toContentRange() {
+    return isSatisfiable() ? "bytes " + start + "-" + end + "/" + length
+        : "bytes */" + length;
+  }
+
+}
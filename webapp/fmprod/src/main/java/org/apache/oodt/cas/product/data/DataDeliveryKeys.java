@@ -33,5 +33,17 @@ public interface DataDeliveryKeys {
   String CONTENT_LENGTH_HDR = "Content-Length";
 
   String CONTENT_DISPOSITION_HDR = "Content-Disposition";
+
+  String CONTENT_RANGE_HDR = "Content-Range";
+
+  String ACCEPT_RANGES_HDR = "Accept-Ranges";
+
+  String RANGE_HDR = "Range";
+
+  String IF_RANGE_HDR = "If-Range";
+
+  String ETAG_HDR = "ETag";
+
+  String LAST_MODIFIED_HDR = "Last-Modified";
   
 }
@@ -39,6 +39,9 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -58,6 +61,8 @@ public class DataDeliveryServlet extends HttpServlet implements
 
   public static final int INT = 512;
 
+  private static final int BUFFER_SIZE = 64 * 1024;
+
   /** Client i/f to filemgr server. */
   private FileManagerClient client;
 
@@ -114,8 +119,12 @@ public class DataDeliveryServlet extends HttpServlet implements
    * 
    * In addition, an optional <code>format</code> option can be specified to
    * indicate that the product data be zipped up and delivered back as a
-   * zip file.
-   * 
+   * zip file. The zip is written to the response as it is built.
+   *
+   * A single file that is local to this server may also be asked for in
+   * part, with a <code>Range</code> header (and <code>If-Range</code>), so
+   * that interrupted downloads can be resumed.
+   *
    * @param req
    *          Servlet request
    * @param res
@@ -169,57 +178,25 @@ public class DataDeliveryServlet extends HttpServlet implements
     product.setProductReferences(client.getProductReferences(product));
     Metadata metadata = client.getMetadata(product);
 
-    // we'll be delivering a zip
+    // we'll be delivering a zip, written out as it is built, so there is no
+    // content length to give
     res.addHeader(CONTENT_TYPE_HDR, FORMAT_ZIP);
+    res.addHeader(CONTENT_DISPOSITION_HDR, "attachment; filename=\""
+        + product.getProductName() + ".zip\"");
 
-    String productZipFilePath;
-    File productZipFile;
-    InputStream in = null;
     OutputStream o2 = null;
 
     try {
-      productZipFilePath = DataUtils.createProductZipFile(product, metadata,
-          workingDirPath);
-      productZipFile = new File(productZipFilePath);
-      String productZipFileName = productZipFile.getName();
-
-      res.addHeader(CONTENT_DISPOSITION_HDR, "attachment; filename=\""
-          + productZipFileName + "\"");
-
-      // add the content length for the zip file size
-      res.addHeader(CONTENT_LENGTH_HDR, String.valueOf(new File(
-          productZipFilePath).length()));
-
-      // now we need to read the zip file in, and write it to the output
-      // stream
-      in = new FileInputStream(productZipFile);
-
-      // Call java.io.File.delete() on the file, while still open.
-      if (!productZipFile.delete()) {
-        throw new RuntimeException("Unable to delete streaming file: ["
-            + productZipFile.getAbsolutePath() + "] while delivering!");
-      }
-
-      // 3. Deliver the data.
       o2 = res.getOutputStream();
-      byte[] buf = new byte[INT];
-      int n;
-      while ((n = in.read(buf)) != -1) {
-        o2.write(buf, 0, n);
-      }
+      StreamingZipWriter zip = new StreamingZipWriter(o2);
+      zip.addProduct(product.getProductReferences(), metadata, product
+          .getProductName(), "");
+      zip.finish();
     } catch (Exception e) {
       LOG.log(Level.SEVERE, e.getMessage());
       LOG.log(Level.WARNING, "Exception delivering data!: Message: "
           + e.getMessage());
     } finally {
-      if (in != null) {
-        try {
-          in.close();
-        } catch (Exception ignore) {
-        }
-
-      }
-
       if (o2 != null) {
         try {
           o2.close();
@@ -250,7 +227,6 @@ public class DataDeliveryServlet extends HttpServlet implements
     }
     
     Reference ref = (Reference) refs.get(index);
-    res.addHeader(CONTENT_LENGTH_HDR, String.valueOf(ref.getFileSize()));
     String contentType = (ref.getMimeType() != null
         && ref.getMimeType().getName() != null && !ref.getMimeType().getName()
         .equals("")) ? ref.getMimeType().getName() : DataUtils
@@ -264,11 +240,20 @@ public class DataDeliveryServlet extends HttpServlet implements
           "Unable to sense filename from data store URI: Message: "
               + e.getMessage());
     }
+
+    // local files can be sent in part, straight from the file
+    File file = toLocalFile(ref.getDataStoreReference());
+    if (file != null && file.isFile()) {
+      deliverLocalFile(req, res, file);
+      return;
+    }
+
+    res.addHeader(CONTENT_LENGTH_HDR, String.valueOf(ref.getFileSize()));
     URL url = new URL(ref.getDataStoreReference());
     URLConnection c = url.openConnection();
     InputStream in = c.getInputStream();
     OutputStream out = res.getOutputStream();
-    byte[] buf = new byte[INT];
+    byte[] buf = new byte[BUFFER_SIZE];
     int n;
     while ((n = in.read(buf)) != -1) {
       out.write(buf, 0, n);
@@ -276,4 +261,90 @@ public class DataDeliveryServlet extends HttpServlet implements
     in.close();
     out.close();
   }
+
+  /**
+   * Sends a file, or the single byte range of it asked for by the request's
+   * <code>Range</code> header (as long as any <code>If-Range</code> validator
+   * still matches the file), by handing it straight from its
+   * {@link FileChannel} to the response.
+   */
+  private void deliverLocalFile(HttpServletRequest req,
+      HttpServletResponse res, File file) throws IOException {
+    long length = file.length();
+    long lastModified = file.lastModified();
+    String etag = "\"" + Long.toHexString(length) + "-"
+        + Long.toHexString(lastModified) + "\"";
+    res.addHeader(ACCEPT_RANGES_HDR, "bytes");
+    res.addHeader(ETAG_HDR, etag);
+    res.addDateHeader(LAST_MODIFIED_HDR, lastModified);
+
+    ByteRange range = ByteRange.parse(req.getHeader(RANGE_HDR), length);
+    if (range != null && !ifRangeMatches(req, etag, lastModified)) {
+      // the file has changed since the client got the rest of it
+      range = null;
+    }
+    if (range != null && !range.isSatisfiable()) {
+      res.addHeader(CONTENT_RANGE_HDR, range.toContentRange());
+      res.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+      return;
+    }
+
+    long position = 0;
+    long count = length;
+    if (range != null) {
+      res.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      res.addHeader(CONTENT_RANGE_HDR, range.toContentRange());
+      position = range.getStart();
+      count = range.getCount();
+    }
+    res.addHeader(CONTENT_LENGTH_HDR, String.valueOf(count));
+
+    FileInputStream in = new FileInputStream(file);
+    OutputStream out = res.getOutputStream();
+    try {
+      FileChannel channel = in.getChannel();
+      WritableByteChannel target = Channels.newChannel(out);
+      while (count > 0) {
+        long n = channel.transferTo(position, count, target);
+        if (n <= 0) {
+          LOG.log(Level.WARNING, "File: [" + file.getAbsolutePath()
+              + "] shrank while delivering it");
+          break;
+        }
+        position += n;
+        count -= n;
+      }
+    } finally {
+      in.close();
+      out.close();
+    }
+  }
+
+  private static boolean ifRangeMatches(HttpServletRequest req, String etag,
+      long lastModified) {
+    String ifRange = req.getHeader(IF_RANGE_HDR);
+    if (ifRange == null) {
+      return true;
+    }
+    if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+      return ifRange.equals(etag);
+    }
+    try {
+      // HTTP dates only go down to the second
+      return req.getDateHeader(IF_RANGE_HDR) / 1000 == lastModified / 1000;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  private static File toLocalFile(String dataStoreRef) {
+    try {
+      URI uri = new URI(dataStoreRef);
+      return "file".equals(uri.getScheme()) ? new File(uri) : null;
+    } catch (URISyntaxException e) {
+      return null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
 }
@@ -86,9 +86,9 @@ public class DatasetDeliveryServlet extends HttpServlet implements DataDeliveryK
    * 
    * Method requires a single parameter, <code>typeID</code>, specifying a valid
    * {@link ProductType} within the filemgr. All {@link Product}s associated
-   * with the given <code>typeID</code> are packaged up (as zip files), and then
-   * aggregated and zipped and delivered as an entire collection called a
-   * <code>Dataset</code>.
+   * with the given <code>typeID</code> are streamed back, each in a directory
+   * named after the product, as a single zip of the entire collection called
+   * a <code>Dataset</code>.
    * 
    * @param req
    *          Servlet request.
@@ -116,27 +116,32 @@ public class DatasetDeliveryServlet extends HttpServlet implements DataDeliveryK
           + "]: Message: " + e.getMessage());
     }
 
-    // create a temporary product dir: we'll use working dir + typeName
-    String productDirPath = workingDirPath + type.getName();
-    if (!new File(productDirPath).mkdirs()) {
-      LOG.log(Level.WARNING,
-          "mkdirs returned false for temporary dataset dir: [" + productDirPath
-              + "]: errors may follow");
-    }
-
-    // use the pagination API to iterate over each product
-    // for each product, zip it up
-    // after you zip up all products then create the dataset zip
-
     ProductPage page;
 
     try {
       page = client.getFirstPage(type);
-      if (page == null || (page.getPageProducts() == null) || (page.getPageProducts().size() == 0)) {
-        throw new ServletException("No products for dataset: ["
-            + type.getName() + "]");
-      }
+    } catch (Exception e) {
+      LOG.log(Level.SEVERE, e.getMessage());
+      throw new ServletException(e.getMessage());
+    }
+    if (page == null || (page.getPageProducts() == null) || (page.getPageProducts().size() == 0)) {
+      throw new ServletException("No products for dataset: ["
+          + type.getName() + "]");
+    }
+
+    // use the pagination API to iterate over each product, writing each
+    // product's files under a directory of its own in the dataset zip as we
+    // go, so that nothing is staged on disk and the client starts receiving
+    // the dataset straight away
+    res.addHeader(CONTENT_TYPE_HDR, FORMAT_ZIP);
+    res.addHeader(CONTENT_DISPOSITION_HDR, "attachment; filename=\""
+        + type.getName() + ".zip\"");
 
+    OutputStream o2 = null;
+
+    try {
+      o2 = res.getOutputStream();
+      StreamingZipWriter zip = new StreamingZipWriter(o2);
       Map productHash = new ConcurrentHashMap();
 
       do {
@@ -148,7 +153,8 @@ public class DatasetDeliveryServlet extends HttpServlet implements DataDeliveryK
           Metadata metadata;
           product.setProductReferences(client.getProductReferences(product));
           metadata = client.getMetadata(product);
-          DataUtils.createProductZipFile(product, metadata, productDirPath);
+          zip.addProduct(product.getProductReferences(), metadata, product
+              .getProductName(), product.getProductName() + "/");
           productHash.put(product.getProductName(), ALREADY_ZIPPED);
         }
 
@@ -156,62 +162,16 @@ public class DatasetDeliveryServlet extends HttpServlet implements DataDeliveryK
 
       } while ((page != null && !page.isLastPage())
           && (page.getPageProducts() != null && page.getPageProducts().size() > 0));
-    } catch (Exception e) {
-      LOG.log(Level.SEVERE, e.getMessage());
-      throw new ServletException(e.getMessage());
-    }
-
-    // now that all product zips have been created, create the dataset
-    // zip
-    String datasetZipFilePath;
-    File datasetZipFile = null;
-    InputStream in = null;
-    OutputStream o2 = null;
-
-    try {
-      datasetZipFilePath = DataUtils.createDatasetZipFile(type, productDirPath);
-
-      datasetZipFile = new File(datasetZipFilePath);
-      String datasetZipFileName = datasetZipFile.getName();
-
-      res.addHeader(CONTENT_DISPOSITION_HDR, "attachment; filename=\""
-          + datasetZipFileName + "\"");
 
-      // add the content length for the zip file size
-      res.addHeader(CONTENT_LENGTH_HDR, String.valueOf(new File(
-          datasetZipFilePath).length()));
-
-      // now we need to read the zip file in, and write it to the output
-      // stream
-      in = new FileInputStream(datasetZipFile);
-
-      // Call java.io.File.delete() on the file, while still open.
-      if (!datasetZipFile.delete()) {
-        throw new RuntimeException("Unable to delete streaming file: ["
-            + datasetZipFile.getAbsolutePath() + "] while delivering!");
-      }
-
-      // 3. Deliver the data.
-      o2 = res.getOutputStream();
-      byte[] buf = new byte[INT];
-      int n;
-      while ((n = in.read(buf)) != -1) {
-        o2.write(buf, 0, n);
-      }
+      // add met file
+      zip.addMetadata(type.getTypeMetadata(), type.getName() + ".met");
+      zip.finish();
 
     } catch (Exception e) {
       LOG.log(Level.SEVERE, e.getMessage());
       LOG.log(Level.WARNING, "Exception delivering dataset: Message: "
           + e.getMessage());
     } finally {
-      if (in != null) {
-        try {
-          in.close();
-        } catch (Exception ignore) {
-        }
-
-      }
-
       if (o2 != null) {
         try {
           o2.close();
@@ -219,12 +179,6 @@ public class DatasetDeliveryServlet extends HttpServlet implements DataDeliveryK
         }
 
       }
-
-      // now try and remove the tmp working directory for the
-      // dataset zip
-      if (datasetZipFile != null) {
-        datasetZipFile.getParentFile().delete();
-      }
     }
 
   }
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.product.data;
+
+//OODT imports
+import org.apache.oodt.cas.filemgr.structs.Reference;
+import org.apache.oodt.cas.metadata.Metadata;
+import org.apache.oodt.cas.metadata.SerializableMetadata;
+
+//JDK imports
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ *
+ * Writes products, and their metadata, as a zip straight to an
+ * {@link OutputStream} (e.g., a servlet response) so that nothing has to be
+ * staged on disk first and the first bytes go out as soon as the first file
+ * is read. Files whose contents are already compressed are STORED rather
+ * than deflated again; this means reading them twice, once to work out their
+ * CRC, which is still far cheaper than deflating them.
+ *
+ * @version $Revision$
+ */
+public class StreamingZipWriter {
+
+  /* our log stream */
+  private static final Logger LOG = Logger.getLogger(StreamingZipWriter.class
+      .getName());
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /* extensions of files not worth deflating */
+  private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(
+      Arrays.asList("zip", "gz", "tgz", "bz2", "xz", "z", "7z", "jar", "war",
+          "jpg", "jpeg", "png", "gif", "jp2", "mp3", "mp4", "mpg", "mpeg",
+          "mov"));
+
+  private final ZipOutputStream out;
+
+  private final byte[] buf = new byte[BUFFER_SIZE];
+
+  /**
+   * @param out
+   *          The stream to write the zip to. It is not closed by
+   *          {@link #finish()}.
+   */
+  public StreamingZipWriter(OutputStream out) {
+    this.out = new ZipOutputStream(out);
+  }
+
+  /**
+   * Adds a product's files followed by its metadata, as
+   * <code>&lt;metFileBaseName&gt;.met</code>. If the first reference is a
+   * directory (i.e., the product is hierarchical) the directory and
+   * everything under it is added; otherwise each referenced file is added by
+   * its name.
+   *
+   * @param references
+   *          The product's references.
+   * @param metadata
+   *          The product's metadata.
+   * @param metFileBaseName
+   *          The name, without the extension, of the met file entry.
+   * @param prefix
+   *          A directory path to put the product's entries under, ending in
+   *          "/", or the empty string.
+   * @throws IOException
+   *           If a file cannot be read or the zip cannot be written.
+   * @throws URISyntaxException
+   *           If a data store reference is not a valid URI.
+   */
+  public void addProduct(List<Reference> references, Metadata metadata,
+      String metFileBaseName, String prefix) throws IOException,
+      URISyntaxException {
+    if (prefix.length() > 0) {
+      addDirectoryEntry(prefix);
+    }
+    if (references != null && !references.isEmpty()) {
+      File rootFile = new File(new URI(references.get(0)
+          .getDataStoreReference()));
+      if (rootFile.isDirectory()) {
+        addDirectory(rootFile, prefix + rootFile.getName() + "/");
+      } else {
+        for (Reference r : references) {
+          File prodFile = new File(new URI(r.getDataStoreReference()));
+          if (prodFile.isDirectory()) {
+            LOG.log(Level.WARNING, "Data store reference is a directory. "
+                + "Not adding directory to the zip file: ["
+                + r.getDataStoreReference() + "]");
+            continue;
+          }
+          addFile(prodFile, prefix + prodFile.getName());
+        }
+      }
+    }
+    addMetadata(metadata, prefix + metFileBaseName + ".met");
+  }
+
+  /**
+   * Adds a directory, and everything under it, to the zip.
+   *
+   * @param dir
+   *          The directory to add.
+   * @param entryName
+   *          The name of the directory's entry, ending in "/".
+   * @throws IOException
+   *           If a file cannot be read or the zip cannot be written.
+   */
+  public void addDirectory(File dir, String entryName) throws IOException {
+    addDirectoryEntry(entryName);
+    File[] files = dir.listFiles();
+    if (files == null) {
+      throw new IOException("Unable to list directory: ["
+          + dir.getAbsolutePath() + "]");
+    }
+    Arrays.sort(files);
+    for (File file : files) {
+      if (file.isDirectory()) {
+        addDirectory(file, entryName + file.getName() + "/");
+      } else {
+        addFile(file, entryName + file.getName());
+      }
+    }
+  }
+
+  /**
+   * Adds a file to the zip, STORED if its name says it is already compressed
+   * and deflated otherwise.
+   *
+   * @param file
+   *          The file to add.
+   * @param entryName
+   *          The name of the file's entry.
+   * @throws IOException
+   *           If the file cannot be read or the zip cannot be written.
+   */
+  public void addFile(File file, String entryName) throws IOException {
+    ZipEntry entry = new ZipEntry(entryName);
+    entry.setTime(file.lastModified());
+    if (isCompressed(file.getName())) {
+      entry.setMethod(ZipEntry.STORED);
+      entry.setSize(file.length());
+      entry.setCompressedSize(file.length());
+      entry.setCrc(crc(file));
+    }
+    out.putNextEntry(entry);
+    InputStream in = new FileInputStream(file);
+    try {
+      int n;
+      while ((n = in.read(buf)) != -1) {
+        out.write(buf, 0, n);
+      }
+    } finally {
+      in.close();
+    }
+    out.closeEntry();
+  }
+
+  /**
+   * Adds metadata, as XML, to the zip.
+   *
+   * @param metadata
+   *          The metadata to add.
+   * @param entryName
+   *          The name of the met file's entry.
+   * @throws IOException
+   *           If the zip cannot be written.
+   */
+  public void addMetadata(Metadata metadata, String entryName)
+      throws IOException {
+    out.putNextEntry(new ZipEntry(entryName));
+    new SerializableMetadata(metadata).writeMetadataToXmlStream(out);
+    out.closeEntry();
+  }
+
+  /**
+   * Writes the zip's central directory and flushes the underlying stream,
+   * leaving it open.
+   *
+   * @throws IOException
+   *           If the zip cannot be written.
+   */
+  public void finish() throws IOException {
+    out.finish();
+    out.flush();
+  }
+
+  /**
+   * @param name
+   *          A file name.
+   * @return Whether or not the name has the extension of a file format that
+   *         is already compressed.
+   */
+  public static boolean isCompressed(String name) {
+    int dot = name.lastIndexOf('.');
+    return dot != -1
+        && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1)
+            .toLowerCase());
+  }
+
+  private void addDirectoryEntry(String entryName) throws IOException {
+    out.putNextEntry(new ZipEntry(entryName));
+    out.closeEntry();
+  }
+
+  private long crc(File file) throws IOException {
+    CRC32 crc = new CRC32();
+    InputStream in = new FileInputStream(file);
+    try {
+      int n;
+      while ((n = in.read(buf)) != -1) {
+        crc.update(buf, 0, n);
+      }
+    } finally {
+      in.close();
+    }
+    return crc.getValue();
+  }
+
+}
@@ -17,23 +17,16 @@
 
 package org.apache.oodt.cas.product.jaxrs.writers;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import net.lingala.zip4j.core.ZipFile;
-import net.lingala.zip4j.exception.ZipException;
-import net.lingala.zip4j.model.ZipParameters;
-import net.lingala.zip4j.util.Zip4jConstants;
-
-import org.apache.oodt.cas.metadata.Metadata;
-import org.apache.oodt.cas.metadata.SerializableMetadata;
+import org.apache.oodt.cas.product.data.StreamingZipWriter;
 import org.apache.oodt.cas.product.jaxrs.exceptions.InternalServerErrorException;
 import org.apache.oodt.cas.product.jaxrs.resources.DatasetResource;
-import org.apache.oodt.cas.product.jaxrs.resources.MetadataResource;
 import org.apache.oodt.cas.product.jaxrs.resources.ProductResource;
 
 /**
@@ -81,49 +74,17 @@ public class DatasetZipper
         throw new IOException(message);
       }
 
-      // Set up the zip file for the dataset.
-      ZipFile zipFile = new ZipFile(file);
-      ZipParameters parameters = new ZipParameters();
-      parameters.setCompressionMethod(Zip4jConstants.COMP_DEFLATE);
-      parameters.setCompressionLevel(Zip4jConstants.DEFLATE_LEVEL_NORMAL);
-
-      // Create zip archives for each product and add them to the dataset zip.
-      for (ProductResource productResource : resource.getProductResources())
+      OutputStream os = new FileOutputStream(file);
+      try
       {
-        File refFile = productZipper.createZipFile(productResource);
-        zipFile.addFile(refFile, parameters);
-        if (refFile.exists() && !refFile.delete())
-        {
-          String message = "Unable to delete a temporary product zip ("
-            + refFile.getAbsolutePath()
-            + ") after adding it to the dataset zip.";
-          LOGGER.log(Level.FINE, message);
-          throw new IOException(message);
-        }
+        writeZip(resource, os);
+      }
+      finally
+      {
+        os.close();
       }
-
-      // Add the dataset's metadata to the zip.
-      MetadataResource metadataResource = resource.getMetadataResource();
-      Metadata metadata = metadataResource.getMetadata();
-
-      ByteArrayOutputStream os = new ByteArrayOutputStream();
-      SerializableMetadata serMetadata = new SerializableMetadata(metadata);
-      serMetadata.writeMetadataToXmlStream(os);
-      ByteArrayInputStream bis = new ByteArrayInputStream(os.toByteArray());
-
-      parameters.setFileNameInZip(resource.getName() + ".met");
-      parameters.setSourceExternalStream(true);
-      zipFile.addStream(bis, parameters);
-
       return file;
     }
-
-    catch (ZipException e)
-    {
-      String message = "Unable to create a zip archive of the dataset.";
-      LOGGER.log(Level.FINE, message, e);
-      throw new InternalServerErrorException(message + " " + e.getMessage());
-    }
     catch (IOException e)
     {
       String message = "Encountered I/O problems while trying to create a zip "
@@ -132,4 +93,27 @@ public class DatasetZipper
       throw new InternalServerErrorException(message + " " + e.getMessage());
     }
   }
+
+  /**
+   * Writes a zip archive of the supplied {@link DatasetResource dataset
+   * resource} straight to an output stream, without creating a file first.
+   * Each of the dataset's products goes in a directory named after the
+   * product, followed by the dataset's metadata at the top level.
+   * @param resource the dataset resource to archive
+   * @param os the stream to write the zip archive to, which is left open
+   * @throws IOException if the zip archive could not be written
+   */
+  public void writeZip(DatasetResource resource, OutputStream os)
+    throws IOException
+  {
+    StreamingZipWriter zip = new StreamingZipWriter(os);
+    for (ProductResource productResource : resource.getProductResources())
+    {
+      productZipper.addProduct(productResource, zip,
+        productResource.getProductName() + "/");
+    }
+    zip.addMetadata(resource.getMetadataResource().getMetadata(),
+      resource.getName() + ".met");
+    zip.finish();
+  }
 }
@@ -17,27 +17,17 @@
 
 package org.apache.oodt.cas.product.jaxrs.writers;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.net.URI;
+import java.io.OutputStream;
 import java.net.URISyntaxException;
-import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import net.lingala.zip4j.core.ZipFile;
-import net.lingala.zip4j.exception.ZipException;
-import net.lingala.zip4j.model.ZipParameters;
-import net.lingala.zip4j.util.Zip4jConstants;
-
-import org.apache.oodt.cas.filemgr.structs.Reference;
-import org.apache.oodt.cas.metadata.Metadata;
-import org.apache.oodt.cas.metadata.SerializableMetadata;
+import org.apache.oodt.cas.product.data.StreamingZipWriter;
 import org.apache.oodt.cas.product.jaxrs.exceptions.InternalServerErrorException;
 import org.apache.oodt.cas.product.jaxrs.exceptions.NotFoundException;
-import org.apache.oodt.cas.product.jaxrs.resources.MetadataResource;
 import org.apache.oodt.cas.product.jaxrs.resources.ProductResource;
 
 /**
@@ -83,68 +73,68 @@ public class ProductZipper
         throw new IOException(message);
       }
 
-      // Set up the zip file.
-      ZipFile zipFile = new ZipFile(file);
-      ZipParameters parameters = new ZipParameters();
-      parameters.setCompressionMethod(Zip4jConstants.COMP_DEFLATE);
-      parameters.setCompressionLevel(Zip4jConstants.DEFLATE_LEVEL_NORMAL);
-
-      // Add all of the product's references to the zip file.
-      // Assumes that for hierarchical products, the first reference is the root
-      // directory and all of its contents are included in the product.
-      List<Reference> references = resource.getProductReferences();
-      Reference rootReference = references.get(0);
-      File rootFile = new File(new URI(rootReference.getDataStoreReference()));
-      if (rootFile.isDirectory())
+      OutputStream os = new FileOutputStream(file);
+      try
       {
-        // Add the directory and all of its contents.
-        zipFile.addFolder(rootFile, parameters);
+        writeZip(resource, os);
       }
-      else
+      finally
       {
-        // Add each file in the list of references.
-        for (Reference reference : references)
-        {
-          zipFile.addFile(new File(new URI(reference.getDataStoreReference())),
-            parameters);
-        }
+        os.close();
       }
-
-      // Add the product's metadata to the zip file.
-      MetadataResource metadataResource = resource.getMetadataResource();
-      Metadata metadata = metadataResource.getMetadata();
-
-      ByteArrayOutputStream os = new ByteArrayOutputStream();
-      SerializableMetadata serMetadata = new SerializableMetadata(metadata);
-      serMetadata.writeMetadataToXmlStream(os);
-      ByteArrayInputStream bis = new ByteArrayInputStream(os.toByteArray());
-
-      parameters.setFileNameInZip(resource.getProductName() + ".met");
-      parameters.setSourceExternalStream(true);
-      zipFile.addStream(bis, parameters);
-
       return file;
     }
-
-    catch (URISyntaxException e)
+    catch (IOException e)
     {
-      String message =
-        "Problem with the data store URI(s) for the product's reference(s).";
+      String message = "Encountered I/O problems while trying to create a zip "
+        + "archive of the product.";
       LOGGER.log(Level.FINE, message, e);
-      throw new NotFoundException(message + " " + e.getMessage());
+      throw new InternalServerErrorException(message + " " + e.getMessage());
     }
-    catch (ZipException e)
+  }
+
+  /**
+   * Writes a zip archive of the supplied {@link ProductResource product
+   * resource}, including all of the product's references and metadata,
+   * straight to an output stream, without creating a file first.
+   * @param resource the product resource to archive
+   * @param os the stream to write the zip archive to, which is left open
+   * @throws IOException if the zip archive could not be written
+   */
+  public void writeZip(ProductResource resource, OutputStream os)
+    throws IOException
+  {
+    StreamingZipWriter zip = new StreamingZipWriter(os);
+    addProduct(resource, zip, "");
+    zip.finish();
+  }
+
+  /**
+   * Adds the supplied {@link ProductResource product resource}, including all
+   * of the product's references and metadata, to a zip archive.
+   * Assumes that for hierarchical products, the first reference is the root
+   * directory and all of its contents are included in the product.
+   * @param resource the product resource to archive
+   * @param zip the zip archive to add the product to
+   * @param prefix the directory within the zip archive to add the product to,
+   * ending in "/", or the empty string for the top level
+   * @throws IOException if the product could not be added
+   */
+  void addProduct(ProductResource resource, StreamingZipWriter zip,
+    String prefix) throws IOException
+  {
+    try
     {
-      String message = "Unable to create a zip archive of the product.";
-      LOGGER.log(Level.FINE, message, e);
-      throw new InternalServerErrorException(message + " " + e.getMessage());
+      zip.addProduct(resource.getProductReferences(),
+        resource.getMetadataResource().getMetadata(),
+        resource.getProductName(), prefix);
     }
-    catch (IOException e)
+    catch (URISyntaxException e)
     {
-      String message = "Encountered I/O problems while trying to create a zip "
-        + "archive of the product.";
+      String message =
+        "Problem with the data store URI(s) for the product's reference(s).";
       LOGGER.log(Level.FINE, message, e);
-      throw new InternalServerErrorException(message + " " + e.getMessage());
+      throw new NotFoundException(message + " " + e.getMessage());
     }
   }
 }
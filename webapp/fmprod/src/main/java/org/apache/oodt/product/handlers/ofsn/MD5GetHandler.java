@@ -20,16 +20,15 @@ package org.apache.oodt.product.handlers.ofsn;
 
 //JDK imports
 
-import org.apache.commons.codec.binary.Hex;
-import org.apache.commons.io.FileUtils;
 import org.apache.oodt.product.ProductException;
+import org.apache.oodt.product.handlers.ofsn.util.ChecksumService;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
 import java.util.Properties;
+import java.util.Vector;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,6 +38,16 @@ import java.util.logging.Logger;
 /**
  * 
  * A {@link OFSNGetHandler} to perform an MD5 for a file on the server side.
+ * Checksums are computed by a {@link ChecksumService}, and so only once for
+ * each version of a file, however many chunks it is requested in. The
+ * handler's optional properties are:
+ * <ul>
+ * <li><code>checksumCacheFile</code>: a file to keep the checksums in across
+ * restarts.</li>
+ * <li><code>precomputeDirs</code>: a comma separated list of directories under
+ * which to compute the checksums of all files, in the background, when the
+ * handler is configured.</li>
+ * </ul>
  * 
  * @author mattmann
  * @version $Revision$
@@ -46,15 +55,14 @@ import java.util.logging.Logger;
  */
 public class MD5GetHandler implements OFSNGetHandler {
 
-  private MessageDigest md = null;
+  private static final String CHECKSUM_CACHE_FILE = "checksumCacheFile";
+
+  private static final String PRECOMPUTE_DIRS = "precomputeDirs";
+
+  private ChecksumService checksums = null;
   private static Logger LOG = Logger.getLogger(MD5GetHandler.class.getName());
   public MD5GetHandler() throws InstantiationException {
-    try {
-      this.md = MessageDigest.getInstance("MD5");
-    } catch (NoSuchAlgorithmException e) {
-      LOG.log(Level.SEVERE, e.getMessage());
-      throw new InstantiationException(e.getMessage());
-    }
+    this.checksums = newChecksumService(null);
   }
 
   /*
@@ -65,8 +73,26 @@ public class MD5GetHandler implements OFSNGetHandler {
    * util.Properties)
    */
   public void configure(Properties conf) {
-    // TODO Auto-generated method stub
+    String cacheFile = conf.getProperty(CHECKSUM_CACHE_FILE);
+    if (cacheFile != null) {
+      try {
+        this.checksums = newChecksumService(new File(cacheFile));
+      } catch (InstantiationException e) {
+        LOG.log(Level.WARNING, "Unable to use checksum cache: [" + cacheFile
+            + "]: Message: " + e.getMessage());
+      }
+    }
 
+    String precomputeDirs = conf.getProperty(PRECOMPUTE_DIRS);
+    if (precomputeDirs != null) {
+      List<File> dirs = new Vector<File>();
+      for (String dir : precomputeDirs.split(",")) {
+        if (dir.trim().length() > 0) {
+          dirs.add(new File(dir.trim()));
+        }
+      }
+      this.checksums.precompute(dirs);
+    }
   }
 
   /*
@@ -79,13 +105,13 @@ public class MD5GetHandler implements OFSNGetHandler {
   public byte[] retrieveChunk(String filepath, long offset, int length)
       throws ProductException {
     try {
-      String hash = this.hashData(FileUtils.readFileToByteArray(new File(
-          filepath)));
+      byte[] hashBytes = this.checksums.getChecksum(new File(filepath))
+          .getBytes();
       byte[] retBytes = new byte[length];
-      byte[] hashBytes = hash.getBytes();      
-      ByteArrayInputStream is = new ByteArrayInputStream(hashBytes);
-      is.skip(offset);
-      is.read(retBytes, 0, length);
+      if (offset < hashBytes.length) {
+        System.arraycopy(hashBytes, (int) offset, retBytes, 0, Math.min(
+            length, hashBytes.length - (int) offset));
+      }
       return retBytes;
     } catch (IOException e) {
       LOG.log(Level.SEVERE, e.getMessage());
@@ -103,8 +129,7 @@ public class MD5GetHandler implements OFSNGetHandler {
    */
   public long sizeOf(String filepath) {
     try {
-      String hash = this.hashData(FileUtils.readFileToByteArray(new File(
-          filepath)));
+      String hash = this.checksums.getChecksum(new File(filepath));
       return hash.getBytes().length;
     } catch (IOException e) {
       LOG.log(Level.SEVERE, e.getMessage());
@@ -129,15 +154,19 @@ public class MD5GetHandler implements OFSNGetHandler {
     }
 
     String filepath = args[0];
-    String hashString = new MD5GetHandler().hashData(FileUtils
-        .readFileToByteArray(new File(filepath)));
+    String hashString = new MD5GetHandler().checksums.getChecksum(new File(
+        filepath));
     System.out.println(hashString);
   }
 
-  private String hashData(byte[] dataToHash) {
-    this.md.update(dataToHash, 0, dataToHash.length);
-    byte[] hash = this.md.digest();
-    return new String(Hex.encodeHex(hash));
+  private static ChecksumService newChecksumService(File cacheFile)
+      throws InstantiationException {
+    try {
+      return new ChecksumService("MD5", cacheFile);
+    } catch (NoSuchAlgorithmException e) {
+      LOG.log(Level.SEVERE, e.getMessage());
+      throw new InstantiationException(e.getMessage());
+    }
   }
 
 }
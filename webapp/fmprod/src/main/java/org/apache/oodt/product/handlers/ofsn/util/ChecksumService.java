@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.product.handlers.ofsn.util;
+
+//APACHE imports
+import org.apache.commons.codec.binary.Hex;
+
+//JDK imports
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *
+ * Computes the checksums of files for the OFSN handlers, reading each file
+ * through a fixed size buffer rather than into memory, and remembers them for
+ * as long as the file's size and last modified time stay the same. If given a
+ * cache file, checksums are appended to it as they are computed and read back
+ * in when the service is created, so they survive restarts. Checksums can also
+ * be computed ahead of time, in the background, for everything under a set of
+ * directories.
+ *
+ * @version $Revision$
+ *
+ */
+public class ChecksumService {
+
+  private static final Logger LOG = Logger.getLogger(ChecksumService.class
+      .getName());
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final String algorithm;
+
+  private final File cacheFile;
+
+  /* absolute path to what we know about it */
+  private final Map<String, Checksum> checksums = new ConcurrentHashMap<String, Checksum>();
+
+  /* checksums being computed, so that concurrent requests share the work */
+  private final ConcurrentMap<String, FutureTask<Checksum>> pending = new ConcurrentHashMap<String, FutureTask<Checksum>>();
+
+  private Writer cacheWriter = null;
+
+  /**
+   * @param algorithm
+   *          The {@link MessageDigest} algorithm to use, e.g., MD5.
+   * @param cacheFile
+   *          The file to persist checksums to, or null to only keep them in
+   *          memory.
+   * @throws NoSuchAlgorithmException
+   *           If the algorithm is not supported.
+   */
+  public ChecksumService(String algorithm, File cacheFile)
+      throws NoSuchAlgorithmException {
+    MessageDigest.getInstance(algorithm);
+    this.algorithm = algorithm;
+    this.cacheFile = cacheFile;
+    if (cacheFile != null) {
+      loadCache();
+    }
+  }
+
+  /**
+   * @param file
+   *          The file to checksum.
+   * @return The hex encoded checksum of the file's contents.
+   * @throws IOException
+   *           If the file cannot be read.
+   */
+  public String getChecksum(File file) throws IOException {
+    final File absFile = file.getAbsoluteFile();
+    final String path = absFile.getPath();
+    if (!absFile.isFile()) {
+      throw new FileNotFoundException("File: [" + path + "] does not exist");
+    }
+
+    Checksum cached = checksums.get(path);
+    if (cached != null && cached.matches(absFile)) {
+      return cached.digest;
+    }
+
+    FutureTask<Checksum> task = new FutureTask<Checksum>(
+        new Callable<Checksum>() {
+          public Checksum call() throws IOException {
+            return computeChecksum(absFile);
+          }
+        });
+    FutureTask<Checksum> running = pending.putIfAbsent(path, task);
+    if (running == null) {
+      running = task;
+    }
+
+    try {
+      if (running == task) {
+        task.run();
+      }
+      return running.get().digest;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted computing checksum of: [" + path
+          + "]");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } finally {
+      if (running == task) {
+        pending.remove(path, task);
+      }
+    }
+  }
+
+  /**
+   * Computes, on a background thread, the checksums of all the files under
+   * the given directories that aren't already known.
+   *
+   * @param roots
+   *          The directories to walk.
+   * @return The thread doing the work.
+   */
+  public Thread precompute(final List<File> roots) {
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        Stack<File> dirs = new Stack<File>();
+        for (File root : roots) {
+          dirs.push(root);
+        }
+        int computed = 0;
+        while (!dirs.isEmpty() && !Thread.currentThread().isInterrupted()) {
+          File[] files = dirs.pop().listFiles();
+          if (files == null) {
+            continue;
+          }
+          for (File file : files) {
+            if (file.isDirectory()) {
+              dirs.push(file);
+            } else if (file.isFile()) {
+              try {
+                getChecksum(file);
+                computed++;
+              } catch (IOException e) {
+                LOG.log(Level.WARNING, "Unable to checksum file: [" + file
+                    + "]: Message: " + e.getMessage());
+              }
+            }
+          }
+        }
+        LOG.log(Level.INFO, "Checked " + algorithm + " checksums of ["
+            + computed + "] files under " + roots);
+      }
+    }, "ChecksumService-precompute");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+    return thread;
+  }
+
+  private Checksum computeChecksum(File file) throws IOException {
+    // stat before reading, so that a change while we read invalidates it
+    long size = file.length();
+    long lastModified = file.lastModified();
+
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e.getMessage());
+    }
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        md.update(buffer, 0, n);
+      }
+    } finally {
+      in.close();
+    }
+
+    Checksum checksum = new Checksum(size, lastModified, new String(Hex
+        .encodeHex(md.digest())));
+    checksums.put(file.getPath(), checksum);
+    persist(file.getPath(), checksum);
+    return checksum;
+  }
+
+  /*
+   * The cache file has one line per checksum: size, last modified, digest and
+   * path, separated by spaces. Later lines for a path replace earlier ones.
+   */
+
+  private void loadCache() {
+    if (cacheFile.exists()) {
+      int lines = 0;
+      try {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new FileInputStream(cacheFile), UTF_8));
+        try {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            lines++;
+            String[] fields = line.split(" ", 4);
+            if (fields.length != 4) {
+              continue;
+            }
+            try {
+              checksums.put(fields[3], new Checksum(Long.parseLong(fields[0]),
+                  Long.parseLong(fields[1]), fields[2]));
+            } catch (NumberFormatException ignore) {
+            }
+          }
+        } finally {
+          reader.close();
+        }
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "Unable to read checksum cache: [" + cacheFile
+            + "]: Message: " + e.getMessage());
+      }
+      LOG.log(Level.INFO, "Loaded [" + checksums.size()
+          + "] checksums from cache: [" + cacheFile + "]");
+
+      if (lines > checksums.size()) {
+        compactCache();
+      }
+    }
+  }
+
+  /* rewrites the cache file with only the latest line for each path */
+  private void compactCache() {
+    File tmpFile = new File(cacheFile.getPath() + ".tmp");
+    try {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(
+          new FileOutputStream(tmpFile), UTF_8));
+      try {
+        for (Map.Entry<String, Checksum> entry : checksums.entrySet()) {
+          writer.write(entry.getValue().toLine(entry.getKey()));
+        }
+      } finally {
+        writer.close();
+      }
+      if (!tmpFile.renameTo(cacheFile)
+          && !(cacheFile.delete() && tmpFile.renameTo(cacheFile))) {
+        throw new IOException("Unable to replace: [" + cacheFile + "]");
+      }
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to compact checksum cache: [" + cacheFile
+          + "]: Message: " + e.getMessage());
+    }
+  }
+
+  private synchronized void persist(String path, Checksum checksum) {
+    if (cacheFile == null) {
+      return;
+    }
+    try {
+      if (cacheWriter == null) {
+        File parent = cacheFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+          parent.mkdirs();
+        }
+        cacheWriter = new OutputStreamWriter(new FileOutputStream(cacheFile,
+            true), UTF_8);
+      }
+      cacheWriter.write(checksum.toLine(path));
+      cacheWriter.flush();
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to write to checksum cache: ["
+          + cacheFile + "]: Message: " + e.getMessage());
+    }
+  }
+
+  private static class Checksum {
+
+    private final long size;
+
+    private final long lastModified;
+
+    private final String digest;
+
+    Checksum(long size, long lastModified, String digest) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.digest = digest;
+    }
+
+    boolean matches(File file) {
+      return file.length() == size && file.lastModified() == lastModified;
+    }
+
+    String toLine(String path) {
+      return size + " " + lastModified + " " + digest + " " + path + "\n";
+    }
+  }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.product.data;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link ByteRange} parsing of HTTP <code>Range</code> headers.
+ */
+public class TestByteRange extends TestCase {
+
+  public void testParse() {
+    ByteRange range = ByteRange.parse("bytes=10-19", 100);
+    assertEquals(10, range.getStart());
+    assertEquals(19, range.getEnd());
+    assertEquals(10, range.getCount());
+    assertEquals("bytes 10-19/100", range.toContentRange());
+
+    // open ended and past the end are cut down to the file
+    assertEquals(99, ByteRange.parse("bytes=90-", 100).getEnd());
+    assertEquals(99, ByteRange.parse("bytes=90-200", 100).getEnd());
+
+    // the last N bytes
+    range = ByteRange.parse("bytes=-30", 100);
+    assertEquals(70, range.getStart());
+    assertEquals(30, range.getCount());
+    assertEquals(0, ByteRange.parse("bytes=-300", 100).getStart());
+  }
+
+  public void testWholeFileOrUnsatisfiable() {
+    assertNull(ByteRange.parse(null, 100));
+    assertNull(ByteRange.parse("items=0-1", 100));
+    assertNull(ByteRange.parse("bytes=0-1,5-6", 100));
+    assertNull(ByteRange.parse("bytes=abc", 100));
+    assertNull(ByteRange.parse("bytes=20-10", 100));
+
+    ByteRange range = ByteRange.parse("bytes=100-", 100);
+    assertFalse(range.isSatisfiable());
+    assertEquals("bytes */100", range.toContentRange());
+    assertFalse(ByteRange.parse("bytes=-0", 100).isSatisfiable());
+    assertTrue(ByteRange.parse("bytes=99-", 100).isSatisfiable());
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.product.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.oodt.cas.filemgr.structs.Reference;
+import org.apache.oodt.cas.metadata.Metadata;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link StreamingZipWriter}.
+ */
+public class TestStreamingZipWriter extends TestCase {
+
+  private File workingDir;
+
+  @Override
+  public void setUp() throws Exception {
+    workingDir = Files.createTempDir();
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    FileUtils.forceDelete(workingDir);
+  }
+
+  public void testFlatProductsUnderDirectories() throws Exception {
+    File text = new File(workingDir, "data.txt");
+    FileUtils.writeStringToFile(text, "some product data");
+    File packed = new File(workingDir, "data.gz");
+    FileUtils.writeStringToFile(packed, "already compressed");
+
+    Metadata metadata = new Metadata();
+    metadata.addMetadata("Key", "Value");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StreamingZipWriter zip = new StreamingZipWriter(out);
+    zip.addProduct(Lists.newArrayList(
+        new Reference("file:///orig/data.txt", text.toURI().toString(), 17),
+        new Reference("file:///orig/data.gz", packed.toURI().toString(), 18)),
+        metadata, "product1", "product1/");
+    zip.addMetadata(new Metadata(), "dataset.met");
+    zip.finish();
+
+    Map<String, ZipEntry> entries = new HashMap<String, ZipEntry>();
+    Map<String, String> contents = readZip(out.toByteArray(), entries);
+    assertEquals("some product data", contents.get("product1/data.txt"));
+    assertEquals("already compressed", contents.get("product1/data.gz"));
+    assertTrue(contents.get("product1/product1.met").contains("Value"));
+    assertTrue(contents.containsKey("dataset.met"));
+    assertTrue(entries.containsKey("product1/"));
+
+    assertEquals(ZipEntry.DEFLATED, entries.get("product1/data.txt")
+        .getMethod());
+    assertEquals(ZipEntry.STORED, entries.get("product1/data.gz").getMethod());
+  }
+
+  public void testHierarchicalProduct() throws Exception {
+    File root = new File(workingDir, "root");
+    FileUtils.writeStringToFile(new File(root, "a.txt"), "a");
+    FileUtils.writeStringToFile(new File(root, "sub/b.txt"), "b");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StreamingZipWriter zip = new StreamingZipWriter(out);
+    zip.addProduct(Lists.newArrayList(
+        new Reference("file:///orig/root/", root.toURI().toString(), 4096),
+        new Reference("file:///orig/root/a.txt", new File(root, "a.txt")
+            .toURI().toString(), 1)), new Metadata(), "product", "");
+    zip.finish();
+
+    Map<String, String> contents = readZip(out.toByteArray(),
+        new HashMap<String, ZipEntry>());
+    assertEquals("a", contents.get("root/a.txt"));
+    assertEquals("b", contents.get("root/sub/b.txt"));
+    assertTrue(contents.containsKey("product.met"));
+    // the reference under the root directory is only added once
+    assertFalse(contents.containsKey("a.txt"));
+  }
+
+  private Map<String, String> readZip(byte[] bytes,
+      Map<String, ZipEntry> entries) throws Exception {
+    Map<String, String> contents = new HashMap<String, String>();
+    ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(bytes));
+    ZipEntry entry;
+    while ((entry = in.getNextEntry()) != null) {
+      entries.put(entry.getName(), entry);
+      contents.put(entry.getName(), IOUtils.toString(in));
+    }
+    in.close();
+    return contents;
+  }
+
+}
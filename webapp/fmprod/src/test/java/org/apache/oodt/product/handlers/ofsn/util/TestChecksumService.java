@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.product.handlers.ofsn.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Collections;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.io.Files;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the {@link ChecksumService}.
+ */
+public class TestChecksumService extends TestCase {
+
+  private File workingDir;
+
+  private File dataFile;
+
+  @Override
+  public void setUp() throws Exception {
+    workingDir = Files.createTempDir();
+    dataFile = new File(workingDir, "data.dat");
+    FileUtils.writeStringToFile(dataFile, "some product data");
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    FileUtils.forceDelete(workingDir);
+  }
+
+  public void testChecksumMatchesFileContents() throws Exception {
+    ChecksumService checksums = new ChecksumService("MD5", null);
+    assertEquals(DigestUtils.md5Hex("some product data"),
+        checksums.getChecksum(dataFile));
+
+    // a modified file is checksummed again
+    FileUtils.writeStringToFile(dataFile, "other product data");
+    dataFile.setLastModified(dataFile.lastModified() - 10000);
+    assertEquals(DigestUtils.md5Hex("other product data"),
+        checksums.getChecksum(dataFile));
+
+    try {
+      checksums.getChecksum(new File(workingDir, "missing.dat"));
+      fail("Checksummed a file that does not exist");
+    } catch (FileNotFoundException expected) {
+    }
+  }
+
+  public void testCacheSurvivesRestart() throws Exception {
+    File cacheFile = new File(workingDir, "md5.cache");
+    String md5 = new ChecksumService("MD5", cacheFile).getChecksum(dataFile);
+
+    // a stale checksum with the file's size and time must come from the cache
+    FileUtils.writeStringToFile(cacheFile, dataFile.length() + " "
+        + dataFile.lastModified() + " cached " + dataFile.getAbsolutePath()
+        + "\n", true);
+    ChecksumService checksums = new ChecksumService("MD5", cacheFile);
+    assertEquals("cached", checksums.getChecksum(dataFile));
+
+    // the cache file was compacted to one line per file
+    assertEquals(1, FileUtils.readLines(cacheFile).size());
+
+    dataFile.setLastModified(dataFile.lastModified() - 10000);
+    assertEquals(md5, checksums.getChecksum(dataFile));
+  }
+
+  public void testPrecompute() throws Exception {
+    File cacheFile = new File(workingDir, "md5.cache");
+    File subDir = new File(workingDir, "sub");
+    assertTrue(subDir.mkdir());
+    FileUtils.writeStringToFile(new File(subDir, "more.dat"), "more");
+
+    new ChecksumService("MD5", cacheFile).precompute(
+        Collections.singletonList(subDir)).join(10000);
+    String line = FileUtils.readFileToString(cacheFile);
+    assertTrue(line.contains(DigestUtils.md5Hex("more")));
+    assertFalse(line.contains(dataFile.getName()));
+  }
+
+}
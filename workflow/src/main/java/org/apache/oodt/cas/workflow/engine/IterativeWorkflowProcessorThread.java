@@ -75,8 +75,30 @@ public class IterativeWorkflowProcessorThread implements WorkflowStatus, CoreMet
   /** the workflow instance that this processor thread is processing */
   private WorkflowInstance workflowInst = null;
 
+  /** returned by {@link #step()} once the workflow instance is done */
+  public static final long NO_MORE_STEPS = -1;
+
+  /** returned by {@link #step()} while the workflow instance is paused */
+  public static final long PARKED = -2;
+
+  /** what {@link #step()} does next */
+  private enum Step {
+    START, NEXT_TASK, CHECK_CONDITIONS, EXECUTE, POLL_JOB, DONE, STOPPED
+  }
+
+  private Step nextStep = Step.START;
+
+  /** the task that we are on */
+  private WorkflowTask currentTask = null;
+
+  /** have we paused ourselves waiting for the current task's pre-conditions? */
+  private boolean waitingForConditions = false;
+
+  /** has {@link #step()} returned {@link #PARKED}? */
+  private boolean parked = false;
+
   /** should our workflow processor thread start running? */
-  private boolean running = false;
+  private volatile boolean running = false;
 
   /**
    * the amount of seconds to wait inbetween checking for task pre-condition
@@ -100,7 +122,7 @@ public class IterativeWorkflowProcessorThread implements WorkflowStatus, CoreMet
    * should our workflow processor thread pause, and not move onto the next
    * task?
    */
-  private boolean pause = false;
+  private volatile boolean pause = false;
 
   private Map CONDITION_CACHE = new ConcurrentHashMap();
 
@@ -141,188 +163,271 @@ public class IterativeWorkflowProcessorThread implements WorkflowStatus, CoreMet
    */
   public void run() {
     logger.debug("Starting workflow processor thread");
-    /*
-     * okay, we got into the run method, mark the start date time for the
-     * workflow instance here
-     */
-    String startDateTimeIsoStr = DateConvert.isoFormat(new Date());
-    workflowInst.setStartDateTimeIsoStr(startDateTimeIsoStr);
-    // persist it
-    persistWorkflowInstance();
-
-    while (running && taskIterator.hasNext()) {
-      if (pause) {
-        logger.debug("Skipping execution: Paused: CurrentTask: {}", getTaskNameById(workflowInst.getCurrentTaskId()));
-        continue;
+    long delay;
+    while ((delay = step()) != NO_MORE_STEPS) {
+      try {
+        if (delay == PARKED) {
+          synchronized (this) {
+            while (parked && pause && running) {
+              wait();
+            }
+            parked = false;
+          }
+        } else if (delay > 0) {
+          Thread.sleep(delay);
+        }
+      } catch (InterruptedException ignore) {
       }
+    }
+  }
 
-      WorkflowTask task = (WorkflowTask) taskIterator.next();
-      logger.debug("Selected task: {} for execution", task.getTaskName());
+  /**
+   * Moves the {@link WorkflowInstance} along as far as it can go without
+   * waiting: on to the next task, through its pre-conditions and its
+   * execution (or submission to the resource manager). Rather than sleeping,
+   * this method returns as soon as the instance has to wait for something, so
+   * that it can be called again later, by any thread: {@link #run()} simply
+   * sleeps in between calls, whereas an engine can instead schedule the next
+   * call on a timer and share a few threads between many instances. Calls
+   * must not overlap.
+   * 
+   * @return The number of milliseconds to wait before calling this method
+   *         again, {@link #PARKED} if the instance is paused and should not be
+   *         stepped again until it is resumed and {@link #unpark()}ed, or
+   *         {@link #NO_MORE_STEPS} once the instance is done.
+   */
+  public long step() {
+    while (true) {
+      switch (nextStep) {
+      case START:
+        /*
+         * okay, we got into the run method, mark the start date time for the
+         * workflow instance here
+         */
+        String startDateTimeIsoStr = DateConvert.isoFormat(new Date());
+        workflowInst.setStartDateTimeIsoStr(startDateTimeIsoStr);
+        // persist it
+        persistWorkflowInstance();
+        nextStep = Step.NEXT_TASK;
+        break;
 
-      workflowInst.setCurrentTaskId(task.getTaskId());
-      // now persist it
-      persistWorkflowInstance();
+      case NEXT_TASK:
+        if (!running || !taskIterator.hasNext()) {
+          nextStep = Step.DONE;
+          break;
+        }
+        synchronized (this) {
+          if (pause) {
+            logger.debug("Skipping execution: Paused: CurrentTask: {}",
+                getTaskNameById(workflowInst.getCurrentTaskId()));
+            parked = true;
+            return PARKED;
+          }
+        }
+
+        currentTask = (WorkflowTask) taskIterator.next();
+        logger.debug("Selected task: {} for execution", currentTask.getTaskName());
 
-      // check to see if req met fields are present
-      // if they aren't, set the status to METERROR, and then fail
-      if (!checkTaskRequiredMetadata(task, this.workflowInst.getSharedContext())) {
-        this.workflowInst.setStatus(METADATA_MISSING);
+        workflowInst.setCurrentTaskId(currentTask.getTaskId());
+        // now persist it
         persistWorkflowInstance();
-        // now break out of this run loop
-        return;
-      }
 
-      // this is where the pre-conditions come in
-      // only execute the below code when it's passed all of its
-      // pre-conditions
-      if (task.getConditions() != null) {
-        while (!satisfied(task.getConditions(), task.getTaskId()) && !isStopped()) {
+        // check to see if req met fields are present
+        // if they aren't, set the status to METERROR, and then fail
+        if (!checkTaskRequiredMetadata(currentTask, this.workflowInst.getSharedContext())) {
+          this.workflowInst.setStatus(METADATA_MISSING);
+          persistWorkflowInstance();
+          // now break out of this run loop
+          nextStep = Step.STOPPED;
+          return NO_MORE_STEPS;
+        }
+        waitingForConditions = false;
+        nextStep = Step.CHECK_CONDITIONS;
+        break;
+
+      case CHECK_CONDITIONS:
+        // this is where the pre-conditions come in
+        // only execute the below code when it's passed all of its
+        // pre-conditions
+        if (currentTask.getConditions() != null) {
+          // check to see if we've been resumed, if so, stop waiting
+          // and start
+          boolean resumed = waitingForConditions && !isPaused();
+          if (!resumed && !satisfied(currentTask.getConditions(), currentTask.getTaskId())
+              && !isStopped()) {
+            // if we're not paused, go ahead and pause us now
+            if (!isPaused()) {
+              pause();
+            }
+            waitingForConditions = true;
 
-          // if we're not paused, go ahead and pause us now
-          if (!isPaused()) {
-            pause();
+            logger.debug("Pre-conditions for task: {} unsatisfied: waiting: {} seconds before checking again.",
+                    currentTask.getTaskName(), waitForConditionSatisfy);
+            return waitForConditionSatisfy * 1000;
           }
+          waitingForConditions = false;
 
-          logger.debug("Pre-conditions for task: {} unsatisfied: waiting: {} seconds before checking again.",
-                  task.getTaskName(), waitForConditionSatisfy);
-          try {
-            Thread.sleep(waitForConditionSatisfy * 1000);
-          } catch (InterruptedException ignore) {
+          // check to see if we've been killed
+          if (isStopped()) {
+            nextStep = Step.DONE;
+            break;
           }
 
-          // check to see if we've been resumed, if so, break
-          // the loop and start
-          if (!isPaused()) {
-            break;
+          // un pause us (if needed)
+          if (isPaused()) {
+            resume();
           }
         }
+        nextStep = Step.EXECUTE;
+        break;
+
+      case EXECUTE:
+        executeTask(currentTask);
+        break;
+
+      case POLL_JOB:
+        if (!safeCheckJobComplete(this.currentJobId) && !isStopped()) {
+          // come back and check again
+          return pollingWaitTime * 1000;
+        }
+
+        // okay job is done: TODO: fix this hack
+        // the task update time was set remotely
+        // by remote task, so let's read it now
+        // from the instRepo (which will have the updated
+        // time)
 
-        // check to see if we've been killed
         if (isStopped()) {
+          // this means that this workflow was killed, so
+          // gracefully exit
+          nextStep = Step.DONE;
           break;
         }
 
-        // un pause us (if needed)
-        if (isPaused()) {
-          resume();
+        WorkflowInstance updatedInst;
+        try {
+          updatedInst = instanceRepository
+              .getWorkflowInstanceById(workflowInst.getId());
+          workflowInst = updatedInst;
+        } catch (InstanceRepositoryException e) {
+          logger.error("Unable to get updated workflow instance record, task - {}, workflowInstanceId - {} : {}",
+                  currentTask.getTaskName(), workflowInst.getId(), e);
+        }
+        logger.info("Completed task: {}", currentTask.getTaskName());
+        nextStep = Step.NEXT_TASK;
+        break;
+
+      case DONE:
+        logger.info("Completed workflow: {}", workflowInst.getWorkflow().getName());
+        if (!isStopped()) {
+          stop();
         }
+        nextStep = Step.STOPPED;
+        return NO_MORE_STEPS;
+
+      default:
+        return NO_MORE_STEPS;
       }
+    }
+  }
 
-      // task execution
-      logger.info("Executing task: {}", task.getTaskName());
-
-      WorkflowTaskInstance taskInstance = GenericWorkflowObjectFactory
-          .getTaskObjectFromClassName(task.getTaskInstanceClassName());
-      // add the TaskId and the JobId and ProcessingNode
-      // TODO: unfake the JobId
-      workflowInst.getSharedContext()
-          .replaceMetadata(TASK_ID, task.getTaskId());
-      workflowInst.getSharedContext().replaceMetadata(WORKFLOW_INST_ID,
-          workflowInst.getId());
-      workflowInst.getSharedContext().replaceMetadata(JOB_ID,
-          workflowInst.getId());
-      workflowInst.getSharedContext().replaceMetadata(PROCESSING_NODE,
-          getHostname());
-      workflowInst.getSharedContext().replaceMetadata(WORKFLOW_MANAGER_URL,
-          this.wmgrParentUrl.toString());
-      workflowInst.getSharedContext().replaceMetadata(WORKFLOW_ID,
-              workflowInst.getParentChildWorkflow().getId());
-      workflowInst.getSharedContext().replaceMetadata(WORKFLOW_NAME,
-              workflowInst.getParentChildWorkflow().getName());
-
-
-      if (rClient != null) {
-        // build up the Job
-        // and the Job Input
-        Job taskJob = new Job();
-        taskJob.setName(task.getTaskId());
-        taskJob
-            .setJobInstanceClassName("org.apache.oodt.cas.workflow.structs.TaskJob");
-        taskJob
-            .setJobInputClassName("org.apache.oodt.cas.workflow.structs.TaskJobInput");
-        taskJob.setLoadValue(task.getTaskConfig().getProperty(TASK_LOAD) != null ? 
-            Integer.parseInt(task.getTaskConfig().getProperty(TASK_LOAD)): 2);
-        taskJob
-            .setQueueName(task.getTaskConfig().getProperty(QUEUE_NAME) != null ? task
-                .getTaskConfig().getProperty(QUEUE_NAME) : DEFAULT_QUEUE_NAME);
-
-        TaskJobInput in = new TaskJobInput();
-        in.setDynMetadata(workflowInst.getSharedContext());
-        in.setTaskConfig(task.getTaskConfig());
-        in.setWorkflowTaskInstanceClassName(task.getTaskInstanceClassName());
-
-        workflowInst.setStatus(RESMGR_SUBMIT);
-        persistWorkflowInstance();
+  /**
+   * Lets a processor that was {@link #PARKED} while paused be stepped again.
+   * 
+   * @return True if the processor was parked, in which case the caller is
+   *         responsible for calling {@link #step()} again; false if it was not
+   *         (it is still being stepped, or is finished).
+   */
+  public synchronized boolean unpark() {
+    if (parked && !pause) {
+      parked = false;
+      return true;
+    }
+    return false;
+  }
 
-        try {
-          // this is * NOT * a blocking operation so when it returns
-          // the job may not actually have finished executing
-          // so we go into a waiting/sleep behavior using the passed
-          // back job id to wait until the job has actually finished
-          // executing
-
-          this.currentJobId = rClient.submitJob(taskJob, in);
-
-          while (!safeCheckJobComplete(this.currentJobId) && !isStopped()) {
-            // sleep for 5 seconds then come back
-            // and check again
-            try {
-              Thread.sleep(pollingWaitTime * 1000);
-            } catch (InterruptedException ignore) {
-            }
-          }
+  private void executeTask(WorkflowTask task) {
+    // task execution
+    logger.info("Executing task: {}", task.getTaskName());
+
+    WorkflowTaskInstance taskInstance = GenericWorkflowObjectFactory
+        .getTaskObjectFromClassName(task.getTaskInstanceClassName());
+    // add the TaskId and the JobId and ProcessingNode
+    // TODO: unfake the JobId
+    workflowInst.getSharedContext()
+        .replaceMetadata(TASK_ID, task.getTaskId());
+    workflowInst.getSharedContext().replaceMetadata(WORKFLOW_INST_ID,
+        workflowInst.getId());
+    workflowInst.getSharedContext().replaceMetadata(JOB_ID,
+        workflowInst.getId());
+    workflowInst.getSharedContext().replaceMetadata(PROCESSING_NODE,
+        getHostname());
+    workflowInst.getSharedContext().replaceMetadata(WORKFLOW_MANAGER_URL,
+        this.wmgrParentUrl.toString());
+    workflowInst.getSharedContext().replaceMetadata(WORKFLOW_ID,
+            workflowInst.getParentChildWorkflow().getId());
+    workflowInst.getSharedContext().replaceMetadata(WORKFLOW_NAME,
+            workflowInst.getParentChildWorkflow().getName());
 
-          // okay job is done: TODO: fix this hack
-          // the task update time was set remotely
-          // by remote task, so let's read it now
-          // from the instRepo (which will have the updated
-          // time)
 
-          if (isStopped()) {
-            // this means that this workflow was killed, so
-            // gracefully exit
-            break;
-          }
+    if (rClient != null) {
+      // build up the Job
+      // and the Job Input
+      Job taskJob = new Job();
+      taskJob.setName(task.getTaskId());
+      taskJob
+          .setJobInstanceClassName("org.apache.oodt.cas.workflow.structs.TaskJob");
+      taskJob
+          .setJobInputClassName("org.apache.oodt.cas.workflow.structs.TaskJobInput");
+      taskJob.setLoadValue(task.getTaskConfig().getProperty(TASK_LOAD) != null ? 
+          Integer.parseInt(task.getTaskConfig().getProperty(TASK_LOAD)): 2);
+      taskJob
+          .setQueueName(task.getTaskConfig().getProperty(QUEUE_NAME) != null ? task
+              .getTaskConfig().getProperty(QUEUE_NAME) : DEFAULT_QUEUE_NAME);
+
+      TaskJobInput in = new TaskJobInput();
+      in.setDynMetadata(workflowInst.getSharedContext());
+      in.setTaskConfig(task.getTaskConfig());
+      in.setWorkflowTaskInstanceClassName(task.getTaskInstanceClassName());
+
+      workflowInst.setStatus(RESMGR_SUBMIT);
+      persistWorkflowInstance();
 
-          WorkflowInstance updatedInst;
-          try {
-            updatedInst = instanceRepository
-                .getWorkflowInstanceById(workflowInst.getId());
-            workflowInst = updatedInst;
-          } catch (InstanceRepositoryException e) {
-            logger.error("Unable to get updated workflow instance record, task - {}, workflowInstanceId - {} : {}",
-                    task.getTaskName(), workflowInst.getId(), e);
-          }
-        } catch (JobExecutionException e) {
-          logger.error("Job execution exception using resource manager to execute job, task {} : {}",
-                  task.getTaskName(), e);
-        }
-      } else {
-        logger.debug("Updating workflow instance [{}] state as {}", workflowInst.getId(), STARTED);
-        // we started, so mark it
-        workflowInst.setStatus(STARTED);
-        // go ahead and persist the workflow instance, after we
-        // save the current task start date time
-        String currentTaskIsoStartDateTimeStr = DateConvert.isoFormat(new Date());
-        workflowInst.setCurrentTaskStartDateTimeIsoStr(currentTaskIsoStartDateTimeStr);
-        workflowInst.setCurrentTaskEndDateTimeIsoStr(null); /*
-                                                             * clear this out
-                                                             * until it's ready
-                                                             */
-        persistWorkflowInstance();
-        executeTaskLocally(taskInstance, workflowInst.getSharedContext(), task.getTaskConfig(), task.getTaskName());
-        String currentTaskIsoEndDateTimeStr = DateConvert.isoFormat(new Date());
-        workflowInst.setCurrentTaskEndDateTimeIsoStr(currentTaskIsoEndDateTimeStr);
-        persistWorkflowInstance();
-      }
+      try {
+        // this is * NOT * a blocking operation so when it returns
+        // the job may not actually have finished executing
+        // so we go into a waiting behavior using the passed
+        // back job id to wait until the job has actually finished
+        // executing
 
-      logger.info("Completed task: {}", task.getTaskName());
+        this.currentJobId = rClient.submitJob(taskJob, in);
+        nextStep = Step.POLL_JOB;
+        return;
+      } catch (JobExecutionException e) {
+        logger.error("Job execution exception using resource manager to execute job, task {} : {}",
+                task.getTaskName(), e);
+      }
+    } else {
+      logger.debug("Updating workflow instance [{}] state as {}", workflowInst.getId(), STARTED);
+      // we started, so mark it
+      workflowInst.setStatus(STARTED);
+      // go ahead and persist the workflow instance, after we
+      // save the current task start date time
+      String currentTaskIsoStartDateTimeStr = DateConvert.isoFormat(new Date());
+      workflowInst.setCurrentTaskStartDateTimeIsoStr(currentTaskIsoStartDateTimeStr);
+      workflowInst.setCurrentTaskEndDateTimeIsoStr(null); /*
+                                                           * clear this out
+                                                           * until it's ready
+                                                           */
+      persistWorkflowInstance();
+      executeTaskLocally(taskInstance, workflowInst.getSharedContext(), task.getTaskConfig(), task.getTaskName());
+      String currentTaskIsoEndDateTimeStr = DateConvert.isoFormat(new Date());
+      workflowInst.setCurrentTaskEndDateTimeIsoStr(currentTaskIsoEndDateTimeStr);
+      persistWorkflowInstance();
     }
 
-    logger.info("Completed workflow: {}", workflowInst.getWorkflow().getName());
-    if (!isStopped()) {
-      stop();
-    }
+    logger.info("Completed task: {}", task.getTaskName());
+    nextStep = Step.NEXT_TASK;
   }
 
   public WorkflowInstance getWorkflowInstance() {
@@ -331,6 +436,7 @@ public class IterativeWorkflowProcessorThread implements WorkflowStatus, CoreMet
 
   public synchronized void stop() {
     running = false;
+    notifyAll();
     // if the resource manager is active
     // then kill the current job there
     if (this.rClient != null && this.currentJobId != null) {
@@ -347,6 +453,7 @@ public class IterativeWorkflowProcessorThread implements WorkflowStatus, CoreMet
 
   public synchronized void resume() {
     pause = false;
+    notifyAll();
     workflowInst.setStatus(STARTED);
     persistWorkflowInstance();
   }
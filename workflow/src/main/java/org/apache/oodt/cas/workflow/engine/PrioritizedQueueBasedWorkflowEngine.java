@@ -62,6 +62,7 @@ public class PrioritizedQueueBasedWorkflowEngine implements WorkflowEngine {
   private final WorkflowRepository modelRepo;
   private final WorkflowLifecycleManager lifecycle;
   private final PrioritySorter prioritizer;
+  private final TaskQuerier querier;
   private WorkflowProcessorQueue processorQueue;
   private URL wmgrUrl;
   private EngineRunner runner;
@@ -78,9 +79,10 @@ public class PrioritizedQueueBasedWorkflowEngine implements WorkflowEngine {
     this.runner = runner;
     this.runner.setInstanceRepository(repo);
 
-    // Task QUEUER thread
-    TaskQuerier querier = new TaskQuerier(processorQueue, this.prioritizer,
+    // Task QUEUER thread: rescans as soon as the runner finishes a task
+    querier = new TaskQuerier(processorQueue, this.prioritizer,
         this.repo, querierWaitSeconds);
+    this.runner.addListener(querier);
     queuerThread = new Thread(querier);
     queuerThread.start();
 
@@ -125,6 +127,7 @@ public class PrioritizedQueueBasedWorkflowEngine implements WorkflowEngine {
         "Workflow created by Engine.");
     inst.setState(state);
     persist(inst);
+    querier.requestScan();
     return inst;
   }
 
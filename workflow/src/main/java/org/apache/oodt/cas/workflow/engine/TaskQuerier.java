@@ -21,6 +21,7 @@ package org.apache.oodt.cas.workflow.engine;
 import org.apache.oodt.cas.workflow.engine.processor.TaskProcessor;
 import org.apache.oodt.cas.workflow.engine.processor.WorkflowProcessor;
 import org.apache.oodt.cas.workflow.engine.processor.WorkflowProcessorHelper;
+import org.apache.oodt.cas.workflow.engine.processor.WorkflowProcessorListener;
 import org.apache.oodt.cas.workflow.engine.processor.WorkflowProcessorQueue;
 import org.apache.oodt.cas.workflow.instrepo.WorkflowInstanceRepository;
 import org.apache.oodt.cas.workflow.lifecycle.WorkflowLifecycle;
@@ -48,13 +49,13 @@ import java.util.logging.Logger;
  * @version $Revision$
  * 
  */
-public class TaskQuerier implements Runnable {
+public class TaskQuerier implements Runnable, WorkflowProcessorListener {
 
-  private boolean running;
+  private volatile boolean running;
 
   private WorkflowProcessorQueue processorQueue;
 
-  private List<WorkflowProcessor> runnableProcessors;
+  private final List<WorkflowProcessor> runnableProcessors;
 
   private PrioritySorter prioritizer;
 
@@ -62,6 +63,11 @@ public class TaskQuerier implements Runnable {
   
   private long waitSeconds;
 
+  /* guards changed, and is signalled when a rescan is wanted */
+  private final Object scanLock = new Object();
+
+  private boolean changed;
+
   private static final Logger LOG = Logger.getLogger(TaskQuerier.class
       .getName());
 
@@ -79,8 +85,8 @@ public class TaskQuerier implements Runnable {
    *          The {@link WorkflowInstanceRepository} to save the state of
    *          WorkflowInstances.
    *          
-   * @param waitSeconds The default amount of seconds to wait while dispositioning
-   *        processors
+   * @param waitSeconds The most seconds to wait between dispositioning
+   *        processors when no state change has been signalled
    */
   public TaskQuerier(WorkflowProcessorQueue processorQueue,
       PrioritySorter prioritizer, WorkflowInstanceRepository repo, long waitSeconds) {
@@ -90,6 +96,7 @@ public class TaskQuerier implements Runnable {
     this.prioritizer = prioritizer;
     this.repo = repo;
     this.waitSeconds = waitSeconds;
+    this.changed = false;
   }
 
   /**
@@ -101,29 +108,45 @@ public class TaskQuerier implements Runnable {
    * (category, running).
    * 
    * Finally the runnableProcessors list is sorted according to the given
-   * {@link #prioritizer}.
+   * {@link #prioritizer}, and any thread waiting in
+   * {@link #awaitRunnable(long)} is woken up.
+   * 
+   * Between passes the querier sleeps until a state change is signalled
+   * through {@link #notifyChange(WorkflowProcessor, ChangeType)} or
+   * {@link #requestScan()}, or until {@link #waitSeconds} have elapsed.
    */
   public void run() {
     LOG.log(Level.FINE, "TaskQuerier configured with wait seconds: ["+this.waitSeconds+"]");
     while (running) {
       List<WorkflowProcessor> processors = processorQueue.getProcessors();
-      List<WorkflowProcessor> processorsToRun = new Vector<WorkflowProcessor>();
+      if (processors == null) {
+        processors = new Vector<WorkflowProcessor>();
+      }
 
+      boolean fine = LOG.isLoggable(Level.FINE);
       for (WorkflowProcessor processor : processors) {
-        // OK now get its lifecycle
-        WorkflowProcessorHelper helper = new WorkflowProcessorHelper(
-            processor.getLifecycleManager());
-        WorkflowLifecycle lifecycle = helper
-            .getLifecycleForProcessor(processor);
-
-        LOG.log(Level.FINE, "TaskQuerier: dispositioning processor with id: ["
-            + processor.getWorkflowInstance().getId() + "]: state: "
-            + processor.getWorkflowInstance().getState());
+        if (processor.isAnyState("WaitingOnResources")) {
+          // already handed to the runnable queue: nothing to do until the
+          // runner picks it up and changes its state
+          continue;
+        }
+        if (fine) {
+          LOG.log(Level.FINE, "TaskQuerier: dispositioning processor with id: ["
+              + processor.getWorkflowInstance().getId() + "]: state: "
+              + processor.getWorkflowInstance().getState());
+        }
 
+        List<TaskProcessor> runnableTasks;
         if (!processor.isAnyCategory("done", "holding")
             && !processor.isAnyState("Executing")
-            && processor.getRunnableWorkflowProcessors().size() > 0) {
-          for (TaskProcessor tp : processor.getRunnableWorkflowProcessors()) {
+            && (runnableTasks = processor.getRunnableWorkflowProcessors()).size() > 0) {
+          // OK now get its lifecycle
+          WorkflowProcessorHelper helper = new WorkflowProcessorHelper(
+              processor.getLifecycleManager());
+          WorkflowLifecycle lifecycle = helper
+              .getLifecycleForProcessor(processor);
+          List<WorkflowProcessor> processorsToRun = new Vector<WorkflowProcessor>();
+          for (TaskProcessor tp : runnableTasks) {
             WorkflowState state = lifecycle.createState("WaitingOnResources",
                 "waiting", "Added to Runnable queue");
             tp.getWorkflowInstance().setState(state);
@@ -133,32 +156,70 @@ public class TaskQuerier implements Runnable {
             processorsToRun.add(tp);
           }
 
-          if (processorsToRun.size() > 1) {
-            prioritizer.sort(processorsToRun);
-          }
-
           synchronized (runnableProcessors) {
             if (running) {
-              runnableProcessors = processorsToRun;
+              runnableProcessors.addAll(processorsToRun);
+              if (runnableProcessors.size() > 1) {
+                prioritizer.sort(runnableProcessors);
+              }
+              runnableProcessors.notifyAll();
             }
           }
 
         } else {
-          // simply call nextState and persist it
-          LOG.log(Level.FINE, "Processor for workflow instance: ["
-              + processor.getWorkflowInstance().getId()
-              + "] not ready to Execute or already Executing: "
-              + "advancing it to next state.");
+          // simply call nextState, and persist it if it moved on
+          if (fine) {
+            LOG.log(Level.FINE, "Processor for workflow instance: ["
+                + processor.getWorkflowInstance().getId()
+                + "] not ready to Execute or already Executing: "
+                + "advancing it to next state.");
+          }
+          WorkflowState before = processor.getWorkflowInstance().getState();
           processor.nextState();
-          persist(processor.getWorkflowInstance());
+          if (processor.getWorkflowInstance().getState() != before) {
+            persist(processor.getWorkflowInstance());
+          }
         }
       }
-      
-      try{
-        Thread.currentThread().sleep(waitSeconds*1000);
+
+      awaitChange();
+    }
+  }
+
+  /**
+   * Signals that a {@link WorkflowProcessor} changed state, e.g. because its
+   * task finished executing, so that the querier disposition the queue again
+   * right away rather than waiting out {@link #waitSeconds}.
+   */
+  @Override
+  public void notifyChange(WorkflowProcessor processor, ChangeType changeType) {
+    requestScan();
+  }
+
+  /**
+   * Wakes the querier up to disposition the queue again right away, e.g.
+   * because a new workflow instance was started.
+   */
+  public void requestScan() {
+    synchronized (scanLock) {
+      changed = true;
+      scanLock.notifyAll();
+    }
+  }
+
+  private void awaitChange() {
+    long deadline = System.currentTimeMillis() + waitSeconds * 1000;
+    synchronized (scanLock) {
+      long remaining;
+      while (running && !changed
+          && (remaining = deadline - System.currentTimeMillis()) > 0) {
+        try {
+          scanLock.wait(remaining);
+        } catch (InterruptedException ignore) {
+          break;
+        }
       }
-      catch(InterruptedException ignore){}
-      
+      changed = false;
     }
   }
 
@@ -175,6 +236,12 @@ public class TaskQuerier implements Runnable {
    */
   public void setRunning(boolean running) {
     this.running = running;
+    synchronized (scanLock) {
+      scanLock.notifyAll();
+    }
+    synchronized (runnableProcessors) {
+      runnableProcessors.notifyAll();
+    }
   }
 
   /**
@@ -190,13 +257,51 @@ public class TaskQuerier implements Runnable {
    * actual {@link #runnableProcessors} {@link List}.
    * 
    * @return The next available {@link TaskProcessor} from the {@link List} of
-   *         {@link #runnableProcessors}.
+   *         {@link #runnableProcessors}, or null if there is none.
    */
   public TaskProcessor getNext() {
-    if (getRunnableProcessors().size() == 0) {
-      return null;
+    synchronized (runnableProcessors) {
+      if (runnableProcessors.size() == 0) {
+        return null;
+      }
+      return (TaskProcessor) runnableProcessors.remove(0);
+    }
+  }
+
+  /**
+   * Blocks until the {@link List} of {@link #runnableProcessors} is not
+   * empty, the querier is stopped, or the given timeout elapses.
+   * 
+   * @param timeoutMillis
+   *          The most milliseconds to wait.
+   * @return True if there is a runnable {@link TaskProcessor} available from
+   *         {@link #getNext()}, false otherwise.
+   * @throws InterruptedException
+   *           If interrupted while waiting.
+   */
+  public boolean awaitRunnable(long timeoutMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    synchronized (runnableProcessors) {
+      long remaining;
+      while (running && runnableProcessors.size() == 0
+          && (remaining = deadline - System.currentTimeMillis()) > 0) {
+        runnableProcessors.wait(remaining);
+      }
+      return runnableProcessors.size() > 0;
+    }
+  }
+
+  /**
+   * Puts a {@link TaskProcessor} taken with {@link #getNext()} that could not
+   * be run yet back at the head of the {@link #runnableProcessors}.
+   * 
+   * @param taskProcessor
+   *          The {@link TaskProcessor} to put back.
+   */
+  public void requeue(TaskProcessor taskProcessor) {
+    synchronized (runnableProcessors) {
+      runnableProcessors.add(0, taskProcessor);
     }
-    return (TaskProcessor) getRunnableProcessors().remove(0);
   }
 
   private synchronized void persist(WorkflowInstance instance) {
@@ -19,6 +19,8 @@ package org.apache.oodt.cas.workflow.engine;
 
 //JDK imports
 import org.apache.oodt.cas.workflow.engine.processor.TaskProcessor;
+import org.apache.oodt.cas.workflow.engine.processor.WorkflowProcessor;
+import org.apache.oodt.cas.workflow.engine.processor.WorkflowProcessorListener;
 import org.apache.oodt.cas.workflow.engine.runner.EngineRunner;
 import org.apache.oodt.cas.workflow.structs.ParentChildWorkflow;
 import org.apache.oodt.cas.workflow.structs.WorkflowInstance;
@@ -36,16 +38,17 @@ import java.util.logging.Logger;
  * Workflow PrioritySorter) task and then leverage the Engine's Runner to
  * execute the task.
  * 
- * The TaskRunner thread first pops a task off the list using
+ * The TaskRunner thread blocks in {@link TaskQuerier#awaitRunnable(long)}
+ * until a task is available, pops it off the list using
  * {@link TaskQuerier#getNext()} and then so long as the thread's
  * {@link #runner} has open slots as returned by
- * , and  is
- * false and {@link #isRunning()} is true, then the task is handed off to the
- * runner for execution.
+ * {@link EngineRunner#hasOpenSlots(TaskProcessor)}, and {@link #isRunning()}
+ * is true, the task is handed off to the runner for execution.
  * 
- * The TaskRunner thread can be paused during which time it waits
- *  seconds, wakes up to see if it's unpaused, and then goes
- * back to sleep if not, otherwise, resumes executing if it was unpaused.
+ * If the runner has no open slots the task is put back with
+ * {@link TaskQuerier#requeue(TaskProcessor)}, and the TaskRunner waits to be
+ * told by the runner that a task finished (or for {@link #WAIT_MILLIS} to
+ * elapse) before trying again.
  * 
  * @since Apache OODT 0.5
  * 
@@ -55,9 +58,17 @@ import java.util.logging.Logger;
  * 
  */
 // TODO(bfoster): Rename... Runner is missleading.
-public class TaskRunner implements Runnable {
+public class TaskRunner implements Runnable, WorkflowProcessorListener {
 
-  private boolean running;
+  /* the most time to block before checking whether we've been stopped */
+  private static final long WAIT_MILLIS = 1000;
+
+  private volatile boolean running;
+
+  /* guards slotFreed, and is signalled when the runner finishes a task */
+  private final Object slotLock = new Object();
+
+  private boolean slotFreed;
 
   private final TaskQuerier taskQuerier;
 
@@ -70,6 +81,8 @@ public class TaskRunner implements Runnable {
     this.running = true;
     this.taskQuerier = taskQuerier;
     this.runner = runner;
+    this.slotFreed = false;
+    this.runner.addListener(this);
   }
 
   /*
@@ -82,11 +95,25 @@ public class TaskRunner implements Runnable {
     TaskProcessor nextTaskProcessor;
 
     while (running) {
+      try {
+        if (!taskQuerier.awaitRunnable(WAIT_MILLIS)) {
+          continue;
+        }
+      } catch (InterruptedException ignore) {
+        continue;
+      }
+
       nextTaskProcessor = taskQuerier.getNext();
+      if (nextTaskProcessor == null) {
+        continue;
+      }
 
       try {
-        if (nextTaskProcessor != null && runner.hasOpenSlots(nextTaskProcessor)) {
+        if (runner.hasOpenSlots(nextTaskProcessor)) {
           runner.execute(nextTaskProcessor);
+        } else {
+          taskQuerier.requeue(nextTaskProcessor);
+          awaitOpenSlot();
         }
       } catch (Exception e) {
         LOG.log(Level.SEVERE, e.getMessage());
@@ -100,6 +127,30 @@ public class TaskRunner implements Runnable {
 
   }
 
+  /**
+   * Wakes the runner up when its {@link EngineRunner} finishes a task, since
+   * that may have freed a slot.
+   */
+  @Override
+  public void notifyChange(WorkflowProcessor processor, ChangeType changeType) {
+    synchronized (slotLock) {
+      slotFreed = true;
+      slotLock.notifyAll();
+    }
+  }
+
+  private void awaitOpenSlot() {
+    synchronized (slotLock) {
+      if (!slotFreed) {
+        try {
+          slotLock.wait(WAIT_MILLIS);
+        } catch (InterruptedException ignore) {
+        }
+      }
+      slotFreed = false;
+    }
+  }
+
   /**
    * @return the running
    */
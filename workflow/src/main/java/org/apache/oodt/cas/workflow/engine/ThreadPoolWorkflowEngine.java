@@ -35,6 +35,10 @@ import java.net.URL;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -51,6 +55,15 @@ import EDU.oswego.cs.dl.util.concurrent.PooledExecutor;
  * This WorkflowEngine provides everything needed to manage a ThreadPool using
  * Doug Lea's wonderful java.util.concurrent package that made it into JDK5.
  * 
+ * By default each workflow instance gets a pool thread of its own for as long
+ * as it runs, which it spends most of asleep, waiting for pre-conditions or
+ * resource manager jobs. In asynchronous mode instances are instead stepped
+ * through their tasks (see {@link IterativeWorkflowProcessorThread#step()})
+ * by a small scheduled pool: a thread is only taken while an instance is
+ * actually doing something, and the waits in between are timers on the
+ * shared scheduler, so thousands of long running instances can be in flight
+ * at once.
+ * 
  * @author mattmann
  * @version $Revsion$
  * 
@@ -60,6 +73,9 @@ public class ThreadPoolWorkflowEngine implements WorkflowEngine, WorkflowStatus
   /* our thread pool */
   private PooledExecutor pool = null;
 
+  /* steps workflow instances in asynchronous mode, null otherwise */
+  private ScheduledThreadPoolExecutor scheduler = null;
+
   /* our worker thread hash mapping worker threads to workflow instance ids */
   private ConcurrentHashMap workerMap = null;
 
@@ -103,8 +119,62 @@ public class ThreadPoolWorkflowEngine implements WorkflowEngine, WorkflowStatus
   public ThreadPoolWorkflowEngine(WorkflowInstanceRepository instRep,
       int queueSize, int maxPoolSize, int minPoolSize,
       long threadKeepAliveTime, boolean unlimitedQueue, URL resUrl) {
+    this(instRep, queueSize, maxPoolSize, minPoolSize, threadKeepAliveTime,
+        unlimitedQueue, resUrl, false);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param instRep
+   *          The WorkflowInstanceRepository to be used by this engine.
+   * @param queueSize
+   *          The size of the queue that the workflow engine should use
+   *          (irrelevant if unlimitedQueue is set to true, or asynchronous).
+   * @param maxPoolSize
+   *          The maximum thread pool size (the number of threads, if
+   *          asynchronous).
+   * @param minPoolSize
+   *          The minimum thread pool size.
+   * @param threadKeepAliveTime
+   *          The amount of minutes that each thread in the pool should be kept
+   *          alive.
+   * @param unlimitedQueue
+   *          Whether or not to use a queue whose bounds are dictated by the
+   *          physical memory of the underlying hardware.
+   * @param resUrl
+   *          A URL pointer to a resource manager, or null for local execution.
+   * @param asynchronous
+   *          Whether or not to step workflow instances on a shared scheduled
+   *          pool, rather than giving each its own thread.
+   */
+  public ThreadPoolWorkflowEngine(WorkflowInstanceRepository instRep,
+      int queueSize, int maxPoolSize, int minPoolSize,
+      long threadKeepAliveTime, boolean unlimitedQueue, URL resUrl,
+      boolean asynchronous) {
 
     this.instRep = instRep;
+    workerMap = new ConcurrentHashMap();
+
+    if (resUrl != null) {
+      rClient = new XmlRpcResourceManagerClient(resUrl);
+    }
+
+    if (asynchronous) {
+      scheduler = new ScheduledThreadPoolExecutor(Math.max(1, maxPoolSize),
+          new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+              Thread t = new Thread(r, "ThreadPoolWorkflowEngine-"
+                  + count.incrementAndGet());
+              t.setDaemon(true);
+              return t;
+            }
+          });
+      return;
+    }
+
     Channel c;
     if (unlimitedQueue) {
       c = new LinkedQueue();
@@ -115,12 +185,6 @@ public class ThreadPoolWorkflowEngine implements WorkflowEngine, WorkflowStatus
     pool = new PooledExecutor(c, maxPoolSize);
     pool.setMinimumPoolSize(minPoolSize);
     pool.setKeepAliveTime(1000 * 60 * threadKeepAliveTime);
-
-    workerMap = new ConcurrentHashMap();
-
-    if (resUrl != null) {
-      rClient = new XmlRpcResourceManagerClient(resUrl);
-    }
   }
 
   /*
@@ -177,6 +241,9 @@ public class ThreadPoolWorkflowEngine implements WorkflowEngine, WorkflowStatus
 
     // okay, all good
     worker.resume();
+    if (scheduler != null && worker.unpark()) {
+      schedule(worker, 0);
+    }
 
   }
 
@@ -211,10 +278,14 @@ public class ThreadPoolWorkflowEngine implements WorkflowEngine, WorkflowStatus
     wInst.setStatus(QUEUED);
     persistWorkflowInstance(wInst);
 
-    try {
-      pool.execute(worker);
-    } catch (InterruptedException e) {
-      throw new EngineException(e);
+    if (scheduler != null) {
+      schedule(worker, 0);
+    } else {
+      try {
+        pool.execute(worker);
+      } catch (InterruptedException e) {
+        throw new EngineException(e);
+      }
     }
 
     return wInst;
@@ -431,6 +502,31 @@ public class ThreadPoolWorkflowEngine implements WorkflowEngine, WorkflowStatus
     return diffSecs / 60.0;
   }
 
+  /*
+   * Steps the worker after the given delay, and keeps on scheduling it for as
+   * long as it has steps left to take. A parked worker is scheduled again
+   * when it is resumed.
+   */
+  private void schedule(final IterativeWorkflowProcessorThread worker,
+      long delayMillis) {
+    scheduler.schedule(new Runnable() {
+      public void run() {
+        long next;
+        try {
+          next = worker.step();
+        } catch (RuntimeException e) {
+          LOG.log(Level.SEVERE, "Exception processing workflow instance: ["
+              + worker.getWorkflowInstance().getId() + "]: Message: "
+              + e.getMessage(), e);
+          next = IterativeWorkflowProcessorThread.NO_MORE_STEPS;
+        }
+        if (next >= 0) {
+          schedule(worker, next);
+        }
+      }
+    }, delayMillis, TimeUnit.MILLISECONDS);
+  }
+
   private synchronized void persistWorkflowInstance(WorkflowInstance wInst)
       throws EngineException {
 
@@ -46,6 +46,7 @@ public class ThreadPoolWorkflowEngineFactory implements WorkflowEngineFactory {
   private static final String THREAD_KEEP_ALIVE_PROPERTY = "org.apache.oodt.cas.workflow.engine.threadKeepAlive.minutes";
   private static final String UNLIMITED_QUEUE_PROPERTY = "org.apache.oodt.cas.workflow.engine.unlimitedQueue";
   private static final String RESMGR_URL_PROPERTY = "org.apache.oodt.cas.workflow.engine.resourcemgr.url";
+  private static final String ASYNCHRONOUS_PROPERTY = "org.apache.oodt.cas.workflow.engine.asynchronous";
 
   private static final int DEFAULT_QUEUE_SIZE = 10;
   private static final int DEFAULT_MAX_POOL_SIZE = 10;
@@ -56,7 +57,8 @@ public class ThreadPoolWorkflowEngineFactory implements WorkflowEngineFactory {
   public WorkflowEngine createWorkflowEngine() {
     return new ThreadPoolWorkflowEngine(getWorkflowInstanceRepository(),
         getQueueSize(), getMaxPoolSize(), getMinPoolSize(),
-        getThreadKeepAliveMinutes(), isUnlimitedQueue(), getResmgrUrl());
+        getThreadKeepAliveMinutes(), isUnlimitedQueue(), getResmgrUrl(),
+        isAsynchronous());
   }
 
   protected WorkflowInstanceRepository getWorkflowInstanceRepository() {
@@ -96,4 +98,8 @@ public class ThreadPoolWorkflowEngineFactory implements WorkflowEngineFactory {
   protected boolean isUnlimitedQueue() {
     return getBoolean(UNLIMITED_QUEUE_PROPERTY);
   }
+
+  protected boolean isAsynchronous() {
+    return getBoolean(ASYNCHRONOUS_PROPERTY);
+  }
 }
@@ -99,6 +99,7 @@ public class AsynchronousLocalEngineRunner extends AbstractEngineRunnerBase {
           taskProcessor.getWorkflowInstance().setState(state);
           persist(taskProcessor.getWorkflowInstance());
         }
+        notifyListeners(taskProcessor);
 
       }
 
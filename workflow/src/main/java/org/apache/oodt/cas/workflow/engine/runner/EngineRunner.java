@@ -17,9 +17,15 @@
 package org.apache.oodt.cas.workflow.engine.runner;
 
 //OODT imports
+import org.apache.oodt.cas.workflow.engine.ChangeType;
 import org.apache.oodt.cas.workflow.engine.processor.TaskProcessor;
+import org.apache.oodt.cas.workflow.engine.processor.WorkflowProcessorListener;
 import org.apache.oodt.cas.workflow.instrepo.WorkflowInstanceRepository;
 
+//JDK imports
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  *
  * Obfuscates the underlying substrate on which a {@link org.apache.oodt.cas.workflow.structs.WorkflowTask} should
@@ -32,6 +38,8 @@ import org.apache.oodt.cas.workflow.instrepo.WorkflowInstanceRepository;
  */
 public abstract class EngineRunner {
 
+  private final List<WorkflowProcessorListener> listeners = new CopyOnWriteArrayList<WorkflowProcessorListener>();
+
   /**
    * Executes a {@link TaskProcessor} on an execution substrate. Ideally there
    * will only ever be two of these substrates, one for local execution, and
@@ -68,4 +76,27 @@ public abstract class EngineRunner {
   
   public abstract void setInstanceRepository(WorkflowInstanceRepository instRep);
 
+  /**
+   * Registers a listener to be notified whenever a {@link TaskProcessor} this
+   * runner executed finishes, so that freed slots and newly runnable tasks can
+   * be picked up without polling.
+   *
+   * @param listener The listener to notify.
+   */
+  public void addListener(WorkflowProcessorListener listener) {
+    this.listeners.add(listener);
+  }
+
+  /**
+   * Notifies the registered listeners that the given {@link TaskProcessor}
+   * has finished executing.
+   *
+   * @param taskProcessor The {@link TaskProcessor} that finished.
+   */
+  protected void notifyListeners(TaskProcessor taskProcessor) {
+    for (WorkflowProcessorListener listener : this.listeners) {
+      listener.notifyChange(taskProcessor, ChangeType.STATE);
+    }
+  }
+
 }
@@ -75,7 +75,6 @@ import java.util.logging.Logger;
 public class LuceneWorkflowInstanceRepository extends
         AbstractPaginatibleInstanceRepository {
     Directory indexDir = null;
-    private DirectoryReader reader;
     /* the path to the index directory for this catalog */
 
     public static final int MERGE_FACTOR = 20;
@@ -90,6 +89,9 @@ public class LuceneWorkflowInstanceRepository extends
     private static UUIDGenerator generator = UUIDGenerator.getInstance();
     private int mergeFactor = 20;
 
+    /* the shared writer and searchers, in near real time mode */
+    private NearRealTimeIndex nrtIndex = null;
+
     /**
      * 
      */
@@ -103,6 +105,50 @@ public class LuceneWorkflowInstanceRepository extends
         }
     }
 
+    /**
+     * Creates a repository in near real time mode: the index is kept open by
+     * a single writer for as long as the repository is in use (so nothing
+     * else may write to it), updates are written behind, without the caller
+     * waiting, and commits are grouped. Searches always see every update made
+     * before them, but the last <code>commitIntervalMillis</code> worth of
+     * updates may be lost if the process dies without calling
+     * {@link #close()} (which a shutdown hook does on a normal exit).
+     * 
+     * @param idxPath
+     *            The path to the index directory.
+     * @param pageSize
+     *            The number of workflow instances per page.
+     * @param commitCount
+     *            The number of updates after which to commit.
+     * @param commitIntervalMillis
+     *            The longest time to leave updates uncommitted.
+     * @throws InstanceRepositoryException
+     *             If the index cannot be opened.
+     */
+    public LuceneWorkflowInstanceRepository(String idxPath, int pageSize,
+            int commitCount, long commitIntervalMillis)
+            throws InstanceRepositoryException {
+        this(idxPath, pageSize);
+        try {
+            nrtIndex = new NearRealTimeIndex(indexDir, newWriterConfig(),
+                    "workflow_inst_id", commitCount, commitIntervalMillis);
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Unable to open index: [" + idxFilePath
+                    + "] for writing: Message: " + e.getMessage());
+            throw new InstanceRepositoryException(e.getMessage());
+        }
+    }
+
+    /**
+     * Commits and closes the index, if this repository is in near real time
+     * mode. The repository may not be used afterwards.
+     */
+    public void close() {
+        if (nrtIndex != null) {
+            nrtIndex.close();
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -112,12 +158,7 @@ public class LuceneWorkflowInstanceRepository extends
         IndexSearcher searcher = null;
         int numInsts = -1;
         try {
-            reader = DirectoryReader.open(indexDir);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        try {
-            searcher = new IndexSearcher(reader);
+            searcher = acquireSearcher();
             Term instIdTerm = new Term("myfield", "myvalue");
             org.apache.lucene.search.Query query = new TermQuery(instIdTerm);
             Sort sort = new Sort(new SortField("workflow_inst_startdatetime",
@@ -133,10 +174,7 @@ public class LuceneWorkflowInstanceRepository extends
             throw new InstanceRepositoryException(e.getMessage());
         } finally {
             if (searcher != null) {
-                try {
-                    //TODO Shutdown searcher
-                } catch (Exception ignore) {
-                }
+                releaseSearcher(searcher);
             }
         }
 
@@ -153,12 +191,7 @@ public class LuceneWorkflowInstanceRepository extends
         IndexSearcher searcher = null;
         int numInsts = -1;
         try {
-            reader = DirectoryReader.open(indexDir);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        try {
-            searcher = new IndexSearcher(reader);
+            searcher = acquireSearcher();
             Term instIdTerm = new Term("workflow_inst_status", status);
             org.apache.lucene.search.Query query = new TermQuery(instIdTerm);
             Sort sort = new Sort(new SortField("workflow_inst_startdatetime",
@@ -174,10 +207,7 @@ public class LuceneWorkflowInstanceRepository extends
             throw new InstanceRepositoryException(e.getMessage());
         } finally {
             if (searcher != null) {
-                try {
-                    //TODO Shutdown searcher
-                } catch (Exception ignore) {
-                }
+                releaseSearcher(searcher);
             }
         }
 
@@ -189,13 +219,19 @@ public class LuceneWorkflowInstanceRepository extends
      * 
      * @see org.apache.oodt.cas.workflow.instrepo.WorkflowInstanceRepository#addWorkflowInstance(org.apache.oodt.cas.workflow.structs.WorkflowInstance)
      */
-    public synchronized void addWorkflowInstance(WorkflowInstance wInst)
+    public void addWorkflowInstance(WorkflowInstance wInst)
             throws InstanceRepositoryException {
         // generate UUID for inst
         UUID uuid = UUIDGenerator.getInstance().generateTimeBasedUUID();
         wInst.setId(uuid.toString());
 
-        addWorkflowInstanceToCatalog(wInst);
+        if (nrtIndex != null) {
+            nrtIndex.update(wInst.getId(), toDoc(wInst));
+            return;
+        }
+        synchronized (this) {
+            addWorkflowInstanceToCatalog(wInst);
+        }
 
     }
 
@@ -204,8 +240,12 @@ public class LuceneWorkflowInstanceRepository extends
      * 
      * @see org.apache.oodt.cas.workflow.instrepo.WorkflowInstanceRepository#removeWorkflowInstance(org.apache.oodt.cas.workflow.structs.WorkflowInstance)
      */
-    public synchronized void removeWorkflowInstance(WorkflowInstance wInst)
+    public void removeWorkflowInstance(WorkflowInstance wInst)
             throws InstanceRepositoryException {
+        if (nrtIndex != null) {
+            nrtIndex.delete(wInst.getId());
+            return;
+        }
         removeWorkflowInstanceDocument(wInst);
 
     }
@@ -215,10 +255,17 @@ public class LuceneWorkflowInstanceRepository extends
      * 
      * @see org.apache.oodt.cas.workflow.instrepo.WorkflowInstanceRepository#updateWorkflowInstance(org.apache.oodt.cas.workflow.structs.WorkflowInstance)
      */
-    public synchronized void updateWorkflowInstance(WorkflowInstance wInst)
+    public void updateWorkflowInstance(WorkflowInstance wInst)
             throws InstanceRepositoryException {
-        removeWorkflowInstanceDocument(wInst);
-        addWorkflowInstanceToCatalog(wInst);
+        if (nrtIndex != null) {
+            // written behind: this returns without waiting on the index
+            nrtIndex.update(wInst.getId(), toDoc(wInst));
+            return;
+        }
+        synchronized (this) {
+            removeWorkflowInstanceDocument(wInst);
+            addWorkflowInstanceToCatalog(wInst);
+        }
     }
 
     /*
@@ -228,15 +275,20 @@ public class LuceneWorkflowInstanceRepository extends
      */
     public WorkflowInstance getWorkflowInstanceById(String workflowInstId)
             throws InstanceRepositoryException {
+        if (nrtIndex != null) {
+            // no need to wait for an update that hasn't been written yet
+            Document pendingDoc = nrtIndex.getPending(workflowInstId);
+            if (pendingDoc == NearRealTimeIndex.DELETED) {
+                return null;
+            } else if (pendingDoc != null) {
+                return toWorkflowInstance(pendingDoc);
+            }
+        }
+
         IndexSearcher searcher = null;
         WorkflowInstance wInst = null;
         try {
-            reader = DirectoryReader.open(indexDir);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        try {
-            searcher = new IndexSearcher(reader);
+            searcher = acquireSearcher();
             Term instIdTerm = new Term("workflow_inst_id", workflowInstId);
             org.apache.lucene.search.Query query = new TermQuery(instIdTerm);
             TopDocs check = searcher.search(query, 1);
@@ -261,10 +313,7 @@ public class LuceneWorkflowInstanceRepository extends
             throw new InstanceRepositoryException(e.getMessage());
         } finally {
             if (searcher != null) {
-                try {
-                    //TODO Shutdown searcher
-                } catch (Exception ignore) {
-                }
+                releaseSearcher(searcher);
             }
         }
 
@@ -280,12 +329,7 @@ public class LuceneWorkflowInstanceRepository extends
         IndexSearcher searcher = null;
         List wInsts = null;
         try {
-            reader = DirectoryReader.open(indexDir);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        try {
-            searcher = new IndexSearcher(reader);
+            searcher = acquireSearcher();
             Term instIdTerm = new Term("myfield", "myvalue");
             org.apache.lucene.search.Query query = new TermQuery(instIdTerm);
             Sort sort = new Sort(new SortField("workflow_inst_startdatetime",
@@ -312,10 +356,7 @@ public class LuceneWorkflowInstanceRepository extends
             throw new InstanceRepositoryException(e.getMessage());
         } finally {
             if (searcher != null) {
-                try {
-                    //TODO Shutdown searcher
-                } catch (Exception ignore) {
-                }
+                releaseSearcher(searcher);
             }
         }
 
@@ -324,15 +365,23 @@ public class LuceneWorkflowInstanceRepository extends
     
     @Override
     public synchronized boolean clearWorkflowInstances() throws InstanceRepositoryException {
+      if (nrtIndex != null) {
+        try {
+          LOG.log(Level.FINE,
+                  "LuceneWorkflowEngine: remove all workflow instances");
+          nrtIndex.deleteAndCommit(new Term("myfield", "myvalue"));
+        } catch (IOException e) {
+          LOG.log(Level.WARNING,
+                  "Exception removing workflow instances from index: Message: "
+                          + e.getMessage());
+          throw new InstanceRepositoryException(e.getMessage());
+        }
+        return true;
+      }
+
       IndexWriter writer = null;
       try {
-          IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
-          config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-          LogMergePolicy lmp =new LogDocMergePolicy();
-          lmp.setMergeFactor(mergeFactor);
-          config.setMergePolicy(lmp);
-
-          writer = new IndexWriter(indexDir, config);
+          writer = new IndexWriter(indexDir, newWriterConfig());
           LOG.log(Level.FINE,
                   "LuceneWorkflowEngine: remove all workflow instances");
           writer.deleteDocuments(new Term("myfield", "myvalue"));
@@ -368,12 +417,7 @@ public class LuceneWorkflowInstanceRepository extends
         IndexSearcher searcher = null;
         List wInsts = null;
         try {
-            reader = DirectoryReader.open(indexDir);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        try {
-            searcher = new IndexSearcher(reader);
+            searcher = acquireSearcher();
             Term instIdTerm = new Term("workflow_inst_status", status);
             org.apache.lucene.search.Query query = new TermQuery(instIdTerm);
             Sort sort = new Sort(new SortField("workflow_inst_startdatetime",
@@ -400,10 +444,7 @@ public class LuceneWorkflowInstanceRepository extends
             throw new InstanceRepositoryException(e.getMessage());
         } finally {
             if (searcher != null) {
-                try {
-                    //TODO Shutdown searcher
-                } catch (Exception ignore) {
-                }
+                releaseSearcher(searcher);
             }
         }
 
@@ -421,12 +462,7 @@ public class LuceneWorkflowInstanceRepository extends
         List instIds = null;
         IndexSearcher searcher = null;
         try {
-            reader = DirectoryReader.open(indexDir);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        try {
-            searcher = new IndexSearcher(reader);
+            searcher = acquireSearcher();
 
             // construct a Boolean query here
             BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
@@ -478,10 +514,7 @@ public class LuceneWorkflowInstanceRepository extends
             throw new InstanceRepositoryException(e.getMessage());
         } finally {
             if (searcher != null) {
-                try {
-                    //TODO Shutdown searcher
-                } catch (Exception ignore) {
-                }
+                releaseSearcher(searcher);
             }
         }
 
@@ -562,6 +595,33 @@ public class LuceneWorkflowInstanceRepository extends
 
     }
 
+    private IndexSearcher acquireSearcher() throws IOException {
+        if (nrtIndex != null) {
+            return nrtIndex.acquire();
+        }
+        return new IndexSearcher(DirectoryReader.open(indexDir));
+    }
+
+    private void releaseSearcher(IndexSearcher searcher) {
+        if (nrtIndex != null) {
+            nrtIndex.release(searcher);
+            return;
+        }
+        try {
+            searcher.getIndexReader().close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    private IndexWriterConfig newWriterConfig() {
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer());
+        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        LogMergePolicy lmp =new LogDocMergePolicy();
+        lmp.setMergeFactor(mergeFactor);
+        config.setMergePolicy(lmp);
+        return config;
+    }
+
     private Document toDoc(WorkflowInstance workflowInst) {
         Document doc = new Document();
 
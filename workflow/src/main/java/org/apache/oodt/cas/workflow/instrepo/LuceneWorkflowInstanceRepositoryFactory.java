@@ -48,6 +48,13 @@ public class LuceneWorkflowInstanceRepositoryFactory implements
     private String indexFilePath = null;
 
     private int pageSize = -1;
+
+    /* whether or not to keep the index open, writing behind */
+    private boolean nearRealTime = false;
+
+    private int commitCount = -1;
+
+    private long commitIntervalMillis = -1;
     
 	/* our log stream */
     private static final Logger LOG = Logger.getLogger(LuceneWorkflowInstanceRepositoryFactory.class.getName());
@@ -67,6 +74,12 @@ public class LuceneWorkflowInstanceRepositoryFactory implements
         indexFilePath = PathUtils.replaceEnvVariables(indexFilePath);
         pageSize = Integer.getInteger(
             "org.apache.oodt.cas.workflow.instanceRep.pageSize", VAL);
+        nearRealTime = Boolean.getBoolean(
+            "org.apache.oodt.cas.workflow.instanceRep.lucene.nearRealTime");
+        commitCount = Integer.getInteger(
+            "org.apache.oodt.cas.workflow.instanceRep.lucene.commitCount", 100);
+        commitIntervalMillis = 1000L * Long.getLong(
+            "org.apache.oodt.cas.workflow.instanceRep.lucene.commitInterval.seconds", 5L);
     }
 
     /*
@@ -103,6 +116,15 @@ public class LuceneWorkflowInstanceRepositoryFactory implements
 	            }
 	        }
 
+        if (nearRealTime) {
+            try {
+                return new LuceneWorkflowInstanceRepository(indexFilePath,
+                    pageSize, commitCount, commitIntervalMillis);
+            } catch (Exception e) {
+                LOG.severe("Unable to open index in near real time mode: "
+                    + e.getMessage() + ": falling back to opening it per operation");
+            }
+        }
         return new LuceneWorkflowInstanceRepository(indexFilePath, pageSize);
     }
 
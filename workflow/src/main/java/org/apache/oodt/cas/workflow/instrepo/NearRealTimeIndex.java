@@ -0,0 +1,401 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.workflow.instrepo;
+
+//Lucene imports
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+
+//JDK imports
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *
+ * <p>
+ * A Lucene index with a single, long lived {@link IndexWriter}, searched
+ * through a {@link SearcherManager} over the writer's near real time readers.
+ * Updates are queued and written by a background thread, so callers don't
+ * wait on index I/O, and queued updates to the same document are coalesced,
+ * so only the latest is written. Commits (and the fsync that comes with them)
+ * are grouped: they happen once a number of updates have been written, or a
+ * time interval has passed, whichever comes first.
+ * </p>
+ *
+ * <p>
+ * Searches wait for what was queued before them to be written, and see it, so
+ * readers always see their own writes; only durability is deferred to the
+ * next commit. If the writer fails for good, searches and updates fail too,
+ * rather than wait on writes that won't happen.
+ * </p>
+ */
+class NearRealTimeIndex {
+
+    /* our log stream */
+    private static final Logger LOG = Logger.getLogger(NearRealTimeIndex.class
+            .getName());
+
+    /* stands in for a queued delete */
+    static final Document DELETED = new Document();
+
+    private final String idField;
+
+    private final int commitCount;
+
+    private final long commitIntervalMillis;
+
+    private final IndexWriter writer;
+
+    private final SearcherManager searcherManager;
+
+    private final Object lock = new Object();
+
+    /* id to the document to write, or DELETED, in the order queued */
+    private Map<String, Document> pending = new LinkedHashMap<String, Document>();
+
+    /* the batch being written, or null */
+    private Map<String, Document> writing = null;
+
+    /* the number of updates queued so far */
+    private long queuedSeq = 0;
+
+    /* the number of updates queued before the last batch that was written */
+    private long writtenSeq = 0;
+
+    /* what stopped the writer for good, or null */
+    private Throwable failure = null;
+
+    private volatile int uncommitted = 0;
+
+    private volatile long lastCommit = System.currentTimeMillis();
+
+    private boolean closed = false;
+
+    private final Thread writerThread;
+
+    private final Thread shutdownHook;
+
+    /**
+     * @param indexDir
+     *            The directory of the index.
+     * @param config
+     *            The configuration for the index writer.
+     * @param idField
+     *            The field that uniquely identifies each document.
+     * @param commitCount
+     *            The number of written updates after which to commit.
+     * @param commitIntervalMillis
+     *            The most time to leave written updates uncommitted.
+     * @throws IOException
+     *             If the index cannot be opened for writing.
+     */
+    NearRealTimeIndex(Directory indexDir, IndexWriterConfig config,
+            String idField, int commitCount, long commitIntervalMillis)
+            throws IOException {
+        this.idField = idField;
+        this.commitCount = Math.max(1, commitCount);
+        this.commitIntervalMillis = Math.max(1, commitIntervalMillis);
+        writer = new IndexWriter(indexDir, config);
+        searcherManager = new SearcherManager(writer, null);
+
+        writerThread = new Thread(new Runnable() {
+            public void run() {
+                writeLoop();
+            }
+        }, "NearRealTimeIndex-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        // don't lose the last interval's updates on the way out
+        shutdownHook = new Thread() {
+            public void run() {
+                close();
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queues a document to replace any with the same id.
+     */
+    void update(String id, Document doc) {
+        enqueue(id, doc);
+    }
+
+    /**
+     * Queues the removal of the document with the given id.
+     */
+    void delete(String id) {
+        enqueue(id, DELETED);
+    }
+
+    /**
+     * @return The document queued, but not yet searchable, for the given id,
+     *         {@link #DELETED} if its removal is queued, or null if nothing
+     *         is queued for it.
+     */
+    Document getPending(String id) {
+        synchronized (lock) {
+            Document doc = pending.get(id);
+            if (doc == null && writing != null) {
+                doc = writing.get(id);
+            }
+            return doc;
+        }
+    }
+
+    /**
+     * Writes everything queued so far, then deletes the documents matching
+     * the given term and commits, before returning.
+     */
+    void deleteAndCommit(Term term) throws IOException {
+        awaitWritten();
+        synchronized (writer) {
+            writer.deleteDocuments(term);
+            searcherManager.maybeRefreshBlocking();
+            commit();
+        }
+    }
+
+    /**
+     * Waits for everything queued so far to be written, then returns a
+     * searcher that sees it, which must be given back to
+     * {@link #release(IndexSearcher)}.
+     */
+    IndexSearcher acquire() throws IOException {
+        awaitWritten();
+        return searcherManager.acquire();
+    }
+
+    void release(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to release searcher: Message: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes and commits everything queued, and closes the index.
+     */
+    void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ignore) {
+                // already shutting down
+            }
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            synchronized (writer) {
+                if (getFailure() == null) {
+                    commit();
+                }
+                searcherManager.close();
+                writer.close();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "Unable to close index: Message: "
+                    + e.getMessage());
+        } catch (RuntimeException e) {
+            LOG.log(Level.SEVERE, "Unable to close index: Message: "
+                    + e.getMessage());
+        }
+    }
+
+    private void enqueue(String id, Document doc) {
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Index is closed");
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Index writer failed: "
+                        + failure.getMessage(), failure);
+            }
+            // re-queue at the end so that the latest update goes last
+            pending.remove(id);
+            pending.put(id, doc);
+            queuedSeq++;
+            lock.notifyAll();
+        }
+    }
+
+    /*
+     * waits for the updates queued before the call, not for the queue to
+     * drain, so that a steady stream of updates can't hold readers off
+     */
+    private void awaitWritten() throws IOException {
+        synchronized (lock) {
+            long target = queuedSeq;
+            while (!closed && failure == null && writtenSeq < target) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for index writes");
+                }
+            }
+            if (failure != null) {
+                throw new IOException("Index writer failed: "
+                        + failure.getMessage(), failure);
+            }
+        }
+    }
+
+    private Throwable getFailure() {
+        synchronized (lock) {
+            return failure;
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Map<String, Document> batch;
+            long batchSeq;
+            synchronized (lock) {
+                while (pending.isEmpty() && !closed && !commitDue()) {
+                    try {
+                        lock.wait(uncommitted > 0 ? Math.max(1, lastCommit
+                                + commitIntervalMillis
+                                - System.currentTimeMillis()) : 0);
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+                if (closed && pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                batchSeq = queuedSeq;
+                writing = batch;
+                pending = new LinkedHashMap<String, Document>();
+            }
+
+            boolean written = false;
+            try {
+                synchronized (writer) {
+                    write(batch);
+                    uncommitted += batch.size();
+                    searcherManager.maybeRefreshBlocking();
+                    if (commitDue()) {
+                        commit();
+                    }
+                }
+                written = true;
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Unable to write [" + batch.size()
+                        + "] updates to index: retrying: Message: "
+                        + e.getMessage());
+            } catch (Throwable t) {
+                LOG.log(Level.SEVERE, "Index writer failed: no more updates "
+                        + "will be written: Message: " + t.getMessage(), t);
+                synchronized (lock) {
+                    failure = t;
+                }
+            } finally {
+                synchronized (lock) {
+                    writing = null;
+                    if (written) {
+                        writtenSeq = batchSeq;
+                    } else if (failure == null && !closed) {
+                        // keep the batch, unless it has been updated since
+                        for (Map.Entry<String, Document> entry : pending
+                                .entrySet()) {
+                            batch.remove(entry.getKey());
+                        }
+                        batch.putAll(pending);
+                        pending = batch;
+                    }
+                    lock.notifyAll();
+                }
+            }
+
+            synchronized (lock) {
+                if (failure != null || (!written && closed)) {
+                    return;
+                }
+                if (!written) {
+                    try {
+                        lock.wait(1000);
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * an update Lucene rejects outright (an immense term, say) would fail
+     * every retry, so it is dropped; anything that leaves the writer unusable
+     * is thrown
+     */
+    private void write(Map<String, Document> batch) throws IOException {
+        for (Map.Entry<String, Document> entry : batch.entrySet()) {
+            Term idTerm = new Term(idField, entry.getKey());
+            try {
+                if (entry.getValue() == DELETED) {
+                    writer.deleteDocuments(idTerm);
+                } else {
+                    writer.updateDocument(idTerm, entry.getValue());
+                }
+            } catch (RuntimeException e) {
+                if (!writer.isOpen() || writer.getTragicException() != null) {
+                    throw e;
+                }
+                LOG.log(Level.SEVERE, "Dropping update of [" + entry.getKey()
+                        + "] rejected by index: Message: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean commitDue() {
+        return uncommitted >= commitCount
+                || (uncommitted > 0 && System.currentTimeMillis() - lastCommit >= commitIntervalMillis);
+    }
+
+    private void commit() throws IOException {
+        if (uncommitted > 0 || writer.hasUncommittedChanges()) {
+            writer.commit();
+            LOG.log(Level.FINE, "Committed [" + uncommitted
+                    + "] updates to index");
+        }
+        uncommitted = 0;
+        lastCommit = System.currentTimeMillis();
+    }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.oodt.cas.workflow.engine;
+
+//JDK imports
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+//OODT imports
+import org.apache.oodt.cas.workflow.engine.processor.TaskProcessor;
+import org.apache.oodt.cas.workflow.engine.processor.WorkflowProcessor;
+import org.apache.oodt.cas.workflow.engine.processor.WorkflowProcessorQueue;
+import org.apache.oodt.cas.workflow.engine.runner.EngineRunner;
+import org.apache.oodt.cas.workflow.instrepo.WorkflowInstanceRepository;
+import org.apache.oodt.cas.workflow.lifecycle.WorkflowLifecycleManager;
+import org.apache.oodt.cas.workflow.structs.FILOPrioritySorter;
+import org.apache.oodt.cas.workflow.structs.Graph;
+import org.apache.oodt.cas.workflow.structs.ParentChildWorkflow;
+import org.apache.oodt.cas.workflow.structs.Priority;
+import org.apache.oodt.cas.workflow.structs.WorkflowInstance;
+import org.apache.oodt.cas.workflow.structs.WorkflowTask;
+
+/**
+ *
+ * Measures how quickly the {@link TaskQuerier} and {@link TaskRunner} hand
+ * tasks to an {@link EngineRunner}: the latency from a task becoming runnable
+ * to it being executed, and the overall dispatch throughput, with a large
+ * number of concurrent workflow instances. The runner completes each task
+ * immediately, so the numbers reflect the engine's own overhead.
+ *
+ * Instances are first submitted all at once, which measures throughput, and
+ * then one at a time to an idle engine, which measures the time to react to a
+ * newly runnable task. Not run as part of the test suite; run its main method
+ * with an optional number of instances (default 10000) and runner slots
+ * (default 25).
+ *
+ */
+public class TaskDispatchBenchmark {
+
+  private static final long QUERIER_WAIT_SECS = 5;
+
+  public static void main(String[] args) throws Exception {
+    int numInstances = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int numSlots = args.length > 1 ? Integer.parseInt(args[1]) : 25;
+
+    WorkflowLifecycleManager lifecycleManager = new WorkflowLifecycleManager(
+        "./src/main/resources/examples/wengine/wengine-lifecycle.xml");
+
+    // all instances submitted at once
+    run(lifecycleManager, numInstances, numSlots, false);
+    // instances submitted one at a time to an otherwise idle engine
+    run(lifecycleManager, Math.min(numInstances, 1000), numSlots, true);
+    System.exit(0);
+  }
+
+  private static void run(WorkflowLifecycleManager lifecycleManager,
+      int numInstances, int numSlots, boolean oneAtATime) throws Exception {
+    BenchmarkProcessorQueue processorQueue = new BenchmarkProcessorQueue();
+    BenchmarkRunner runner = new BenchmarkRunner(numInstances, numSlots);
+
+    TaskQuerier querier = new TaskQuerier(processorQueue,
+        new FILOPrioritySorter(), null, QUERIER_WAIT_SECS);
+    runner.addListener(querier);
+    TaskRunner taskRunner = new TaskRunner(querier, runner);
+    Thread querierThread = new Thread(querier);
+    Thread runnerThread = new Thread(taskRunner);
+    querierThread.setDaemon(true);
+    runnerThread.setDaemon(true);
+    querierThread.start();
+    runnerThread.start();
+
+    List<TaskProcessor> processors = new Vector<TaskProcessor>(numInstances);
+    for (int i = 0; i < numInstances; i++) {
+      processors.add(newProcessor(lifecycleManager, i));
+    }
+
+    long start = System.nanoTime();
+    for (TaskProcessor processor : processors) {
+      runner.submitted(processor);
+      processorQueue.add(processor);
+      querier.requestScan();
+      if (oneAtATime) {
+        runner.awaitCompletion();
+      }
+    }
+    boolean finished = runner.await(10, TimeUnit.MINUTES);
+    long elapsed = System.nanoTime() - start;
+
+    querier.setRunning(false);
+    taskRunner.setRunning(false);
+    runner.shutdown();
+
+    long[] latencies = runner.getLatencies();
+    Arrays.sort(latencies);
+    System.out.println((oneAtATime ? "One at a time" : "All at once")
+        + ": instances: " + numInstances + ", runner slots: " + numSlots
+        + (finished ? "" : " (timed out)"));
+    System.out.println("  Dispatched: " + latencies.length + " in "
+        + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms: "
+        + (long) (latencies.length / (elapsed / 1e9)) + " tasks/sec");
+    if (latencies.length > 0) {
+      System.out.println("  Dispatch latency (ms): p50="
+          + millis(percentile(latencies, 50)) + " p99="
+          + millis(percentile(latencies, 99)) + " max="
+          + millis(latencies[latencies.length - 1]));
+    }
+  }
+
+  private static TaskProcessor newProcessor(
+      WorkflowLifecycleManager lifecycleManager, int num) {
+    WorkflowTask task = new WorkflowTask();
+    task.setConditions(Collections.emptyList());
+    task.setRequiredMetFields(Collections.emptyList());
+    task.setTaskId("urn:cas:workflow:benchmark");
+    task.setTaskName("Benchmark");
+    ParentChildWorkflow workflow = new ParentChildWorkflow(new Graph());
+    workflow.getTasks().add(task);
+
+    WorkflowInstance inst = new WorkflowInstance();
+    inst.setId("benchmark-winst-" + num);
+    inst.setParentChildWorkflow(workflow);
+    inst.setCurrentTaskId(task.getTaskId());
+    inst.setPriority(Priority.getPriority(num % 10));
+
+    TaskProcessor processor = new TaskProcessor(lifecycleManager, inst);
+    inst.setState(lifecycleManager.getDefaultLifecycle().createState("Loaded",
+        "initial", ""));
+    return processor;
+  }
+
+  private static long percentile(long[] sorted, int pct) {
+    return sorted[Math.min(sorted.length - 1, sorted.length * pct / 100)];
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.3f", nanos / 1e6);
+  }
+
+  /* a processor queue fed directly by the benchmark, dropping done instances */
+  private static class BenchmarkProcessorQueue extends WorkflowProcessorQueue {
+
+    private final List<WorkflowProcessor> processors = new Vector<WorkflowProcessor>();
+
+    BenchmarkProcessorQueue() {
+      super(null, null, null);
+    }
+
+    void add(WorkflowProcessor processor) {
+      processors.add(processor);
+    }
+
+    @Override
+    public synchronized List<WorkflowProcessor> getProcessors() {
+      synchronized (processors) {
+        for (Iterator<WorkflowProcessor> i = processors.iterator(); i.hasNext();) {
+          if (i.next().isAnyCategory("done")) {
+            i.remove();
+          }
+        }
+        return new Vector<WorkflowProcessor>(processors);
+      }
+    }
+  }
+
+  /* completes every task on arrival, recording how long it took to get here */
+  private static class BenchmarkRunner extends EngineRunner {
+
+    private final Map<String, Long> submitTimes = new ConcurrentHashMap<String, Long>();
+
+    private final long[] latencies;
+
+    private final CountDownLatch done;
+
+    private final Semaphore completed = new Semaphore(0);
+
+    private final int numSlots;
+
+    private int running;
+
+    private int dispatched;
+
+    BenchmarkRunner(int numInstances, int numSlots) {
+      this.latencies = new long[numInstances];
+      this.done = new CountDownLatch(numInstances);
+      this.numSlots = numSlots;
+    }
+
+    void submitted(TaskProcessor taskProcessor) {
+      submitTimes.put(taskProcessor.getWorkflowInstance().getId(),
+          System.nanoTime());
+    }
+
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+      return done.await(timeout, unit);
+    }
+
+    void awaitCompletion() throws InterruptedException {
+      completed.acquire();
+    }
+
+    synchronized long[] getLatencies() {
+      return Arrays.copyOf(latencies, dispatched);
+    }
+
+    @Override
+    public void execute(final TaskProcessor taskProcessor) {
+      Long submitted = submitTimes
+          .remove(taskProcessor.getWorkflowInstance().getId());
+      synchronized (this) {
+        latencies[dispatched++] = System.nanoTime() - submitted;
+        running++;
+      }
+      Thread worker = new Thread() {
+        @Override
+        public void run() {
+          taskProcessor.getWorkflowInstance().setState(
+              taskProcessor.getLifecycleManager().getDefaultLifecycle()
+                  .createState("Success", "done", ""));
+          synchronized (BenchmarkRunner.this) {
+            running--;
+          }
+          done.countDown();
+          completed.release();
+          notifyListeners(taskProcessor);
+        }
+      };
+      worker.start();
+    }
+
+    @Override
+    public synchronized boolean hasOpenSlots(TaskProcessor taskProcessor) {
+      return running < numSlots;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public void setInstanceRepository(WorkflowInstanceRepository instRep) {
+    }
+  }
+
+}
@@ -19,14 +19,27 @@
 package org.apache.oodt.cas.workflow.engine;
 
 //OODT imports
+import org.apache.oodt.cas.metadata.Metadata;
+import org.apache.oodt.cas.workflow.examples.FalseCondition;
+import org.apache.oodt.cas.workflow.instrepo.MemoryWorkflowInstanceRepository;
 import org.apache.oodt.cas.workflow.structs.Graph;
 import org.apache.oodt.cas.workflow.structs.ParentChildWorkflow;
+import org.apache.oodt.cas.workflow.structs.Workflow;
+import org.apache.oodt.cas.workflow.structs.WorkflowCondition;
 import org.apache.oodt.cas.workflow.structs.WorkflowInstance;
+import org.apache.oodt.cas.workflow.structs.WorkflowStatus;
 import org.apache.oodt.cas.workflow.structs.WorkflowTask;
+import org.apache.oodt.cas.workflow.structs.WorkflowTaskConfiguration;
+import org.apache.oodt.cas.workflow.structs.WorkflowTaskInstance;
 import org.apache.oodt.commons.util.DateConvert;
 
 //JDK imports
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 
@@ -43,6 +56,10 @@ import junit.framework.TestCase;
  */
 public class TestThreadPoolWorkflowEngine extends TestCase {
 
+    private static final String PRECONDITION_WAIT_TIME_PROPERTY = "org.apache.oodt.cas.workflow.engine.preConditionWaitTime";
+
+    private String origPreConditionWaitTime;
+
     public TestThreadPoolWorkflowEngine() {
         // suppress WARNING level and below because we don't want
         // the warning message where we test if start date time is AFTER
@@ -50,6 +67,20 @@ public class TestThreadPoolWorkflowEngine extends TestCase {
         LogManager.getLogManager().getLogger("").setLevel(Level.SEVERE);
     }
 
+    protected void setUp() throws Exception {
+        origPreConditionWaitTime = System
+                .getProperty(PRECONDITION_WAIT_TIME_PROPERTY);
+    }
+
+    protected void tearDown() throws Exception {
+        if (origPreConditionWaitTime != null) {
+            System.setProperty(PRECONDITION_WAIT_TIME_PROPERTY,
+                    origPreConditionWaitTime);
+        } else {
+            System.clearProperty(PRECONDITION_WAIT_TIME_PROPERTY);
+        }
+    }
+
     public void testCurrentTaskWallClockTime() {
         // at first, there is no start date time
         WorkflowInstance inst = new WorkflowInstance();
@@ -93,4 +124,100 @@ public class TestThreadPoolWorkflowEngine extends TestCase {
             .getCurrentTaskWallClockMinutes(inst));
 
     }
+
+    public void testAsynchronousEngine() throws Exception {
+        ThreadPoolWorkflowEngine engine = newAsynchronousEngine();
+        CountingTask.COUNT.set(0);
+
+        // many more instances than threads
+        List<WorkflowInstance> instances = new ArrayList<WorkflowInstance>();
+        for (int i = 0; i < 20; i++) {
+            instances.add(engine.startWorkflow(newWorkflow(false),
+                    new Metadata()));
+            // instance ids are only unique to the millisecond
+            Thread.sleep(2);
+        }
+        for (WorkflowInstance inst : instances) {
+            assertEquals(WorkflowStatus.FINISHED, awaitStatus(engine,
+                    inst.getId(), WorkflowStatus.FINISHED));
+        }
+        assertEquals(40, CountingTask.COUNT.get());
+    }
+
+    public void testAsynchronousEngineWaitsForConditions() throws Exception {
+        ThreadPoolWorkflowEngine engine = newAsynchronousEngine();
+        CountingTask.COUNT.set(0);
+
+        // the second task's condition is never satisfied, so the instance
+        // pauses itself until it is resumed
+        String id = engine.startWorkflow(newWorkflow(true), new Metadata())
+                .getId();
+        assertEquals(WorkflowStatus.PAUSED, awaitStatus(engine, id,
+                WorkflowStatus.PAUSED));
+        assertEquals(1, CountingTask.COUNT.get());
+
+        engine.resumeWorkflowInstance(id);
+        assertEquals(WorkflowStatus.FINISHED, awaitStatus(engine, id,
+                WorkflowStatus.FINISHED));
+        assertEquals(2, CountingTask.COUNT.get());
+    }
+
+    private ThreadPoolWorkflowEngine newAsynchronousEngine() throws Exception {
+        System.setProperty(PRECONDITION_WAIT_TIME_PROPERTY, "1");
+        ThreadPoolWorkflowEngine engine = new ThreadPoolWorkflowEngine(
+                new MemoryWorkflowInstanceRepository(20), 10, 2, 2, 1, true,
+                null, true);
+        engine.setWorkflowManagerUrl(new URL("http://localhost:9001"));
+        return engine;
+    }
+
+    private Workflow newWorkflow(boolean unsatisfiedCondition) {
+        List<WorkflowTask> tasks = new ArrayList<WorkflowTask>();
+        for (int i = 0; i < 2; i++) {
+            WorkflowTask task = new WorkflowTask();
+            task.setTaskId("urn:oodt:countingTask" + i);
+            task.setTaskName("CountingTask" + i);
+            task.setTaskInstanceClassName(CountingTask.class.getName());
+            task.setTaskConfig(new WorkflowTaskConfiguration());
+            tasks.add(task);
+        }
+        if (unsatisfiedCondition) {
+            WorkflowCondition condition = new WorkflowCondition();
+            condition.setConditionId("urn:oodt:falseCondition");
+            condition.setConditionName("FalseCondition");
+            condition.setConditionInstanceClassName(FalseCondition.class
+                    .getName());
+            tasks.get(1).setConditions(Collections.singletonList(condition));
+        }
+        Workflow workflow = new Workflow();
+        workflow.setId("urn:oodt:countingWorkflow");
+        workflow.setName("CountingWorkflow");
+        workflow.setTasks(tasks);
+        return workflow;
+    }
+
+    private String awaitStatus(ThreadPoolWorkflowEngine engine, String id,
+            String status) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        String current = null;
+        while (System.currentTimeMillis() < deadline) {
+            current = engine.getInstanceRepository()
+                    .getWorkflowInstanceById(id).getStatus();
+            if (status.equals(current)) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+        return current;
+    }
+
+    /* counts how many times it has been run */
+    public static class CountingTask implements WorkflowTaskInstance {
+
+        static final AtomicInteger COUNT = new AtomicInteger();
+
+        public void run(Metadata metadata, WorkflowTaskConfiguration config) {
+            COUNT.incrementAndGet();
+        }
+    }
 }
@@ -263,4 +263,35 @@ public class TestLuceneWorkflowInstanceRepository extends TestCase implements
                 "TestKey2"));
     }
 
+    public void testNearRealTimeMode() throws Exception {
+        LuceneWorkflowInstanceRepository nrtRepo = new LuceneWorkflowInstanceRepository(
+                tmpDirPath, 20, 1000, 60000);
+        try {
+            nrtRepo.addWorkflowInstance(testInst);
+            String wInstId = testInst.getId();
+
+            // the update is written behind, but is seen straight away
+            testInst.setStatus(PAUSED);
+            nrtRepo.updateWorkflowInstance(testInst);
+            assertEquals(PAUSED, nrtRepo.getWorkflowInstanceById(wInstId)
+                    .getStatus());
+            assertEquals(1, nrtRepo.getNumWorkflowInstances());
+            assertEquals(1, nrtRepo.getNumWorkflowInstancesByStatus(PAUSED));
+            assertEquals(PAUSED, nrtRepo.getWorkflowInstanceById(wInstId)
+                    .getStatus());
+
+            for (int i = 0; i < 5; i++) {
+                nrtRepo.addWorkflowInstance(testInst);
+            }
+            nrtRepo.removeWorkflowInstance(testInst);
+            assertNull(nrtRepo.getWorkflowInstanceById(testInst.getId()));
+            assertEquals(5, nrtRepo.getWorkflowInstances().size());
+        } finally {
+            nrtRepo.close();
+        }
+
+        // closing committed everything
+        assertEquals(5, repo.getNumWorkflowInstances());
+    }
+
 }
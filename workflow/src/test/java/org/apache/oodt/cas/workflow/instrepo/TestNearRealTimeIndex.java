@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.oodt.cas.workflow.instrepo;
+
+//Lucene imports
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+
+//JDK imports
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//Junit imports
+import junit.framework.TestCase;
+
+/**
+ * Tests that the {@link NearRealTimeIndex} keeps readers going when updates
+ * fail, or keep coming.
+ *
+ * @version $Revision$
+ */
+public class TestNearRealTimeIndex extends TestCase {
+
+    private static final String ID = "id";
+
+    private NearRealTimeIndex index;
+
+    protected void setUp() throws Exception {
+        index = new NearRealTimeIndex(new RAMDirectory(),
+                new IndexWriterConfig(new StandardAnalyzer()), ID, 100, 1000L);
+    }
+
+    protected void tearDown() throws Exception {
+        index.close();
+    }
+
+    public void testRejectedUpdateIsDropped() throws Exception {
+        char[] immense = new char[40000];
+        Arrays.fill(immense, 'x');
+        Document bad = doc("bad");
+        bad.add(new StringField("big", new String(immense), Field.Store.NO));
+        index.update("bad", bad);
+        index.update("good", doc("good"));
+
+        assertEquals(0, count("bad"));
+        assertEquals(1, count("good"));
+
+        // and the writer carries on
+        index.update("later", doc("later"));
+        assertEquals(1, count("later"));
+    }
+
+    public void testFailedWriterFailsWaiters() throws Exception {
+        Document doc = doc("fatal");
+        doc.add(new Field("fatal", "value", TextField.TYPE_NOT_STORED) {
+            public TokenStream tokenStream(Analyzer analyzer, TokenStream reuse) {
+                throw new OutOfMemoryError("simulated");
+            }
+        });
+        index.update("fatal", doc);
+
+        try {
+            index.acquire();
+            fail("Expected a search to fail once the writer has");
+        } catch (IOException expected) {
+        }
+        try {
+            index.update("after", doc("after"));
+            fail("Expected an update to fail once the writer has");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testReadersAreNotHeldOffBySteadyUpdates() throws Exception {
+        final AtomicBoolean stop = new AtomicBoolean();
+        Thread updater = new Thread() {
+            public void run() {
+                for (int i = 0; !stop.get(); i++) {
+                    index.update("doc" + (i % 50), doc("doc" + (i % 50)));
+                }
+            }
+        };
+        updater.start();
+        try {
+            final Exception[] error = new Exception[1];
+            Thread reader = new Thread() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < 20; i++) {
+                            index.release(index.acquire());
+                        }
+                    } catch (Exception e) {
+                        error[0] = e;
+                    }
+                }
+            };
+            reader.start();
+            reader.join(30000L);
+            assertFalse("Reader held off by updates", reader.isAlive());
+            assertNull(error[0]);
+        } finally {
+            stop.set(true);
+            updater.join();
+        }
+    }
+
+    private int count(String id) throws IOException {
+        IndexSearcher searcher = index.acquire();
+        try {
+            return searcher.count(new TermQuery(new Term(ID, id)));
+        } finally {
+            index.release(searcher);
+        }
+    }
+
+    private static Document doc(String id) {
+        Document doc = new Document();
+        doc.add(new StringField(ID, id, Field.Store.YES));
+        return doc;
+    }
+
+}